@@ -1,7 +1,11 @@
 package com.example.grpc.client;
 
+import com.example.grpc.common.fault.FaultInjectionController;
+import com.example.grpc.common.trace.TraceController;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.context.annotation.Import;
 
 /**
  * gRPC客户端应用程序启动类
@@ -9,9 +13,13 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * 这个客户端应用程序提供REST API接口，内部调用gRPC服务
  * 演示了如何将gRPC服务包装成HTTP API
  * 
+ * @Import注册grpc-common中与服务端共用的管理接口，它们不在组件扫描范围内
+ * 
  * @author 示例作者
  */
 @SpringBootApplication
+@ConfigurationPropertiesScan
+@Import({FaultInjectionController.class, TraceController.class})
 public class GrpcClientApplication {
     
     public static void main(String[] args) {
@@ -0,0 +1,227 @@
+package com.example.grpc.client.benchmark;
+
+import com.example.grpc.client.channel.ChannelPoolProperties;
+import com.example.grpc.client.channel.UserServiceChannelPool;
+import com.example.grpc.common.fault.FaultInjectionClientInterceptor;
+import com.example.grpc.common.fault.FaultInjector;
+import com.example.grpc.common.fault.FaultRule;
+import com.example.grpc.common.fault.FaultScenario;
+import com.example.grpc.proto.CreateUserRequest;
+import com.example.grpc.proto.CreateUserResponse;
+import com.example.grpc.proto.GetUserRequest;
+import com.example.grpc.proto.GetUserResponse;
+import com.example.grpc.proto.UserServiceGrpc;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 连接池吞吐量基准测试
+ *
+ * 对运行中的服务端，分别使用不同连接数的连接池，以固定的并发度持续发送GetUser调用，
+ * 输出每种连接数下的吞吐量和延迟分位数，观察吞吐量随连接数的变化
+ *
+ * 用法：
+ * java -cp ... com.example.grpc.client.benchmark.ChannelPoolBenchmark
+ *     [--target=localhost:9090] [--connections=1,2,4,8] [--concurrency=128]
+ *     [--duration=10] [--warmup=3] [--selection=LEAST_BUSY] [--faults=场景或@场景文件] [--fault-seed=42]
+ *
+ * --faults通过连接池的拦截器在客户端注入故障（格式见FaultScenario），每轮测量开始前按同一个种子重置抽样
+ *
+ * 服务端的自适应并发限制和舱壁可能拒绝部分调用（RESOURCE_EXHAUSTED），单独计数
+ */
+public class ChannelPoolBenchmark {
+
+    /**
+     * 延迟直方图：每个桶10微秒，最大1秒
+     */
+    private static final int BUCKET_MICROS = 10;
+    private static final int BUCKETS = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        String target = "localhost:9090";
+        List<Integer> connections = List.of(1, 2, 4, 8);
+        int concurrency = 128;
+        int durationSeconds = 10;
+        int warmupSeconds = 3;
+        ChannelPoolProperties.Selection selection = ChannelPoolProperties.Selection.LEAST_BUSY;
+        String faults = "";
+        long faultSeed = 42;
+
+        for (String arg : args) {
+            if (arg.startsWith("--target=")) {
+                target = arg.substring("--target=".length());
+            } else if (arg.startsWith("--connections=")) {
+                connections = new ArrayList<>();
+                for (String size : arg.substring("--connections=".length()).split(",")) {
+                    connections.add(Integer.parseInt(size.trim()));
+                }
+            } else if (arg.startsWith("--concurrency=")) {
+                concurrency = Integer.parseInt(arg.substring("--concurrency=".length()));
+            } else if (arg.startsWith("--duration=")) {
+                durationSeconds = Integer.parseInt(arg.substring("--duration=".length()));
+            } else if (arg.startsWith("--warmup=")) {
+                warmupSeconds = Integer.parseInt(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--selection=")) {
+                selection = ChannelPoolProperties.Selection.valueOf(arg.substring("--selection=".length()));
+            } else if (arg.startsWith("--faults=")) {
+                faults = arg.substring("--faults=".length());
+            } else if (arg.startsWith("--fault-seed=")) {
+                faultSeed = Long.parseLong(arg.substring("--fault-seed=".length()));
+            }
+        }
+
+        Map<String, FaultRule> faultRules = FaultScenario.load(faults);
+        FaultInjector faultInjector = new FaultInjector(faultSeed, faultRules);
+        ScheduledExecutorService faultScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fault-injection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        FaultInjectionClientInterceptor faultInterceptor =
+                new FaultInjectionClientInterceptor(faultInjector, faultScheduler);
+
+        long userId = prepareUser(target);
+        System.out.printf("目标=%s, 并发=%d, 时长=%ds, 策略=%s, userId=%d%n",
+                target, concurrency, durationSeconds, selection, userId);
+        if (!faultRules.isEmpty()) {
+            System.out.printf("故障场景=%s, 种子=%d%n", FaultScenario.format(faultRules), faultSeed);
+        }
+        System.out.println("连接数\t吞吐量(次/秒)\tp50(ms)\tp99(ms)\t被拒绝\t其他错误");
+
+        for (int size : connections) {
+            ChannelPoolProperties properties = new ChannelPoolProperties();
+            properties.setTarget(target);
+            properties.setPlaintext(true);
+            properties.setSize(size);
+            properties.setSelection(selection);
+            UserServiceChannelPool pool = new UserServiceChannelPool(properties, List.of(faultInterceptor));
+            try {
+                UserServiceGrpc.UserServiceStub stub = UserServiceGrpc.newStub(pool);
+                run(stub, userId, concurrency, TimeUnit.SECONDS.toNanos(warmupSeconds));
+                faultInjector.replace(faultRules, faultSeed);
+                Result result = run(stub, userId, concurrency, TimeUnit.SECONDS.toNanos(durationSeconds));
+                System.out.printf("%d\t%.0f\t\t%.2f\t%.2f\t%d\t%d%n", size,
+                        result.completed * 1e9 / result.elapsedNanos,
+                        result.percentileMillis(0.50), result.percentileMillis(0.99),
+                        result.rejected, result.failed);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * 创建一个用于查询的用户
+     */
+    private static long prepareUser(String target) throws InterruptedException {
+        ChannelPoolProperties properties = new ChannelPoolProperties();
+        properties.setTarget(target);
+        properties.setPlaintext(true);
+        properties.setSize(1);
+        UserServiceChannelPool pool = new UserServiceChannelPool(properties, List.of());
+        try {
+            String username = "pool-bench-" + System.currentTimeMillis();
+            CreateUserResponse response = UserServiceGrpc.newBlockingStub(pool)
+                    .withWaitForReady()
+                    .withDeadlineAfter(30, TimeUnit.SECONDS)
+                    .createUser(CreateUserRequest.newBuilder()
+                            .setUsername(username)
+                            .setEmail(username + "@example.com")
+                            .setAge(30)
+                            .build());
+            if (!response.getSuccess()) {
+                throw new IllegalStateException("创建测试用户失败: " + response.getMessage());
+            }
+            return response.getUser().getId();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 以固定并发度持续调用GetUser，直到时间用完
+     */
+    private static Result run(UserServiceGrpc.UserServiceStub stub, long userId, int concurrency,
+                              long durationNanos) throws InterruptedException {
+        GetUserRequest request = GetUserRequest.newBuilder().setUserId(userId).build();
+        Semaphore permits = new Semaphore(concurrency);
+        Result result = new Result();
+
+        long start = System.nanoTime();
+        long end = start + durationNanos;
+        while (System.nanoTime() < end) {
+            permits.acquire();
+            long callStart = System.nanoTime();
+            stub.getUser(request, new StreamObserver<GetUserResponse>() {
+                @Override
+                public void onNext(GetUserResponse value) {
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    if (Status.fromThrowable(t).getCode() == Status.Code.RESOURCE_EXHAUSTED) {
+                        result.rejectedCount.increment();
+                    } else {
+                        result.failedCount.increment();
+                    }
+                    permits.release();
+                }
+
+                @Override
+                public void onCompleted() {
+                    result.record(System.nanoTime() - callStart);
+                    permits.release();
+                }
+            });
+        }
+        // 等待所有进行中的调用结束
+        permits.acquire(concurrency);
+        result.elapsedNanos = System.nanoTime() - start;
+        result.completed = result.completedCount.sum();
+        result.rejected = result.rejectedCount.sum();
+        result.failed = result.failedCount.sum();
+        return result;
+    }
+
+    /**
+     * 一轮测试的结果
+     */
+    private static class Result {
+        private final LongAdder completedCount = new LongAdder();
+        private final LongAdder rejectedCount = new LongAdder();
+        private final LongAdder failedCount = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        private long elapsedNanos;
+        private long completed;
+        private long rejected;
+        private long failed;
+
+        void record(long latencyNanos) {
+            completedCount.increment();
+            int bucket = (int) Math.min(BUCKETS - 1, TimeUnit.NANOSECONDS.toMicros(latencyNanos) / BUCKET_MICROS);
+            histogram.incrementAndGet(bucket);
+        }
+
+        double percentileMillis(double percentile) {
+            long rank = (long) Math.ceil(completed * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram.get(i);
+                if (seen >= rank && seen > 0) {
+                    return (i + 1) * BUCKET_MICROS / 1000.0;
+                }
+            }
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.grpc.client.benchmark;
+
+import com.example.grpc.proto.ChatMessage;
+import com.example.grpc.proto.ChatMessageBatch;
+import com.example.grpc.proto.UserServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 聊天批量回复基准测试
+ *
+ * 对运行中的服务端，分别使用UserChat（逐条回复）和UserChatBatched（批量回复）打开若干个聊天流，
+ * 每个流在响应流就绪时持续发送消息，最多允许window条消息尚未收到回复。
+ * 消息内容是发送时的纳秒时间，回复中带回原文，据此计算每条消息的往返延迟，
+ * 输出两种方式的吞吐量、延迟分位数和每个响应帧承载的消息数，观察批量发送在吞吐量和延迟之间的取舍
+ *
+ * 用法：
+ * java -cp ... com.example.grpc.client.benchmark.ChatBatchingBenchmark
+ *     [--target=localhost:9090] [--streams=4] [--window=256] [--duration=10] [--warmup=3]
+ *
+ * 服务端的批次大小和等待时间由user-service.chat-batching配置，服务端的统计见GET /admin/chat-batching；
+ * 服务端日志级别为DEBUG时逐条日志会成为瓶颈，测试时建议调高com.example.grpc的日志级别
+ */
+public class ChatBatchingBenchmark {
+
+    /**
+     * 延迟直方图：每个桶10微秒，最大1秒
+     */
+    private static final int BUCKET_MICROS = 10;
+    private static final int BUCKETS = 100_000;
+
+    /**
+     * 服务端回复的前缀，之后是原消息
+     */
+    private static final String REPLY_PREFIX = "服务器收到你的消息: ";
+
+    public static void main(String[] args) throws Exception {
+        String target = "localhost:9090";
+        int streams = 4;
+        int window = 256;
+        int durationSeconds = 10;
+        int warmupSeconds = 3;
+
+        for (String arg : args) {
+            if (arg.startsWith("--target=")) {
+                target = arg.substring("--target=".length());
+            } else if (arg.startsWith("--streams=")) {
+                streams = Integer.parseInt(arg.substring("--streams=".length()));
+            } else if (arg.startsWith("--window=")) {
+                window = Integer.parseInt(arg.substring("--window=".length()));
+            } else if (arg.startsWith("--duration=")) {
+                durationSeconds = Integer.parseInt(arg.substring("--duration=".length()));
+            } else if (arg.startsWith("--warmup=")) {
+                warmupSeconds = Integer.parseInt(arg.substring("--warmup=".length()));
+            }
+        }
+
+        System.out.printf("目标=%s, 流=%d, 窗口=%d, 时长=%ds%n", target, streams, window, durationSeconds);
+        System.out.println("方式\t\t吞吐量(条/秒)\tp50(ms)\tp99(ms)\t响应帧数\t条/帧");
+
+        ManagedChannel channel = ManagedChannelBuilder.forTarget(target).usePlaintext().build();
+        try {
+            UserServiceGrpc.UserServiceStub stub = UserServiceGrpc.newStub(channel).withWaitForReady();
+            for (boolean batched : new boolean[]{false, true}) {
+                run(stub, batched, streams, window, TimeUnit.SECONDS.toNanos(warmupSeconds));
+                Result result = run(stub, batched, streams, window, TimeUnit.SECONDS.toNanos(durationSeconds));
+                System.out.printf("%s\t%.0f\t\t%.2f\t%.2f\t%d\t\t%.1f%n",
+                        batched ? "UserChatBatched" : "UserChat\t",
+                        result.completed * 1e9 / result.elapsedNanos,
+                        result.percentileMillis(0.50), result.percentileMillis(0.99),
+                        result.frames, result.frames == 0 ? 0 : (double) result.completed / result.frames);
+            }
+        } finally {
+            channel.shutdownNow();
+        }
+    }
+
+    /**
+     * 打开所有流并持续发送，直到时间用完后结束请求流，等待所有流结束
+     */
+    private static Result run(UserServiceGrpc.UserServiceStub stub, boolean batched, int streams, int window,
+                              long durationNanos) throws InterruptedException {
+        Result result = new Result();
+        CountDownLatch finished = new CountDownLatch(streams);
+
+        long start = System.nanoTime();
+        long deadline = start + durationNanos;
+        for (int i = 0; i < streams; i++) {
+            if (batched) {
+                stub.userChatBatched(new ChatStream<ChatMessageBatch>(window, deadline, result, finished,
+                        (batch, stream) -> {
+                            result.frameCount.increment();
+                            batch.getMessagesList().forEach(stream::onReply);
+                        }));
+            } else {
+                stub.userChat(new ChatStream<ChatMessage>(window, deadline, result, finished,
+                        (message, stream) -> {
+                            result.frameCount.increment();
+                            stream.onReply(message);
+                        }));
+            }
+        }
+
+        if (!finished.await(durationNanos + TimeUnit.SECONDS.toNanos(30), TimeUnit.NANOSECONDS)) {
+            System.err.println("部分聊天流没有在30秒内结束");
+        }
+        result.elapsedNanos = System.nanoTime() - start;
+        result.completed = result.completedCount.sum();
+        result.frames = result.frameCount.sum();
+        return result;
+    }
+
+    /**
+     * 一个聊天流：请求流就绪且未回复的消息少于窗口时持续发送
+     *
+     * 发送和接收的回调都在同一个调用的串行执行器上运行，不需要额外同步。
+     * 到达截止时间后不再发送新消息，已发送的消息都收到回复后结束请求流
+     */
+    private static class ChatStream<RespT> implements ClientResponseObserver<ChatMessage, RespT> {
+
+        private final int window;
+        private final long deadline;
+        private final Result result;
+        private final CountDownLatch finished;
+        private final ReplyHandler<RespT> replyHandler;
+        private ClientCallStreamObserver<ChatMessage> requestStream;
+        private int outstanding;
+        private boolean halfClosed;
+
+        ChatStream(int window, long deadline, Result result, CountDownLatch finished,
+                   ReplyHandler<RespT> replyHandler) {
+            this.window = window;
+            this.deadline = deadline;
+            this.result = result;
+            this.finished = finished;
+            this.replyHandler = replyHandler;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<ChatMessage> requestStream) {
+            this.requestStream = requestStream;
+            requestStream.setOnReadyHandler(this::sendMore);
+        }
+
+        @Override
+        public void onNext(RespT value) {
+            replyHandler.handle(value, this);
+            sendMore();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            System.err.println("聊天流出错: " + t);
+            finished.countDown();
+        }
+
+        @Override
+        public void onCompleted() {
+            finished.countDown();
+        }
+
+        void onReply(ChatMessage reply) {
+            String text = reply.getMessage();
+            if (!text.startsWith(REPLY_PREFIX)) {
+                return;
+            }
+            outstanding--;
+            long sentAt = Long.parseLong(text.substring(REPLY_PREFIX.length()));
+            result.record(System.nanoTime() - sentAt);
+        }
+
+        private void sendMore() {
+            if (halfClosed) {
+                return;
+            }
+            if (System.nanoTime() >= deadline) {
+                if (outstanding == 0) {
+                    halfClosed = true;
+                    requestStream.onCompleted();
+                }
+                return;
+            }
+            while (outstanding < window && requestStream.isReady()) {
+                requestStream.onNext(ChatMessage.newBuilder()
+                        .setUserId(1)
+                        .setMessage(Long.toString(System.nanoTime()))
+                        .build());
+                outstanding++;
+            }
+        }
+    }
+
+    /**
+     * 处理一个响应：统计响应帧，逐条处理其中的回复
+     */
+    @FunctionalInterface
+    private interface ReplyHandler<RespT> {
+        void handle(RespT response, ChatStream<RespT> stream);
+    }
+
+    /**
+     * 一轮测试的结果
+     */
+    private static class Result {
+        private final LongAdder completedCount = new LongAdder();
+        private final LongAdder frameCount = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        private long elapsedNanos;
+        private long completed;
+        private long frames;
+
+        void record(long latencyNanos) {
+            completedCount.increment();
+            int bucket = (int) Math.min(BUCKETS - 1, TimeUnit.NANOSECONDS.toMicros(latencyNanos) / BUCKET_MICROS);
+            histogram.incrementAndGet(bucket);
+        }
+
+        double percentileMillis(double percentile) {
+            long rank = (long) Math.ceil(completed * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram.get(i);
+                if (seen >= rank && seen > 0) {
+                    return (i + 1) * BUCKET_MICROS / 1000.0;
+                }
+            }
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package com.example.grpc.client.benchmark;
+
+import com.example.grpc.proto.CreateUserRequest;
+import com.example.grpc.proto.CreateUserResponse;
+import com.example.grpc.proto.DeleteUserRequest;
+import com.example.grpc.proto.GetAllUsersRequest;
+import com.example.grpc.proto.GetUserRequest;
+import com.example.grpc.proto.GetUserResponse;
+import com.example.grpc.proto.User;
+import com.example.grpc.proto.UserServiceGrpc;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 数据规模基准测试
+ *
+ * 通过服务端的/admin/dataset把用户表依次扩大到每个规模（如10^3到10^6），在每个规模下测量：
+ * - GetUser：随机ID的点查询
+ * - CreateUser：创建新用户，包含用户名和邮箱两次唯一性检查和一次插入
+ * - CreateUser(重复)：用户名不存在、邮箱已存在，走完两次唯一性检查后失败，不写入
+ * - GetAllUsers：单个流读取整个用户表，延迟是整个流的耗时
+ *
+ * 相邻两个规模之间按log(延迟p50之比)/log(规模之比)计算规模指数：点查询和创建应接近0，GetAllUsers应接近1。
+ * 超过预期值加容差时标记"随规模增长"，超过1加容差时标记"超线性"。结果同时写入CSV文件
+ *
+ * 用法：
+ * java -cp ... com.example.grpc.client.benchmark.DataScalingBenchmark
+ *     [--target=localhost:9090] [--admin=http://localhost:8080] [--sizes=1000,10000,100000,1000000]
+ *     [--concurrency=32] [--duration=10] [--warmup=3] [--stream-max-size=1000000] [--tolerance=0.25]
+ *     [--seed=42] [--output=data/benchmarks/data-scaling-时间.csv]
+ *
+ * 服务端需要启用user-service.dataset并关闭GetAllUsers的演示延迟（user-service.streaming.emit-delay-millis=0）；
+ * 数据集只增不减，规模应从小到大排列，用户表已经超过某个规模时直接在当前规模下测量。
+ * CreateUser每轮最多创建规模的1/10个用户，测量后删除，避免测量本身改变规模
+ */
+public class DataScalingBenchmark {
+
+    /**
+     * 延迟直方图：按1%的比例分桶，从1微秒到约6小时；大数据集上GetAllUsers一次要几十秒，线性分桶放不下
+     */
+    private static final double BUCKET_RATIO = 1.01;
+    private static final int BUCKETS = 2400;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final HttpClient HTTP_CLIENT = HttpClient.newHttpClient();
+
+    public static void main(String[] args) throws Exception {
+        String target = "localhost:9090";
+        String admin = "http://localhost:8080";
+        List<Long> sizes = List.of(1_000L, 10_000L, 100_000L, 1_000_000L);
+        int concurrency = 32;
+        int durationSeconds = 10;
+        int warmupSeconds = 3;
+        long streamMaxSize = 1_000_000;
+        double tolerance = 0.25;
+        long seed = 42;
+        String output = "data/benchmarks/data-scaling-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".csv";
+
+        for (String arg : args) {
+            if (arg.startsWith("--target=")) {
+                target = arg.substring("--target=".length());
+            } else if (arg.startsWith("--admin=")) {
+                admin = arg.substring("--admin=".length());
+            } else if (arg.startsWith("--sizes=")) {
+                sizes = new ArrayList<>();
+                for (String size : arg.substring("--sizes=".length()).split(",")) {
+                    sizes.add(Long.parseLong(size.trim()));
+                }
+            } else if (arg.startsWith("--concurrency=")) {
+                concurrency = Integer.parseInt(arg.substring("--concurrency=".length()));
+            } else if (arg.startsWith("--duration=")) {
+                durationSeconds = Integer.parseInt(arg.substring("--duration=".length()));
+            } else if (arg.startsWith("--warmup=")) {
+                warmupSeconds = Integer.parseInt(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--stream-max-size=")) {
+                streamMaxSize = Long.parseLong(arg.substring("--stream-max-size=".length()));
+            } else if (arg.startsWith("--tolerance=")) {
+                tolerance = Double.parseDouble(arg.substring("--tolerance=".length()));
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else if (arg.startsWith("--output=")) {
+                output = arg.substring("--output=".length());
+            }
+        }
+
+        Path outputPath = Paths.get(output);
+        Path parent = outputPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        System.out.printf("目标=%s, 规模=%s, 并发=%d, 时长=%ds, 结果=%s%n",
+                target, sizes, concurrency, durationSeconds, outputPath);
+        System.out.println("规模\t\t调用\t\t\t吞吐量(次/秒)\tp50(ms)\tp99(ms)\t错误\t规模指数\t标记");
+
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        Map<Call, Measurement> previous = new EnumMap<>(Call.class);
+        Map<Call, Measurement> first = new EnumMap<>(Call.class);
+        List<String> flagged = new ArrayList<>();
+
+        ManagedChannel channel = ManagedChannelBuilder.forTarget(target).usePlaintext().build();
+        try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(outputPath))) {
+            csv.println("size,call,calls,elapsed_ms,throughput_per_sec,p50_ms,p99_ms,errors,scaling_exponent,flag");
+            UserServiceGrpc.UserServiceStub stub = UserServiceGrpc.newStub(channel).withWaitForReady();
+            UserServiceGrpc.UserServiceBlockingStub blockingStub = UserServiceGrpc.newBlockingStub(channel)
+                    .withWaitForReady();
+
+            for (long size : sizes) {
+                JsonNode status = growTo(admin, size, seed);
+                long userCount = status.path("userCount").asLong();
+                long maxId = status.path("maxId").asLong();
+                String duplicateEmail = createUser(blockingStub, "scale-" + runId + "-" + size + "-dup").getEmail();
+
+                for (Call call : Call.values()) {
+                    if (call == Call.GET_ALL_USERS && userCount > streamMaxSize) {
+                        continue;
+                    }
+                    Workload workload = new Workload(call, maxId, duplicateEmail, "scale-" + runId + "-" + size,
+                            call == Call.GET_ALL_USERS ? 1 : concurrency,
+                            call == Call.CREATE_USER ? Math.max(100, userCount / 10) : Long.MAX_VALUE);
+                    run(stub, workload, TimeUnit.SECONDS.toNanos(warmupSeconds));
+                    Result result = run(stub, workload, TimeUnit.SECONDS.toNanos(durationSeconds));
+                    deleteCreated(blockingStub, workload.created);
+
+                    Measurement measurement = new Measurement(userCount, result.percentileMillis(0.50));
+                    Measurement before = previous.put(call, measurement);
+                    first.putIfAbsent(call, measurement);
+                    double exponent = before == null ? Double.NaN : measurement.exponentSince(before);
+                    String flag = flag(call, exponent, tolerance);
+                    if (!flag.isEmpty()) {
+                        flagged.add(String.format("%s在%d到%d之间%s（规模指数%.2f）",
+                                call.name, before.size, userCount, flag, exponent));
+                    }
+
+                    System.out.printf("%d\t\t%s\t%.0f\t\t%.3f\t%.3f\t%d\t%s\t\t%s%n",
+                            userCount, call.label, result.completed * 1e9 / result.elapsedNanos,
+                            result.percentileMillis(0.50), result.percentileMillis(0.99), result.failed,
+                            Double.isNaN(exponent) ? "-" : String.format("%.2f", exponent), flag);
+                    csv.printf("%d,%s,%d,%d,%.1f,%.3f,%.3f,%d,%s,%s%n",
+                            userCount, call.name, result.completed, result.elapsedNanos / 1_000_000,
+                            result.completed * 1e9 / result.elapsedNanos,
+                            result.percentileMillis(0.50), result.percentileMillis(0.99), result.failed,
+                            Double.isNaN(exponent) ? "" : String.format("%.3f", exponent), flag);
+                    csv.flush();
+                }
+            }
+        } finally {
+            channel.shutdownNow();
+        }
+
+        System.out.println();
+        for (Call call : Call.values()) {
+            Measurement start = first.get(call);
+            Measurement end = previous.get(call);
+            if (start != null && end != null && end.size > start.size) {
+                System.out.printf("%s: 规模%d -> %d, p50 %.3fms -> %.3fms, 总体规模指数%.2f（预期%.0f）%n",
+                        call.name, start.size, end.size, start.p50Millis, end.p50Millis,
+                        end.exponentSince(start), call.expectedExponent);
+            }
+        }
+        if (flagged.isEmpty()) {
+            System.out.println("没有发现超出预期的规模增长");
+        } else {
+            flagged.forEach(System.out::println);
+        }
+        System.out.println("结果已写入: " + outputPath);
+    }
+
+    /**
+     * 测试的调用，以及延迟随规模增长的预期指数
+     */
+    private enum Call {
+        GET_USER("GetUser", "GetUser\t\t", 0),
+        CREATE_USER("CreateUser", "CreateUser\t\t", 0),
+        CREATE_DUPLICATE("CreateUserDuplicate", "CreateUser(重复)\t", 0),
+        GET_ALL_USERS("GetAllUsers", "GetAllUsers\t\t", 1);
+
+        private final String name;
+        private final String label;
+        private final double expectedExponent;
+
+        Call(String name, String label, double expectedExponent) {
+            this.name = name;
+            this.label = label;
+            this.expectedExponent = expectedExponent;
+        }
+    }
+
+    private static String flag(Call call, double exponent, double tolerance) {
+        if (Double.isNaN(exponent)) {
+            return "";
+        }
+        if (exponent > 1 + tolerance) {
+            return "超线性";
+        }
+        if (exponent > call.expectedExponent + tolerance) {
+            return "随规模增长";
+        }
+        return "";
+    }
+
+    /**
+     * 把用户表扩大到指定规模并等待生成完成
+     *
+     * @return 生成完成后的状态（包含userCount和maxId）
+     */
+    private static JsonNode growTo(String admin, long size, long seed) throws IOException, InterruptedException {
+        JsonNode status = adminRequest(admin, "GET", "");
+        if (!status.path("enabled").asBoolean()) {
+            throw new IllegalStateException("服务端没有启用user-service.dataset");
+        }
+        while (status.path("inProgress").asBoolean()) {
+            Thread.sleep(1000);
+            status = adminRequest(admin, "GET", "");
+        }
+        long missing = size - status.path("userCount").asLong();
+        if (missing <= 0) {
+            return status;
+        }
+
+        JsonNode response = adminRequest(admin, "POST", "?count=" + missing + "&seed=" + seed);
+        if (!response.path("success").asBoolean()) {
+            throw new IllegalStateException("生成数据失败: " + response.path("message").asText());
+        }
+        System.out.printf("生成%d个用户...%n", missing);
+        do {
+            Thread.sleep(1000);
+            status = adminRequest(admin, "GET", "");
+        } while (status.path("inProgress").asBoolean());
+
+        String error = status.path("lastResult").path("error").asText(null);
+        if (error != null) {
+            throw new IllegalStateException("生成数据失败: " + error);
+        }
+        return status;
+    }
+
+    private static JsonNode adminRequest(String admin, String method, String query)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(admin + "/admin/dataset" + query))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<String> response = HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("管理接口返回" + response.statusCode() + ": " + response.body());
+        }
+        return OBJECT_MAPPER.readTree(response.body());
+    }
+
+    private static User createUser(UserServiceGrpc.UserServiceBlockingStub stub, String username) {
+        CreateUserResponse response = stub.withDeadlineAfter(30, TimeUnit.SECONDS)
+                .createUser(CreateUserRequest.newBuilder()
+                        .setUsername(username)
+                        .setEmail(username + "@example.com")
+                        .setAge(30)
+                        .build());
+        if (!response.getSuccess()) {
+            throw new IllegalStateException("创建测试用户失败: " + response.getMessage());
+        }
+        return response.getUser();
+    }
+
+    /**
+     * 删除CreateUser测量时创建的用户，恢复原来的规模
+     */
+    private static void deleteCreated(UserServiceGrpc.UserServiceBlockingStub stub, Queue<Long> created) {
+        Long userId;
+        while ((userId = created.poll()) != null) {
+            stub.withDeadlineAfter(30, TimeUnit.SECONDS)
+                    .deleteUser(DeleteUserRequest.newBuilder().setUserId(userId).build());
+        }
+    }
+
+    /**
+     * 一个调用在一个规模下的负载参数
+     */
+    private static class Workload {
+        private final Call call;
+        private final long maxId;
+        private final String duplicateEmail;
+        private final String usernamePrefix;
+        private final int concurrency;
+        private final long maxCalls;
+        private final Queue<Long> created = new ConcurrentLinkedQueue<>();
+        private long sequence;
+
+        Workload(Call call, long maxId, String duplicateEmail, String usernamePrefix, int concurrency,
+                 long maxCalls) {
+            this.call = call;
+            this.maxId = Math.max(1, maxId);
+            this.duplicateEmail = duplicateEmail;
+            this.usernamePrefix = usernamePrefix;
+            this.concurrency = concurrency;
+            this.maxCalls = maxCalls;
+        }
+    }
+
+    /**
+     * 以固定并发度持续发起调用，直到时间用完或达到调用次数上限
+     */
+    private static Result run(UserServiceGrpc.UserServiceStub stub, Workload workload, long durationNanos)
+            throws InterruptedException {
+        Semaphore permits = new Semaphore(workload.concurrency);
+        Result result = new Result();
+
+        long start = System.nanoTime();
+        long end = start + durationNanos;
+        long calls = 0;
+        while (System.nanoTime() < end && calls++ < workload.maxCalls) {
+            permits.acquire();
+            long callStart = System.nanoTime();
+            switch (workload.call) {
+                case GET_USER -> stub.getUser(GetUserRequest.newBuilder()
+                                .setUserId(ThreadLocalRandom.current().nextLong(1, workload.maxId + 1))
+                                .build(),
+                        new CompletionObserver<GetUserResponse>(result, permits, callStart));
+                case CREATE_USER -> {
+                    String username = workload.usernamePrefix + "-" + workload.sequence++;
+                    stub.createUser(CreateUserRequest.newBuilder()
+                                    .setUsername(username)
+                                    .setEmail(username + "@example.com")
+                                    .setAge(30)
+                                    .build(),
+                            new CompletionObserver<CreateUserResponse>(result, permits, callStart) {
+                                @Override
+                                public void onNext(CreateUserResponse response) {
+                                    if (response.getSuccess()) {
+                                        workload.created.add(response.getUser().getId());
+                                    }
+                                }
+                            });
+                }
+                case CREATE_DUPLICATE -> stub.createUser(CreateUserRequest.newBuilder()
+                                .setUsername(workload.usernamePrefix + "-taken-" + workload.sequence++)
+                                .setEmail(workload.duplicateEmail)
+                                .setAge(30)
+                                .build(),
+                        new CompletionObserver<CreateUserResponse>(result, permits, callStart));
+                case GET_ALL_USERS -> stub.getAllUsers(GetAllUsersRequest.getDefaultInstance(),
+                        new CompletionObserver<User>(result, permits, callStart));
+            }
+        }
+        // 等待所有进行中的调用结束
+        permits.acquire(workload.concurrency);
+        result.elapsedNanos = System.nanoTime() - start;
+        result.completed = result.completedCount.sum();
+        result.failed = result.failedCount.sum();
+        return result;
+    }
+
+    /**
+     * 调用结束时记录结果并归还并发许可
+     */
+    private static class CompletionObserver<T> implements StreamObserver<T> {
+
+        private final Result result;
+        private final Semaphore permits;
+        private final long callStart;
+
+        CompletionObserver(Result result, Semaphore permits, long callStart) {
+            this.result = result;
+            this.permits = permits;
+            this.callStart = callStart;
+        }
+
+        @Override
+        public void onNext(T value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            result.failedCount.increment();
+            permits.release();
+        }
+
+        @Override
+        public void onCompleted() {
+            result.record(System.nanoTime() - callStart);
+            permits.release();
+        }
+    }
+
+    /**
+     * 一个调用在一个规模下的延迟p50
+     */
+    private static class Measurement {
+        private final long size;
+        private final double p50Millis;
+
+        Measurement(long size, double p50Millis) {
+            this.size = size;
+            this.p50Millis = p50Millis;
+        }
+
+        /**
+         * @return 从earlier到这次，延迟随规模增长的指数：log(延迟之比)/log(规模之比)
+         */
+        double exponentSince(Measurement earlier) {
+            if (size <= earlier.size || earlier.p50Millis <= 0 || p50Millis <= 0) {
+                return Double.NaN;
+            }
+            return Math.log(p50Millis / earlier.p50Millis) / Math.log((double) size / earlier.size);
+        }
+    }
+
+    /**
+     * 一轮测试的结果
+     */
+    private static class Result {
+        private final LongAdder completedCount = new LongAdder();
+        private final LongAdder failedCount = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        private long elapsedNanos;
+        private long completed;
+        private long failed;
+
+        void record(long latencyNanos) {
+            completedCount.increment();
+            long micros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+            int bucket = (int) Math.min(BUCKETS - 1, Math.log(micros) / Math.log(BUCKET_RATIO));
+            histogram.incrementAndGet(bucket);
+        }
+
+        double percentileMillis(double percentile) {
+            long rank = (long) Math.ceil(completed * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram.get(i);
+                if (seen >= rank && seen > 0) {
+                    return Math.pow(BUCKET_RATIO, i + 1) / 1000.0;
+                }
+            }
+            return Double.NaN;
+        }
+    }
+}
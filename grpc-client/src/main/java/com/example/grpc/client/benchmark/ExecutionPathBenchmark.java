@@ -0,0 +1,268 @@
+package com.example.grpc.client.benchmark;
+
+import com.example.grpc.common.fault.FaultInjectionClientInterceptor;
+import com.example.grpc.common.fault.FaultInjector;
+import com.example.grpc.common.fault.FaultRule;
+import com.example.grpc.common.fault.FaultScenario;
+import com.example.grpc.proto.CreateUserRequest;
+import com.example.grpc.proto.CreateUserResponse;
+import com.example.grpc.proto.GetAllUsersRequest;
+import com.example.grpc.proto.GetUserRequest;
+import com.example.grpc.proto.GetUserResponse;
+import com.example.grpc.proto.User;
+import com.example.grpc.proto.UserServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 阻塞（JPA）与响应式（R2DBC）执行路径的对比基准测试
+ *
+ * 分别对两个运行中的服务端（一个使用默认的UserGrpcService，一个启用user-service.reactive），
+ * 在不同的并发度下持续发送GetUser调用，再以同样的并发度反复打开GetAllUsers流，
+ * 输出每种并发度下的吞吐量和延迟分位数，观察并发超过服务端线程数之后两种执行路径的差别
+ *
+ * 用法：
+ * java -cp ... com.example.grpc.client.benchmark.ExecutionPathBenchmark
+ *     [--targets=blocking=localhost:9090,reactive=localhost:9091] [--concurrency=16,64,256,1024]
+ *     [--users=1000] [--duration=10] [--warmup=3] [--faults=场景或@场景文件] [--fault-seed=42]
+ *
+ * --faults在客户端注入故障（格式见FaultScenario），每轮测量开始前按同一个种子重置抽样，
+ * 不同的测试运行得到相同的故障序列；准备测试用户的调用不注入故障
+ *
+ * 两个服务端都应关闭GetAllUsers的演示延迟（user-service.streaming.emit-delay-millis=0）并调高日志级别；
+ * 服务端的自适应并发限制和舱壁可能拒绝部分调用（RESOURCE_EXHAUSTED），单独计数
+ */
+public class ExecutionPathBenchmark {
+
+    /**
+     * 延迟直方图：每个桶10微秒，最大1秒
+     */
+    private static final int BUCKET_MICROS = 10;
+    private static final int BUCKETS = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> targets = new LinkedHashMap<>();
+        targets.put("blocking", "localhost:9090");
+        targets.put("reactive", "localhost:9091");
+        List<Integer> concurrencies = List.of(16, 64, 256, 1024);
+        int users = 1000;
+        int durationSeconds = 10;
+        int warmupSeconds = 3;
+        String faults = "";
+        long faultSeed = 42;
+
+        for (String arg : args) {
+            if (arg.startsWith("--targets=")) {
+                targets.clear();
+                for (String entry : arg.substring("--targets=".length()).split(",")) {
+                    String[] parts = entry.trim().split("=", 2);
+                    targets.put(parts[0], parts[1]);
+                }
+            } else if (arg.startsWith("--concurrency=")) {
+                concurrencies = new ArrayList<>();
+                for (String level : arg.substring("--concurrency=".length()).split(",")) {
+                    concurrencies.add(Integer.parseInt(level.trim()));
+                }
+            } else if (arg.startsWith("--users=")) {
+                users = Integer.parseInt(arg.substring("--users=".length()));
+            } else if (arg.startsWith("--duration=")) {
+                durationSeconds = Integer.parseInt(arg.substring("--duration=".length()));
+            } else if (arg.startsWith("--warmup=")) {
+                warmupSeconds = Integer.parseInt(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--faults=")) {
+                faults = arg.substring("--faults=".length());
+            } else if (arg.startsWith("--fault-seed=")) {
+                faultSeed = Long.parseLong(arg.substring("--fault-seed=".length()));
+            }
+        }
+
+        Map<String, FaultRule> faultRules = FaultScenario.load(faults);
+        FaultInjector faultInjector = new FaultInjector(faultSeed, faultRules);
+        ScheduledExecutorService faultScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fault-injection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        FaultInjectionClientInterceptor faultInterceptor =
+                new FaultInjectionClientInterceptor(faultInjector, faultScheduler);
+
+        System.out.printf("目标=%s, 用户数=%d, 时长=%ds%n", targets, users, durationSeconds);
+        if (!faultRules.isEmpty()) {
+            System.out.printf("故障场景=%s, 种子=%d%n", FaultScenario.format(faultRules), faultSeed);
+        }
+        System.out.println("路径\t\t调用\t\t并发\t吞吐量(次/秒)\tp50(ms)\tp99(ms)\t被拒绝\t其他错误");
+
+        for (Map.Entry<String, String> target : targets.entrySet()) {
+            ManagedChannel channel = ManagedChannelBuilder.forTarget(target.getValue()).usePlaintext().build();
+            try {
+                UserServiceGrpc.UserServiceStub stub = UserServiceGrpc.newStub(channel)
+                        .withInterceptors(faultInterceptor);
+                long[] userIds = prepareUsers(UserServiceGrpc.newBlockingStub(channel), target.getKey(), users);
+                for (int concurrency : concurrencies) {
+                    for (Call call : Call.values()) {
+                        run(stub, call, userIds, concurrency, TimeUnit.SECONDS.toNanos(warmupSeconds));
+                        faultInjector.replace(faultRules, faultSeed);
+                        Result result = run(stub, call, userIds, concurrency,
+                                TimeUnit.SECONDS.toNanos(durationSeconds));
+                        System.out.printf("%s\t%s\t%d\t%.0f\t\t%.2f\t%.2f\t%d\t%d%n",
+                                target.getKey(), call.label, concurrency,
+                                result.completed * 1e9 / result.elapsedNanos,
+                                result.percentileMillis(0.50), result.percentileMillis(0.99),
+                                result.rejected, result.failed);
+                    }
+                }
+            } finally {
+                channel.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * 测试的调用
+     */
+    private enum Call {
+        GET_USER("GetUser\t"),
+        GET_ALL_USERS("GetAllUsers");
+
+        private final String label;
+
+        Call(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * 创建用于查询的用户，GetAllUsers每次返回全部用户
+     */
+    private static long[] prepareUsers(UserServiceGrpc.UserServiceBlockingStub stub, String label, int count) {
+        long[] userIds = new long[count];
+        String prefix = "exec-bench-" + label + "-" + System.currentTimeMillis() + "-";
+        for (int i = 0; i < count; i++) {
+            CreateUserResponse response = stub.withWaitForReady()
+                    .withDeadlineAfter(30, TimeUnit.SECONDS)
+                    .createUser(CreateUserRequest.newBuilder()
+                            .setUsername(prefix + i)
+                            .setEmail(prefix + i + "@example.com")
+                            .setAge(20 + i % 50)
+                            .build());
+            if (!response.getSuccess()) {
+                throw new IllegalStateException("创建测试用户失败: " + response.getMessage());
+            }
+            userIds[i] = response.getUser().getId();
+        }
+        return userIds;
+    }
+
+    /**
+     * 以固定并发度持续发起调用，直到时间用完；GetAllUsers的延迟是整个流的耗时
+     */
+    private static Result run(UserServiceGrpc.UserServiceStub stub, Call call, long[] userIds, int concurrency,
+                              long durationNanos) throws InterruptedException {
+        Semaphore permits = new Semaphore(concurrency);
+        Result result = new Result();
+
+        long start = System.nanoTime();
+        long end = start + durationNanos;
+        long sequence = 0;
+        while (System.nanoTime() < end) {
+            permits.acquire();
+            long callStart = System.nanoTime();
+            if (call == Call.GET_USER) {
+                long userId = userIds[(int) (sequence++ % userIds.length)];
+                stub.getUser(GetUserRequest.newBuilder().setUserId(userId).build(),
+                        new CompletionObserver<GetUserResponse>(result, permits, callStart));
+            } else {
+                stub.getAllUsers(GetAllUsersRequest.getDefaultInstance(),
+                        new CompletionObserver<User>(result, permits, callStart));
+            }
+        }
+        // 等待所有进行中的调用结束
+        permits.acquire(concurrency);
+        result.elapsedNanos = System.nanoTime() - start;
+        result.completed = result.completedCount.sum();
+        result.rejected = result.rejectedCount.sum();
+        result.failed = result.failedCount.sum();
+        return result;
+    }
+
+    /**
+     * 调用结束时记录结果并归还并发许可
+     */
+    private static class CompletionObserver<T> implements StreamObserver<T> {
+
+        private final Result result;
+        private final Semaphore permits;
+        private final long callStart;
+
+        CompletionObserver(Result result, Semaphore permits, long callStart) {
+            this.result = result;
+            this.permits = permits;
+            this.callStart = callStart;
+        }
+
+        @Override
+        public void onNext(T value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (Status.fromThrowable(t).getCode() == Status.Code.RESOURCE_EXHAUSTED) {
+                result.rejectedCount.increment();
+            } else {
+                result.failedCount.increment();
+            }
+            permits.release();
+        }
+
+        @Override
+        public void onCompleted() {
+            result.record(System.nanoTime() - callStart);
+            permits.release();
+        }
+    }
+
+    /**
+     * 一轮测试的结果
+     */
+    private static class Result {
+        private final LongAdder completedCount = new LongAdder();
+        private final LongAdder rejectedCount = new LongAdder();
+        private final LongAdder failedCount = new LongAdder();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        private long elapsedNanos;
+        private long completed;
+        private long rejected;
+        private long failed;
+
+        void record(long latencyNanos) {
+            completedCount.increment();
+            int bucket = (int) Math.min(BUCKETS - 1, TimeUnit.NANOSECONDS.toMicros(latencyNanos) / BUCKET_MICROS);
+            histogram.incrementAndGet(bucket);
+        }
+
+        double percentileMillis(double percentile) {
+            long rank = (long) Math.ceil(completed * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram.get(i);
+                if (seen >= rank && seen > 0) {
+                    return (i + 1) * BUCKET_MICROS / 1000.0;
+                }
+            }
+            return Double.NaN;
+        }
+    }
+}
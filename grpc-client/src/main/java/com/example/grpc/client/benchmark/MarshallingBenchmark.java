@@ -0,0 +1,328 @@
+package com.example.grpc.client.benchmark;
+
+import com.example.grpc.common.marshal.ZeroCopyMarshaller;
+import com.example.grpc.common.marshal.ZeroCopyMarshalling;
+import com.example.grpc.common.marshal.ZeroCopyMarshallingClientInterceptor;
+import com.example.grpc.proto.CreateUserRequest;
+import com.example.grpc.proto.CreateUserResponse;
+import com.example.grpc.proto.GetAllUsersRequest;
+import com.example.grpc.proto.User;
+import com.example.grpc.proto.UserServiceGrpc;
+import io.grpc.ClientInterceptor;
+import io.grpc.Drainable;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.internal.ReadableBuffers;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.protobuf.lite.ProtoLiteUtils;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 编解码器内存分配基准测试
+ *
+ * 对比gRPC默认的protobuf编解码器和ZeroCopyMarshaller：
+ * 1. 单线程编解码：每条消息的分配字节数和耗时（写入目标模拟Netty直接内存缓冲区，读取分别来自直接内存和堆内存缓冲区）
+ * 2. 端到端：同一JVM内启动Netty服务端和客户端，传输大量User消息（GetAllUsers和BatchCreateUsers），
+ *    统计所有线程的分配字节数
+ *
+ * 分配字节数来自com.sun.management.ThreadMXBean.getThreadAllocatedBytes
+ *
+ * 用法：
+ * java -cp ... com.example.grpc.client.benchmark.MarshallingBenchmark [--messages=200000] [--iterations=2000000]
+ */
+public class MarshallingBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        int messages = 200_000;
+        int iterations = 2_000_000;
+        for (String arg : args) {
+            if (arg.startsWith("--messages=")) {
+                messages = Integer.parseInt(arg.substring("--messages=".length()));
+            } else if (arg.startsWith("--iterations=")) {
+                iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+            }
+        }
+
+        MethodDescriptor.Marshaller<User> defaultMarshaller = ProtoLiteUtils.marshaller(User.getDefaultInstance());
+        MethodDescriptor.Marshaller<User> zeroCopyMarshaller = new ZeroCopyMarshaller<>(User.getDefaultInstance());
+
+        System.out.println("== 单线程编解码（每条消息） ==");
+        System.out.println("编解码器\t\t操作\t\t字节/条\t纳秒/条");
+        for (int round = 0; round < 2; round++) {
+            // 第一轮为预热，只输出第二轮
+            boolean print = round == 1;
+            benchmarkWrite("默认", defaultMarshaller, iterations, print);
+            benchmarkWrite("ZeroCopy", zeroCopyMarshaller, iterations, print);
+            benchmarkRead("默认", defaultMarshaller, iterations, true, print);
+            benchmarkRead("ZeroCopy", zeroCopyMarshaller, iterations, true, print);
+            benchmarkRead("默认", defaultMarshaller, iterations, false, print);
+            benchmarkRead("ZeroCopy", zeroCopyMarshaller, iterations, false, print);
+        }
+
+        System.out.println();
+        System.out.printf("== 端到端（%d条消息，所有线程） ==%n", messages);
+        System.out.println("编解码器\t\tRPC\t\t\t字节/条\t耗时(ms)");
+        for (int round = 0; round < 4; round++) {
+            boolean print = round >= 1;
+            benchmarkEndToEnd("默认", false, messages, print);
+            benchmarkEndToEnd("ZeroCopy", true, messages, print);
+        }
+    }
+
+    private static User sampleUser(long id) {
+        return User.newBuilder()
+                .setId(id)
+                .setUsername("user-" + id)
+                .setEmail("user-" + id + "@example.com")
+                .setAge((int) (id % 80))
+                .setCreatedAt(1_700_000_000_000L + id)
+                .build();
+    }
+
+    /**
+     * 写入：序列化到模拟的Netty直接内存缓冲区
+     */
+    private static void benchmarkWrite(String name, MethodDescriptor.Marshaller<User> marshaller,
+                                       int iterations, boolean print) throws IOException {
+        User user = sampleUser(123456);
+        ByteBuffer target = ByteBuffer.allocateDirect(4096);
+        OutputStream sink = new OutputStream() {
+            @Override
+            public void write(int b) {
+                target.put((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                target.put(b, off, len);
+            }
+        };
+
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            target.clear();
+            InputStream stream = marshaller.stream(user);
+            ((Drainable) stream).drainTo(sink);
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = allocatedBytes() - allocated;
+        if (print) {
+            System.out.printf("%-10s\t写入\t\t%.1f\t%.1f%n", name,
+                    (double) allocated / iterations, (double) elapsed / iterations);
+        }
+    }
+
+    /**
+     * 读取：从接收缓冲区解析，direct为true时模拟Netty默认的直接内存缓冲区，否则为堆内存缓冲区
+     */
+    private static void benchmarkRead(String name, MethodDescriptor.Marshaller<User> marshaller,
+                                      int iterations, boolean direct, boolean print) {
+        User user = sampleUser(123456);
+        byte[] bytes = user.toByteArray();
+        ByteBuffer source = direct ? ByteBuffer.allocateDirect(bytes.length) : ByteBuffer.allocate(bytes.length);
+        source.put(bytes).flip();
+
+        long allocated = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            InputStream stream = ReadableBuffers.openStream(ReadableBuffers.wrap(source.duplicate()), true);
+            User parsed = marshaller.parse(stream);
+            if (parsed.getId() != user.getId()) {
+                throw new IllegalStateException("解析结果错误");
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = allocatedBytes() - allocated;
+        if (print) {
+            System.out.printf("%-10s	%s	%.1f	%.1f%n", name, direct ? "读取(直接内存)" : "读取(堆内存)",
+                    (double) allocated / iterations, (double) elapsed / iterations);
+        }
+    }
+
+    /**
+     * 端到端：同一JVM内的Netty服务端和客户端
+     */
+    private static void benchmarkEndToEnd(String name, boolean zeroCopy, int messages, boolean print)
+            throws Exception {
+        List<User> users = new ArrayList<>(messages);
+        for (int i = 1; i <= messages; i++) {
+            users.add(sampleUser(i));
+        }
+
+        ExecutorService serverExecutor = Executors.newFixedThreadPool(2);
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(2);
+        ServerServiceDefinition service = new BenchmarkUserService(users).bindService();
+        Server server = NettyServerBuilder.forPort(0)
+                .executor(serverExecutor)
+                .addService(zeroCopy ? ZeroCopyMarshalling.wrap(service) : service)
+                .build()
+                .start();
+        List<ClientInterceptor> interceptors = zeroCopy
+                ? List.of(new ZeroCopyMarshallingClientInterceptor(Set.of(UserServiceGrpc.SERVICE_NAME)))
+                : List.of();
+        ManagedChannel channel = NettyChannelBuilder.forAddress("localhost", server.getPort())
+                .usePlaintext()
+                .executor(clientExecutor)
+                .intercept(interceptors)
+                .build();
+        try {
+            // 建立连接
+            UserServiceGrpc.newBlockingStub(channel).getAllUsers(GetAllUsersRequest.newBuilder().setPageSize(1).build())
+                    .forEachRemaining(user -> { });
+
+            // 服务器流式：GetAllUsers
+            long allocated = allAllocatedBytes();
+            long start = System.nanoTime();
+            Iterator<User> iterator = UserServiceGrpc.newBlockingStub(channel)
+                    .getAllUsers(GetAllUsersRequest.newBuilder().setPageSize(messages).build());
+            long count = 0;
+            while (iterator.hasNext()) {
+                User user = iterator.next();
+                if (!user.getUsername().equals("user-" + user.getId())) {
+                    throw new IllegalStateException("收到的用户数据错误: " + user);
+                }
+                count++;
+            }
+            long elapsed = System.nanoTime() - start;
+            allocated = allAllocatedBytes() - allocated;
+            if (count != messages) {
+                throw new IllegalStateException("收到的用户数量错误: " + count);
+            }
+            if (print) {
+                System.out.printf("%-10s\tGetAllUsers\t\t%.1f\t%d%n", name,
+                        (double) allocated / messages, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+
+            // 客户端流式：BatchCreateUsers
+            allocated = allAllocatedBytes();
+            start = System.nanoTime();
+            CountDownLatch done = new CountDownLatch(1);
+            AtomicReference<CreateUserResponse> response = new AtomicReference<>();
+            StreamObserver<CreateUserRequest> requests = UserServiceGrpc.newStub(channel).batchCreateUsers(
+                    new StreamObserver<>() {
+                        @Override
+                        public void onNext(CreateUserResponse value) {
+                            response.set(value);
+                        }
+
+                        @Override
+                        public void onError(Throwable t) {
+                            done.countDown();
+                        }
+
+                        @Override
+                        public void onCompleted() {
+                            done.countDown();
+                        }
+                    });
+            for (User user : users) {
+                requests.onNext(CreateUserRequest.newBuilder()
+                        .setUsername(user.getUsername())
+                        .setEmail(user.getEmail())
+                        .setAge(user.getAge())
+                        .build());
+            }
+            requests.onCompleted();
+            done.await(60, TimeUnit.SECONDS);
+            elapsed = System.nanoTime() - start;
+            allocated = allAllocatedBytes() - allocated;
+            if (response.get() == null || !response.get().getMessage().equals(String.valueOf(messages))) {
+                throw new IllegalStateException("批量创建结果错误: " + response.get());
+            }
+            if (print) {
+                System.out.printf("%-10s\tBatchCreateUsers\t%.1f\t%d%n", name,
+                        (double) allocated / messages, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+        } finally {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+            serverExecutor.shutdownNow();
+            clientExecutor.shutdownNow();
+        }
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * 所有存活线程的累计分配字节数
+     */
+    private static long allAllocatedBytes() {
+        long total = 0;
+        for (long allocated : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 基准测试用的UserService：GetAllUsers返回预先生成的用户，BatchCreateUsers只计数
+     */
+    private static class BenchmarkUserService extends UserServiceGrpc.UserServiceImplBase {
+
+        private final List<User> users;
+
+        BenchmarkUserService(List<User> users) {
+            this.users = users;
+        }
+
+        @Override
+        public void getAllUsers(GetAllUsersRequest request, StreamObserver<User> responseObserver) {
+            int limit = Math.min(request.getPageSize(), users.size());
+            for (int i = 0; i < limit; i++) {
+                responseObserver.onNext(users.get(i));
+            }
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public StreamObserver<CreateUserRequest> batchCreateUsers(StreamObserver<CreateUserResponse> responseObserver) {
+            return new StreamObserver<>() {
+                private long count;
+
+                @Override
+                public void onNext(CreateUserRequest value) {
+                    count++;
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                }
+
+                @Override
+                public void onCompleted() {
+                    responseObserver.onNext(CreateUserResponse.newBuilder()
+                            .setSuccess(true)
+                            .setMessage(String.valueOf(count))
+                            .build());
+                    responseObserver.onCompleted();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.grpc.client.benchmark;
+
+import com.example.grpc.proto.GetUserRequest;
+import com.example.grpc.proto.UserServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务端启动耗时基准测试
+ * 
+ * 多次启动服务端进程，测量从进程启动到gRPC端口成功响应第一个GetUser调用的时间
+ * （"用户不存在"也算成功响应，只要RPC本身完成即可）
+ * 
+ * 用法：
+ * java -cp ... com.example.grpc.client.benchmark.StartupBenchmark [--runs=5] [--target=localhost:9090] -- 服务端启动命令...
+ * 
+ * 服务端启动命令可以是普通模式，也可以是带AOT和AppCDS的快速启动模式，参见scripts/fast-startup.sh
+ */
+public class StartupBenchmark {
+    
+    private static final long POLL_INTERVAL_MILLIS = 10;
+    private static final long TIMEOUT_MILLIS = 120_000;
+    
+    public static void main(String[] args) throws Exception {
+        int runs = 5;
+        String target = "localhost:9090";
+        List<String> command = new ArrayList<>();
+        
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--")) {
+                command.addAll(Arrays.asList(args).subList(i + 1, args.length));
+                break;
+            } else if (args[i].startsWith("--runs=")) {
+                runs = Integer.parseInt(args[i].substring("--runs=".length()));
+            } else if (args[i].startsWith("--target=")) {
+                target = args[i].substring("--target=".length());
+            }
+        }
+        
+        if (command.isEmpty()) {
+            System.err.println("用法: StartupBenchmark [--runs=N] [--target=host:port] -- <服务端启动命令>");
+            System.exit(1);
+        }
+        
+        List<Long> results = new ArrayList<>();
+        for (int run = 1; run <= runs; run++) {
+            long millis = measureOnce(command, target);
+            results.add(millis);
+            System.out.printf("第%d次: 启动到首个GetUser响应耗时 %d ms%n", run, millis);
+        }
+        
+        Collections.sort(results);
+        System.out.printf("运行%d次: min=%d ms, median=%d ms, max=%d ms%n",
+                runs, results.get(0), results.get(results.size() / 2), results.get(results.size() - 1));
+    }
+    
+    /**
+     * 启动一次服务端并测量首个GetUser响应时间
+     */
+    private static long measureOnce(List<String> command, String target) throws Exception {
+        ManagedChannel channel = ManagedChannelBuilder.forTarget(target)
+                .usePlaintext()
+                .build();
+        UserServiceGrpc.UserServiceBlockingStub stub = UserServiceGrpc.newBlockingStub(channel);
+        GetUserRequest request = GetUserRequest.newBuilder().setUserId(1).build();
+        
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(new File("startup-benchmark-server.log")))
+                .start();
+        
+        try {
+            while (true) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("服务端进程提前退出，退出码: " + process.exitValue());
+                }
+                if (System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS)) {
+                    throw new IllegalStateException("等待服务端启动超时");
+                }
+                
+                try {
+                    stub.withDeadlineAfter(500, TimeUnit.MILLISECONDS).getUser(request);
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                } catch (StatusRuntimeException e) {
+                    Status.Code code = e.getStatus().getCode();
+                    if (code != Status.Code.UNAVAILABLE && code != Status.Code.DEADLINE_EXCEEDED) {
+                        // 服务端已经能处理请求，只是返回了错误状态
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                }
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            }
+        } finally {
+            channel.shutdownNow();
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.grpc.client.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 用户近端缓存配置
+ *
+ * UserClientService通过ObjectProvider获取缓存，关闭时不创建，获取用户总是无条件请求
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "user-client.near-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class NearCacheConfiguration {
+
+    @Bean
+    public UserNearCache userNearCache(NearCacheProperties properties) {
+        return new UserNearCache(properties.getMaxSize());
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.grpc.client.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 用户近端缓存配置
+ *
+ * 对应application.yml中的user-client.near-cache配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "user-client.near-cache")
+public class NearCacheProperties {
+
+    /**
+     * 是否启用近端缓存；关闭时每次都完整获取用户
+     */
+    private boolean enabled = true;
+
+    /**
+     * 最多缓存的用户数，超过后淘汰最久未访问的用户
+     */
+    private int maxSize = 10_000;
+}
@@ -0,0 +1,126 @@
+package com.example.grpc.client.cache;
+
+import com.example.grpc.proto.GetUserResponse;
+import com.example.grpc.proto.User;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 客户端的用户近端缓存
+ *
+ * 按访问顺序淘汰的有界缓存，保存完整的用户（含版本号）。缓存的用户不会直接返回，
+ * 每次获取仍然请求服务端，但带上缓存的版本号（if_version_not）：用户未修改时服务端只查版本号，
+ * 回复一个不含用户的not_modified响应，由缓存补上用户，省去服务端读取整行和传输用户的开销
+ *
+ * 只缓存完整的用户，带FieldMask的获取不经过缓存
+ */
+public class UserNearCache {
+
+    private final int maxSize;
+    private final LinkedHashMap<Long, User> entries;
+
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder refreshed = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public UserNearCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, User> eldest) {
+                if (size() > UserNearCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return 缓存的用户，没有时返回null
+     */
+    public synchronized User get(long userId) {
+        return entries.get(userId);
+    }
+
+    /**
+     * 缓存用户，已缓存的版本更新时不覆盖（并发的请求可能先收到新版本）
+     */
+    public synchronized void put(User user) {
+        User current = entries.get(user.getId());
+        if (current == null || user.getVersion() >= current.getVersion()) {
+            entries.put(user.getId(), user);
+        }
+    }
+
+    public synchronized void invalidate(long userId) {
+        entries.remove(userId);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * 根据条件获取的响应更新缓存
+     *
+     * @param userId   请求的用户ID
+     * @param cached   请求时缓存的用户（据此设置了if_version_not），没有时为null
+     * @param response 服务端的响应
+     * @return 调用方看到的响应：not_modified时补上缓存的用户
+     */
+    public GetUserResponse revalidate(long userId, User cached, GetUserResponse response) {
+        if (response.getNotModified() && cached != null) {
+            notModified.increment();
+            return response.toBuilder().setUser(cached).build();
+        }
+        if (cached == null) {
+            misses.increment();
+        } else {
+            refreshed.increment();
+        }
+        if (response.getSuccess() && response.hasUser()) {
+            put(response.getUser());
+        } else {
+            invalidate(userId);
+        }
+        return response;
+    }
+
+    /**
+     * @return 服务端回复未修改的次数
+     */
+    public long getNotModified() {
+        return notModified.sum();
+    }
+
+    /**
+     * @return 缓存的版本已过期、服务端返回了新版本的次数
+     */
+    public long getRefreshed() {
+        return refreshed.sum();
+    }
+
+    /**
+     * @return 没有缓存、无条件获取的次数
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+}
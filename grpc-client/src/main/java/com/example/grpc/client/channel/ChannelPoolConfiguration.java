@@ -0,0 +1,58 @@
+package com.example.grpc.client.channel;
+
+import net.devh.boot.grpc.client.config.GrpcChannelProperties;
+import net.devh.boot.grpc.client.config.GrpcChannelsProperties;
+import net.devh.boot.grpc.client.config.NegotiationType;
+import net.devh.boot.grpc.client.interceptor.GlobalClientInterceptorRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+
+/**
+ * user-service客户端连接池配置
+ *
+ * 连接池中的每个连接都会应用全局客户端拦截器（@GrpcGlobalClientInterceptor），
+ * 与@GrpcClient注入的stub行为一致；没有单独配置地址和传输方式时沿用grpc.client.user-service的配置，
+ * 启用连接池不会让调用连到另一个服务端或换用另一种传输方式
+ */
+@Configuration
+public class ChannelPoolConfiguration {
+
+    private static final String CHANNEL_NAME = "user-service";
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(prefix = "user-client.channel-pool", name = "enabled", havingValue = "true")
+    public UserServiceChannelPool userServiceChannelPool(ChannelPoolProperties properties,
+                                                         GrpcChannelsProperties channelsProperties,
+                                                         GlobalClientInterceptorRegistry interceptorRegistry) {
+        GrpcChannelProperties channel = channelsProperties.getChannel(CHANNEL_NAME);
+        if (properties.getTarget() == null || properties.getTarget().isBlank()) {
+            properties.setTarget(target(channel.getAddress()));
+        }
+        if (properties.getPlaintext() == null) {
+            properties.setPlaintext(channel.getNegotiationType() != NegotiationType.TLS);
+        }
+        return new UserServiceChannelPool(properties, interceptorRegistry.getClientInterceptors());
+    }
+
+    /**
+     * 把grpc.client.user-service.address转换为连接池的地址
+     *
+     * 连接池的每个连接只连一个地址，static://只有一个地址时直接使用host:port，
+     * 其他写法（dns:///、多个static地址等）原样交给gRPC的名称解析
+     */
+    private static String target(URI address) {
+        if (address == null) {
+            throw new IllegalStateException("未配置grpc.client." + CHANNEL_NAME + ".address，"
+                    + "连接池需要user-client.channel-pool.target");
+        }
+        String text = address.toString();
+        String staticPrefix = "static://";
+        if (text.startsWith(staticPrefix) && !text.contains(",")) {
+            return text.substring(staticPrefix.length());
+        }
+        return text;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.grpc.client.channel;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * user-service客户端连接池配置
+ *
+ * 对应application.yml中的user-client.channel-pool配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "user-client.channel-pool")
+public class ChannelPoolProperties {
+
+    /**
+     * 是否启用连接池；关闭时使用@GrpcClient注入的单个连接
+     */
+    private boolean enabled = false;
+
+    /**
+     * 服务端地址，为空时使用grpc.client.user-service.address
+     */
+    private String target;
+
+    /**
+     * 是否使用明文连接（非TLS），为空时按grpc.client.user-service.negotiationType决定
+     */
+    private Boolean plaintext;
+
+    /**
+     * 连接数，每个连接是一个独立的HTTP/2连接
+     */
+    private int size = 4;
+
+    /**
+     * 调用分配策略
+     */
+    private Selection selection = Selection.LEAST_BUSY;
+
+    /**
+     * 心跳间隔，为空时不发送心跳
+     * 不能小于服务端允许的最小心跳间隔（grpc.server.permit-keep-alive-time），否则连接会被服务端关闭
+     */
+    private Duration keepAliveTime;
+
+    /**
+     * 心跳响应超时时间
+     */
+    private Duration keepAliveTimeout = Duration.ofSeconds(20);
+
+    /**
+     * 没有进行中的调用时是否也发送心跳
+     */
+    private boolean keepAliveWithoutCalls = false;
+
+    /**
+     * 连接空闲超时，超时后断开连接，下次调用时重新建立
+     */
+    private Duration idleTimeout = Duration.ofMinutes(30);
+
+    /**
+     * HTTP/2流控窗口大小
+     */
+    private DataSize flowControlWindow = DataSize.ofMegabytes(1);
+
+    /**
+     * 最大接收消息大小
+     */
+    private DataSize maxInboundMessageSize = DataSize.ofMegabytes(4);
+
+    /**
+     * 调用分配策略
+     */
+    public enum Selection {
+        /**
+         * 轮询
+         */
+        ROUND_ROBIN,
+        /**
+         * 进行中调用数最少的连接
+         */
+        LEAST_BUSY
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.grpc.client.channel;
+
+import com.example.grpc.common.consistency.ReadYourWritesClientInterceptor;
+import net.devh.boot.grpc.client.interceptor.GrpcGlobalClientInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 读己之写配置
+ *
+ * 服务端启用读写分离后，读请求可能被路由到尚未追上的副本；
+ * 这个全局拦截器让本客户端之后的调用都带上写入返回的一致性令牌，@GrpcClient注入的stub和连接池都会使用
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "user-client.read-your-writes", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ReadYourWritesConfiguration {
+
+    @GrpcGlobalClientInterceptor
+    public ReadYourWritesClientInterceptor readYourWritesClientInterceptor() {
+        return new ReadYourWritesClientInterceptor();
+    }
+}
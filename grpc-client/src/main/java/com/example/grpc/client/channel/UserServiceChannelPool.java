@@ -0,0 +1,219 @@
+package com.example.grpc.client.channel;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.ConnectivityState;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * user-service客户端连接池
+ *
+ * 单个HTTP/2连接受限于服务端的最大并发流数，所有调用共享一个连接的流控窗口和一个Netty事件循环线程，
+ * 高并发时会成为瓶颈。连接池维护多个到同一服务端的独立连接，按策略把每个调用分配到其中一个连接
+ *
+ * 连接池本身实现了Channel接口，可以直接用来创建stub
+ */
+@Slf4j
+public class UserServiceChannelPool extends Channel {
+
+    private final List<PooledChannel> channels;
+    private final ChannelPoolProperties.Selection selection;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param properties   连接池配置
+     * @param interceptors 应用到每个连接上的客户端拦截器
+     */
+    public UserServiceChannelPool(ChannelPoolProperties properties, List<ClientInterceptor> interceptors) {
+        if (properties.getSize() < 1) {
+            throw new IllegalArgumentException("连接池大小必须大于0: " + properties.getSize());
+        }
+        this.selection = properties.getSelection();
+
+        List<PooledChannel> list = new ArrayList<>(properties.getSize());
+        for (int i = 0; i < properties.getSize(); i++) {
+            ManagedChannel managedChannel = createChannel(properties);
+            list.add(new PooledChannel(i, managedChannel, ClientInterceptors.interceptForward(managedChannel, interceptors)));
+        }
+        this.channels = Collections.unmodifiableList(list);
+        log.info("user-service连接池已创建: target={}, size={}, selection={}",
+                properties.getTarget(), properties.getSize(), selection);
+    }
+
+    private static ManagedChannel createChannel(ChannelPoolProperties properties) {
+        NettyChannelBuilder builder = NettyChannelBuilder.forTarget(properties.getTarget())
+                .flowControlWindow((int) properties.getFlowControlWindow().toBytes())
+                .maxInboundMessageSize((int) properties.getMaxInboundMessageSize().toBytes())
+                .idleTimeout(properties.getIdleTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        if (Boolean.TRUE.equals(properties.getPlaintext())) {
+            builder.usePlaintext();
+        }
+        if (properties.getKeepAliveTime() != null) {
+            builder.keepAliveTime(properties.getKeepAliveTime().toMillis(), TimeUnit.MILLISECONDS)
+                    .keepAliveTimeout(properties.getKeepAliveTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                    .keepAliveWithoutCalls(properties.isKeepAliveWithoutCalls());
+        }
+        return builder.build();
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method,
+                                                         CallOptions callOptions) {
+        PooledChannel channel = select();
+        channel.inflight.incrementAndGet();
+        channel.totalCalls.increment();
+        return new TrackedCall<>(channel.channel.newCall(method, callOptions), channel);
+    }
+
+    @Override
+    public String authority() {
+        return channels.get(0).channel.authority();
+    }
+
+    /**
+     * 选择一个连接，优先跳过处于TRANSIENT_FAILURE状态的连接
+     */
+    private PooledChannel select() {
+        int size = channels.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        if (size == 1) {
+            return channels.get(0);
+        }
+
+        PooledChannel selected = null;
+        for (int i = 0; i < size; i++) {
+            PooledChannel candidate = channels.get((start + i) % size);
+            if (candidate.managedChannel.getState(false) == ConnectivityState.TRANSIENT_FAILURE) {
+                continue;
+            }
+            if (selection == ChannelPoolProperties.Selection.ROUND_ROBIN) {
+                return candidate;
+            }
+            if (selected == null || candidate.inflight.get() < selected.inflight.get()) {
+                selected = candidate;
+            }
+        }
+        // 所有连接都不可用时仍然按轮询分配，让调用按正常方式失败或等待重连
+        return selected != null ? selected : channels.get(start);
+    }
+
+    /**
+     * @return 池中的所有连接
+     */
+    public List<PooledChannel> getChannels() {
+        return channels;
+    }
+
+    public ChannelPoolProperties.Selection getSelection() {
+        return selection;
+    }
+
+    /**
+     * 关闭所有连接
+     */
+    public void shutdown() throws InterruptedException {
+        for (PooledChannel channel : channels) {
+            channel.managedChannel.shutdown();
+        }
+        for (PooledChannel channel : channels) {
+            if (!channel.managedChannel.awaitTermination(5, TimeUnit.SECONDS)) {
+                channel.managedChannel.shutdownNow();
+            }
+        }
+        log.info("user-service连接池已关闭");
+    }
+
+    /**
+     * 池中的一个连接
+     */
+    public static final class PooledChannel {
+
+        private final int index;
+        private final ManagedChannel managedChannel;
+        private final Channel channel;
+        private final AtomicInteger inflight = new AtomicInteger();
+        private final LongAdder totalCalls = new LongAdder();
+
+        private PooledChannel(int index, ManagedChannel managedChannel, Channel channel) {
+            this.index = index;
+            this.managedChannel = managedChannel;
+            this.channel = channel;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getInflight() {
+            return inflight.get();
+        }
+
+        public long getTotalCalls() {
+            return totalCalls.sum();
+        }
+
+        public ConnectivityState getState() {
+            return managedChannel.getState(false);
+        }
+    }
+
+    /**
+     * 调用结束（或者在开始前被取消）时释放连接上的进行中计数
+     */
+    private static final class TrackedCall<ReqT, RespT>
+            extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+
+        private final PooledChannel channel;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean started;
+
+        TrackedCall(ClientCall<ReqT, RespT> delegate, PooledChannel channel) {
+            super(delegate);
+            this.channel = channel;
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            started = true;
+            super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                @Override
+                public void onClose(Status status, Metadata trailers) {
+                    release();
+                    super.onClose(status, trailers);
+                }
+            }, headers);
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+            if (!started) {
+                release();
+            }
+            super.cancel(message, cause);
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                channel.inflight.decrementAndGet();
+            }
+        }
+    }
+}
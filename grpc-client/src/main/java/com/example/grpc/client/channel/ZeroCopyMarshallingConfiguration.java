@@ -0,0 +1,24 @@
+package com.example.grpc.client.channel;
+
+import com.example.grpc.common.marshal.ZeroCopyMarshallingClientInterceptor;
+import com.example.grpc.proto.UserServiceGrpc;
+import net.devh.boot.grpc.client.interceptor.GrpcGlobalClientInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+
+/**
+ * UserService调用的编解码器配置
+ *
+ * 注册为全局客户端拦截器，@GrpcClient注入的stub和连接池都会使用
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "user-client.zero-copy-marshalling", name = "enabled", havingValue = "true")
+public class ZeroCopyMarshallingConfiguration {
+
+    @GrpcGlobalClientInterceptor
+    public ZeroCopyMarshallingClientInterceptor zeroCopyMarshallingClientInterceptor() {
+        return new ZeroCopyMarshallingClientInterceptor(Set.of(UserServiceGrpc.SERVICE_NAME));
+    }
+}
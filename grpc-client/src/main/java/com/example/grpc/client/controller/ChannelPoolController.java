@@ -0,0 +1,52 @@
+package com.example.grpc.client.controller;
+
+import com.example.grpc.client.channel.UserServiceChannelPool;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 连接池状态接口
+ * 
+ * 暴露每个连接的状态和调用分布
+ */
+@RestController
+@RequiredArgsConstructor
+public class ChannelPoolController {
+    
+    private final ObjectProvider<UserServiceChannelPool> channelPoolProvider;
+    
+    /**
+     * 连接池状态 - GET /admin/channel-pool
+     * 
+     * @return 各连接的状态、进行中调用数和累计调用数
+     */
+    @GetMapping("/admin/channel-pool")
+    public Map<String, Object> status() {
+        Map<String, Object> result = new HashMap<>();
+        UserServiceChannelPool pool = channelPoolProvider.getIfAvailable();
+        result.put("enabled", pool != null);
+        if (pool == null) {
+            return result;
+        }
+        
+        result.put("selection", pool.getSelection());
+        List<Map<String, Object>> channels = new ArrayList<>();
+        for (UserServiceChannelPool.PooledChannel channel : pool.getChannels()) {
+            Map<String, Object> metrics = new HashMap<>();
+            metrics.put("index", channel.getIndex());
+            metrics.put("state", channel.getState());
+            metrics.put("inflight", channel.getInflight());
+            metrics.put("totalCalls", channel.getTotalCalls());
+            channels.add(metrics);
+        }
+        result.put("channels", channels);
+        return result;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.grpc.client.controller;
+
+import com.example.grpc.client.cache.UserNearCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 用户近端缓存状态接口
+ */
+@RestController
+@RequiredArgsConstructor
+public class NearCacheController {
+    
+    private final ObjectProvider<UserNearCache> nearCacheProvider;
+    
+    /**
+     * 近端缓存状态 - GET /admin/near-cache
+     * 
+     * @return 缓存大小，以及条件获取中未修改、已过期和未缓存的次数
+     */
+    @GetMapping("/admin/near-cache")
+    public Map<String, Object> status() {
+        Map<String, Object> result = new HashMap<>();
+        UserNearCache cache = nearCacheProvider.getIfAvailable();
+        result.put("enabled", cache != null);
+        if (cache == null) {
+            return result;
+        }
+        
+        long notModified = cache.getNotModified();
+        long revalidations = notModified + cache.getRefreshed();
+        result.put("size", cache.size());
+        result.put("maxSize", cache.getMaxSize());
+        result.put("notModified", notModified);
+        result.put("refreshed", cache.getRefreshed());
+        result.put("misses", cache.getMisses());
+        result.put("evictions", cache.getEvictions());
+        result.put("notModifiedRatio", revalidations == 0 ? 0 : (double) notModified / revalidations);
+        return result;
+    }
+    
+    /**
+     * 清空近端缓存 - DELETE /admin/near-cache
+     */
+    @DeleteMapping("/admin/near-cache")
+    public Map<String, Object> clear() {
+        UserNearCache cache = nearCacheProvider.getIfAvailable();
+        if (cache != null) {
+            cache.clear();
+        }
+        return Map.of("enabled", cache != null);
+    }
+}
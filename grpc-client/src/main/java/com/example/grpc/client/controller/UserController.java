@@ -2,14 +2,28 @@ package com.example.grpc.client.controller;
 
 import com.example.grpc.client.service.UserClientService;
 import com.example.grpc.proto.*;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
 
 /**
  * 用户REST API控制器
@@ -25,7 +39,13 @@ import java.util.ArrayList;
 @Slf4j
 public class UserController {
     
+    /**
+     * NDJSON（每行一个JSON对象）媒体类型
+     */
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    
     private final UserClientService userClientService;
+    private final ObjectMapper objectMapper;
     
     /**
      * 创建用户 - POST /api/users
@@ -62,30 +82,25 @@ public class UserController {
     }
     
     /**
-     * 获取用户 - GET /api/users/{id}
+     * 获取用户 - GET /api/users/{id}?fields=id,username
      * 
      * @param id 用户ID
+     * @param fields 需要的字段（逗号分隔），为空时返回全部字段；服务端只查询这些列
      * @return 用户信息
      */
     @GetMapping("/{id}")
-    public Map<String, Object> getUser(@PathVariable Long id) {
-        log.info("收到HTTP获取用户请求: id={}", id);
+    public Map<String, Object> getUser(@PathVariable Long id,
+                                       @RequestParam(defaultValue = "") List<String> fields) {
+        log.info("收到HTTP获取用户请求: id={}, fields={}", id, fields);
         
-        GetUserResponse response = userClientService.getUser(id);
+        GetUserResponse response = userClientService.getUser(id, fields);
         
         Map<String, Object> result = new HashMap<>();
         result.put("success", response.getSuccess());
         result.put("message", response.getMessage());
         
         if (response.hasUser()) {
-            User user = response.getUser();
-            Map<String, Object> userMap = new HashMap<>();
-            userMap.put("id", user.getId());
-            userMap.put("username", user.getUsername());
-            userMap.put("email", user.getEmail());
-            userMap.put("age", user.getAge());
-            userMap.put("createdAt", user.getCreatedAt());
-            result.put("user", userMap);
+            result.put("user", toUserMap(response.getUser(), fields));
         }
         
         return result;
@@ -94,23 +109,18 @@ public class UserController {
     /**
      * 获取所有用户 - GET /api/users（演示服务器流式RPC）
      * 
+     * @param fields 需要的字段（逗号分隔），为空时返回全部字段
      * @return 所有用户列表
      */
     @GetMapping
-    public Map<String, Object> getAllUsers() {
-        log.info("收到HTTP获取所有用户请求（流式）");
+    public Map<String, Object> getAllUsers(@RequestParam(defaultValue = "") List<String> fields) {
+        log.info("收到HTTP获取所有用户请求（流式）: fields={}", fields);
         
-        List<User> users = userClientService.getAllUsers();
+        List<User> users = userClientService.getAllUsers(fields);
         
         List<Map<String, Object>> userList = new ArrayList<>();
         for (User user : users) {
-            Map<String, Object> userMap = new HashMap<>();
-            userMap.put("id", user.getId());
-            userMap.put("username", user.getUsername());
-            userMap.put("email", user.getEmail());
-            userMap.put("age", user.getAge());
-            userMap.put("createdAt", user.getCreatedAt());
-            userList.add(userMap);
+            userList.add(toUserMap(user, fields));
         }
         
         Map<String, Object> result = new HashMap<>();
@@ -122,6 +132,65 @@ public class UserController {
         return result;
     }
     
+    /**
+     * 流式获取所有用户 - GET /api/users，Accept: application/x-ndjson
+     * 
+     * 每收到一个用户就写出一行JSON，不在内存中累积整个列表，第一个用户到达时客户端就能收到
+     * HTTP连接写不动时会阻塞在写操作上，进而通过gRPC流控反压到服务端
+     * 
+     * @param fields 需要的字段（逗号分隔），为空时返回全部字段
+     * @return 流式响应体
+     */
+    @GetMapping(produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsersAsNdjson(
+            @RequestParam(defaultValue = "") List<String> fields) {
+        log.info("收到HTTP流式获取所有用户请求（NDJSON）: fields={}", fields);
+        
+        StreamingResponseBody body = out -> {
+            try {
+                userClientService.streamAllUsers(fields, user -> writeLine(out, toUserMap(user, fields)));
+            } catch (IOException e) {
+                log.info("HTTP客户端已断开，停止转发用户: {}", e.getMessage());
+            } catch (RuntimeException e) {
+                log.error("流式获取所有用户失败", e);
+                writeLine(out, Map.of("error", String.valueOf(e.getMessage())));
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
+    }
+    
+    /**
+     * 流式获取所有用户 - GET /api/users，Accept: text/event-stream
+     * 
+     * 以Server-Sent Events格式逐个推送用户（event: user），结束时推送event: end
+     * 
+     * @param fields 需要的字段（逗号分隔），为空时返回全部字段
+     * @return 流式响应体
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsersAsEvents(
+            @RequestParam(defaultValue = "") List<String> fields) {
+        log.info("收到HTTP流式获取所有用户请求（SSE）: fields={}", fields);
+        
+        StreamingResponseBody body = out -> {
+            try {
+                long count = userClientService.streamAllUsers(fields,
+                        user -> writeEvent(out, "user", toUserMap(user, fields)));
+                writeEvent(out, "end", Map.of("count", count));
+            } catch (IOException e) {
+                log.info("HTTP客户端已断开，停止转发用户: {}", e.getMessage());
+            } catch (RuntimeException e) {
+                log.error("流式获取所有用户失败", e);
+                writeEvent(out, "error", Map.of("error", String.valueOf(e.getMessage())));
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(body);
+    }
+    
     /**
      * 更新用户 - PUT /api/users/{id}
      * 
@@ -181,31 +250,91 @@ public class UserController {
     /**
      * 批量创建用户 - POST /api/users/batch（演示客户端流式RPC）
      * 
-     * @param userRequests 用户创建请求列表
+     * 请求体是用户数组，使用Jackson流式解析器逐个解析，
+     * 每解析出一个用户就立即发送到gRPC客户端流，内存占用与上传大小无关
+     * 
+     * @param request HTTP请求（请求体为JSON数组）
      * @return 批量创建结果
+     * @throws IOException 读取请求体失败
      */
     @PostMapping("/batch")
-    public Map<String, Object> batchCreateUsers(@RequestBody List<CreateUserRequestDto> userRequests) {
-        log.info("收到HTTP批量创建用户请求: 数量={}", userRequests.size());
-        
-        // 转换为gRPC请求对象
-        List<CreateUserRequest> grpcRequests = new ArrayList<>();
-        for (CreateUserRequestDto dto : userRequests) {
-            CreateUserRequest grpcRequest = CreateUserRequest.newBuilder()
-                    .setUsername(dto.getUsername())
-                    .setEmail(dto.getEmail())
-                    .setAge(dto.getAge())
-                    .build();
-            grpcRequests.add(grpcRequest);
-        }
-        
-        CreateUserResponse response = userClientService.batchCreateUsers(grpcRequests);
+    public Map<String, Object> batchCreateUsers(HttpServletRequest request) throws IOException {
+        log.info("收到HTTP批量创建用户请求（流式解析）");
         
         Map<String, Object> result = new HashMap<>();
-        result.put("success", response.getSuccess());
-        result.put("message", response.getMessage());
-        
-        return result;
+        try (JsonParser parser = objectMapper.createParser(request.getInputStream())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                result.put("success", false);
+                result.put("message", "请求体必须是JSON数组");
+                return result;
+            }
+            
+            // 边解析边转换为gRPC请求对象
+            CreateUserResponse response = userClientService.batchCreateUsers(new JsonArrayIterator<>(
+                    parser, JsonToken.START_OBJECT, CreateUserRequestDto.class,
+                    dto -> CreateUserRequest.newBuilder()
+                            .setUsername(dto.getUsername())
+                            .setEmail(dto.getEmail())
+                            .setAge(dto.getAge())
+                            .build()));
+            
+            result.put("success", response.getSuccess());
+            result.put("message", response.getMessage());
+            return result;
+        }
+    }
+    
+    /**
+     * 批量更新用户 - PUT /api/users/batch（双向流式RPC）
+     * 
+     * 请求体是[{"id": 1, "username": "...", "email": "...", "age": 30}, ...]，与批量创建一样边解析边发送，
+     * 缺省或为空的字段不修改
+     * 
+     * @param request HTTP请求（请求体为JSON数组）
+     * @return 成功和失败的数量，以及失败的请求
+     * @throws IOException 读取请求体失败
+     */
+    @PutMapping("/batch")
+    public Map<String, Object> batchUpdateUsers(HttpServletRequest request) throws IOException {
+        log.info("收到HTTP批量更新用户请求（流式解析）");
+        
+        try (JsonParser parser = objectMapper.createParser(request.getInputStream())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return batchBodyError();
+            }
+            BatchWriteUsersResponse response = userClientService.batchUpdateUsers(new JsonArrayIterator<>(
+                    parser, JsonToken.START_OBJECT, BatchUpdateUserRequestDto.class,
+                    dto -> UpdateUserRequest.newBuilder()
+                            .setUserId(dto.getId())
+                            .setUsername(dto.getUsername() == null ? "" : dto.getUsername())
+                            .setEmail(dto.getEmail() == null ? "" : dto.getEmail())
+                            .setAge(dto.getAge())
+                            .build()));
+            return toBatchWriteMap(response);
+        }
+    }
+    
+    /**
+     * 批量删除用户 - DELETE /api/users/batch（双向流式RPC）
+     * 
+     * 请求体是用户ID数组[1, 2, 3, ...]，边解析边发送，适合大批量清理
+     * 
+     * @param request HTTP请求（请求体为JSON数组）
+     * @return 成功和失败的数量，以及失败的请求
+     * @throws IOException 读取请求体失败
+     */
+    @DeleteMapping("/batch")
+    public Map<String, Object> batchDeleteUsers(HttpServletRequest request) throws IOException {
+        log.info("收到HTTP批量删除用户请求（流式解析）");
+        
+        try (JsonParser parser = objectMapper.createParser(request.getInputStream())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return batchBodyError();
+            }
+            BatchWriteUsersResponse response = userClientService.batchDeleteUsers(new JsonArrayIterator<>(
+                    parser, JsonToken.VALUE_NUMBER_INT, Long.class, id -> id));
+            return toBatchWriteMap(response);
+        }
     }
     
     /**
@@ -237,6 +366,161 @@ public class UserController {
         return result;
     }
     
+    /**
+     * 将Proto用户转换为JSON输出用的Map
+     */
+    private static Map<String, Object> toUserMap(User user) {
+        Map<String, Object> userMap = new HashMap<>();
+        userMap.put("id", user.getId());
+        userMap.put("username", user.getUsername());
+        userMap.put("email", user.getEmail());
+        userMap.put("age", user.getAge());
+        userMap.put("createdAt", user.getCreatedAt());
+        userMap.put("version", user.getVersion());
+        return userMap;
+    }
+    
+    /**
+     * 将Proto用户转换为Map，只包含请求的字段（fields为空时包含全部字段）
+     * 
+     * 字段名可以是Proto字段名（created_at）或JSON名（createdAt）
+     */
+    private static Map<String, Object> toUserMap(User user, List<String> fields) {
+        if (fields.isEmpty()) {
+            return toUserMap(user);
+        }
+        Map<String, Object> userMap = new HashMap<>();
+        if (fields.contains("id")) {
+            userMap.put("id", user.getId());
+        }
+        if (fields.contains("username")) {
+            userMap.put("username", user.getUsername());
+        }
+        if (fields.contains("email")) {
+            userMap.put("email", user.getEmail());
+        }
+        if (fields.contains("age")) {
+            userMap.put("age", user.getAge());
+        }
+        if (fields.contains("created_at") || fields.contains("createdAt")) {
+            userMap.put("createdAt", user.getCreatedAt());
+        }
+        if (fields.contains("version")) {
+            userMap.put("version", user.getVersion());
+        }
+        return userMap;
+    }
+    
+    /**
+     * 写出一行NDJSON并立即刷新
+     */
+    private void writeLine(OutputStream out, Object value) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(value));
+        out.write('\n');
+        out.flush();
+    }
+    
+    /**
+     * 写出一个SSE事件并立即刷新
+     */
+    private void writeEvent(OutputStream out, String event, Object data) throws IOException {
+        out.write(("event: " + event + "\ndata: ").getBytes(StandardCharsets.UTF_8));
+        out.write(objectMapper.writeValueAsBytes(data));
+        out.write("\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    private static Map<String, Object> batchBodyError() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", false);
+        result.put("message", "请求体必须是JSON数组");
+        return result;
+    }
+    
+    /**
+     * 批量更新/删除的结果：成功的请求只计数，失败的请求逐个列出
+     */
+    private static Map<String, Object> toBatchWriteMap(BatchWriteUsersResponse response) {
+        List<Map<String, Object>> failures = new ArrayList<>();
+        for (BatchWriteResult item : response.getResultsList()) {
+            if (!item.getSuccess()) {
+                Map<String, Object> failure = new HashMap<>();
+                failure.put("userId", item.getUserId());
+                failure.put("message", item.getMessage());
+                failures.add(failure);
+            }
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", response.getSuccess());
+        result.put("message", response.getMessage());
+        result.put("successCount", response.getSuccessCount());
+        result.put("failureCount", response.getFailureCount());
+        result.put("failures", failures);
+        return result;
+    }
+    
+    /**
+     * 从JSON数组中逐个解析元素并转换为gRPC请求的迭代器
+     * 
+     * 解析器必须已经位于数组开始（START_ARRAY）之后
+     * 
+     * @param <D> 元素解析成的类型
+     * @param <R> 转换后的请求类型
+     */
+    private class JsonArrayIterator<D, R> implements Iterator<R> {
+        
+        private final JsonParser parser;
+        private final JsonToken elementToken;
+        private final Class<D> elementType;
+        private final Function<D, R> converter;
+        private JsonToken current;
+        
+        /**
+         * @param elementToken 数组元素开始的标记，如START_OBJECT
+         */
+        JsonArrayIterator(JsonParser parser, JsonToken elementToken, Class<D> elementType, Function<D, R> converter) {
+            this.parser = parser;
+            this.elementToken = elementToken;
+            this.elementType = elementType;
+            this.converter = converter;
+            this.current = nextToken();
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (current == elementToken) {
+                return true;
+            }
+            if (current == JsonToken.END_ARRAY) {
+                return false;
+            }
+            throw new IllegalArgumentException("请求体格式错误，数组元素必须是" + elementToken + ": " + current);
+        }
+        
+        @Override
+        public R next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                D element = objectMapper.readValue(parser, elementType);
+                current = nextToken();
+                return converter.apply(element);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        private JsonToken nextToken() {
+            try {
+                return parser.nextToken();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+    
     // DTO类定义
     
     /**
@@ -305,6 +589,26 @@ public class UserController {
         }
     }
     
+    /**
+     * 批量更新用户请求DTO：更新请求加上用户ID
+     */
+    public static class BatchUpdateUserRequestDto extends UpdateUserRequestDto {
+        private long id;
+        
+        // 构造函数
+        public BatchUpdateUserRequestDto() {}
+        
+        // Getter和Setter
+        public long getId() { return id; }
+        public void setId(long id) { this.id = id; }
+        
+        @Override
+        public String toString() {
+            return "BatchUpdateUserRequestDto{id=" + id + ", username='" + getUsername() + "', email='" + getEmail()
+                    + "', age=" + getAge() + "}";
+        }
+    }
+    
     /**
      * 聊天请求DTO
      */
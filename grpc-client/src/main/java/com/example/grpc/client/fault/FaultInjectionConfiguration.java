@@ -0,0 +1,55 @@
+package com.example.grpc.client.fault;
+
+import com.example.grpc.common.fault.FaultInjectionClientInterceptor;
+import com.example.grpc.common.fault.FaultInjectionProperties;
+import com.example.grpc.common.fault.FaultInjector;
+import jakarta.annotation.PreDestroy;
+import net.devh.boot.grpc.client.interceptor.GrpcGlobalClientInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 客户端故障注入配置
+ *
+ * 注册为全局客户端拦截器，@GrpcClient注入的stub和连接池都会使用；
+ * 规则可以在运行时通过/admin/fault-injection修改
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "user-client.fault-injection", name = "enabled", havingValue = "true")
+public class FaultInjectionConfiguration {
+
+    /**
+     * 执行延迟和停顿到期的定时线程；不注册为Bean，避免被当作应用的默认调度器
+     */
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "fault-injection");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Bean
+    @ConfigurationProperties(prefix = "user-client.fault-injection")
+    public FaultInjectionProperties faultInjectionProperties() {
+        return new FaultInjectionProperties();
+    }
+
+    @Bean
+    public FaultInjector faultInjector(FaultInjectionProperties properties) {
+        return properties.createInjector();
+    }
+
+    @GrpcGlobalClientInterceptor
+    public FaultInjectionClientInterceptor faultInjectionClientInterceptor(FaultInjector faultInjector) {
+        return new FaultInjectionClientInterceptor(faultInjector, scheduler);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -1,15 +1,31 @@
 package com.example.grpc.client.service;
 
+import com.example.grpc.client.cache.UserNearCache;
+import com.example.grpc.client.channel.UserServiceChannelPool;
+import com.example.grpc.common.chat.ChatReplayHeaders;
 import com.example.grpc.proto.*;
+import com.google.protobuf.FieldMask;
+import io.grpc.Context;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.MetadataUtils;
 import io.grpc.stub.StreamObserver;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * gRPC客户端服务类
@@ -22,10 +38,14 @@ import java.util.concurrent.TimeUnit;
  * 2. 服务器流式RPC
  * 3. 客户端流式RPC
  * 4. 双向流式RPC
+ * 
+ * 启用连接池（user-client.channel-pool.enabled）时，stub改为基于连接池创建，调用分散到多个连接上
+ * 启用近端缓存（user-client.near-cache.enabled）时，获取完整用户会带上缓存的版本号，未修改时使用缓存的用户
  */
 @Service
+@RequiredArgsConstructor
 @Slf4j
-public class UserClientService {
+public class UserClientService implements InitializingBean {
     
     /**
      * 注入阻塞式客户端stub
@@ -41,6 +61,24 @@ public class UserClientService {
     @GrpcClient("user-service")
     private UserServiceGrpc.UserServiceStub asyncStub;
     
+    private final ObjectProvider<UserServiceChannelPool> channelPool;
+    
+    private final ObjectProvider<UserNearCache> nearCache;
+    
+    /**
+     * 启用连接池时替换注入的stub
+     * 
+     * 不能使用@PostConstruct：它可能在@GrpcClient字段注入之前执行，替换后的stub会被覆盖
+     */
+    @Override
+    public void afterPropertiesSet() {
+        channelPool.ifAvailable(pool -> {
+            blockingStub = UserServiceGrpc.newBlockingStub(pool);
+            asyncStub = UserServiceGrpc.newStub(pool);
+            log.info("gRPC调用使用连接池: 连接数={}", pool.getChannels().size());
+        });
+    }
+    
     /**
      * 创建用户 - 一元RPC调用
      * 
@@ -80,16 +118,35 @@ public class UserClientService {
      * @return 用户信息
      */
     public GetUserResponse getUser(long userId) {
-        log.info("调用gRPC获取用户: userId={}", userId);
+        return getUser(userId, List.of());
+    }
+    
+    /**
+     * 获取用户，只返回指定的字段 - 一元RPC调用
+     * 
+     * @param userId 用户ID
+     * 获取全部字段且启用了近端缓存时，请求带上缓存的版本号，服务端回复未修改时返回缓存的用户
+     * 
+     * @param fields 需要的User字段（如id、username），为空时返回全部字段
+     * @return 用户信息，未请求的字段为默认值
+     */
+    public GetUserResponse getUser(long userId, List<String> fields) {
+        UserNearCache cache = fields.isEmpty() ? nearCache.getIfAvailable() : null;
+        User cached = cache == null ? null : cache.get(userId);
+        long ifVersionNot = cached == null ? 0 : cached.getVersion();
+        log.info("调用gRPC获取用户: userId={}, fields={}, ifVersionNot={}", userId, fields, ifVersionNot);
         
         GetUserRequest request = GetUserRequest.newBuilder()
                 .setUserId(userId)
+                .setFieldMask(FieldMask.newBuilder().addAllPaths(fields))
+                .setIfVersionNot(ifVersionNot)
                 .build();
         
         try {
             GetUserResponse response = blockingStub.getUser(request);
-            log.info("获取用户响应: success={}, message={}", response.getSuccess(), response.getMessage());
-            return response;
+            log.info("获取用户响应: success={}, notModified={}, message={}",
+                    response.getSuccess(), response.getNotModified(), response.getMessage());
+            return cache == null ? response : cache.revalidate(userId, cached, response);
         } catch (Exception e) {
             log.error("获取用户失败", e);
             return GetUserResponse.newBuilder()
@@ -108,10 +165,21 @@ public class UserClientService {
      * @return 所有用户列表
      */
     public List<User> getAllUsers() {
-        log.info("调用gRPC获取所有用户（流式）");
+        return getAllUsers(List.of());
+    }
+    
+    /**
+     * 获取所有用户，只返回指定的字段 - 服务器流式RPC调用
+     * 
+     * @param fields 需要的User字段，为空时返回全部字段
+     * @return 所有用户列表
+     */
+    public List<User> getAllUsers(List<String> fields) {
+        log.info("调用gRPC获取所有用户（流式）: fields={}", fields);
         
         GetAllUsersRequest request = GetAllUsersRequest.newBuilder()
                 .setPageSize(10)
+                .setFieldMask(FieldMask.newBuilder().addAllPaths(fields))
                 .build();
         
         List<User> users = new ArrayList<>();
@@ -132,6 +200,65 @@ public class UserClientService {
         }
     }
     
+    /**
+     * 流式获取所有用户 - 服务器流式RPC调用，不在内存中累积结果
+     * 
+     * 每收到一个用户就交给sink处理，sink处理完之后才会向服务端请求下一条消息，
+     * 所以sink阻塞（例如HTTP连接写满）时会通过gRPC流控反压到服务端
+     * 
+     * sink抛出异常（例如HTTP客户端断开）时会取消gRPC调用，服务端随之停止发送
+     * 
+     * @param sink 用户处理器
+     * @return 处理的用户数量
+     * @throws IOException sink写出失败
+     */
+    public long streamAllUsers(UserSink sink) throws IOException {
+        return streamAllUsers(List.of(), sink);
+    }
+    
+    /**
+     * 流式获取所有用户，只返回指定的字段
+     * 
+     * @param fields 需要的User字段，为空时返回全部字段
+     * @param sink 用户处理器
+     * @return 处理的用户数量
+     * @throws IOException sink写出失败
+     */
+    public long streamAllUsers(List<String> fields, UserSink sink) throws IOException {
+        log.info("调用gRPC流式获取所有用户（逐条转发）: fields={}", fields);
+        
+        GetAllUsersRequest request = GetAllUsersRequest.newBuilder()
+                .setPageSize(10)
+                .setFieldMask(FieldMask.newBuilder().addAllPaths(fields))
+                .build();
+        
+        // 调用绑定到可取消的上下文，提前结束时取消上下文即可取消gRPC调用
+        Context.CancellableContext context = Context.current().withCancellation();
+        Context previous = context.attach();
+        long count = 0;
+        try {
+            Iterator<User> users = blockingStub.getAllUsers(request);
+            while (users.hasNext()) {
+                sink.accept(users.next());
+                count++;
+            }
+            log.info("流式转发用户完成，共{}个用户", count);
+            return count;
+        } finally {
+            context.detach(previous);
+            // 正常结束时调用已完成，取消没有任何效果
+            context.cancel(null);
+        }
+    }
+    
+    /**
+     * 用户处理器，可以抛出IO异常
+     */
+    @FunctionalInterface
+    public interface UserSink {
+        void accept(User user) throws IOException;
+    }
+    
     /**
      * 更新用户 - 一元RPC调用
      * 
@@ -154,6 +281,9 @@ public class UserClientService {
         try {
             UpdateUserResponse response = blockingStub.updateUser(request);
             log.info("更新用户响应: success={}, message={}", response.getSuccess(), response.getMessage());
+            if (response.getSuccess() && response.hasUser()) {
+                nearCache.ifAvailable(cache -> cache.put(response.getUser()));
+            }
             return response;
         } catch (Exception e) {
             log.error("更新用户失败", e);
@@ -180,6 +310,7 @@ public class UserClientService {
         try {
             DeleteUserResponse response = blockingStub.deleteUser(request);
             log.info("删除用户响应: success={}, message={}", response.getSuccess(), response.getMessage());
+            nearCache.ifAvailable(cache -> cache.invalidate(userId));
             return response;
         } catch (Exception e) {
             log.error("删除用户失败", e);
@@ -196,77 +327,220 @@ public class UserClientService {
      * 这个方法演示了客户端流式RPC
      * 客户端发送多个请求，服务器返回一个响应
      * 
-     * @param userRequests 用户创建请求列表
+     * 请求是逐个从迭代器中取出并立即发送的，调用方可以边解析边发送，不必先把所有请求放进内存
+     * 发送前会等待gRPC流就绪（isReady），服务端处理不过来时迭代器不会被继续读取
+     * 
+     * @param userRequests 用户创建请求迭代器
      * @return 批量创建结果
      */
-    public CreateUserResponse batchCreateUsers(List<CreateUserRequest> userRequests) {
-        log.info("调用gRPC批量创建用户: 数量={}", userRequests.size());
-        
+    public CreateUserResponse batchCreateUsers(Iterator<CreateUserRequest> userRequests) {
+        log.info("调用gRPC批量创建用户（流式发送）");
+        AtomicReference<CreateUserResponse> result = new AtomicReference<>();
+        String error = streamRequests("批量创建", asyncStub::batchCreateUsers, userRequests, result::set);
+        CreateUserResponse response = error == null ? result.get() : CreateUserResponse.newBuilder()
+                .setSuccess(false)
+                .setMessage(error)
+                .build();
+        log.info("批量创建响应: success={}, message={}", response.getSuccess(), response.getMessage());
+        return response;
+    }
+    
+    /**
+     * 批量更新用户 - 双向流式RPC调用
+     * 
+     * 与批量创建相同地流式发送，服务端按块在事务中执行，每块提交后返回这一块的结果；
+     * 近端缓存中更新成功的用户随每块的结果移除（响应中只有新的版本号）
+     * 
+     * @param updateRequests 用户更新请求迭代器
+     * @return 成功、失败的总数和失败的请求
+     */
+    public BatchWriteUsersResponse batchUpdateUsers(Iterator<UpdateUserRequest> updateRequests) {
+        log.info("调用gRPC批量更新用户（流式发送）");
+        BatchWriteUsersResponse response = streamBatchWrite("批量更新", asyncStub::batchUpdateUsers, updateRequests);
+        log.info("批量更新响应: success={}, message={}", response.getSuccess(), response.getMessage());
+        return response;
+    }
+    
+    /**
+     * 批量删除用户 - 双向流式RPC调用
+     * 
+     * @param userIds 要删除的用户ID迭代器
+     * @return 成功、失败的总数和失败的请求
+     */
+    public BatchWriteUsersResponse batchDeleteUsers(Iterator<Long> userIds) {
+        log.info("调用gRPC批量删除用户（流式发送）");
+        Iterator<DeleteUserRequest> deleteRequests = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return userIds.hasNext();
+            }
+            
+            @Override
+            public DeleteUserRequest next() {
+                return DeleteUserRequest.newBuilder().setUserId(userIds.next()).build();
+            }
+        };
+        BatchWriteUsersResponse response = streamBatchWrite("批量删除", asyncStub::batchDeleteUsers, deleteRequests);
+        log.info("批量删除响应: success={}, message={}", response.getSuccess(), response.getMessage());
+        return response;
+    }
+    
+    /**
+     * 批量更新、删除的公共流程：流式发送请求，逐块汇总服务端返回的结果
+     * 
+     * 只保留成功、失败的数量和失败的请求，成功的结果处理完（移除近端缓存）即丢弃。
+     * 调用中途失败时已经提交的块仍计入数量
+     * 
+     * @return 汇总的结果，results中只有失败的请求
+     */
+    private <ReqT> BatchWriteUsersResponse streamBatchWrite(
+            String operation, Function<StreamObserver<BatchWriteUsersResponse>, StreamObserver<ReqT>> call,
+            Iterator<ReqT> requests) {
+        BatchWriteUsersResponse.Builder summary = BatchWriteUsersResponse.newBuilder().setSuccess(true);
+        String error = streamRequests(operation, call, requests, chunk -> {
+            invalidateNearCache(chunk);
+            synchronized (summary) {
+                summary.setSuccessCount(summary.getSuccessCount() + chunk.getSuccessCount())
+                        .setFailureCount(summary.getFailureCount() + chunk.getFailureCount());
+                if (!chunk.getSuccess()) {
+                    summary.setSuccess(false).setMessage(chunk.getMessage());
+                }
+                for (BatchWriteResult result : chunk.getResultsList()) {
+                    if (!result.getSuccess()) {
+                        summary.addResults(result);
+                    }
+                }
+            }
+        });
+        synchronized (summary) {
+            if (error != null) {
+                summary.setSuccess(false).setMessage(error);
+            } else if (summary.getSuccess()) {
+                summary.setMessage(String.format("%s完成：成功%d个，失败%d个",
+                        operation, summary.getSuccessCount(), summary.getFailureCount()));
+            }
+            return summary.build();
+        }
+    }
+    
+    /**
+     * 流式发送请求的公共流程：逐个发送请求，发送前等待流就绪，发送完成后等待服务端结束调用
+     * 
+     * @param operation 操作名称，用于日志和错误消息
+     * @param call 发起调用，返回请求流
+     * @param requests 请求迭代器
+     * @param responses 处理服务端的每个响应（客户端流式RPC只有一个）
+     * @return 错误消息，调用成功结束时为null
+     */
+    private <ReqT, RespT> String streamRequests(String operation,
+                                                Function<StreamObserver<RespT>, StreamObserver<ReqT>> call,
+                                                Iterator<ReqT> requests, Consumer<RespT> responses) {
         // 使用CountDownLatch等待异步调用完成
         CountDownLatch latch = new CountDownLatch(1);
-        CreateUserResponse[] response = new CreateUserResponse[1];
+        AtomicReference<String> error = new AtomicReference<>();
+        Object readyLock = new Object();
         
-        // 获取客户端流式观察者
-        StreamObserver<CreateUserRequest> requestObserver = asyncStub.batchCreateUsers(
-                new StreamObserver<CreateUserResponse>() {
+        // 获取客户端流式观察者，beforeStart中注册就绪回调用于流控
+        ClientCallStreamObserver<ReqT> requestObserver = (ClientCallStreamObserver<ReqT>) call.apply(
+                new ClientResponseObserver<ReqT, RespT>() {
                     @Override
-                    public void onNext(CreateUserResponse value) {
+                    public void beforeStart(ClientCallStreamObserver<ReqT> requestStream) {
+                        requestStream.setOnReadyHandler(() -> {
+                            synchronized (readyLock) {
+                                readyLock.notifyAll();
+                            }
+                        });
+                    }
+                    
+                    @Override
+                    public void onNext(RespT value) {
                         // 收到服务器响应
-                        log.info("批量创建响应: success={}, message={}", value.getSuccess(), value.getMessage());
-                        response[0] = value;
+                        responses.accept(value);
                     }
                     
                     @Override
                     public void onError(Throwable t) {
-                        log.error("批量创建失败", t);
-                        response[0] = CreateUserResponse.newBuilder()
-                                .setSuccess(false)
-                                .setMessage("批量创建失败: " + t.getMessage())
-                                .build();
+                        log.error("{}失败", operation, t);
+                        error.set(operation + "失败: " + t.getMessage());
                         latch.countDown();
+                        synchronized (readyLock) {
+                            readyLock.notifyAll();
+                        }
                     }
                     
                     @Override
                     public void onCompleted() {
-                        log.info("批量创建完成");
+                        log.info("{}完成", operation);
                         latch.countDown();
                     }
                 }
         );
         
+        long sent = 0;
         try {
-            // 发送所有请求
-            for (CreateUserRequest request : userRequests) {
-                log.info("发送用户创建请求: username={}", request.getUsername());
+            // 逐个发送请求
+            while (requests.hasNext()) {
+                ReqT request = requests.next();
+                if (!awaitReady(requestObserver, readyLock, latch)) {
+                    // 调用已经提前结束（服务端返回错误）
+                    return error.get();
+                }
                 requestObserver.onNext(request);
-                
-                // 模拟延迟
-                Thread.sleep(100);
+                sent++;
             }
             
             // 标识客户端发送完成
             requestObserver.onCompleted();
+            log.info("{}请求发送完成: 数量={}", operation, sent);
             
             // 等待服务器响应（最多等待30秒）
             if (latch.await(30, TimeUnit.SECONDS)) {
-                return response[0];
+                return error.get();
             } else {
-                log.error("批量创建超时");
-                return CreateUserResponse.newBuilder()
-                        .setSuccess(false)
-                        .setMessage("批量创建超时")
-                        .build();
+                log.error("{}超时", operation);
+                return operation + "超时";
             }
             
         } catch (Exception e) {
-            log.error("批量创建异常", e);
-            return CreateUserResponse.newBuilder()
-                    .setSuccess(false)
-                    .setMessage("客户端异常: " + e.getMessage())
-                    .build();
+            // 例如请求体解析失败，取消调用，已发送的请求在服务端已经处理
+            log.error("{}异常，已发送{}个请求", operation, sent, e);
+            requestObserver.onError(e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return String.format("客户端异常（已发送%d个）: %s", sent, e.getMessage());
         }
     }
     
+    /**
+     * 批量更新、删除的一块提交后移除近端缓存中成功修改的用户
+     */
+    private void invalidateNearCache(BatchWriteUsersResponse response) {
+        nearCache.ifAvailable(cache -> {
+            for (BatchWriteResult result : response.getResultsList()) {
+                if (result.getSuccess()) {
+                    cache.invalidate(result.getUserId());
+                }
+            }
+        });
+    }
+    
+    /**
+     * 等待请求流可以继续发送
+     * 
+     * @return true表示可以发送；false表示调用已经结束
+     */
+    private static boolean awaitReady(ClientCallStreamObserver<?> requestObserver, Object readyLock,
+                                      CountDownLatch finished) throws InterruptedException {
+        synchronized (readyLock) {
+            while (!requestObserver.isReady() && finished.getCount() > 0) {
+                // 带超时等待，防止错过就绪通知
+                readyLock.wait(100);
+            }
+        }
+        return finished.getCount() > 0;
+    }
+    
     /**
      * 用户聊天 - 双向流式RPC调用
      * 
@@ -340,4 +614,36 @@ public class UserClientService {
             return responses;
         }
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 打开一个长连接的用户聊天双向流
+     * 
+     * 与userChat不同，这里不等待会话结束：
+     * 调用方通过observer的beforeStart拿到请求流，自行发送消息、控制流量和结束会话
+     * 
+     * @param responseObserver 服务端消息观察者
+     */
+    public void openChat(ClientResponseObserver<ChatMessage, ChatMessage> responseObserver) {
+        openChat(responseObserver, 0, 0);
+    }
+    
+    /**
+     * 打开一个长连接的用户聊天双向流，服务端先回放起点之后的历史消息
+     * 
+     * 服务端未启用聊天历史时忽略回放起点
+     * 
+     * @param responseObserver 服务端消息观察者
+     * @param fromOffset 回放起点的偏移量（包含），0表示不按偏移量回放
+     * @param fromTimestamp 回放起点的时间戳（毫秒），0表示不按时间回放
+     */
+    public void openChat(ClientResponseObserver<ChatMessage, ChatMessage> responseObserver,
+                         long fromOffset, long fromTimestamp) {
+        log.debug("打开gRPC聊天流: fromOffset={}, fromTimestamp={}", fromOffset, fromTimestamp);
+        UserServiceGrpc.UserServiceStub stub = asyncStub;
+        if (fromOffset > 0 || fromTimestamp > 0) {
+            stub = stub.withInterceptors(MetadataUtils.newAttachHeadersInterceptor(
+                    ChatReplayHeaders.of(fromOffset, fromTimestamp)));
+        }
+        stub.userChat(responseObserver);
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.grpc.client.trace;
+
+import com.example.grpc.common.trace.TraceRecorder;
+import com.example.grpc.common.trace.TracingProperties;
+import com.example.grpc.common.trace.TracingClientInterceptor;
+import net.devh.boot.grpc.client.interceptor.GrpcGlobalClientInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 链路追踪配置
+ *
+ * 全局拦截器为每次调用生成追踪ID并通过请求头传给服务端，@GrpcClient注入的stub和连接池都会使用；
+ * 客户端的追踪只有总耗时、服务端耗时和网络耗时（总耗时减去服务端耗时）三部分，服务端各阶段按同一个追踪ID查看
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "user-client.tracing", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class TracingConfiguration {
+
+    @Bean
+    @ConfigurationProperties(prefix = "user-client.tracing")
+    public TracingProperties tracingProperties() {
+        return new TracingProperties();
+    }
+
+    @Bean
+    public TraceRecorder traceRecorder(TracingProperties properties) {
+        return properties.createRecorder();
+    }
+
+    @GrpcGlobalClientInterceptor
+    public TracingClientInterceptor tracingClientInterceptor(TraceRecorder traceRecorder) {
+        return new TracingClientInterceptor(traceRecorder);
+    }
+}
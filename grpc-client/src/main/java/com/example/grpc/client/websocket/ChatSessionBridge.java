@@ -0,0 +1,215 @@
+package com.example.grpc.client.websocket;
+
+import com.example.grpc.proto.ChatMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import jakarta.websocket.Session;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tomcat.websocket.WsSession;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一个WebSocket连接与一个UserChat双向流之间的桥接
+ *
+ * 两个方向都有流控，且都不占用专门的线程：
+ * 1. WebSocket → gRPC：只在请求流就绪（isReady）时发送，未就绪时缓存；缓存达到上限后暂停读取WebSocket
+ * 2. gRPC → WebSocket：关闭自动request，每条消息异步写入WebSocket完成后才request(1)下一条
+ */
+@Slf4j
+class ChatSessionBridge implements ClientResponseObserver<ChatMessage, ChatMessage> {
+
+    private final WebSocketSession session;
+    private final Session nativeSession;
+    private final ObjectMapper objectMapper;
+    private final int maxPendingMessages;
+
+    /**
+     * 等待gRPC请求流就绪的消息
+     */
+    private final Deque<ChatMessage> pendingRequests = new ArrayDeque<>();
+
+    private ClientCallStreamObserver<ChatMessage> requestStream;
+    private boolean readingSuspended;
+    private boolean sending;
+    private boolean finished;
+    private boolean closing;
+    private boolean cancelled;
+
+    /**
+     * gRPC流结束时还有消息正在写入WebSocket，等写完后再关闭
+     */
+    private CloseStatus closeAfterSend;
+
+    ChatSessionBridge(WebSocketSession session, Session nativeSession, ObjectMapper objectMapper,
+                      int maxPendingMessages) {
+        this.session = session;
+        this.nativeSession = nativeSession;
+        this.objectMapper = objectMapper;
+        this.maxPendingMessages = maxPendingMessages;
+    }
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<ChatMessage> requestStream) {
+        this.requestStream = requestStream;
+        // 服务端消息按WebSocket写入速度拉取
+        requestStream.disableAutoRequestWithInitial(1);
+        requestStream.setOnReadyHandler(this::drainPendingRequests);
+    }
+
+    /**
+     * 转发WebSocket收到的消息到gRPC（Tomcat线程调用）
+     *
+     * @param message 聊天消息
+     */
+    synchronized void sendToServer(ChatMessage message) {
+        if (finished) {
+            return;
+        }
+        pendingRequests.add(message);
+        drainPendingRequests();
+
+        if (pendingRequests.size() >= maxPendingMessages && !readingSuspended) {
+            if (nativeSession instanceof WsSession wsSession) {
+                log.debug("gRPC流未就绪，暂停读取WebSocket: sessionId={}, 待发送={}",
+                        session.getId(), pendingRequests.size());
+                wsSession.suspend();
+                readingSuspended = true;
+            } else {
+                log.warn("WebSocket客户端发送过快，关闭连接: sessionId={}", session.getId());
+                finish(CloseStatus.SERVICE_OVERLOAD);
+            }
+        }
+    }
+
+    /**
+     * 在gRPC请求流就绪时发送缓存的消息
+     */
+    private synchronized void drainPendingRequests() {
+        while (!finished && !pendingRequests.isEmpty() && requestStream.isReady()) {
+            requestStream.onNext(pendingRequests.poll());
+        }
+        if (readingSuspended && pendingRequests.isEmpty()) {
+            log.debug("gRPC流已就绪，恢复读取WebSocket: sessionId={}", session.getId());
+            readingSuspended = false;
+            ((WsSession) nativeSession).resume();
+        }
+    }
+
+    @Override
+    public void onNext(ChatMessage message) {
+        String text;
+        try {
+            text = objectMapper.writeValueAsString(toMessageMap(message));
+        } catch (JsonProcessingException e) {
+            log.error("聊天消息序列化失败", e);
+            cancel("聊天消息序列化失败");
+            return;
+        }
+
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            sending = true;
+        }
+        // 异步写入，写完后才向服务端请求下一条消息
+        nativeSession.getAsyncRemote().sendText(text, result -> {
+            if (!result.isOK()) {
+                log.debug("WebSocket写入失败: sessionId={}", session.getId(), result.getException());
+                cancel("WebSocket写入失败");
+                return;
+            }
+            CloseStatus pendingClose;
+            synchronized (this) {
+                sending = false;
+                pendingClose = closeAfterSend;
+            }
+            if (pendingClose != null) {
+                closeSession(pendingClose);
+            } else {
+                requestStream.request(1);
+            }
+        });
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        Status status = Status.fromThrowable(t);
+        if (status.getCode() == Status.Code.CANCELLED) {
+            log.debug("聊天流已取消: sessionId={}", session.getId());
+        } else {
+            log.error("聊天过程中发生错误: sessionId={}", session.getId(), t);
+        }
+        // 关闭原因最长123字节，只带状态码
+        finish(CloseStatus.SERVER_ERROR.withReason("gRPC " + status.getCode()));
+    }
+
+    @Override
+    public void onCompleted() {
+        log.info("聊天会话结束: sessionId={}", session.getId());
+        finish(CloseStatus.NORMAL);
+    }
+
+    /**
+     * WebSocket连接关闭或出错时取消gRPC流（gRPC流已结束时无影响）
+     *
+     * @param reason 取消原因
+     */
+    synchronized void cancel(String reason) {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        finished = true;
+        pendingRequests.clear();
+        requestStream.cancel(reason, null);
+    }
+
+    /**
+     * gRPC流结束，正在写入的消息写完后关闭WebSocket
+     */
+    private void finish(CloseStatus status) {
+        synchronized (this) {
+            if (closing) {
+                return;
+            }
+            closing = true;
+            finished = true;
+            pendingRequests.clear();
+            if (sending) {
+                closeAfterSend = status;
+                return;
+            }
+        }
+        closeSession(status);
+    }
+
+    private void closeSession(CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (IOException e) {
+            log.debug("关闭WebSocket失败: sessionId={}", session.getId(), e);
+        }
+    }
+
+    private static Map<String, Object> toMessageMap(ChatMessage message) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("userId", message.getUserId());
+        map.put("message", message.getMessage());
+        map.put("timestamp", message.getTimestamp());
+        if (message.getOffset() > 0) {
+            map.put("offset", message.getOffset());
+        }
+        return map;
+    }
+}
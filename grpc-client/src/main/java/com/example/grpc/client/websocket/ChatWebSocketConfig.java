@@ -0,0 +1,37 @@
+package com.example.grpc.client.websocket;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
+
+/**
+ * WebSocket聊天配置
+ *
+ * 注册聊天端点，并设置WebSocket容器的消息大小和空闲超时
+ */
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class ChatWebSocketConfig implements WebSocketConfigurer {
+
+    private final ChatWebSocketHandler chatWebSocketHandler;
+    private final ChatWebSocketProperties properties;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(chatWebSocketHandler, properties.getPath())
+                .setAllowedOriginPatterns(properties.getAllowedOrigins().toArray(String[]::new));
+    }
+
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer() {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(properties.getMaxTextMessageSize());
+        container.setMaxSessionIdleTimeout(properties.getIdleTimeout().toMillis());
+        return container;
+    }
+}
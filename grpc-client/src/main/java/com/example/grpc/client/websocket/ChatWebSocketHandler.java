@@ -0,0 +1,136 @@
+package com.example.grpc.client.websocket;
+
+import com.example.grpc.client.service.UserClientService;
+import com.example.grpc.proto.ChatMessage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.websocket.Session;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+
+/**
+ * 聊天WebSocket处理器
+ *
+ * 每个WebSocket连接对应一个长连接的UserChat双向流，消息到达即转发，不等待会话结束
+ *
+ * 客户端发送的消息可以是纯文本，也可以是JSON：{"userId": 1, "message": "你好"}
+ * 服务端推送的消息格式：{"userId": 0, "message": "...", "timestamp": 1699123456789}
+ *
+ * 连接地址带上fromOffset或fromTimestamp查询参数时，先收到服务端回放的历史消息（带offset字段），
+ * 例如 ws://localhost:8081/ws/chat?fromTimestamp=1699123456789；断线重连时传入最后一条历史消息的offset + 1即可续上
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatWebSocketHandler extends TextWebSocketHandler {
+
+    /**
+     * 未指定userId时使用的用户ID（与REST聊天演示一致）
+     */
+    private static final long DEFAULT_USER_ID = 1;
+
+    private static final String BRIDGE_ATTRIBUTE = ChatSessionBridge.class.getName();
+
+    private final UserClientService userClientService;
+    private final ObjectMapper objectMapper;
+    private final ChatWebSocketProperties properties;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws IOException {
+        Session nativeSession = session instanceof NativeWebSocketSession nativeWebSocketSession
+                ? nativeWebSocketSession.getNativeSession(Session.class)
+                : null;
+        if (nativeSession == null) {
+            log.error("不支持的WebSocket会话类型: {}", session.getClass().getName());
+            session.close(CloseStatus.SERVER_ERROR);
+            return;
+        }
+
+        log.info("WebSocket聊天连接建立: sessionId={}", session.getId());
+        ChatSessionBridge bridge = new ChatSessionBridge(session, nativeSession, objectMapper,
+                properties.getMaxPendingMessages());
+        session.getAttributes().put(BRIDGE_ATTRIBUTE, bridge);
+        MultiValueMap<String, String> query = session.getUri() == null
+                ? new LinkedMultiValueMap<>()
+                : UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams();
+        userClientService.openChat(bridge, parseLong(query.getFirst("fromOffset")),
+                parseLong(query.getFirst("fromTimestamp")));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        ChatSessionBridge bridge = (ChatSessionBridge) session.getAttributes().get(BRIDGE_ATTRIBUTE);
+        if (bridge == null) {
+            return;
+        }
+
+        ChatMessage chatMessage;
+        try {
+            chatMessage = toChatMessage(message.getPayload());
+        } catch (IOException e) {
+            log.debug("无法解析WebSocket消息: sessionId={}", session.getId(), e);
+            session.close(CloseStatus.BAD_DATA.withReason("消息格式错误"));
+            return;
+        }
+        bridge.sendToServer(chatMessage);
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        log.debug("WebSocket传输错误: sessionId={}", session.getId(), exception);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        log.info("WebSocket聊天连接关闭: sessionId={}, status={}", session.getId(), status);
+        ChatSessionBridge bridge = (ChatSessionBridge) session.getAttributes().remove(BRIDGE_ATTRIBUTE);
+        if (bridge != null) {
+            bridge.cancel("WebSocket连接已关闭");
+        }
+    }
+
+    /**
+     * 解析查询参数中的偏移量或时间戳，缺失或格式错误时返回0
+     */
+    private static long parseLong(String value) {
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 把WebSocket文本消息转换为gRPC聊天消息
+     */
+    private ChatMessage toChatMessage(String payload) throws IOException {
+        long userId = DEFAULT_USER_ID;
+        String text = payload;
+
+        if (payload.stripLeading().startsWith("{")) {
+            JsonNode node = objectMapper.readTree(payload);
+            userId = node.path("userId").asLong(DEFAULT_USER_ID);
+            text = node.path("message").asText("");
+        }
+
+        return ChatMessage.newBuilder()
+                .setUserId(userId)
+                .setMessage(text)
+                .setTimestamp(System.currentTimeMillis())
+                .build();
+    }
+}
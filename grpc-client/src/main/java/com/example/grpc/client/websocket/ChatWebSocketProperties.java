@@ -0,0 +1,44 @@
+package com.example.grpc.client.websocket;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * WebSocket聊天桥接配置
+ *
+ * 对应application.yml中的user-client.chat-websocket配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "user-client.chat-websocket")
+public class ChatWebSocketProperties {
+
+    /**
+     * WebSocket端点路径
+     */
+    private String path = "/ws/chat";
+
+    /**
+     * 允许的跨域来源（支持通配符）
+     */
+    private List<String> allowedOrigins = new ArrayList<>(List.of("*"));
+
+    /**
+     * gRPC流未就绪时，每个连接最多缓存的待发送消息数
+     * 达到上限后暂停读取该WebSocket连接，直到缓存发送完毕
+     */
+    private int maxPendingMessages = 64;
+
+    /**
+     * 单条文本消息的最大字节数
+     */
+    private int maxTextMessageSize = 8192;
+
+    /**
+     * 连接空闲超时时间
+     */
+    private Duration idleTimeout = Duration.ofMinutes(10);
+}
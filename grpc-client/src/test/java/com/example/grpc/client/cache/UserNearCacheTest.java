@@ -0,0 +1,93 @@
+package com.example.grpc.client.cache;
+
+import com.example.grpc.proto.GetUserResponse;
+import com.example.grpc.proto.User;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * UserNearCache测试
+ */
+class UserNearCacheTest {
+
+    private final UserNearCache cache = new UserNearCache(2);
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        cache.put(user(1, 1));
+        cache.put(user(2, 1));
+        cache.get(1);
+        cache.put(user(3, 1));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get(2));
+        assertEquals(1, cache.get(1).getId());
+        assertEquals(3, cache.get(3).getId());
+    }
+
+    @Test
+    void olderVersionDoesNotOverwrite() {
+        cache.put(user(1, 5));
+        cache.put(user(1, 4));
+        assertEquals(5, cache.get(1).getVersion());
+
+        cache.put(user(1, 6));
+        assertEquals(6, cache.get(1).getVersion());
+    }
+
+    @Test
+    void notModifiedIsFilledFromCache() {
+        User cached = user(1, 3);
+        cache.put(cached);
+        GetUserResponse response = GetUserResponse.newBuilder().setSuccess(true).setNotModified(true).build();
+
+        GetUserResponse result = cache.revalidate(1, cached, response);
+
+        assertSame(cached, result.getUser());
+        assertTrue(result.getNotModified());
+        assertEquals(1, cache.getNotModified());
+        assertEquals(0, cache.getRefreshed());
+    }
+
+    @Test
+    void newVersionRefreshesCache() {
+        User cached = user(1, 3);
+        cache.put(cached);
+        User fresh = user(1, 4);
+        GetUserResponse response = GetUserResponse.newBuilder().setSuccess(true).setUser(fresh).build();
+
+        assertSame(response, cache.revalidate(1, cached, response));
+        assertEquals(4, cache.get(1).getVersion());
+        assertEquals(1, cache.getRefreshed());
+    }
+
+    @Test
+    void missPopulatesCache() {
+        GetUserResponse response = GetUserResponse.newBuilder().setSuccess(true).setUser(user(7, 1)).build();
+
+        cache.revalidate(7, null, response);
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.get(7).getVersion());
+    }
+
+    @Test
+    void failedResponseInvalidates() {
+        User cached = user(1, 3);
+        cache.put(cached);
+        GetUserResponse response = GetUserResponse.newBuilder().setSuccess(false).build();
+
+        assertSame(response, cache.revalidate(1, cached, response));
+        assertNull(cache.get(1));
+        assertEquals(1, cache.getRefreshed());
+    }
+
+    private static User user(long id, long version) {
+        return User.newBuilder().setId(id).setUsername("user-" + id).setVersion(version).build();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.grpc.client.channel;
+
+import com.example.grpc.proto.GetUserRequest;
+import com.example.grpc.proto.GetUserResponse;
+import com.example.grpc.proto.UserServiceGrpc;
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * UserServiceChannelPool测试
+ *
+ * 连接在调用start之前不会真正建立，测试只创建和取消调用，不需要服务端
+ */
+class UserServiceChannelPoolTest {
+
+    private UserServiceChannelPool pool;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void emptyPoolIsRejected() {
+        ChannelPoolProperties properties = properties(ChannelPoolProperties.Selection.ROUND_ROBIN);
+        properties.setSize(0);
+        assertThrows(IllegalArgumentException.class, () -> new UserServiceChannelPool(properties, List.of()));
+    }
+
+    @Test
+    void roundRobinSpreadsCallsEvenly() {
+        pool = new UserServiceChannelPool(properties(ChannelPoolProperties.Selection.ROUND_ROBIN), List.of());
+        for (int i = 0; i < 6; i++) {
+            newCall();
+        }
+        for (UserServiceChannelPool.PooledChannel channel : pool.getChannels()) {
+            assertEquals(2, channel.getTotalCalls());
+            assertEquals(2, channel.getInflight());
+        }
+    }
+
+    @Test
+    void leastBusyPrefersIdleChannel() {
+        pool = new UserServiceChannelPool(properties(ChannelPoolProperties.Selection.LEAST_BUSY), List.of());
+        newCall();
+        ClientCall<GetUserRequest, GetUserResponse> second = newCall();
+        newCall();
+        second.cancel("test", null);
+
+        // 轮询起点回到第0个连接，但第1个连接上没有进行中的调用
+        newCall();
+
+        List<UserServiceChannelPool.PooledChannel> channels = pool.getChannels();
+        assertEquals(1, channels.get(0).getTotalCalls());
+        assertEquals(2, channels.get(1).getTotalCalls());
+        assertEquals(1, channels.get(2).getTotalCalls());
+        assertEquals(1, channels.get(1).getInflight());
+    }
+
+    @Test
+    void cancelBeforeStartReleasesOnce() {
+        pool = new UserServiceChannelPool(properties(ChannelPoolProperties.Selection.ROUND_ROBIN), List.of());
+        ClientCall<GetUserRequest, GetUserResponse> call = newCall();
+        assertEquals(1, pool.getChannels().get(0).getInflight());
+
+        call.cancel("test", null);
+        call.cancel("again", null);
+        assertEquals(0, pool.getChannels().get(0).getInflight());
+    }
+
+    private ClientCall<GetUserRequest, GetUserResponse> newCall() {
+        return pool.newCall(UserServiceGrpc.getGetUserMethod(), CallOptions.DEFAULT);
+    }
+
+    private static ChannelPoolProperties properties(ChannelPoolProperties.Selection selection) {
+        ChannelPoolProperties properties = new ChannelPoolProperties();
+        properties.setTarget("localhost:1");
+        properties.setPlaintext(true);
+        properties.setSize(3);
+        properties.setSelection(selection);
+        return properties;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.grpc.common.chat;
+
+import io.grpc.Metadata;
+
+/**
+ * 聊天历史回放请求头
+ *
+ * 打开UserChat流时在请求头中指定回放的起点，服务端先按顺序推送起点之后的历史消息，再开始处理新的消息。
+ * 两者都指定时以偏移量为准，都不指定时不回放
+ */
+public final class ChatReplayHeaders {
+
+    /**
+     * 从这个偏移量开始回放（包含），值为十进制的偏移量
+     */
+    public static final Metadata.Key<String> FROM_OFFSET =
+            Metadata.Key.of("x-chat-replay-from-offset", Metadata.ASCII_STRING_MARSHALLER);
+
+    /**
+     * 回放服务端在这个时间点（毫秒时间戳）及之后收到的消息
+     */
+    public static final Metadata.Key<String> FROM_TIMESTAMP =
+            Metadata.Key.of("x-chat-replay-from-timestamp", Metadata.ASCII_STRING_MARSHALLER);
+
+    private ChatReplayHeaders() {
+    }
+
+    /**
+     * 构造回放请求头
+     *
+     * @param fromOffset    回放起点的偏移量，0表示不按偏移量回放
+     * @param fromTimestamp 回放起点的时间戳，0表示不按时间回放
+     */
+    public static Metadata of(long fromOffset, long fromTimestamp) {
+        Metadata headers = new Metadata();
+        if (fromOffset > 0) {
+            headers.put(FROM_OFFSET, Long.toString(fromOffset));
+        }
+        if (fromTimestamp > 0) {
+            headers.put(FROM_TIMESTAMP, Long.toString(fromTimestamp));
+        }
+        return headers;
+    }
+
+    /**
+     * 解析请求头中的值
+     *
+     * @return 偏移量或时间戳，不存在或格式错误时返回0
+     */
+    public static long parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
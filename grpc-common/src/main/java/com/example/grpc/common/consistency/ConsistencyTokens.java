@@ -0,0 +1,37 @@
+package com.example.grpc.common.consistency;
+
+import io.grpc.Metadata;
+
+/**
+ * 一致性令牌
+ *
+ * 服务端在写操作的响应尾部（trailers）返回写入对应的复制序号（LSN），
+ * 客户端在后续请求头中带上见过的最大序号，服务端保证只从已经复制到该序号的副本（或主库）读取
+ */
+public final class ConsistencyTokens {
+
+    /**
+     * 请求头和响应尾部中的令牌，值为十进制的复制序号
+     */
+    public static final Metadata.Key<String> METADATA_KEY =
+            Metadata.Key.of("x-consistency-token", Metadata.ASCII_STRING_MARSHALLER);
+
+    private ConsistencyTokens() {
+    }
+
+    /**
+     * 解析令牌
+     *
+     * @return 复制序号，令牌不存在或格式错误时返回0
+     */
+    public static long parse(String token) {
+        if (token == null || token.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(token));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
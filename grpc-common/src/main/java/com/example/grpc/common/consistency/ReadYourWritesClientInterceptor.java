@@ -0,0 +1,59 @@
+package com.example.grpc.common.consistency;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 客户端拦截器：读己之写
+ *
+ * 记录所有响应中见过的最大一致性令牌，并附加到之后的每个请求上，
+ * 同一个客户端进程写入的数据，之后的读取一定能看到，即使读请求被路由到只读副本
+ */
+public class ReadYourWritesClientInterceptor implements ClientInterceptor {
+
+    private final AtomicLong highWatermark = new AtomicLong();
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                               CallOptions callOptions, Channel next) {
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                long token = highWatermark.get();
+                if (token > 0) {
+                    headers.put(ConsistencyTokens.METADATA_KEY, Long.toString(token));
+                }
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        observe(trailers.get(ConsistencyTokens.METADATA_KEY));
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+
+    private void observe(String token) {
+        long lsn = ConsistencyTokens.parse(token);
+        if (lsn > 0) {
+            highWatermark.accumulateAndGet(lsn, Math::max);
+        }
+    }
+
+    /**
+     * @return 当前见过的最大令牌
+     */
+    public long getHighWatermark() {
+        return highWatermark.get();
+    }
+}
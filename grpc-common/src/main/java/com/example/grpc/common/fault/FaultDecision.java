@@ -0,0 +1,49 @@
+package com.example.grpc.common.fault;
+
+import io.grpc.Status;
+
+/**
+ * 对一次调用抽样得到的故障
+ */
+public final class FaultDecision {
+
+    private final long delayNanos;
+    private final Status error;
+    private final int stallAfterMessages;
+    private final long stallNanos;
+
+    FaultDecision(long delayNanos, Status error, int stallAfterMessages, long stallNanos) {
+        this.delayNanos = delayNanos;
+        this.error = error;
+        this.stallAfterMessages = stallAfterMessages;
+        this.stallNanos = stallNanos;
+    }
+
+    /**
+     * @return 附加延迟，0表示不延迟
+     */
+    public long getDelayNanos() {
+        return delayNanos;
+    }
+
+    /**
+     * @return 注入的错误，null表示正常执行
+     */
+    public Status getError() {
+        return error;
+    }
+
+    /**
+     * @return 停顿前正常传递的消息数
+     */
+    public int getStallAfterMessages() {
+        return stallAfterMessages;
+    }
+
+    /**
+     * @return 停顿时长，0表示不停顿
+     */
+    public long getStallNanos() {
+        return stallNanos;
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.grpc.common.fault;
+
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Deadline;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 客户端故障注入拦截器
+ *
+ * - 延迟：推迟真正发出调用的时间，期间对调用的操作排队；截止时间先到时在截止时间发出，立即以DEADLINE_EXCEEDED结束，
+ *   与网络变慢时客户端看到的一致
+ * - 错误：不发出调用，延迟之后直接以注入的状态结束
+ * - 流停顿：收到第N个响应后暂停向服务端请求消息，接收窗口填满后服务端的isReady变为false，用来观察流控和背压
+ *
+ * 拦截器在通道之上，重试和对冲发生在通道内部，所以客户端注入的故障作用于整个调用而不是单次尝试，
+ * 测试重试和对冲需要在服务端注入
+ */
+public class FaultInjectionClientInterceptor implements ClientInterceptor {
+
+    private final FaultInjector injector;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param injector  故障注入规则表
+     * @param scheduler 执行延迟和停顿到期的定时线程
+     */
+    public FaultInjectionClientInterceptor(FaultInjector injector, ScheduledExecutorService scheduler) {
+        this.injector = injector;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                               CallOptions callOptions, Channel next) {
+        FaultDecision decision = injector.decide(method);
+        if (decision == null) {
+            return next.newCall(method, callOptions);
+        }
+        long delayNanos = decision.getDelayNanos();
+        Deadline deadline = callOptions.getDeadline();
+        if (deadline != null && delayNanos > 0) {
+            delayNanos = Math.min(delayNanos, Math.max(0, deadline.timeRemaining(TimeUnit.NANOSECONDS)));
+        }
+
+        if (decision.getError() != null) {
+            Status error = delayNanos < decision.getDelayNanos()
+                    ? Status.DEADLINE_EXCEEDED.withDescription("故障注入的延迟超过了截止时间")
+                    : decision.getError();
+            return new FailingClientCall<>(error, delayNanos);
+        }
+
+        ClientCall<ReqT, RespT> call = next.newCall(method, callOptions);
+        if (decision.getStallNanos() > 0) {
+            call = new StallingClientCall<>(call, decision.getStallAfterMessages(), decision.getStallNanos());
+        }
+        if (delayNanos > 0) {
+            call = new DelayedClientCall<>(call, delayNanos);
+        }
+        return call;
+    }
+
+    /**
+     * 推迟发出的调用
+     */
+    private class DelayedClientCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+
+        private final ClientCall<ReqT, RespT> delegate;
+        private final HeldActions actions = new HeldActions(scheduler);
+
+        DelayedClientCall(ClientCall<ReqT, RespT> delegate, long delayNanos) {
+            this.delegate = delegate;
+            actions.hold(delayNanos);
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            actions.run(() -> delegate.start(responseListener, headers));
+        }
+
+        @Override
+        public void request(int numMessages) {
+            actions.run(() -> delegate.request(numMessages));
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+            // 取消不用等延迟到期，先发出调用再立即取消，由真正的调用通知监听器
+            actions.run(() -> delegate.cancel(message, cause));
+            actions.releaseNow();
+        }
+
+        @Override
+        public void halfClose() {
+            actions.run(delegate::halfClose);
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+            actions.run(() -> delegate.sendMessage(message));
+        }
+
+        @Override
+        public void setMessageCompression(boolean enabled) {
+            actions.run(() -> delegate.setMessageCompression(enabled));
+        }
+
+        @Override
+        public boolean isReady() {
+            // 调用发出之前底层的流还不存在
+            return !actions.isHeld() && delegate.isReady();
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            return delegate.getAttributes();
+        }
+    }
+
+    /**
+     * 收到指定数量的响应后暂停请求消息的调用
+     *
+     * request()允许在任意线程调用，停顿到期后在定时线程中补上暂停期间的请求
+     */
+    private class StallingClientCall<ReqT, RespT>
+            extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+
+        private final int stallAfterMessages;
+        private final long stallNanos;
+        private int received;
+        private boolean stalled;
+        private int deferredRequests;
+
+        StallingClientCall(ClientCall<ReqT, RespT> delegate, int stallAfterMessages, long stallNanos) {
+            super(delegate);
+            this.stallAfterMessages = stallAfterMessages;
+            this.stallNanos = stallNanos;
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            if (stallAfterMessages == 0) {
+                stall();
+            }
+            super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                @Override
+                public void onMessage(RespT message) {
+                    // 在交给应用之前开始停顿，应用处理完这条消息后请求的下一条消息会被推迟
+                    if (++received == stallAfterMessages) {
+                        stall();
+                    }
+                    super.onMessage(message);
+                }
+            }, headers);
+        }
+
+        @Override
+        public void request(int numMessages) {
+            synchronized (this) {
+                if (stalled) {
+                    deferredRequests += numMessages;
+                    return;
+                }
+            }
+            super.request(numMessages);
+        }
+
+        private void stall() {
+            synchronized (this) {
+                stalled = true;
+            }
+            scheduler.schedule(this::resume, stallNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private void resume() {
+            int requests;
+            synchronized (this) {
+                stalled = false;
+                requests = deferredRequests;
+                deferredRequests = 0;
+            }
+            if (requests > 0) {
+                super.request(requests);
+            }
+        }
+    }
+
+    /**
+     * 不发出的调用，延迟之后以注入的状态结束
+     */
+    private class FailingClientCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+
+        private final Status error;
+        private final long delayNanos;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile Listener<RespT> listener;
+
+        FailingClientCall(Status error, long delayNanos) {
+            this.error = error;
+            this.delayNanos = delayNanos;
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            listener = responseListener;
+            if (delayNanos > 0) {
+                scheduler.schedule(() -> close(error), delayNanos, TimeUnit.NANOSECONDS);
+            } else {
+                close(error);
+            }
+        }
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+            if (listener != null) {
+                close(Status.CANCELLED.withDescription(message).withCause(cause));
+            }
+        }
+
+        @Override
+        public void halfClose() {
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+        }
+
+        private void close(Status status) {
+            if (closed.compareAndSet(false, true)) {
+                listener.onClose(status, new Metadata());
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.grpc.common.fault;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 故障注入管理接口
+ *
+ * 规则修改对之后开始的调用生效；整体替换场景时重置抽样序号和统计，用于开始一轮可复现的测试。
+ * 不在应用的组件扫描范围内，由服务端和客户端的启动类通过@Import注册；故障注入未启用时接口仍然存在，返回未启用
+ */
+@RestController
+@RequestMapping("/admin/fault-injection")
+public class FaultInjectionController {
+
+    private final ObjectProvider<FaultInjector> faultInjector;
+
+    public FaultInjectionController(ObjectProvider<FaultInjector> faultInjector) {
+        this.faultInjector = faultInjector;
+    }
+
+    /**
+     * 当前规则和注入统计 - GET /admin/fault-injection
+     */
+    @GetMapping
+    public Map<String, Object> status() {
+        FaultInjector injector = faultInjector.getIfAvailable();
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", injector != null);
+        if (injector != null) {
+            status.putAll(injector.status());
+        }
+        return status;
+    }
+
+    /**
+     * 设置一个方法的规则 - PUT /admin/fault-injection/rules?method=GetUser
+     *
+     * @param method 方法全名、方法名或*
+     * @param rule 规则，如{"latency":"LONG_TAIL","latencyMillis":2,"tailProbability":0.01,"tailMillis":200}
+     */
+    @PutMapping("/rules")
+    public Map<String, Object> setRule(@RequestParam String method, @RequestBody FaultRule rule) {
+        Map<String, Object> result = new HashMap<>();
+        FaultInjector injector = faultInjector.getIfAvailable();
+        if (injector == null) {
+            return disabled(result);
+        }
+        try {
+            injector.setRule(method, rule);
+        } catch (IllegalArgumentException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            return result;
+        }
+        result.put("success", true);
+        result.put("message", "规则已更新");
+        result.put("rule", rule.toMap());
+        return result;
+    }
+
+    /**
+     * 删除规则 - DELETE /admin/fault-injection/rules?method=GetUser，不指定方法时删除全部规则
+     */
+    @DeleteMapping("/rules")
+    public Map<String, Object> removeRule(@RequestParam(required = false) String method) {
+        Map<String, Object> result = new HashMap<>();
+        FaultInjector injector = faultInjector.getIfAvailable();
+        if (injector == null) {
+            return disabled(result);
+        }
+        if (method == null) {
+            injector.replace(Map.of(), injector.getSeed());
+            result.put("success", true);
+            result.put("message", "已删除全部规则");
+            return result;
+        }
+        boolean removed = injector.removeRule(method);
+        result.put("success", removed);
+        result.put("message", removed ? "规则已删除" : "没有这个方法的规则");
+        return result;
+    }
+
+    /**
+     * 整体替换为一个场景 - PUT /admin/fault-injection/scenario?seed=42
+     *
+     * @param scenario 场景文本（格式见FaultScenario），与基准测试的--faults参数相同
+     * @param seed 随机种子，不指定时沿用当前种子
+     */
+    @PutMapping("/scenario")
+    public Map<String, Object> replaceScenario(@RequestBody(required = false) String scenario,
+                                               @RequestParam(required = false) Long seed) {
+        Map<String, Object> result = new HashMap<>();
+        FaultInjector injector = faultInjector.getIfAvailable();
+        if (injector == null) {
+            return disabled(result);
+        }
+        try {
+            injector.replace(FaultScenario.parse(scenario), seed != null ? seed : injector.getSeed());
+        } catch (IllegalArgumentException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+            return result;
+        }
+        result.put("success", true);
+        result.put("message", "场景已替换，抽样序号和统计已重置");
+        result.put("scenario", FaultScenario.format(injector.getRules()));
+        result.put("seed", injector.getSeed());
+        return result;
+    }
+
+    private static Map<String, Object> disabled(Map<String, Object> result) {
+        result.put("success", false);
+        result.put("message", "故障注入未启用");
+        return result;
+    }
+}
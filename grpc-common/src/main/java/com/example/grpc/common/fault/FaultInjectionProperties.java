@@ -0,0 +1,76 @@
+package com.example.grpc.common.fault;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 故障注入配置
+ *
+ * 服务端和客户端共用，由各自的应用绑定到自己的配置前缀
+ * （user-service.fault-injection、user-client.fault-injection）
+ */
+public class FaultInjectionProperties {
+
+    /**
+     * 是否注册故障注入拦截器，关闭时管理接口也不可用
+     */
+    private boolean enabled = false;
+
+    /**
+     * 随机种子，同样的种子和场景得到同样的故障序列
+     */
+    private long seed = 42;
+
+    /**
+     * 启动时加载的场景文本（格式见FaultScenario），以@开头时从文件读取
+     */
+    private String scenario = "";
+
+    /**
+     * 按方法配置的规则，与scenario中同一个方法的规则冲突时以这里为准
+     */
+    private Map<String, FaultRule> rules = new LinkedHashMap<>();
+
+    /**
+     * 按配置的场景、规则和种子创建规则表
+     *
+     * @throws IllegalArgumentException 场景格式不正确或规则参数不合法
+     */
+    public FaultInjector createInjector() {
+        Map<String, FaultRule> initialRules = FaultScenario.load(scenario);
+        initialRules.putAll(rules);
+        return new FaultInjector(seed, initialRules);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public String getScenario() {
+        return scenario;
+    }
+
+    public void setScenario(String scenario) {
+        this.scenario = scenario;
+    }
+
+    public Map<String, FaultRule> getRules() {
+        return rules;
+    }
+
+    public void setRules(Map<String, FaultRule> rules) {
+        this.rules = rules;
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.grpc.common.fault;
+
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 故障注入规则表
+ *
+ * 规则按方法注册，键可以是方法全名（com.example.grpc.proto.UserService/GetUser）、
+ * 方法名（GetUser，匹配任意服务中的同名方法）或"*"（其他所有方法），按这个顺序查找。
+ * 规则表整体替换，运行时修改不影响已经开始的调用。
+ *
+ * 抽样可以复现：第n次匹配到规则的调用使用由种子和n确定的随机数，
+ * 所以同一个场景、同一个种子下，前N次调用得到的故障组合总是相同；
+ * 并发时哪一次调用拿到第n个序号取决于调度，但整体的故障分布不变
+ */
+public class FaultInjector {
+
+    /**
+     * 匹配所有方法的规则键
+     */
+    public static final String ANY_METHOD = "*";
+
+    private volatile Map<String, FaultRule> rules = Map.of();
+    private volatile long seed;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentMap<String, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * @param seed  随机种子
+     * @param rules 初始规则
+     */
+    public FaultInjector(long seed, Map<String, FaultRule> rules) {
+        replace(rules, seed);
+    }
+
+    /**
+     * 为一次调用抽样
+     *
+     * @return 这次调用的故障，没有匹配的规则时返回null
+     */
+    public FaultDecision decide(MethodDescriptor<?, ?> method) {
+        Map<String, FaultRule> current = rules;
+        if (current.isEmpty()) {
+            return null;
+        }
+        String fullMethodName = method.getFullMethodName();
+        FaultRule rule = current.get(fullMethodName);
+        if (rule == null) {
+            rule = current.get(MethodDescriptor.extractBareMethodName(fullMethodName));
+        }
+        if (rule == null) {
+            rule = current.get(ANY_METHOD);
+        }
+        if (rule == null) {
+            return null;
+        }
+
+        SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + sequence.getAndIncrement());
+        long delayNanos = sampleDelayNanos(rule, random);
+        Status error = sampleError(rule, random);
+        int stallAfterMessages = 0;
+        long stallNanos = 0;
+        if (error == null && rule.getStallProbability() > 0 && random.nextDouble() < rule.getStallProbability()) {
+            stallAfterMessages = rule.getStallAfterMessages();
+            stallNanos = TimeUnit.MILLISECONDS.toNanos(rule.getStallMillis());
+        }
+
+        Counters methodCounters = counters.computeIfAbsent(fullMethodName, name -> new Counters());
+        methodCounters.calls.increment();
+        if (delayNanos > 0) {
+            methodCounters.delayed.increment();
+            methodCounters.delayNanos.add(delayNanos);
+        }
+        if (error != null) {
+            methodCounters.errors.increment();
+        }
+        if (stallNanos > 0) {
+            methodCounters.stalls.increment();
+        }
+        return new FaultDecision(delayNanos, error, stallAfterMessages, stallNanos);
+    }
+
+    /**
+     * 设置一个方法的规则
+     *
+     * @throws IllegalArgumentException 规则参数不合法
+     */
+    public synchronized void setRule(String method, FaultRule rule) {
+        rule.validate();
+        Map<String, FaultRule> updated = new LinkedHashMap<>(rules);
+        updated.put(method, rule.copy());
+        rules = Collections.unmodifiableMap(updated);
+    }
+
+    /**
+     * @return 是否存在这个方法的规则
+     */
+    public synchronized boolean removeRule(String method) {
+        if (!rules.containsKey(method)) {
+            return false;
+        }
+        Map<String, FaultRule> updated = new LinkedHashMap<>(rules);
+        updated.remove(method);
+        rules = Collections.unmodifiableMap(updated);
+        return true;
+    }
+
+    /**
+     * 整体替换规则并重新从第0次调用开始抽样，同时清空统计，用于开始一轮可复现的测试
+     *
+     * @throws IllegalArgumentException 规则参数不合法
+     */
+    public synchronized void replace(Map<String, FaultRule> newRules, long newSeed) {
+        Map<String, FaultRule> copies = new LinkedHashMap<>();
+        for (Map.Entry<String, FaultRule> entry : newRules.entrySet()) {
+            entry.getValue().validate();
+            copies.put(entry.getKey(), entry.getValue().copy());
+        }
+        seed = newSeed;
+        sequence.set(0);
+        counters.clear();
+        rules = Collections.unmodifiableMap(copies);
+    }
+
+    /**
+     * @return 当前规则，不可修改
+     */
+    public Map<String, FaultRule> getRules() {
+        return rules;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return 当前规则和每个方法的注入统计
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("seed", seed);
+        status.put("sequence", sequence.get());
+        status.put("scenario", FaultScenario.format(rules));
+
+        Map<String, Object> ruleMaps = new LinkedHashMap<>();
+        rules.forEach((method, rule) -> ruleMaps.put(method, rule.toMap()));
+        status.put("rules", ruleMaps);
+
+        Map<String, Object> methodStats = new TreeMap<>();
+        counters.forEach((method, methodCounters) -> {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            long delayed = methodCounters.delayed.sum();
+            stats.put("calls", methodCounters.calls.sum());
+            stats.put("delayed", delayed);
+            stats.put("avgDelayMillis", delayed == 0 ? 0 : methodCounters.delayNanos.sum() / 1e6 / delayed);
+            stats.put("errors", methodCounters.errors.sum());
+            stats.put("stalls", methodCounters.stalls.sum());
+            methodStats.put(method, stats);
+        });
+        status.put("stats", methodStats);
+        return status;
+    }
+
+    private static long sampleDelayNanos(FaultRule rule, SplittableRandom random) {
+        double millis = switch (rule.getLatency()) {
+            case NONE -> 0;
+            case FIXED -> rule.getLatencyMillis();
+            case NORMAL -> rule.getLatencyMillis() + rule.getLatencyStddevMillis() * random.nextGaussian();
+            case LONG_TAIL -> random.nextDouble() < rule.getTailProbability()
+                    // 帕累托分布：P(X > x) = (tailMillis / x)^tailShape
+                    ? rule.getTailMillis() / Math.pow(1 - random.nextDouble(), 1 / rule.getTailShape())
+                    : rule.getLatencyMillis() + rule.getLatencyStddevMillis() * random.nextGaussian();
+        };
+        millis = Math.min(millis, rule.getMaxLatencyMillis());
+        return millis <= 0 ? 0 : (long) (millis * 1_000_000);
+    }
+
+    private static Status sampleError(FaultRule rule, SplittableRandom random) {
+        if (rule.getErrors().isEmpty()) {
+            return null;
+        }
+        double point = random.nextDouble();
+        double cumulative = 0;
+        for (Map.Entry<Status.Code, Double> error : rule.getErrors().entrySet()) {
+            cumulative += error.getValue();
+            if (point < cumulative) {
+                return Status.fromCode(error.getKey()).withDescription("故障注入: " + error.getKey());
+            }
+        }
+        return null;
+    }
+
+    private static class Counters {
+        final LongAdder calls = new LongAdder();
+        final LongAdder delayed = new LongAdder();
+        final LongAdder delayNanos = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder stalls = new LongAdder();
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.grpc.common.fault;
+
+import io.grpc.Status;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一个方法的故障注入规则
+ *
+ * 由三部分组成，每次调用各自独立地抽样：
+ * - 延迟：按分布抽取一个附加延迟
+ * - 错误：按状态码给出比例，命中时不执行调用，在延迟之后直接以该状态结束
+ * - 流停顿：按比例在第N个消息之后暂停一段时间
+ *
+ * 普通的JavaBean，可以直接从application.yml绑定，也可以从管理接口的JSON请求体反序列化
+ */
+public class FaultRule {
+
+    /**
+     * 延迟分布
+     */
+    public enum LatencyDistribution {
+        /**
+         * 不附加延迟
+         */
+        NONE,
+        /**
+         * 固定延迟latencyMillis
+         */
+        FIXED,
+        /**
+         * 均值latencyMillis、标准差latencyStddevMillis的正态分布，负值按0处理
+         */
+        NORMAL,
+        /**
+         * 长尾：大部分调用同NORMAL，tailProbability比例的调用改为从帕累托分布抽取，
+         * 最小为tailMillis，tailShape越小尾部越重
+         */
+        LONG_TAIL
+    }
+
+    private LatencyDistribution latency = LatencyDistribution.NONE;
+
+    private double latencyMillis;
+
+    private double latencyStddevMillis;
+
+    private double tailProbability;
+
+    private double tailMillis;
+
+    private double tailShape = 1.5;
+
+    /**
+     * 单次附加延迟的上限，避免长尾分布偶尔抽到极端值
+     */
+    private double maxLatencyMillis = 30_000;
+
+    /**
+     * 状态码到比例（0~1）的映射，比例之和不能超过1
+     */
+    private Map<Status.Code, Double> errors = new LinkedHashMap<>();
+
+    private double stallProbability;
+
+    /**
+     * 停顿前正常传递的消息数，0表示第一个消息之前就停顿
+     */
+    private int stallAfterMessages = 10;
+
+    private long stallMillis;
+
+    public LatencyDistribution getLatency() {
+        return latency;
+    }
+
+    public void setLatency(LatencyDistribution latency) {
+        this.latency = latency;
+    }
+
+    public double getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    public void setLatencyMillis(double latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public double getLatencyStddevMillis() {
+        return latencyStddevMillis;
+    }
+
+    public void setLatencyStddevMillis(double latencyStddevMillis) {
+        this.latencyStddevMillis = latencyStddevMillis;
+    }
+
+    public double getTailProbability() {
+        return tailProbability;
+    }
+
+    public void setTailProbability(double tailProbability) {
+        this.tailProbability = tailProbability;
+    }
+
+    public double getTailMillis() {
+        return tailMillis;
+    }
+
+    public void setTailMillis(double tailMillis) {
+        this.tailMillis = tailMillis;
+    }
+
+    public double getTailShape() {
+        return tailShape;
+    }
+
+    public void setTailShape(double tailShape) {
+        this.tailShape = tailShape;
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    public void setMaxLatencyMillis(double maxLatencyMillis) {
+        this.maxLatencyMillis = maxLatencyMillis;
+    }
+
+    public Map<Status.Code, Double> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(Map<Status.Code, Double> errors) {
+        this.errors = errors != null ? errors : new LinkedHashMap<>();
+    }
+
+    public double getStallProbability() {
+        return stallProbability;
+    }
+
+    public void setStallProbability(double stallProbability) {
+        this.stallProbability = stallProbability;
+    }
+
+    public int getStallAfterMessages() {
+        return stallAfterMessages;
+    }
+
+    public void setStallAfterMessages(int stallAfterMessages) {
+        this.stallAfterMessages = stallAfterMessages;
+    }
+
+    public long getStallMillis() {
+        return stallMillis;
+    }
+
+    public void setStallMillis(long stallMillis) {
+        this.stallMillis = stallMillis;
+    }
+
+    /**
+     * 检查参数范围
+     *
+     * @throws IllegalArgumentException 参数不合法
+     */
+    public void validate() {
+        requireNonNegative("latencyMillis", latencyMillis);
+        requireNonNegative("latencyStddevMillis", latencyStddevMillis);
+        requireNonNegative("tailMillis", tailMillis);
+        requireNonNegative("maxLatencyMillis", maxLatencyMillis);
+        requireNonNegative("stallAfterMessages", stallAfterMessages);
+        requireNonNegative("stallMillis", stallMillis);
+        requireProbability("tailProbability", tailProbability);
+        requireProbability("stallProbability", stallProbability);
+        if (latency == LatencyDistribution.LONG_TAIL && tailShape <= 0) {
+            throw new IllegalArgumentException("tailShape必须大于0");
+        }
+        double total = 0;
+        for (Map.Entry<Status.Code, Double> error : errors.entrySet()) {
+            if (error.getKey() == Status.Code.OK) {
+                throw new IllegalArgumentException("不能注入OK状态");
+            }
+            requireProbability("errors." + error.getKey(), error.getValue());
+            total += error.getValue();
+        }
+        if (total > 1 + 1e-9) {
+            throw new IllegalArgumentException("错误比例之和不能超过1: " + total);
+        }
+    }
+
+    /**
+     * @return 独立的副本，运行时修改原规则不影响已注册的副本
+     */
+    public FaultRule copy() {
+        FaultRule copy = new FaultRule();
+        copy.latency = latency;
+        copy.latencyMillis = latencyMillis;
+        copy.latencyStddevMillis = latencyStddevMillis;
+        copy.tailProbability = tailProbability;
+        copy.tailMillis = tailMillis;
+        copy.tailShape = tailShape;
+        copy.maxLatencyMillis = maxLatencyMillis;
+        copy.errors = new LinkedHashMap<>(errors);
+        copy.stallProbability = stallProbability;
+        copy.stallAfterMessages = stallAfterMessages;
+        copy.stallMillis = stallMillis;
+        return copy;
+    }
+
+    /**
+     * 转换为便于序列化的Map，只包含生效的部分
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("latency", latency.name());
+        if (latency != LatencyDistribution.NONE) {
+            map.put("latencyMillis", latencyMillis);
+            if (latency != LatencyDistribution.FIXED) {
+                map.put("latencyStddevMillis", latencyStddevMillis);
+            }
+            if (latency == LatencyDistribution.LONG_TAIL) {
+                map.put("tailProbability", tailProbability);
+                map.put("tailMillis", tailMillis);
+                map.put("tailShape", tailShape);
+            }
+            map.put("maxLatencyMillis", maxLatencyMillis);
+        }
+        if (!errors.isEmpty()) {
+            Map<String, Object> errorRates = new LinkedHashMap<>();
+            errors.forEach((code, rate) -> errorRates.put(code.name(), rate));
+            map.put("errors", errorRates);
+        }
+        if (stallProbability > 0) {
+            map.put("stallProbability", stallProbability);
+            map.put("stallAfterMessages", stallAfterMessages);
+            map.put("stallMillis", stallMillis);
+        }
+        return map;
+    }
+
+    private static void requireNonNegative(String name, double value) {
+        if (!(value >= 0)) {
+            throw new IllegalArgumentException(name + "不能为负数: " + value);
+        }
+    }
+
+    private static void requireProbability(String name, Double value) {
+        if (value == null || !(value >= 0 && value <= 1)) {
+            throw new IllegalArgumentException(name + "必须在0到1之间: " + value);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.grpc.common.fault;
+
+import io.grpc.Status;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 故障场景的文本格式
+ *
+ * 同一段文本可以写在配置文件里、通过管理接口提交，也可以作为基准测试的参数，
+ * 配合种子保证不同的测试运行注入完全相同的故障。格式：
+ * <pre>
+ * 方法:键=值,键=值;方法:键=值
+ * </pre>
+ * 规则之间用分号或换行分隔，#开头的行是注释。方法的写法见FaultInjector，可用的键：
+ * <ul>
+ * <li>latency：none、fixed、normal或long-tail</li>
+ * <li>latency-millis、latency-stddev-millis：固定延迟或正态分布的均值、标准差</li>
+ * <li>tail-probability、tail-millis、tail-shape、max-latency-millis：长尾部分</li>
+ * <li>error.状态码：该状态码的比例，如error.UNAVAILABLE=0.01</li>
+ * <li>stall-probability、stall-after-messages、stall-millis：流停顿</li>
+ * </ul>
+ * 例如：GetUser:latency=long-tail,latency-millis=2,tail-probability=0.01,tail-millis=200;*:error.UNAVAILABLE=0.001
+ */
+public final class FaultScenario {
+
+    private FaultScenario() {
+    }
+
+    /**
+     * 解析场景，以@开头时从文件读取
+     *
+     * @throws IllegalArgumentException 格式不正确或规则参数不合法
+     */
+    public static Map<String, FaultRule> load(String spec) {
+        if (spec != null && spec.startsWith("@")) {
+            try {
+                spec = Files.readString(Paths.get(spec.substring(1)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("读取故障场景失败: " + spec.substring(1), e);
+            }
+        }
+        return parse(spec);
+    }
+
+    /**
+     * 解析场景文本
+     *
+     * @throws IllegalArgumentException 格式不正确或规则参数不合法
+     */
+    public static Map<String, FaultRule> parse(String spec) {
+        Map<String, FaultRule> rules = new LinkedHashMap<>();
+        if (spec == null) {
+            return rules;
+        }
+        for (String line : spec.split("\\R")) {
+            if (line.trim().startsWith("#")) {
+                continue;
+            }
+            for (String ruleSpec : line.split(";")) {
+                if (ruleSpec.isBlank()) {
+                    continue;
+                }
+                int colon = ruleSpec.lastIndexOf(':');
+                if (colon <= 0) {
+                    throw new IllegalArgumentException("规则缺少方法名: " + ruleSpec.trim());
+                }
+                FaultRule rule = new FaultRule();
+                for (String setting : ruleSpec.substring(colon + 1).split(",")) {
+                    if (!setting.isBlank()) {
+                        apply(rule, setting.trim());
+                    }
+                }
+                rule.validate();
+                rules.put(ruleSpec.substring(0, colon).trim(), rule);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * 把规则格式化为场景文本，parse(format(rules))得到相同的规则
+     */
+    public static String format(Map<String, FaultRule> rules) {
+        StringBuilder builder = new StringBuilder();
+        rules.forEach((method, rule) -> {
+            if (builder.length() > 0) {
+                builder.append(';');
+            }
+            builder.append(method).append(':');
+            int length = builder.length();
+            Map<String, Object> settings = rule.toMap();
+            settings.forEach((key, value) -> {
+                if (key.equals("errors")) {
+                    ((Map<?, ?>) value).forEach((code, rate) ->
+                            builder.append("error.").append(code).append('=').append(rate).append(','));
+                } else if (!(key.equals("latency") && value.equals(FaultRule.LatencyDistribution.NONE.name()))) {
+                    builder.append(kebabCase(key)).append('=')
+                            .append(key.equals("latency") ? kebabCase(value.toString()) : value).append(',');
+                }
+            });
+            if (builder.length() > length) {
+                builder.setLength(builder.length() - 1);
+            } else {
+                builder.append("latency=none");
+            }
+        });
+        return builder.toString();
+    }
+
+    private static void apply(FaultRule rule, String setting) {
+        int equals = setting.indexOf('=');
+        if (equals <= 0) {
+            throw new IllegalArgumentException("设置项格式应为键=值: " + setting);
+        }
+        String key = setting.substring(0, equals).trim().toLowerCase(Locale.ROOT);
+        String value = setting.substring(equals + 1).trim();
+        if (key.startsWith("error.")) {
+            rule.getErrors().put(enumValue(Status.Code.class, key.substring("error.".length()), setting),
+                    number(value, setting));
+            return;
+        }
+        switch (key) {
+            case "latency" -> rule.setLatency(enumValue(FaultRule.LatencyDistribution.class, value, setting));
+            case "latency-millis" -> rule.setLatencyMillis(number(value, setting));
+            case "latency-stddev-millis" -> rule.setLatencyStddevMillis(number(value, setting));
+            case "tail-probability" -> rule.setTailProbability(number(value, setting));
+            case "tail-millis" -> rule.setTailMillis(number(value, setting));
+            case "tail-shape" -> rule.setTailShape(number(value, setting));
+            case "max-latency-millis" -> rule.setMaxLatencyMillis(number(value, setting));
+            case "stall-probability" -> rule.setStallProbability(number(value, setting));
+            case "stall-after-messages" -> rule.setStallAfterMessages((int) number(value, setting));
+            case "stall-millis" -> rule.setStallMillis((long) number(value, setting));
+            default -> throw new IllegalArgumentException("未知的设置项: " + key);
+        }
+    }
+
+    private static double number(String value, String setting) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("设置项的值不是数字: " + setting, e);
+        }
+    }
+
+    private static <E extends Enum<E>> E enumValue(Class<E> type, String value, String setting) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("设置项的值不正确: " + setting, e);
+        }
+    }
+
+    /**
+     * latencyStddevMillis -> latency-stddev-millis，LONG_TAIL -> long-tail
+     */
+    private static String kebabCase(String name) {
+        if (name.equals(name.toUpperCase(Locale.ROOT))) {
+            return name.toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+        StringBuilder builder = new StringBuilder();
+        for (char c : name.toCharArray()) {
+            if (Character.isUpperCase(c)) {
+                builder.append('-').append(Character.toLowerCase(c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.grpc.common.fault;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 可以暂停的串行动作队列，用来推迟对调用的操作
+ *
+ * 没有暂停时动作在调用者线程直接执行；暂停期间按顺序排队，全部暂停到期后在定时线程中依次执行，
+ * 排队的动作执行完之前新的动作继续排队，保证对同一个调用的操作不会并发、也不会乱序。
+ * 可以叠加多次暂停（如先延迟响应，再在流中停顿），最后一次到期后才恢复
+ */
+public final class HeldActions {
+
+    private static final Logger logger = Logger.getLogger(HeldActions.class.getName());
+
+    private final ScheduledExecutorService scheduler;
+    private final Runnable onDrained;
+
+    /**
+     * 排队的动作，为null表示直接执行
+     */
+    private List<Runnable> pending;
+    private int holds;
+    private boolean draining;
+    private boolean released;
+
+    public HeldActions(ScheduledExecutorService scheduler) {
+        this(scheduler, null);
+    }
+
+    /**
+     * @param onDrained 所有暂停到期、排队的动作执行完之后调用，在执行排队动作的线程中调用
+     */
+    public HeldActions(ScheduledExecutorService scheduler, Runnable onDrained) {
+        this.scheduler = scheduler;
+        this.onDrained = onDrained;
+    }
+
+    /**
+     * 暂停一段时间，期间提交的动作排队
+     */
+    public void hold(long nanos) {
+        synchronized (this) {
+            if (released) {
+                return;
+            }
+            holds++;
+            if (pending == null) {
+                pending = new ArrayList<>();
+            }
+        }
+        scheduler.schedule(this::expire, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 执行或排队一个动作
+     */
+    public void run(Runnable action) {
+        synchronized (this) {
+            if (pending != null) {
+                pending.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * @return 是否有动作在排队或等待暂停到期
+     */
+    public synchronized boolean isHeld() {
+        return pending != null;
+    }
+
+    /**
+     * 立即结束所有暂停并执行排队的动作（如调用被取消），之后的暂停不再生效
+     */
+    public void releaseNow() {
+        synchronized (this) {
+            released = true;
+            holds = 0;
+            if (pending == null || draining) {
+                return;
+            }
+            draining = true;
+        }
+        drain();
+    }
+
+    private void expire() {
+        synchronized (this) {
+            if (holds > 0) {
+                holds--;
+            }
+            if (holds > 0 || pending == null || draining) {
+                return;
+            }
+            draining = true;
+        }
+        drain();
+    }
+
+    private void drain() {
+        while (true) {
+            List<Runnable> actions;
+            synchronized (this) {
+                if (holds > 0) {
+                    // 执行排队动作期间又开始了新的暂停，剩下的动作等新的暂停到期
+                    draining = false;
+                    return;
+                }
+                if (pending.isEmpty()) {
+                    pending = null;
+                    draining = false;
+                    break;
+                }
+                actions = pending;
+                pending = new ArrayList<>();
+            }
+            for (Runnable action : actions) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    logger.log(Level.WARNING, "执行推迟的调用操作失败", e);
+                }
+            }
+        }
+        if (onDrained != null) {
+            onDrained.run();
+        }
+    }
+}
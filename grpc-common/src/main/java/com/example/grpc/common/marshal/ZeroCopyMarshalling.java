@@ -0,0 +1,76 @@
+package com.example.grpc.common.marshal;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把方法描述符和服务定义中的protobuf编解码器替换为ZeroCopyMarshaller
+ */
+public final class ZeroCopyMarshalling {
+
+    private ZeroCopyMarshalling() {
+    }
+
+    /**
+     * 替换服务定义中所有方法的编解码器，处理器不变
+     *
+     * 服务描述符中的schema会被保留，反射服务不受影响
+     *
+     * @param definition 原服务定义（通常来自BindableService.bindService()）
+     * @return 使用ZeroCopyMarshaller的服务定义
+     */
+    public static ServerServiceDefinition wrap(ServerServiceDefinition definition) {
+        ServiceDescriptor original = definition.getServiceDescriptor();
+        ServiceDescriptor.Builder descriptor = ServiceDescriptor.newBuilder(original.getName())
+                .setSchemaDescriptor(original.getSchemaDescriptor());
+
+        List<ServerMethodDefinition<?, ?>> methods = new ArrayList<>();
+        for (ServerMethodDefinition<?, ?> method : definition.getMethods()) {
+            ServerMethodDefinition<?, ?> wrapped = wrap(method);
+            methods.add(wrapped);
+            descriptor.addMethod(wrapped.getMethodDescriptor());
+        }
+
+        ServerServiceDefinition.Builder builder = ServerServiceDefinition.builder(descriptor.build());
+        methods.forEach(builder::addMethod);
+        return builder.build();
+    }
+
+    /**
+     * 替换方法描述符的请求和响应编解码器，非protobuf编解码器保持不变
+     *
+     * @param method 原方法描述符
+     * @return 使用ZeroCopyMarshaller的方法描述符；无需替换时返回原对象
+     */
+    public static <ReqT, RespT> MethodDescriptor<ReqT, RespT> wrap(MethodDescriptor<ReqT, RespT> method) {
+        MethodDescriptor.Marshaller<ReqT> requestMarshaller = wrap(method.getRequestMarshaller());
+        MethodDescriptor.Marshaller<RespT> responseMarshaller = wrap(method.getResponseMarshaller());
+        if (requestMarshaller == method.getRequestMarshaller()
+                && responseMarshaller == method.getResponseMarshaller()) {
+            return method;
+        }
+        return method.toBuilder(requestMarshaller, responseMarshaller).build();
+    }
+
+    private static <ReqT, RespT> ServerMethodDefinition<ReqT, RespT> wrap(ServerMethodDefinition<ReqT, RespT> method) {
+        return ServerMethodDefinition.create(wrap(method.getMethodDescriptor()), method.getServerCallHandler());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> MethodDescriptor.Marshaller<T> wrap(MethodDescriptor.Marshaller<T> marshaller) {
+        if (marshaller instanceof ZeroCopyMarshaller) {
+            return marshaller;
+        }
+        if (marshaller instanceof MethodDescriptor.PrototypeMarshaller<T> prototypeMarshaller
+                && prototypeMarshaller.getMessagePrototype() instanceof MessageLite prototype) {
+            return new ZeroCopyMarshaller(prototype);
+        }
+        return marshaller;
+    }
+}
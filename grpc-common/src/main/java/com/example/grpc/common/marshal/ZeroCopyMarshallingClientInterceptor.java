@@ -0,0 +1,43 @@
+package com.example.grpc.common.marshal;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.MethodDescriptor;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 客户端拦截器：指定服务的调用改用ZeroCopyMarshaller编解码
+ *
+ * 生成的stub使用固定的方法描述符，这里在创建调用时替换为编解码器不同、其他完全相同的描述符
+ */
+public class ZeroCopyMarshallingClientInterceptor implements ClientInterceptor {
+
+    private final Set<String> serviceNames;
+    private final ConcurrentMap<MethodDescriptor<?, ?>, MethodDescriptor<?, ?>> methods = new ConcurrentHashMap<>();
+
+    /**
+     * @param serviceNames 需要替换编解码器的服务全名
+     */
+    public ZeroCopyMarshallingClientInterceptor(Set<String> serviceNames) {
+        this.serviceNames = Set.copyOf(serviceNames);
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                               CallOptions callOptions, Channel next) {
+        if (!serviceNames.contains(method.getServiceName())) {
+            return next.newCall(method, callOptions);
+        }
+        return next.newCall(wrapped(method), callOptions);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <ReqT, RespT> MethodDescriptor<ReqT, RespT> wrapped(MethodDescriptor<ReqT, RespT> method) {
+        return (MethodDescriptor<ReqT, RespT>) methods.computeIfAbsent(method, m -> ZeroCopyMarshalling.wrap(m));
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.grpc.common.trace;
+
+import io.grpc.Context;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次调用的追踪：开始时间、总耗时和各阶段的耗时
+ *
+ * 阶段保存在定长数组中，超过MAX_STAGES个阶段后不再记录，记录一个阶段只需要一次System.nanoTime和一次数组写入。
+ * 当前调用的追踪放在gRPC的Context中，调用处理过程中的任意代码都可以通过Trace.stage记录阶段
+ */
+public final class Trace {
+
+    /**
+     * 每次调用最多记录的阶段数
+     */
+    public static final int MAX_STAGES = 32;
+
+    static final Context.Key<Trace> KEY = Context.key("trace");
+
+    private final String traceId;
+    private final String name;
+    private final boolean sampled;
+    private final long startEpochMillis;
+    private final long startNanos;
+
+    private final String[] stageNames = new String[MAX_STAGES];
+    private final long[] stageOffsets = new long[MAX_STAGES];
+    private final long[] stageDurations = new long[MAX_STAGES];
+    private int stageCount;
+
+    private volatile long durationNanos = -1;
+    private volatile String status = "";
+
+    Trace(String traceId, String name, boolean sampled) {
+        this.traceId = traceId;
+        this.name = name;
+        this.sampled = sampled;
+        this.startEpochMillis = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return 当前gRPC调用的追踪，不在被追踪的调用中时为null
+     */
+    public static Trace current() {
+        return KEY.get();
+    }
+
+    /**
+     * 为当前调用记录一个阶段，阶段从startNanos开始到现在结束
+     *
+     * 用法：long start = System.nanoTime(); ...; Trace.stage("save", start);
+     *
+     * @param stage      阶段名称
+     * @param startNanos 阶段开始时的System.nanoTime()
+     */
+    public static void stage(String stage, long startNanos) {
+        Trace trace = KEY.get();
+        if (trace != null) {
+            trace.record(stage, startNanos, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * @return 在Context中携带这个追踪的新Context
+     */
+    public Context attach(Context context) {
+        return context.withValue(KEY, this);
+    }
+
+    /**
+     * 记录一个阶段
+     */
+    public synchronized void record(String stage, long stageStartNanos, long stageDurationNanos) {
+        if (stageCount == MAX_STAGES) {
+            return;
+        }
+        stageNames[stageCount] = stage;
+        stageOffsets[stageCount] = stageStartNanos - startNanos;
+        stageDurations[stageCount] = stageDurationNanos;
+        stageCount++;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * @return 总耗时，尚未结束时为-1
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    void finish(long durationNanos, String status) {
+        this.status = status;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * 转换为便于序列化为JSON的Map，时间单位为毫秒
+     */
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("traceId", traceId);
+        map.put("name", name);
+        map.put("startTime", startEpochMillis);
+        map.put("durationMillis", toMillis(durationNanos));
+        map.put("status", status);
+        map.put("sampled", sampled);
+        List<Map<String, Object>> stages = new ArrayList<>(stageCount);
+        for (int i = 0; i < stageCount; i++) {
+            Map<String, Object> stage = new LinkedHashMap<>();
+            stage.put("name", stageNames[i]);
+            stage.put("offsetMillis", toMillis(stageOffsets[i]));
+            stage.put("durationMillis", toMillis(stageDurations[i]));
+            stages.add(stage);
+        }
+        map.put("stages", stages);
+        return map;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.grpc.common.trace;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 链路追踪接口
+ *
+ * 暴露本端最近保留的追踪（慢调用和被采样的调用）及各阶段耗时，按追踪ID可以和另一端的追踪对应起来。
+ * 不在应用的组件扫描范围内，由服务端和客户端的启动类通过@Import注册
+ */
+@RestController
+public class TraceController {
+
+    private final ObjectProvider<TraceRecorder> traceRecorder;
+
+    public TraceController(ObjectProvider<TraceRecorder> traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    /**
+     * 最近的追踪 - GET /admin/traces?limit=50&minMillis=0
+     *
+     * @param limit 最多返回的追踪数
+     * @param minMillis 只返回总耗时不低于这个值的追踪
+     * @return 采样配置、计数和最近的追踪（最新的在前）
+     */
+    @GetMapping("/admin/traces")
+    public Map<String, Object> traces(@RequestParam(defaultValue = "50") int limit,
+                                      @RequestParam(defaultValue = "0") long minMillis) {
+        Map<String, Object> result = new HashMap<>();
+        TraceRecorder recorder = traceRecorder.getIfAvailable();
+        result.put("enabled", recorder != null);
+        if (recorder == null) {
+            return result;
+        }
+
+        result.put("sampleRate", recorder.getSampleRate());
+        result.put("slowThresholdMillis", TimeUnit.NANOSECONDS.toMillis(recorder.getSlowThresholdNanos()));
+        result.put("started", recorder.getStarted());
+        result.put("kept", recorder.getKept());
+        result.put("slow", recorder.getSlow());
+
+        List<Map<String, Object>> traces = new ArrayList<>();
+        for (Trace trace : recorder.recent(limit, TimeUnit.MILLISECONDS.toNanos(minMillis))) {
+            traces.add(trace.toMap());
+        }
+        result.put("traces", traces);
+        return result;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.grpc.common.trace;
+
+import io.grpc.Metadata;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 链路追踪的请求头和响应尾部
+ *
+ * 客户端在请求头中带上追踪ID和采样标记，服务端用同一个追踪ID记录自己的各阶段耗时，
+ * 并在响应尾部返回服务端处理的总耗时，客户端据此把调用耗时拆分为服务端处理和网络（含排队）两部分
+ */
+public final class TraceHeaders {
+
+    /**
+     * 追踪ID，16位十六进制
+     */
+    public static final Metadata.Key<String> TRACE_ID =
+            Metadata.Key.of("x-trace-id", Metadata.ASCII_STRING_MARSHALLER);
+
+    /**
+     * 客户端是否采样了这次调用，为1时服务端也保留这次调用的追踪
+     */
+    public static final Metadata.Key<String> SAMPLED =
+            Metadata.Key.of("x-trace-sampled", Metadata.ASCII_STRING_MARSHALLER);
+
+    /**
+     * 服务端处理调用的总耗时（微秒），在响应尾部返回
+     */
+    public static final Metadata.Key<String> SERVER_TIME_MICROS =
+            Metadata.Key.of("x-server-time-micros", Metadata.ASCII_STRING_MARSHALLER);
+
+    private TraceHeaders() {
+    }
+
+    /**
+     * 生成新的追踪ID
+     */
+    public static String newTraceId() {
+        return String.format("%016x", ThreadLocalRandom.current().nextLong());
+    }
+}
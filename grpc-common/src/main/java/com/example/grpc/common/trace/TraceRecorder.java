@@ -0,0 +1,108 @@
+package com.example.grpc.common.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 追踪记录器
+ *
+ * 每次调用都会创建追踪并记录阶段，调用结束时决定是否保留：
+ * 被采样（按sampleRate随机，或上游已经采样）或总耗时不低于慢调用阈值的追踪写入定长的环形缓冲，
+ * 新的追踪覆盖最旧的，写入只需要一次原子自增，不加锁
+ */
+public class TraceRecorder {
+
+    private final AtomicReferenceArray<Trace> ring;
+    private final AtomicLong next = new AtomicLong();
+    private final double sampleRate;
+    private final long slowThresholdNanos;
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder kept = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+
+    /**
+     * @param capacity           环形缓冲保留的追踪数
+     * @param sampleRate         随机采样比例（0~1）
+     * @param slowThresholdNanos 总耗时不低于这个值的追踪总是保留
+     */
+    public TraceRecorder(int capacity, double sampleRate, long slowThresholdNanos) {
+        this.ring = new AtomicReferenceArray<>(Math.max(1, capacity));
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = slowThresholdNanos;
+    }
+
+    /**
+     * 开始一次追踪
+     *
+     * @param traceId        上游传入的追踪ID，为空时生成新的
+     * @param name           调用名称
+     * @param upstreamSampled 上游是否已经采样
+     */
+    public Trace start(String traceId, String name, boolean upstreamSampled) {
+        started.increment();
+        boolean sampled = upstreamSampled
+                || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+        return new Trace(traceId == null || traceId.isEmpty() ? TraceHeaders.newTraceId() : traceId,
+                name, sampled);
+    }
+
+    /**
+     * 结束一次追踪，按采样和慢调用阈值决定是否保留
+     *
+     * @param status 调用结果，如gRPC状态码
+     */
+    public void finish(Trace trace, String status) {
+        long duration = System.nanoTime() - trace.getStartNanos();
+        trace.finish(duration, status);
+        boolean isSlow = duration >= slowThresholdNanos;
+        if (isSlow) {
+            slow.increment();
+        }
+        if (isSlow || trace.isSampled()) {
+            kept.increment();
+            ring.set((int) (next.getAndIncrement() % ring.length()), trace);
+        }
+    }
+
+    /**
+     * @param limit         最多返回的追踪数
+     * @param minDurationNanos 只返回总耗时不低于这个值的追踪
+     * @return 最近保留的追踪，最新的在前
+     */
+    public List<Trace> recent(int limit, long minDurationNanos) {
+        List<Trace> result = new ArrayList<>(Math.min(limit, ring.length()));
+        long newest = next.get() - 1;
+        for (long i = newest; i >= 0 && i > newest - ring.length() && result.size() < limit; i--) {
+            Trace trace = ring.get((int) (i % ring.length()));
+            if (trace != null && trace.getDurationNanos() >= minDurationNanos) {
+                result.add(trace);
+            }
+        }
+        return result;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public long getSlowThresholdNanos() {
+        return slowThresholdNanos;
+    }
+
+    public long getStarted() {
+        return started.sum();
+    }
+
+    public long getKept() {
+        return kept.sum();
+    }
+
+    public long getSlow() {
+        return slow.sum();
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.grpc.common.trace;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端拦截器：链路追踪
+ *
+ * 为每次调用创建客户端追踪，在请求头中带上追踪ID和采样标记；调用结束时根据响应尾部的服务端耗时
+ * 记录server和network两个阶段（network包括序列化、传输和服务端接收前的排队）
+ */
+public class TracingClientInterceptor implements ClientInterceptor {
+
+    private final TraceRecorder recorder;
+
+    public TracingClientInterceptor(TraceRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                               CallOptions callOptions, Channel next) {
+        return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, callOptions)) {
+            @Override
+            public void start(Listener<RespT> responseListener, Metadata headers) {
+                // 在已被追踪的调用中发起的调用沿用上游的追踪ID
+                Trace parent = Trace.current();
+                Trace trace = recorder.start(parent == null ? null : parent.getTraceId(),
+                        method.getFullMethodName(), parent != null && parent.isSampled());
+                headers.put(TraceHeaders.TRACE_ID, trace.getTraceId());
+                if (trace.isSampled()) {
+                    headers.put(TraceHeaders.SAMPLED, "1");
+                }
+
+                super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                    @Override
+                    public void onClose(Status status, Metadata trailers) {
+                        long total = System.nanoTime() - trace.getStartNanos();
+                        long serverMicros = parseMicros(trailers.get(TraceHeaders.SERVER_TIME_MICROS));
+                        if (serverMicros >= 0) {
+                            long serverNanos = Math.min(total, TimeUnit.MICROSECONDS.toNanos(serverMicros));
+                            trace.record("server", trace.getStartNanos(), serverNanos);
+                            trace.record("network", trace.getStartNanos(), total - serverNanos);
+                        }
+                        recorder.finish(trace, status.getCode().name());
+                        super.onClose(status, trailers);
+                    }
+                }, headers);
+            }
+        };
+    }
+
+    private static long parseMicros(String value) {
+        if (value == null || value.isEmpty()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
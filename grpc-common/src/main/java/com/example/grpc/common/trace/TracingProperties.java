@@ -0,0 +1,70 @@
+package com.example.grpc.common.trace;
+
+import java.time.Duration;
+
+/**
+ * 链路追踪配置
+ *
+ * 服务端和客户端共用，由各自的应用绑定到自己的配置前缀（user-service.tracing、user-client.tracing）
+ */
+public class TracingProperties {
+
+    /**
+     * 是否记录每次调用的各阶段耗时
+     */
+    private boolean enabled = true;
+
+    /**
+     * 随机采样比例（0~1）；客户端被采样的调用会通知服务端同样保留，服务端总是保留客户端已采样的调用
+     */
+    private double sampleRate = 0.01;
+
+    /**
+     * 总耗时不低于这个值的调用总是保留
+     */
+    private Duration slowThreshold = Duration.ofMillis(100);
+
+    /**
+     * 环形缓冲保留的追踪数
+     */
+    private int capacity = 1024;
+
+    /**
+     * 按配置创建追踪记录器
+     */
+    public TraceRecorder createRecorder() {
+        return new TraceRecorder(capacity, sampleRate, slowThreshold.toNanos());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public Duration getSlowThreshold() {
+        return slowThreshold;
+    }
+
+    public void setSlowThreshold(Duration slowThreshold) {
+        this.slowThreshold = slowThreshold;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.grpc.common.consistency;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * ConsistencyTokens测试
+ */
+class ConsistencyTokensTest {
+
+    @Test
+    void parseValidToken() {
+        assertEquals(42, ConsistencyTokens.parse("42"));
+        assertEquals(Long.MAX_VALUE, ConsistencyTokens.parse(Long.toString(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void missingOrInvalidTokenIsZero() {
+        assertEquals(0, ConsistencyTokens.parse(null));
+        assertEquals(0, ConsistencyTokens.parse(""));
+        assertEquals(0, ConsistencyTokens.parse("abc"));
+        assertEquals(0, ConsistencyTokens.parse("-5"));
+        assertEquals(0, ConsistencyTokens.parse("99999999999999999999"));
+    }
+}
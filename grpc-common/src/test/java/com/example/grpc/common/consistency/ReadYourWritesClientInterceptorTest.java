@@ -0,0 +1,123 @@
+package com.example.grpc.common.consistency;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptors;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * ReadYourWritesClientInterceptor测试，下游是只记录请求头、由测试结束调用的假通道
+ */
+class ReadYourWritesClientInterceptorTest {
+
+    private static final MethodDescriptor<Void, Void> METHOD = MethodDescriptor.<Void, Void>newBuilder()
+            .setType(MethodDescriptor.MethodType.UNARY)
+            .setFullMethodName("test.Service/Call")
+            .setRequestMarshaller(VoidMarshaller.INSTANCE)
+            .setResponseMarshaller(VoidMarshaller.INSTANCE)
+            .build();
+
+    private final ReadYourWritesClientInterceptor interceptor = new ReadYourWritesClientInterceptor();
+    private final RecordingChannel channel = new RecordingChannel();
+    private final Channel intercepted = ClientInterceptors.intercept(channel, interceptor);
+
+    /**
+     * 发起一次调用，服务端在尾部返回指定的令牌
+     *
+     * @return 请求头中携带的令牌
+     */
+    private String call(String returnedToken) {
+        ClientCall<Void, Void> call = intercepted.newCall(METHOD, CallOptions.DEFAULT);
+        call.start(new ClientCall.Listener<>() {
+        }, new Metadata());
+        String sent = channel.headers.get(ConsistencyTokens.METADATA_KEY);
+
+        Metadata trailers = new Metadata();
+        if (returnedToken != null) {
+            trailers.put(ConsistencyTokens.METADATA_KEY, returnedToken);
+        }
+        channel.listener.onClose(Status.OK, trailers);
+        return sent;
+    }
+
+    @Test
+    void noTokenBeforeFirstWrite() {
+        assertNull(call(null));
+        assertEquals(0, interceptor.getHighWatermark());
+        assertFalse(channel.headers.containsKey(ConsistencyTokens.METADATA_KEY));
+    }
+
+    @Test
+    void sendsHighestTokenSeen() {
+        call("5");
+        assertEquals("5", call("3"));
+        assertEquals("5", call(null));
+        assertEquals("5", call("9"));
+        assertEquals("9", call("invalid"));
+        assertEquals(9, interceptor.getHighWatermark());
+    }
+
+    private static class RecordingChannel extends Channel {
+
+        private Metadata headers;
+        private ClientCall.Listener<?> listener;
+
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method,
+                                                             CallOptions callOptions) {
+            return new ClientCall<>() {
+                @Override
+                public void start(Listener<RespT> responseListener, Metadata metadata) {
+                    listener = responseListener;
+                    headers = metadata;
+                }
+
+                @Override
+                public void request(int numMessages) {
+                }
+
+                @Override
+                public void cancel(String message, Throwable cause) {
+                }
+
+                @Override
+                public void halfClose() {
+                }
+
+                @Override
+                public void sendMessage(ReqT message) {
+                }
+            };
+        }
+
+        @Override
+        public String authority() {
+            return "test";
+        }
+    }
+
+    private enum VoidMarshaller implements MethodDescriptor.Marshaller<Void> {
+        INSTANCE;
+
+        @Override
+        public InputStream stream(Void value) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+
+        @Override
+        public Void parse(InputStream stream) {
+            return null;
+        }
+    }
+}
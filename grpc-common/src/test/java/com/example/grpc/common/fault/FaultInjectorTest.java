@@ -0,0 +1,181 @@
+package com.example.grpc.common.fault;
+
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * FaultInjector测试
+ */
+class FaultInjectorTest {
+
+    private static final MethodDescriptor<Void, Void> GET_USER = method("com.example.grpc.proto.UserService/GetUser");
+    private static final MethodDescriptor<Void, Void> OTHER_GET_USER = method("com.example.Other/GetUser");
+    private static final MethodDescriptor<Void, Void> LIST_USERS = method("com.example.grpc.proto.UserService/ListUsers");
+
+    private static final String SCENARIO = "GetUser:latency=long-tail,latency-millis=2,latency-stddev-millis=1,"
+            + "tail-probability=0.05,tail-millis=200,error.UNAVAILABLE=0.05,"
+            + "stall-probability=0.1,stall-after-messages=3,stall-millis=50";
+
+    private static MethodDescriptor<Void, Void> method(String fullMethodName) {
+        MethodDescriptor.Marshaller<Void> marshaller = new MethodDescriptor.Marshaller<>() {
+            @Override
+            public InputStream stream(Void value) {
+                return new ByteArrayInputStream(new byte[0]);
+            }
+
+            @Override
+            public Void parse(InputStream stream) {
+                return null;
+            }
+        };
+        return MethodDescriptor.<Void, Void>newBuilder()
+                .setType(MethodDescriptor.MethodType.UNARY)
+                .setFullMethodName(fullMethodName)
+                .setRequestMarshaller(marshaller)
+                .setResponseMarshaller(marshaller)
+                .build();
+    }
+
+    private static FaultRule fixed(double millis) {
+        FaultRule rule = new FaultRule();
+        rule.setLatency(FaultRule.LatencyDistribution.FIXED);
+        rule.setLatencyMillis(millis);
+        return rule;
+    }
+
+    private static List<String> sample(FaultInjector injector, int calls) {
+        List<String> decisions = new ArrayList<>(calls);
+        for (int i = 0; i < calls; i++) {
+            FaultDecision decision = injector.decide(GET_USER);
+            Status error = decision.getError();
+            decisions.add(decision.getDelayNanos() + "/" + (error == null ? "-" : error.getCode())
+                    + "/" + decision.getStallAfterMessages() + "/" + decision.getStallNanos());
+        }
+        return decisions;
+    }
+
+    @Test
+    void sameSeedGivesSameFaults() {
+        List<String> first = sample(new FaultInjector(42, FaultScenario.parse(SCENARIO)), 2000);
+        List<String> second = sample(new FaultInjector(42, FaultScenario.parse(SCENARIO)), 2000);
+
+        assertEquals(first, second);
+    }
+
+    @Test
+    void differentSeedGivesDifferentFaults() {
+        List<String> first = sample(new FaultInjector(42, FaultScenario.parse(SCENARIO)), 2000);
+        List<String> second = sample(new FaultInjector(43, FaultScenario.parse(SCENARIO)), 2000);
+
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void replaceRestartsSequence() {
+        FaultInjector injector = new FaultInjector(7, FaultScenario.parse(SCENARIO));
+        List<String> first = sample(injector, 500);
+
+        injector.replace(FaultScenario.parse(SCENARIO), 7);
+        assertEquals(first, sample(injector, 500));
+    }
+
+    @Test
+    void methodLookupPrecedence() {
+        FaultInjector injector = new FaultInjector(1, Map.of(
+                "com.example.grpc.proto.UserService/GetUser", fixed(1),
+                "GetUser", fixed(2),
+                FaultInjector.ANY_METHOD, fixed(3)));
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1), injector.decide(GET_USER).getDelayNanos());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(2), injector.decide(OTHER_GET_USER).getDelayNanos());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(3), injector.decide(LIST_USERS).getDelayNanos());
+
+        assertTrue(injector.removeRule(FaultInjector.ANY_METHOD));
+        assertFalse(injector.removeRule(FaultInjector.ANY_METHOD));
+        assertNull(injector.decide(LIST_USERS));
+    }
+
+    @Test
+    void noRulesMeansNoDecision() {
+        assertNull(new FaultInjector(1, Map.of()).decide(GET_USER));
+    }
+
+    @Test
+    void errorRateMatchesRule() {
+        FaultInjector injector = new FaultInjector(5, FaultScenario.parse("*:error.UNAVAILABLE=0.2,error.INTERNAL=0.1"));
+        int unavailable = 0;
+        int internal = 0;
+        int calls = 20_000;
+        for (int i = 0; i < calls; i++) {
+            Status error = injector.decide(GET_USER).getError();
+            if (error != null && error.getCode() == Status.Code.UNAVAILABLE) {
+                unavailable++;
+            } else if (error != null && error.getCode() == Status.Code.INTERNAL) {
+                internal++;
+            }
+        }
+
+        assertEquals(0.2, unavailable / (double) calls, 0.02);
+        assertEquals(0.1, internal / (double) calls, 0.02);
+    }
+
+    @Test
+    void latencyIsCappedByMax() {
+        FaultInjector injector = new FaultInjector(5, FaultScenario.parse(
+                "*:latency=long-tail,tail-probability=1,tail-millis=100,tail-shape=0.5,max-latency-millis=150"));
+        for (int i = 0; i < 1000; i++) {
+            long delayNanos = injector.decide(GET_USER).getDelayNanos();
+            assertTrue(delayNanos >= TimeUnit.MILLISECONDS.toNanos(100));
+            assertTrue(delayNanos <= TimeUnit.MILLISECONDS.toNanos(150));
+        }
+    }
+
+    @Test
+    void registeredRuleIsACopy() {
+        FaultRule rule = fixed(5);
+        FaultInjector injector = new FaultInjector(1, Map.of());
+        injector.setRule("GetUser", rule);
+        rule.setLatencyMillis(500);
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5), injector.decide(GET_USER).getDelayNanos());
+    }
+
+    @Test
+    void invalidRuleIsRejected() {
+        FaultRule rule = new FaultRule();
+        rule.getErrors().put(Status.Code.OK, 0.1);
+        FaultInjector injector = new FaultInjector(1, Map.of());
+
+        assertThrows(IllegalArgumentException.class, () -> injector.setRule("GetUser", rule));
+        assertTrue(injector.getRules().isEmpty());
+    }
+
+    @Test
+    void statusCountsInjectedFaults() {
+        FaultInjector injector = new FaultInjector(1, FaultScenario.parse("GetUser:latency=fixed,latency-millis=1"));
+        injector.decide(GET_USER);
+        injector.decide(GET_USER);
+
+        Map<String, Object> status = injector.status();
+        assertEquals(2L, status.get("sequence"));
+        Map<?, ?> stats = (Map<?, ?>) ((Map<?, ?>) status.get("stats")).get(GET_USER.getFullMethodName());
+        assertEquals(2L, stats.get("calls"));
+        assertEquals(2L, stats.get("delayed"));
+        assertEquals(0L, stats.get("errors"));
+    }
+}
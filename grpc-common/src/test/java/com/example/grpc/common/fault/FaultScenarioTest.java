@@ -0,0 +1,106 @@
+package com.example.grpc.common.fault;
+
+import io.grpc.Status;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * FaultScenario测试
+ */
+class FaultScenarioTest {
+
+    @Test
+    void parseRules() {
+        Map<String, FaultRule> rules = FaultScenario.parse(
+                "GetUser:latency=long-tail,latency-millis=2,tail-probability=0.01,tail-millis=200;"
+                        + "*:error.UNAVAILABLE=0.001");
+
+        assertEquals(List.of("GetUser", "*"), List.copyOf(rules.keySet()));
+        FaultRule getUser = rules.get("GetUser");
+        assertEquals(FaultRule.LatencyDistribution.LONG_TAIL, getUser.getLatency());
+        assertEquals(2, getUser.getLatencyMillis(), 0);
+        assertEquals(0.01, getUser.getTailProbability(), 0);
+        assertEquals(200, getUser.getTailMillis(), 0);
+        assertEquals(0.001, rules.get("*").getErrors().get(Status.Code.UNAVAILABLE), 0);
+    }
+
+    @Test
+    void fullMethodNameKeepsServicePrefix() {
+        Map<String, FaultRule> rules = FaultScenario.parse("com.example.grpc.proto.UserService/GetUser:latency=fixed");
+
+        assertTrue(rules.containsKey("com.example.grpc.proto.UserService/GetUser"));
+    }
+
+    @Test
+    void commentsAndLineBreaks() {
+        Map<String, FaultRule> rules = FaultScenario.parse("""
+                # 只对查询注入延迟
+                GetUser: latency = fixed, latency-millis = 5
+
+                ListUsers:stall-probability=1,stall-after-messages=2,stall-millis=100
+                """);
+
+        assertEquals(2, rules.size());
+        assertEquals(5, rules.get("GetUser").getLatencyMillis(), 0);
+        assertEquals(2, rules.get("ListUsers").getStallAfterMessages());
+        assertEquals(100, rules.get("ListUsers").getStallMillis());
+    }
+
+    @Test
+    void formatThenParseGivesSameRules() {
+        String spec = "GetUser:latency=long-tail,latency-millis=2,latency-stddev-millis=0.5,"
+                + "tail-probability=0.01,tail-millis=200,tail-shape=2,max-latency-millis=1000;"
+                + "ListUsers:latency=normal,latency-millis=3,latency-stddev-millis=1,"
+                + "stall-probability=0.2,stall-after-messages=4,stall-millis=30;"
+                + "*:error.UNAVAILABLE=0.01,error.DEADLINE_EXCEEDED=0.02;"
+                + "DeleteUser:latency=none";
+        Map<String, FaultRule> rules = FaultScenario.parse(spec);
+        Map<String, FaultRule> reparsed = FaultScenario.parse(FaultScenario.format(rules));
+
+        assertEquals(List.copyOf(rules.keySet()), List.copyOf(reparsed.keySet()));
+        rules.forEach((method, rule) -> assertEquals(rule.toMap(), reparsed.get(method).toMap(), method));
+        assertEquals(FaultScenario.format(rules), FaultScenario.format(reparsed));
+    }
+
+    @Test
+    void emptyScenario() {
+        assertTrue(FaultScenario.parse(null).isEmpty());
+        assertTrue(FaultScenario.parse("").isEmpty());
+        assertTrue(FaultScenario.load("").isEmpty());
+    }
+
+    @Test
+    void loadFromFile() throws IOException {
+        Path file = Files.createTempFile("fault-scenario", ".txt");
+        try {
+            Files.writeString(file, "GetUser:latency=fixed,latency-millis=7\n");
+            Map<String, FaultRule> rules = FaultScenario.load("@" + file);
+            assertEquals(7, rules.get("GetUser").getLatencyMillis(), 0);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void invalidScenariosAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> FaultScenario.parse("latency=fixed"));
+        assertThrows(IllegalArgumentException.class, () -> FaultScenario.parse("GetUser:unknown=1"));
+        assertThrows(IllegalArgumentException.class, () -> FaultScenario.parse("GetUser:latency-millis=abc"));
+        assertThrows(IllegalArgumentException.class, () -> FaultScenario.parse("GetUser:latency=gamma"));
+        assertThrows(IllegalArgumentException.class, () -> FaultScenario.parse("GetUser:latency-millis"));
+        assertThrows(IllegalArgumentException.class, () -> FaultScenario.parse("GetUser:error.NOT_A_CODE=0.1"));
+        assertThrows(IllegalArgumentException.class, () -> FaultScenario.parse("GetUser:error.OK=0.1"));
+        assertThrows(IllegalArgumentException.class,
+                () -> FaultScenario.parse("GetUser:error.UNAVAILABLE=0.6,error.INTERNAL=0.6"));
+        assertThrows(IllegalArgumentException.class, () -> FaultScenario.parse("GetUser:tail-probability=2"));
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.grpc.common.fault;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * HeldActions测试，暂停到期由测试手动触发
+ */
+class HeldActionsTest {
+
+    private final ManualScheduler scheduler = new ManualScheduler();
+    private final List<String> log = new ArrayList<>();
+    private final AtomicInteger drained = new AtomicInteger();
+    private final HeldActions actions = new HeldActions(scheduler, drained::incrementAndGet);
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void runsInlineWhenNotHeld() {
+        actions.run(() -> log.add("a"));
+
+        assertEquals(List.of("a"), log);
+        assertFalse(actions.isHeld());
+        assertEquals(0, drained.get());
+    }
+
+    @Test
+    void queuedActionsRunInOrderAfterHold() {
+        actions.hold(1000);
+        actions.run(() -> log.add("a"));
+        actions.run(() -> log.add("b"));
+
+        assertTrue(actions.isHeld());
+        assertTrue(log.isEmpty());
+
+        scheduler.expireNext();
+        assertEquals(List.of("a", "b"), log);
+        assertFalse(actions.isHeld());
+        assertEquals(1, drained.get());
+
+        actions.run(() -> log.add("c"));
+        assertEquals(List.of("a", "b", "c"), log);
+    }
+
+    @Test
+    void nestedHoldsWaitForLastExpiry() {
+        actions.hold(1000);
+        actions.run(() -> log.add("a"));
+        actions.hold(2000);
+        actions.run(() -> log.add("b"));
+
+        scheduler.expireNext();
+        assertTrue(log.isEmpty());
+        assertTrue(actions.isHeld());
+
+        scheduler.expireNext();
+        assertEquals(List.of("a", "b"), log);
+        assertEquals(1, drained.get());
+    }
+
+    @Test
+    void holdDuringDrainQueuesLaterActions() {
+        actions.hold(1000);
+        actions.run(() -> {
+            log.add("a");
+            actions.hold(1000);
+            actions.run(() -> log.add("c"));
+        });
+        actions.run(() -> log.add("b"));
+
+        scheduler.expireNext();
+        // 已经取出的一批继续执行，之后提交的动作等新的暂停到期
+        assertEquals(List.of("a", "b"), log);
+        assertTrue(actions.isHeld());
+        assertEquals(0, drained.get());
+
+        actions.run(() -> log.add("d"));
+        scheduler.expireNext();
+        assertEquals(List.of("a", "b", "c", "d"), log);
+        assertFalse(actions.isHeld());
+        assertEquals(1, drained.get());
+    }
+
+    @Test
+    void releaseNowRunsPendingAndDisablesLaterHolds() {
+        actions.hold(1000);
+        actions.run(() -> log.add("a"));
+
+        actions.releaseNow();
+        assertEquals(List.of("a"), log);
+        assertFalse(actions.isHeld());
+        assertEquals(1, drained.get());
+
+        // 已经安排的到期和之后的暂停都不再有影响
+        scheduler.expireNext();
+        actions.hold(1000);
+        assertEquals(0, scheduler.pending());
+        actions.run(() -> log.add("b"));
+        assertEquals(List.of("a", "b"), log);
+        assertEquals(1, drained.get());
+    }
+
+    @Test
+    void failingActionDoesNotStopQueue() {
+        actions.hold(1000);
+        actions.run(() -> {
+            throw new IllegalStateException("测试异常");
+        });
+        actions.run(() -> log.add("b"));
+
+        scheduler.expireNext();
+        assertEquals(List.of("b"), log);
+        assertEquals(1, drained.get());
+    }
+
+    /**
+     * 只记录安排的任务，由测试按安排的顺序执行
+     */
+    private static class ManualScheduler extends ScheduledThreadPoolExecutor {
+
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        ManualScheduler() {
+            super(0);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            tasks.add(command);
+            return null;
+        }
+
+        void expireNext() {
+            tasks.remove(0).run();
+        }
+
+        int pending() {
+            return tasks.size();
+        }
+    }
+}
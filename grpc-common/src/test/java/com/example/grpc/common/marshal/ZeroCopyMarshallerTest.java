@@ -0,0 +1,168 @@
+package com.example.grpc.common.marshal;
+
+import com.google.protobuf.StringValue;
+import io.grpc.Drainable;
+import io.grpc.HasByteBuffer;
+import io.grpc.KnownLength;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ZeroCopyMarshaller测试
+ */
+class ZeroCopyMarshallerTest {
+
+    private final ZeroCopyMarshaller<StringValue> marshaller = new ZeroCopyMarshaller<>(StringValue.getDefaultInstance());
+
+    private static StringValue message(int length) {
+        return StringValue.of("中".repeat(length / 3) + "x".repeat(length % 3));
+    }
+
+    private static byte[] drain(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int written = ((Drainable) stream).drainTo(out);
+        assertEquals(out.size(), written);
+        return out.toByteArray();
+    }
+
+    @Test
+    void drainWritesSerializedMessage() throws IOException {
+        StringValue value = message(100);
+        InputStream stream = marshaller.stream(value);
+        assertEquals(value.getSerializedSize(), stream.available());
+        assertTrue(stream instanceof KnownLength);
+
+        assertArrayEquals(value.toByteArray(), drain(stream));
+        assertEquals(0, stream.available());
+    }
+
+    @Test
+    void largeMessageIsStreamed() throws IOException {
+        StringValue value = message(ZeroCopyMarshaller.MAX_BUFFERED_MESSAGE_SIZE * 2);
+        assertArrayEquals(value.toByteArray(), drain(marshaller.stream(value)));
+    }
+
+    @Test
+    void reusedBufferDoesNotLeakPreviousMessage() throws IOException {
+        drain(marshaller.stream(message(500)));
+        StringValue small = message(10);
+        assertArrayEquals(small.toByteArray(), drain(marshaller.stream(small)));
+    }
+
+    @Test
+    void readWithoutDrain() throws IOException {
+        StringValue value = message(100);
+        InputStream stream = marshaller.stream(value);
+        int first = stream.read();
+        byte[] rest = stream.readAllBytes();
+
+        byte[] expected = value.toByteArray();
+        assertEquals(expected[0] & 0xFF, first);
+        assertEquals(expected.length - 1, rest.length);
+        assertEquals(-1, stream.read());
+    }
+
+    @Test
+    void parsesPlainStream() {
+        StringValue value = message(100);
+        assertEquals(value, marshaller.parse(new ByteArrayInputStream(value.toByteArray())));
+    }
+
+    @Test
+    void parsesHeapBufferInPlace() {
+        StringValue value = message(100);
+        byte[] bytes = value.toByteArray();
+        // 消息位于更大的接收缓冲区中间
+        byte[] frame = new byte[bytes.length + 20];
+        System.arraycopy(bytes, 0, frame, 10, bytes.length);
+        BufferStream stream = new BufferStream(ByteBuffer.wrap(frame, 10, bytes.length).slice());
+
+        assertEquals(value, marshaller.parse(stream));
+        assertEquals(0, stream.available());
+    }
+
+    @Test
+    void parsesDirectBufferThroughFallback() {
+        StringValue value = message(100);
+        byte[] bytes = value.toByteArray();
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+
+        assertEquals(value, marshaller.parse(new BufferStream(direct)));
+    }
+
+    @Test
+    void emptyMessageIsDefaultInstance() {
+        assertSame(StringValue.getDefaultInstance(), marshaller.parse(new BufferStream(ByteBuffer.allocate(0))));
+    }
+
+    @Test
+    void invalidBytesAreInternalError() {
+        BufferStream stream = new BufferStream(ByteBuffer.wrap(new byte[]{(byte) 0x0A, (byte) 0x05, 'a'}));
+
+        StatusRuntimeException e = assertThrows(StatusRuntimeException.class, () -> marshaller.parse(stream));
+        assertEquals(Status.Code.INTERNAL, e.getStatus().getCode());
+    }
+
+    /**
+     * 模拟gRPC的接收缓冲区：一个支持getByteBuffer的、长度已知的输入流
+     */
+    private static class BufferStream extends InputStream implements KnownLength, HasByteBuffer {
+
+        private final ByteBuffer buffer;
+
+        BufferStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public boolean byteBufferSupported() {
+            return true;
+        }
+
+        @Override
+        public ByteBuffer getByteBuffer() {
+            return buffer.slice();
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.min(n, buffer.remaining());
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.grpc.common.trace;
+
+import io.grpc.Context;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TraceRecorder和Trace测试
+ */
+class TraceRecorderTest {
+
+    @Test
+    void unsampledFastTraceIsDropped() {
+        TraceRecorder recorder = new TraceRecorder(8, 0, Long.MAX_VALUE);
+        Trace trace = recorder.start(null, "GetUser", false);
+        recorder.finish(trace, "OK");
+
+        assertFalse(trace.isSampled());
+        assertTrue(trace.getDurationNanos() >= 0);
+        assertEquals(1, recorder.getStarted());
+        assertEquals(0, recorder.getKept());
+        assertTrue(recorder.recent(10, 0).isEmpty());
+    }
+
+    @Test
+    void upstreamSampledTraceIsKept() {
+        TraceRecorder recorder = new TraceRecorder(8, 0, Long.MAX_VALUE);
+        Trace trace = recorder.start("0123456789abcdef", "GetUser", true);
+        recorder.finish(trace, "OK");
+
+        assertEquals("0123456789abcdef", trace.getTraceId());
+        assertEquals(List.of(trace), recorder.recent(10, 0));
+        assertEquals(0, recorder.getSlow());
+    }
+
+    @Test
+    void slowTraceIsAlwaysKept() {
+        TraceRecorder recorder = new TraceRecorder(8, 0, 0);
+        Trace trace = recorder.start(null, "GetUser", false);
+        recorder.finish(trace, "DEADLINE_EXCEEDED");
+
+        assertEquals(1, recorder.getSlow());
+        assertEquals(1, recorder.getKept());
+        assertEquals("DEADLINE_EXCEEDED", trace.toMap().get("status"));
+    }
+
+    @Test
+    void sampleRateOneKeepsEverything() {
+        TraceRecorder recorder = new TraceRecorder(8, 1, Long.MAX_VALUE);
+        for (int i = 0; i < 5; i++) {
+            Trace trace = recorder.start(null, "call-" + i, false);
+            assertTrue(trace.isSampled());
+            recorder.finish(trace, "OK");
+        }
+        assertEquals(5, recorder.getKept());
+    }
+
+    @Test
+    void ringKeepsNewestFirst() {
+        TraceRecorder recorder = new TraceRecorder(3, 1, Long.MAX_VALUE);
+        for (int i = 0; i < 5; i++) {
+            recorder.finish(recorder.start(null, "call-" + i, false), "OK");
+        }
+
+        List<String> names = recorder.recent(10, 0).stream().map(Trace::getName).toList();
+        assertEquals(List.of("call-4", "call-3", "call-2"), names);
+        assertEquals(List.of("call-4", "call-3"),
+                recorder.recent(2, 0).stream().map(Trace::getName).toList());
+        assertTrue(recorder.recent(10, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    void generatedTraceIdsAreDistinctHex() {
+        TraceRecorder recorder = new TraceRecorder(1, 0, Long.MAX_VALUE);
+        String first = recorder.start("", "a", false).getTraceId();
+        String second = recorder.start(null, "b", false).getTraceId();
+
+        assertTrue(first.matches("[0-9a-f]{16}"), first);
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    void stagesAreRecordedThroughContext() {
+        TraceRecorder recorder = new TraceRecorder(1, 1, Long.MAX_VALUE);
+        Trace trace = recorder.start(null, "GetUser", false);
+
+        assertNull(Trace.current());
+        Trace.stage("ignored", System.nanoTime());
+        trace.attach(Context.current()).run(() -> {
+            assertSame(trace, Trace.current());
+            Trace.stage("query", System.nanoTime());
+        });
+        recorder.finish(trace, "OK");
+
+        Map<String, Object> map = trace.toMap();
+        List<?> stages = (List<?>) map.get("stages");
+        assertEquals(1, stages.size());
+        assertEquals("query", ((Map<?, ?>) stages.get(0)).get("name"));
+        assertEquals("GetUser", map.get("name"));
+        assertEquals(true, map.get("sampled"));
+    }
+
+    @Test
+    void stagesBeyondLimitAreIgnored() {
+        Trace trace = new TraceRecorder(1, 1, Long.MAX_VALUE).start(null, "GetAllUsers", false);
+        for (int i = 0; i < Trace.MAX_STAGES + 5; i++) {
+            trace.record("stage-" + i, trace.getStartNanos(), 1);
+        }
+
+        assertEquals(Trace.MAX_STAGES, ((List<?>) trace.toMap().get("stages")).size());
+    }
+}
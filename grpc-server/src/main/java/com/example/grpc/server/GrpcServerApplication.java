@@ -1,7 +1,12 @@
 package com.example.grpc.server;
 
+import com.example.grpc.common.fault.FaultInjectionController;
+import com.example.grpc.common.trace.TraceController;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.context.annotation.Import;
 
 /**
  * gRPC服务端应用程序启动类
@@ -10,10 +15,18 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * 启用了自动配置、组件扫描和配置属性扫描
  * 
  * gRPC服务会通过grpc-spring-boot-starter自动启动
+ * @ConfigurationPropertiesScan会自动注册所有@ConfigurationProperties配置类
+ * 
+ * 排除R2DBC自动配置：它创建的ConnectionFactory会让JDBC数据源的自动配置退出，
+ * 响应式执行路径自己创建连接池（ReactiveUserRepository）
+ * 
+ * @Import注册grpc-common中与客户端共用的管理接口，它们不在组件扫描范围内
  * 
  * @author 示例作者
  */
-@SpringBootApplication
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
+@ConfigurationPropertiesScan
+@Import({FaultInjectionController.class, TraceController.class})
 public class GrpcServerApplication {
     
     public static void main(String[] args) {
@@ -0,0 +1,147 @@
+package com.example.grpc.server.bulkhead;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 舱壁：一个独立的有界线程池加一个并发调用配额
+ * 
+ * 不同类型的调用使用不同的舱壁，长时间运行的流式调用占满自己的线程池时，
+ * 一元调用仍然有自己的线程可用
+ */
+@Slf4j
+public class Bulkhead {
+    
+    private final String name;
+    private final int maxConcurrentCalls;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore callPermits;
+    
+    private final LongAdder acceptedCalls = new LongAdder();
+    private final LongAdder rejectedCalls = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    
+    public Bulkhead(String name, BulkheadProperties.Pool pool) {
+        this.name = name;
+        this.maxConcurrentCalls = pool.getMaxConcurrentCalls();
+        this.queueCapacity = pool.getQueueCapacity();
+        this.callPermits = new Semaphore(pool.getMaxConcurrentCalls());
+        
+        AtomicInteger threadIndex = new AtomicInteger(0);
+        this.executor = new ThreadPoolExecutor(
+                pool.getThreads(), pool.getThreads(),
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(pool.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "grpc-" + name + "-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, rejectedBy) -> {
+                    // BulkheadRegistry保证队列容量不小于调用配额，被准入的调用不会占满队列；
+                    // 只有大量被拒绝的调用的结束回调同时排队时才可能走到这里。
+                    // gRPC的回调任务不能丢弃，只能由提交线程直接执行，计数并告警以便调大队列
+                    callerRuns.increment();
+                    log.warn("舱壁{}的任务队列已满，回调在提交线程上执行", name);
+                    if (!rejectedBy.isShutdown()) {
+                        runnable.run();
+                    }
+                });
+    }
+    
+    /**
+     * 尝试占用一个调用配额
+     * 
+     * @return 是否成功
+     */
+    public boolean tryAcquireCall() {
+        if (callPermits.tryAcquire()) {
+            acceptedCalls.increment();
+            return true;
+        }
+        rejectedCalls.increment();
+        return false;
+    }
+    
+    /**
+     * 释放调用配额
+     */
+    public void releaseCall() {
+        callPermits.release();
+    }
+    
+    /**
+     * @return 该舱壁的执行器
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+    
+    public int getActiveCalls() {
+        return maxConcurrentCalls - callPermits.availablePermits();
+    }
+    
+    public long getAcceptedCalls() {
+        return acceptedCalls.sum();
+    }
+    
+    public long getRejectedCalls() {
+        return rejectedCalls.sum();
+    }
+    
+    public long getCallerRuns() {
+        return callerRuns.sum();
+    }
+    
+    public int getPoolSize() {
+        return executor.getMaximumPoolSize();
+    }
+    
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+    
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+    
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+    
+    public long getCompletedTasks() {
+        return executor.getCompletedTaskCount();
+    }
+    
+    /**
+     * 关闭线程池
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+        log.info("舱壁线程池已关闭: {}", name);
+    }
+}
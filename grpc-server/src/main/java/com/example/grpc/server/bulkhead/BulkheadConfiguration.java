@@ -0,0 +1,33 @@
+package com.example.grpc.server.bulkhead;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import net.devh.boot.grpc.server.serverfactory.GrpcServerConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 舱壁执行器配置
+ * 
+ * 通过ServerBuilder.callExecutor为每个调用选择执行器，
+ * 调用的所有回调（onMessage、onHalfClose等）都会在所属舱壁的线程池中执行
+ */
+@Configuration
+public class BulkheadConfiguration {
+    
+    @Bean
+    @ConditionalOnProperty(prefix = "user-service.bulkhead", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public GrpcServerConfigurer bulkheadServerConfigurer(BulkheadRegistry registry) {
+        return serverBuilder -> serverBuilder.callExecutor(new ServerCallExecutorSupplier() {
+            @Override
+            public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata headers) {
+                Bulkhead bulkhead = registry.forMethod(call.getMethodDescriptor());
+                return bulkhead == null ? null : bulkhead.getExecutor();
+            }
+        });
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.grpc.server.bulkhead;
+
+import com.example.grpc.server.interceptor.CallCompletion;
+import com.example.grpc.server.interceptor.ServerInterceptorOrder;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+
+/**
+ * 舱壁准入拦截器
+ * 
+ * 每个舱壁有最大并发调用数，超出时直接以RESOURCE_EXHAUSTED拒绝，
+ * 保证舱壁的任务队列不会被无限堆积
+ */
+@GrpcGlobalServerInterceptor
+@Order(ServerInterceptorOrder.BULKHEAD)
+@ConditionalOnProperty(prefix = "user-service.bulkhead", name = "enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class BulkheadInterceptor implements ServerInterceptor {
+    
+    private final BulkheadRegistry registry;
+    
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        Bulkhead bulkhead = registry.forMethod(call.getMethodDescriptor());
+        if (bulkhead == null) {
+            return next.startCall(call, headers);
+        }
+        
+        if (!bulkhead.tryAcquireCall()) {
+            log.warn("舱壁已满，拒绝调用: method={}, bulkhead={}",
+                    call.getMethodDescriptor().getBareMethodName(), bulkhead.getName());
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription("舱壁" + bulkhead.getName() + "已满，请稍后重试"),
+                    new Metadata());
+            return new ServerCall.Listener<>() {
+            };
+        }
+        
+        return CallCompletion.startCall(call, headers, next, status -> bulkhead.releaseCall());
+    }
+}
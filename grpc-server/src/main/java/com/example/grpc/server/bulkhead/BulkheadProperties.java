@@ -0,0 +1,76 @@
+package com.example.grpc.server.bulkhead;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 舱壁隔离配置
+ * 
+ * 对应application.yml中的user-service.bulkhead配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "user-service.bulkhead")
+public class BulkheadProperties {
+    
+    /**
+     * 一元调用默认使用的舱壁名称
+     */
+    public static final String UNARY = "unary";
+    
+    /**
+     * 流式调用默认使用的舱壁名称
+     */
+    public static final String STREAMING = "streaming";
+    
+    /**
+     * 是否启用舱壁隔离
+     */
+    private boolean enabled = true;
+    
+    /**
+     * 舱壁定义，key为舱壁名称，默认包含unary和streaming两个
+     */
+    private Map<String, Pool> pools = new LinkedHashMap<>(Map.of(
+            UNARY, new Pool(16, 256, 128),
+            STREAMING, new Pool(8, 64, 32)));
+    
+    /**
+     * 按方法名指定舱壁（如GetAllUsers: export），未配置的方法按调用类型分配到unary或streaming
+     */
+    private Map<String, String> methods = new HashMap<>();
+    
+    /**
+     * 单个舱壁的线程池配置
+     */
+    @Data
+    public static class Pool {
+        
+        /**
+         * 线程数
+         */
+        private int threads;
+        
+        /**
+         * 任务队列容量，不能小于maxConcurrentCalls
+         */
+        private int queueCapacity;
+        
+        /**
+         * 最大并发调用数，超出时直接拒绝
+         */
+        private int maxConcurrentCalls;
+        
+        public Pool() {
+        }
+        
+        public Pool(int threads, int queueCapacity, int maxConcurrentCalls) {
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+            this.maxConcurrentCalls = maxConcurrentCalls;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.grpc.server.bulkhead;
+
+import com.example.grpc.proto.UserServiceGrpc;
+import io.grpc.MethodDescriptor;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 舱壁注册表
+ * 
+ * 根据配置创建所有舱壁，并负责把UserService的方法映射到对应的舱壁
+ */
+@Component
+@ConditionalOnProperty(prefix = "user-service.bulkhead", name = "enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class BulkheadRegistry {
+    
+    private final BulkheadProperties properties;
+    private final Map<String, Bulkhead> bulkheads = new LinkedHashMap<>();
+    
+    public BulkheadRegistry(BulkheadProperties properties) {
+        this.properties = properties;
+        properties.getPools().forEach((name, pool) -> {
+            // gRPC按调用串行执行回调，每个被准入的调用最多有一个任务在排队；
+            // 队列容量不小于并发调用配额时，被准入的调用不会因为队列满而在提交线程（传输层的事件循环）上执行
+            if (pool.getQueueCapacity() < pool.getMaxConcurrentCalls()) {
+                throw new IllegalStateException("舱壁" + name + "的queue-capacity(" + pool.getQueueCapacity()
+                        + ")不能小于max-concurrent-calls(" + pool.getMaxConcurrentCalls() + ")");
+            }
+            bulkheads.put(name, new Bulkhead(name, pool));
+        });
+        
+        for (String name : new String[]{BulkheadProperties.UNARY, BulkheadProperties.STREAMING}) {
+            if (!bulkheads.containsKey(name)) {
+                throw new IllegalStateException("缺少默认舱壁配置: user-service.bulkhead.pools." + name);
+            }
+        }
+        properties.getMethods().forEach((method, name) -> {
+            if (!bulkheads.containsKey(name)) {
+                throw new IllegalStateException("方法" + method + "配置的舱壁不存在: " + name);
+            }
+        });
+        log.info("舱壁隔离已启用: {}", bulkheads.keySet());
+    }
+    
+    /**
+     * 查找方法对应的舱壁
+     * 
+     * @param method 方法描述
+     * @return 对应的舱壁；非UserService的方法返回null，使用默认执行器
+     */
+    public Bulkhead forMethod(MethodDescriptor<?, ?> method) {
+        if (!UserServiceGrpc.SERVICE_NAME.equals(method.getServiceName())) {
+            return null;
+        }
+        
+        String name = properties.getMethods().get(method.getBareMethodName());
+        if (name == null) {
+            name = method.getType() == MethodDescriptor.MethodType.UNARY
+                    ? BulkheadProperties.UNARY
+                    : BulkheadProperties.STREAMING;
+        }
+        return bulkheads.get(name);
+    }
+    
+    /**
+     * @return 所有舱壁
+     */
+    public Collection<Bulkhead> getBulkheads() {
+        return Collections.unmodifiableCollection(bulkheads.values());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        bulkheads.values().forEach(Bulkhead::shutdown);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.grpc.server.chat;
+
+import com.example.grpc.proto.ChatMessage;
+import com.example.grpc.proto.ChatMessageBatch;
+import io.grpc.stub.ServerCallStreamObserver;
+
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一个UserChatBatched流的发送缓冲
+ *
+ * 回复先放入缓冲，攒够maxBatchSize条或第一条消息等待超过flushInterval时合并为一个ChatMessageBatch发送，
+ * 多条消息共用一个HTTP/2 DATA帧和一次flush。响应流未就绪时不发送，等onReady时再调用flush。
+ * 调用线程和定时线程都会发送，所有方法都在this上同步
+ */
+public class ChatBatcher {
+
+    private final ServerCallStreamObserver<ChatMessageBatch> observer;
+    private final int maxBatchSize;
+    private final long flushIntervalNanos;
+    private final ScheduledExecutorService scheduler;
+    private final ChatBatching.Stats stats;
+
+    private ChatMessageBatch.Builder pending = ChatMessageBatch.newBuilder();
+    private long[] enqueuedAt;
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean completed;
+
+    ChatBatcher(ServerCallStreamObserver<ChatMessageBatch> observer, int maxBatchSize, long flushIntervalNanos,
+                ScheduledExecutorService scheduler, ChatBatching.Stats stats) {
+        this.observer = observer;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.flushIntervalNanos = flushIntervalNanos;
+        this.scheduler = scheduler;
+        this.stats = stats;
+        this.enqueuedAt = new long[this.maxBatchSize];
+    }
+
+    /**
+     * 缓冲一条回复，攒够一批时立即发送
+     */
+    public synchronized void add(ChatMessage message) {
+        if (completed) {
+            return;
+        }
+        int index = buffer(message);
+        if (pending.getMessagesCount() >= maxBatchSize || flushIntervalNanos <= 0) {
+            flush();
+        } else if (index == 0) {
+            scheduledFlush = scheduler.schedule(this::flush, flushIntervalNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 发送缓冲中的回复，响应流未就绪时什么也不做
+     */
+    public synchronized void flush() {
+        if (completed || pending.getMessagesCount() == 0 || observer.isCancelled() || !observer.isReady()) {
+            return;
+        }
+        send();
+    }
+
+    /**
+     * 发送缓冲中的回复和最后一条消息，然后结束响应流
+     */
+    public synchronized void complete(ChatMessage last) {
+        if (completed) {
+            return;
+        }
+        buffer(last);
+        // 结束前不再等待就绪，剩余的消息由gRPC缓冲
+        send();
+        completed = true;
+        observer.onCompleted();
+    }
+
+    /**
+     * 调用取消时丢弃缓冲
+     */
+    public synchronized void cancel() {
+        completed = true;
+        pending.clear();
+        cancelScheduledFlush();
+    }
+
+    /**
+     * @return 消息在缓冲中的位置
+     */
+    private int buffer(ChatMessage message) {
+        int index = pending.getMessagesCount();
+        if (index == enqueuedAt.length) {
+            // 响应流未就绪期间缓冲可能超过一批
+            enqueuedAt = Arrays.copyOf(enqueuedAt, index * 2);
+        }
+        enqueuedAt[index] = System.nanoTime();
+        pending.addMessages(message);
+        return index;
+    }
+
+    private void send() {
+        cancelScheduledFlush();
+        int count = pending.getMessagesCount();
+        long now = System.nanoTime();
+        observer.onNext(pending.build());
+        stats.recordBatch(count, enqueuedAt, now);
+        pending = ChatMessageBatch.newBuilder();
+    }
+
+    private void cancelScheduledFlush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.grpc.server.chat;
+
+import com.example.grpc.proto.ChatMessageBatch;
+import io.grpc.stub.ServerCallStreamObserver;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * UserChatBatched的批量发送
+ *
+ * 为每个流创建ChatBatcher，所有流共用一个定时线程按flush-interval发送未攒满的批次，
+ * 并汇总批次大小和消息在缓冲中等待的时间，用于观察批量发送在吞吐量和延迟之间的取舍
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatBatching {
+
+    private final ChatBatchingProperties properties;
+    private final Stats stats = new Stats();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chat-batch-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 为一个流创建发送缓冲
+     */
+    public ChatBatcher open(ServerCallStreamObserver<ChatMessageBatch> observer) {
+        return new ChatBatcher(observer, properties.getMaxBatchSize(), properties.getFlushInterval().toNanos(),
+                scheduler, stats);
+    }
+
+    public int getMaxBatchSize() {
+        return properties.getMaxBatchSize();
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 批量发送的统计
+     */
+    public static class Stats {
+
+        /**
+         * 等待时间直方图：每个桶10微秒，最大100毫秒
+         */
+        private static final int BUCKET_MICROS = 10;
+        private static final int BUCKETS = 10_000;
+
+        private final LongAdder batches = new LongAdder();
+        private final LongAdder messages = new LongAdder();
+        private final LongAdder totalWaitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        void recordBatch(int count, long[] enqueuedAt, long sentAt) {
+            batches.increment();
+            messages.add(count);
+            long maxWait = 0;
+            for (int i = 0; i < count; i++) {
+                long wait = sentAt - enqueuedAt[i];
+                totalWaitNanos.add(wait);
+                maxWait = Math.max(maxWait, wait);
+                int bucket = (int) Math.min(BUCKETS - 1, TimeUnit.NANOSECONDS.toMicros(wait) / BUCKET_MICROS);
+                histogram.incrementAndGet(bucket);
+            }
+            maxWaitNanos.accumulateAndGet(maxWait, Math::max);
+        }
+
+        public long getBatches() {
+            return batches.sum();
+        }
+
+        public long getMessages() {
+            return messages.sum();
+        }
+
+        /**
+         * @return 平均每批的消息数，即每个响应帧承载的消息数
+         */
+        public double getAverageBatchSize() {
+            long batchCount = batches.sum();
+            return batchCount == 0 ? 0 : (double) messages.sum() / batchCount;
+        }
+
+        public double getAverageWaitMillis() {
+            long messageCount = messages.sum();
+            return messageCount == 0 ? 0 : totalWaitNanos.sum() / 1e6 / messageCount;
+        }
+
+        public double getMaxWaitMillis() {
+            return maxWaitNanos.get() / 1e6;
+        }
+
+        /**
+         * @return 消息在缓冲中等待时间的分位数（毫秒）
+         */
+        public double getWaitPercentileMillis(double percentile) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += histogram.get(i);
+            }
+            long rank = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram.get(i);
+                if (seen >= rank && seen > 0) {
+                    return (i + 1) * BUCKET_MICROS / 1000.0;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.grpc.server.chat;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 聊天批量发送配置
+ *
+ * 对应application.yml中的user-service.chat-batching配置项，只影响UserChatBatched
+ */
+@Data
+@ConfigurationProperties(prefix = "user-service.chat-batching")
+public class ChatBatchingProperties {
+
+    /**
+     * 每批最多包含的消息数，攒够后立即发送
+     */
+    private int maxBatchSize = 64;
+
+    /**
+     * 一批中第一条消息最多等待的时间，到期后不论攒了多少条都发送
+     */
+    private Duration flushInterval = Duration.ofMillis(5);
+}
@@ -0,0 +1,184 @@
+package com.example.grpc.server.chat;
+
+import com.example.grpc.proto.ChatMessage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 聊天历史
+ *
+ * UserChat收到的消息先放入有界队列，由专门的写入线程批量追加到ChatLog，
+ * 聊天处理线程从不等待磁盘：队列满时丢弃消息并计数。
+ * 写入线程同时负责定期刷盘和按大小、时间删除旧的日志段
+ */
+@Slf4j
+public class ChatHistory implements AutoCloseable {
+
+    /**
+     * 写入线程每次最多取出的消息数
+     */
+    private static final int MAX_DRAIN = 1024;
+
+    /**
+     * 检查保留策略的间隔
+     */
+    private static final long RETENTION_CHECK_MILLIS = 10_000;
+
+    private final ChatHistoryProperties properties;
+    private final ChatLog chatLog;
+    private final BlockingQueue<ChatMessage> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder writeErrors = new LongAdder();
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder replayedMessages = new LongAdder();
+
+    public ChatHistory(ChatHistoryProperties properties) throws IOException {
+        this.properties = properties;
+        this.chatLog = new ChatLog(Paths.get(properties.getDirectory()),
+                (int) properties.getSegmentSize().toBytes(),
+                (int) properties.getIndexInterval().toBytes());
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.writer = new Thread(this::writeLoop, "chat-history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 提交一条消息，队列已满时丢弃，不阻塞调用方
+     *
+     * @return 是否已放入队列
+     */
+    public boolean append(ChatMessage message) {
+        if (queue.offer(message)) {
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    /**
+     * 按回放请求打开游标
+     *
+     * @return 从请求的偏移量（优先）或时间戳开始的游标
+     */
+    public ChatLog.Cursor openReplay(ChatReplayRequest request) {
+        replays.increment();
+        return request.getFromOffset() > 0
+                ? chatLog.fromOffset(request.getFromOffset())
+                : chatLog.fromTimestamp(request.getFromTimestamp());
+    }
+
+    /**
+     * 记录回放推送的消息数
+     */
+    public void recordReplayed(long messages) {
+        replayedMessages.add(messages);
+    }
+
+    public ChatLog getChatLog() {
+        return chatLog;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getAppended() {
+        return appended.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getWriteErrors() {
+        return writeErrors.sum();
+    }
+
+    public long getReplays() {
+        return replays.sum();
+    }
+
+    public long getReplayedMessages() {
+        return replayedMessages.sum();
+    }
+
+    /**
+     * 写完队列中剩余的消息后关闭日志
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        chatLog.close();
+        log.info("聊天历史已关闭: nextOffset={}, 丢弃{}条", chatLog.getNextOffset(), dropped.sum());
+    }
+
+    private void writeLoop() {
+        long flushIntervalMillis = properties.getFlushInterval().toMillis();
+        long nextFlush = System.currentTimeMillis() + flushIntervalMillis;
+        long nextRetentionCheck = System.currentTimeMillis();
+        boolean dirty = false;
+        List<ChatMessage> batch = new ArrayList<>(MAX_DRAIN);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                ChatMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_DRAIN - 1);
+                    write(batch);
+                    batch.clear();
+                    dirty = true;
+                }
+
+                long now = System.currentTimeMillis();
+                if (dirty && flushIntervalMillis > 0 && now >= nextFlush) {
+                    chatLog.flush();
+                    dirty = false;
+                    nextFlush = now + flushIntervalMillis;
+                }
+                if (now >= nextRetentionCheck) {
+                    chatLog.enforceRetention(properties.getRetentionSize().toBytes(),
+                            now - properties.getRetentionAge().toMillis());
+                    nextRetentionCheck = now + RETENTION_CHECK_MILLIS;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                writeErrors.increment();
+                log.error("聊天历史写入失败", e);
+            }
+        }
+    }
+
+    private void write(List<ChatMessage> batch) throws IOException {
+        long now = System.currentTimeMillis();
+        for (ChatMessage message : batch) {
+            try {
+                chatLog.append(now, message.toByteArray());
+                appended.increment();
+            } catch (IllegalArgumentException e) {
+                dropped.increment();
+                log.warn("聊天消息过大，不写入历史: userId={}", message.getUserId());
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.grpc.server.chat;
+
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+/**
+ * 聊天历史配置
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "user-service.chat-history", name = "enabled", havingValue = "true")
+public class ChatHistoryConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public ChatHistory chatHistory(ChatHistoryProperties properties) throws IOException {
+        return new ChatHistory(properties);
+    }
+
+    @GrpcGlobalServerInterceptor
+    public ChatReplayInterceptor chatReplayInterceptor() {
+        return new ChatReplayInterceptor();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.grpc.server.chat;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * 聊天历史配置
+ *
+ * 对应application.yml中的user-service.chat-history配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "user-service.chat-history")
+public class ChatHistoryProperties {
+
+    /**
+     * 是否把UserChat收到的消息写入聊天历史，并支持打开流时回放
+     */
+    private boolean enabled = false;
+
+    /**
+     * 日志段文件所在的目录
+     */
+    private String directory = "data/chat-history";
+
+    /**
+     * 单个日志段的大小，写满后滚动到新的日志段
+     */
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+    /**
+     * 所有日志段的总大小上限，超出时删除最早的日志段
+     */
+    private DataSize retentionSize = DataSize.ofGigabytes(1);
+
+    /**
+     * 日志段中最后一条消息超过这个时间后删除整个日志段
+     */
+    private Duration retentionAge = Duration.ofDays(7);
+
+    /**
+     * 每写入这么多字节记录一个索引项（偏移量、时间戳、文件位置）
+     */
+    private DataSize indexInterval = DataSize.ofKilobytes(4);
+
+    /**
+     * 等待写入的消息队列容量，写入线程跟不上时丢弃新的消息，不阻塞聊天
+     */
+    private int queueCapacity = 65_536;
+
+    /**
+     * 把内存映射的修改刷到磁盘的间隔，设置为0时只依赖操作系统回写
+     */
+    private Duration flushInterval = Duration.ofSeconds(1);
+}
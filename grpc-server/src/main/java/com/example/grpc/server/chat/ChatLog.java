@@ -0,0 +1,262 @@
+package com.example.grpc.server.chat;
+
+import com.example.grpc.proto.ChatMessage;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 分段的只追加聊天日志
+ *
+ * 每条消息分配一个从1开始连续递增的偏移量，依次写入当前日志段，写满后滚动到以下一个偏移量命名的新日志段。
+ * 旧的日志段按总大小或最后一条消息的时间整段删除。
+ * 写入只能由一个线程进行；任意线程都可以通过Cursor从某个偏移量或时间戳开始顺序读取
+ */
+@Slf4j
+public class ChatLog implements Closeable {
+
+    static final String LOG_SUFFIX = ".log";
+    static final String INDEX_SUFFIX = ".index";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int indexIntervalBytes;
+
+    /**
+     * 按起始偏移量排列的日志段，最后一个是当前写入的日志段
+     */
+    private final ConcurrentSkipListMap<Long, ChatLogSegment> segments = new ConcurrentSkipListMap<>();
+
+    private volatile ChatLogSegment active;
+
+    /**
+     * 最后一条消息的时间戳，保证时间戳不递减，按时间查找才能使用索引（仅写入线程访问）
+     */
+    private long lastTimestamp;
+
+    public ChatLog(Path directory, int segmentBytes, int indexIntervalBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.indexIntervalBytes = indexIntervalBytes;
+        Files.createDirectories(directory);
+
+        try {
+            for (long baseOffset : existingBaseOffsets()) {
+                ChatLogSegment segment = ChatLogSegment.open(directory, baseOffset, segmentBytes, indexIntervalBytes);
+                segments.put(baseOffset, segment);
+                lastTimestamp = Math.max(lastTimestamp, segment.getLastTimestamp());
+            }
+            if (segments.isEmpty()) {
+                segments.put(1L, ChatLogSegment.open(directory, 1, segmentBytes, indexIntervalBytes));
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        active = segments.lastEntry().getValue();
+        log.info("聊天日志已打开: directory={}, segments={}, nextOffset={}",
+                directory, segments.size(), active.getNextOffset());
+    }
+
+    /**
+     * 追加一条消息（仅写入线程调用）
+     *
+     * @param timestamp 服务端收到消息的时间，小于上一条消息时按上一条消息的时间记录
+     * @param payload   序列化后的ChatMessage
+     * @return 分配的偏移量
+     */
+    public long append(long timestamp, byte[] payload) throws IOException {
+        if (payload.length > segmentBytes - ChatLogSegment.RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("聊天消息超过日志段大小: " + payload.length + "字节");
+        }
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+
+        long offset = active.getNextOffset();
+        if (!active.append(offset, lastTimestamp, payload)) {
+            roll(offset);
+            active.append(offset, lastTimestamp, payload);
+        }
+        return offset;
+    }
+
+    /**
+     * 从指定偏移量开始读取，偏移量已被删除时从最早保留的消息开始
+     */
+    public Cursor fromOffset(long offset) {
+        Map.Entry<Long, ChatLogSegment> floor = segments.floorEntry(offset);
+        if (floor == null) {
+            return new Cursor(segments.firstEntry().getValue(), 0);
+        }
+        ChatLogSegment segment = floor.getValue();
+        return new Cursor(segment, segment.positionOfOffset(offset));
+    }
+
+    /**
+     * 从服务端在指定时间及之后收到的第一条消息开始读取
+     */
+    public Cursor fromTimestamp(long timestamp) {
+        for (ChatLogSegment segment : segments.values()) {
+            if (segment.getLastTimestamp() >= timestamp) {
+                return new Cursor(segment, segment.positionOfTimestamp(timestamp));
+            }
+        }
+        ChatLogSegment last = segments.lastEntry().getValue();
+        return new Cursor(last, last.size());
+    }
+
+    /**
+     * 删除超出保留范围的旧日志段（仅写入线程调用），当前写入的日志段不会被删除
+     *
+     * @param maxBytes 所有日志段的总大小上限
+     * @param minTimestamp 最后一条消息早于这个时间的日志段会被删除
+     * @return 删除的日志段数
+     */
+    public int enforceRetention(long maxBytes, long minTimestamp) throws IOException {
+        long totalBytes = getTotalBytes();
+        int deleted = 0;
+        for (ChatLogSegment segment : segments.values()) {
+            if (segment == active || (totalBytes <= maxBytes && segment.getLastTimestamp() >= minTimestamp)) {
+                break;
+            }
+            segments.remove(segment.getBaseOffset());
+            totalBytes -= segment.size();
+            segment.delete();
+            deleted++;
+            log.info("删除聊天日志段: baseOffset={}, nextOffset={}", segment.getBaseOffset(), segment.getNextOffset());
+        }
+        return deleted;
+    }
+
+    /**
+     * 把当前日志段的修改刷到磁盘（仅写入线程调用），旧的日志段在滚动时已经刷过
+     */
+    public void flush() throws IOException {
+        active.flush();
+    }
+
+    /**
+     * @return 最早保留的消息的偏移量
+     */
+    public long getFirstOffset() {
+        return segments.firstKey();
+    }
+
+    /**
+     * @return 下一条消息的偏移量
+     */
+    public long getNextOffset() {
+        return active.getNextOffset();
+    }
+
+    public long getTotalBytes() {
+        long total = 0;
+        for (ChatLogSegment segment : segments.values()) {
+            total += segment.size();
+        }
+        return total;
+    }
+
+    /**
+     * @return 日志段的起始偏移量、下一个偏移量、大小和最后一条消息的时间
+     */
+    public List<SegmentInfo> describeSegments() {
+        Collection<ChatLogSegment> values = segments.values();
+        List<SegmentInfo> result = new ArrayList<>(values.size());
+        for (ChatLogSegment segment : values) {
+            result.add(new SegmentInfo(segment.getBaseOffset(), segment.getNextOffset(), segment.size(),
+                    segment.getLastTimestamp()));
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ChatLogSegment segment : segments.values()) {
+            segment.flush();
+            segment.close();
+        }
+    }
+
+    private void roll(long baseOffset) throws IOException {
+        ChatLogSegment previous = active;
+        previous.flush();
+        ChatLogSegment next = ChatLogSegment.open(directory, baseOffset, segmentBytes, indexIntervalBytes);
+        // 新日志段出现在map中时，上一个日志段已经不会再变化，读取方据此判断可以切换到下一个日志段
+        segments.put(baseOffset, next);
+        active = next;
+        log.debug("聊天日志滚动到新的日志段: baseOffset={}", baseOffset);
+    }
+
+    private List<Long> existingBaseOffsets() throws IOException {
+        List<Long> baseOffsets = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + LOG_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    baseOffsets.add(Long.parseLong(name.substring(0, name.length() - LOG_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    log.warn("忽略无法识别的聊天日志文件: {}", file);
+                }
+            }
+        }
+        baseOffsets.sort(null);
+        return baseOffsets;
+    }
+
+    /**
+     * 顺序读取聊天日志的游标，不是线程安全的
+     *
+     * 读到末尾后next返回null，之后追加的消息可以继续读取
+     */
+    public final class Cursor {
+
+        private ChatLogSegment segment;
+        private int position;
+
+        private Cursor(ChatLogSegment segment, int position) {
+            this.segment = segment;
+            this.position = position;
+        }
+
+        /**
+         * @return 下一条消息（设置了offset），已经读到末尾时返回null
+         */
+        public ChatMessage next() {
+            while (true) {
+                if (position < segment.size()) {
+                    ChatMessage message = segment.messageAt(position);
+                    position = segment.nextPosition(position);
+                    return message;
+                }
+                Map.Entry<Long, ChatLogSegment> higher = segments.higherEntry(segment.getBaseOffset());
+                if (higher == null) {
+                    return null;
+                }
+                // 看到下一个日志段后再检查一次，读完当前日志段在滚动前写入的最后几条消息
+                if (position < segment.size()) {
+                    continue;
+                }
+                segment = higher.getValue();
+                position = 0;
+            }
+        }
+    }
+
+    @Value
+    public static class SegmentInfo {
+        long baseOffset;
+        long nextOffset;
+        long bytes;
+        long lastTimestamp;
+    }
+}
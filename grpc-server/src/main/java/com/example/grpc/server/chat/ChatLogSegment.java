@@ -0,0 +1,345 @@
+package com.example.grpc.server.chat;
+
+import com.example.grpc.proto.ChatMessage;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * 聊天日志的一个段
+ *
+ * 日志文件按段大小预先分配并整体映射到内存，记录依次追加：
+ * [int 消息长度+1][int CRC32][long 偏移量][long 时间戳][ChatMessage字节]，长度字段为0表示后面没有记录。
+ * 所有字段都是默认值的ChatMessage序列化后为0字节，长度字段多存1，避免与结束标记混淆。
+ * 索引文件每隔index-interval字节追加一项[long 偏移量][long 时间戳][int 记录位置]，
+ * 按偏移量或时间戳查找时先二分查找索引，再从索引项的位置顺序扫描
+ *
+ * 只有写入线程调用append；读取方通过volatile的size只看到已经完整写入的记录
+ */
+final class ChatLogSegment {
+
+    static final int RECORD_HEADER_BYTES = 24;
+
+    private static final int INDEX_ENTRY_BYTES = 20;
+
+    private final long baseOffset;
+    private final Path logPath;
+    private final Path indexPath;
+    private final MappedByteBuffer buffer;
+    private final FileChannel indexChannel;
+    private final int indexIntervalBytes;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer indexEntry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+
+    /**
+     * 稀疏索引（受this保护）
+     */
+    private long[] indexOffsets = new long[64];
+    private long[] indexTimestamps = new long[64];
+    private int[] indexPositions = new int[64];
+    private int indexCount;
+
+    private int bytesSinceIndex;
+
+    private volatile int size;
+    private volatile long nextOffset;
+    private volatile long lastTimestamp;
+
+    private ChatLogSegment(long baseOffset, Path logPath, Path indexPath, MappedByteBuffer buffer,
+                           FileChannel indexChannel, int indexIntervalBytes) {
+        this.baseOffset = baseOffset;
+        this.logPath = logPath;
+        this.indexPath = indexPath;
+        this.buffer = buffer;
+        this.indexChannel = indexChannel;
+        this.indexIntervalBytes = indexIntervalBytes;
+        this.nextOffset = baseOffset;
+    }
+
+    /**
+     * 打开或创建日志段，已有的日志段会恢复到最后一条完整的记录
+     *
+     * @param capacity 新日志段的大小；已有的日志段按文件实际大小映射
+     */
+    static ChatLogSegment open(Path directory, long baseOffset, int capacity, int indexIntervalBytes)
+            throws IOException {
+        Path logPath = directory.resolve(fileName(baseOffset, ChatLog.LOG_SUFFIX));
+        Path indexPath = directory.resolve(fileName(baseOffset, ChatLog.INDEX_SUFFIX));
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(logPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("聊天日志段超过2GB: " + logPath);
+            }
+            // 映射超出文件大小的部分时文件会被扩展
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(length, capacity));
+        }
+        FileChannel indexChannel = FileChannel.open(indexPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        ChatLogSegment segment = new ChatLogSegment(baseOffset, logPath, indexPath, buffer, indexChannel,
+                indexIntervalBytes);
+        try {
+            segment.recover();
+        } catch (IOException | RuntimeException e) {
+            indexChannel.close();
+            throw e;
+        }
+        return segment;
+    }
+
+    static String fileName(long baseOffset, String suffix) {
+        return String.format("%020d%s", baseOffset, suffix);
+    }
+
+    /**
+     * 追加一条记录（仅写入线程调用）
+     *
+     * @return 日志段剩余空间不足时返回false
+     */
+    boolean append(long offset, long timestamp, byte[] payload) throws IOException {
+        int position = size;
+        int recordBytes = RECORD_HEADER_BYTES + payload.length;
+        if (recordBytes > buffer.capacity() - position) {
+            return false;
+        }
+
+        buffer.putLong(position + 8, offset);
+        buffer.putLong(position + 16, timestamp);
+        buffer.put(position + RECORD_HEADER_BYTES, payload);
+        crc.reset();
+        crc.update(buffer.slice(position + 8, recordBytes - 8));
+        buffer.putInt(position + 4, (int) crc.getValue());
+        // 长度最后写入，崩溃后恢复时不会把写了一半的记录当成有效记录
+        buffer.putInt(position, payload.length + 1);
+
+        if (position == 0 || bytesSinceIndex >= indexIntervalBytes) {
+            appendIndex(offset, timestamp, position);
+            bytesSinceIndex = 0;
+        }
+        bytesSinceIndex += recordBytes;
+        lastTimestamp = timestamp;
+        nextOffset = offset + 1;
+        size = position + recordBytes;
+        return true;
+    }
+
+    /**
+     * @return 第一条偏移量不小于offset的记录位置，没有这样的记录时返回当前大小
+     */
+    int positionOfOffset(long offset) {
+        int position;
+        synchronized (this) {
+            int entry = floorIndex(indexOffsets, offset);
+            position = entry < 0 ? 0 : indexPositions[entry];
+        }
+        int end = size;
+        while (position < end && offsetAt(position) < offset) {
+            position = nextPosition(position);
+        }
+        return position;
+    }
+
+    /**
+     * @return 第一条时间戳不小于timestamp的记录位置，没有这样的记录时返回当前大小
+     */
+    int positionOfTimestamp(long timestamp) {
+        int position;
+        synchronized (this) {
+            // 时间戳可能重复，从严格小于它的最后一个索引项开始扫描
+            int entry = floorIndex(indexTimestamps, timestamp - 1);
+            position = entry < 0 ? 0 : indexPositions[entry];
+        }
+        int end = size;
+        while (position < end && timestampAt(position) < timestamp) {
+            position = nextPosition(position);
+        }
+        return position;
+    }
+
+    long offsetAt(int position) {
+        return buffer.getLong(position + 8);
+    }
+
+    long timestampAt(int position) {
+        return buffer.getLong(position + 16);
+    }
+
+    int nextPosition(int position) {
+        return position + RECORD_HEADER_BYTES + payloadLength(position);
+    }
+
+    /**
+     * @return 记录中消息的字节数，长度字段减1
+     */
+    private int payloadLength(int position) {
+        return buffer.getInt(position) - 1;
+    }
+
+    /**
+     * 读取一条记录中的消息，并设置它的偏移量
+     */
+    ChatMessage messageAt(int position) {
+        int length = payloadLength(position);
+        try {
+            return ChatMessage.parseFrom(buffer.slice(position + RECORD_HEADER_BYTES, length)).toBuilder()
+                    .setOffset(offsetAt(position))
+                    .build();
+        } catch (InvalidProtocolBufferException e) {
+            throw new UncheckedIOException("聊天日志记录已损坏: " + logPath + "@" + position, e);
+        }
+    }
+
+    long getBaseOffset() {
+        return baseOffset;
+    }
+
+    /**
+     * @return 下一条记录的偏移量
+     */
+    long getNextOffset() {
+        return nextOffset;
+    }
+
+    /**
+     * @return 最后一条记录的时间戳，没有记录时为0
+     */
+    long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * @return 已写入的字节数
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * 把映射的修改和索引刷到磁盘
+     */
+    void flush() throws IOException {
+        buffer.force();
+        indexChannel.force(false);
+    }
+
+    void close() throws IOException {
+        indexChannel.close();
+    }
+
+    /**
+     * 删除日志段文件
+     *
+     * 映射在缓冲区被回收前仍然有效，正在回放这个日志段的读取方不受影响
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(logPath);
+        Files.deleteIfExists(indexPath);
+    }
+
+    /**
+     * 加载索引，从最后一个有效的索引项开始扫描到最后一条完整的记录
+     */
+    private void recover() throws IOException {
+        int entries = (int) (indexChannel.size() / INDEX_ENTRY_BYTES);
+        ByteBuffer index = ByteBuffer.allocate(entries * INDEX_ENTRY_BYTES);
+        while (index.hasRemaining() && indexChannel.read(index, index.position()) > 0) {
+            // 读满为止
+        }
+        index.flip();
+        while (index.remaining() >= INDEX_ENTRY_BYTES) {
+            addIndexEntry(index.getLong(), index.getLong(), index.getInt());
+        }
+
+        // 崩溃时索引可能比日志写得更远，丢弃指向无效记录的索引项
+        while (indexCount > 0
+                && !isValidRecord(indexPositions[indexCount - 1], indexOffsets[indexCount - 1])) {
+            indexCount--;
+        }
+
+        int position = indexCount > 0 ? indexPositions[indexCount - 1] : 0;
+        long expectedOffset = indexCount > 0 ? indexOffsets[indexCount - 1] : baseOffset;
+        while (isValidRecord(position, expectedOffset)) {
+            lastTimestamp = timestampAt(position);
+            position = nextPosition(position);
+            expectedOffset++;
+        }
+
+        size = position;
+        nextOffset = expectedOffset;
+        bytesSinceIndex = indexCount > 0 ? position - indexPositions[indexCount - 1] : 0;
+        indexChannel.truncate((long) indexCount * INDEX_ENTRY_BYTES);
+    }
+
+    private boolean isValidRecord(int position, long expectedOffset) {
+        if (position > buffer.capacity() - RECORD_HEADER_BYTES) {
+            return false;
+        }
+        if (buffer.getInt(position) <= 0) {
+            return false;
+        }
+        int length = payloadLength(position);
+        if (length > buffer.capacity() - position - RECORD_HEADER_BYTES) {
+            return false;
+        }
+        if (offsetAt(position) != expectedOffset) {
+            return false;
+        }
+        crc.reset();
+        crc.update(buffer.slice(position + 8, length + 16));
+        return (int) crc.getValue() == buffer.getInt(position + 4);
+    }
+
+    private void appendIndex(long offset, long timestamp, int position) throws IOException {
+        indexEntry.clear();
+        indexEntry.putLong(offset).putLong(timestamp).putInt(position).flip();
+        long filePosition = (long) indexCount * INDEX_ENTRY_BYTES;
+        while (indexEntry.hasRemaining()) {
+            filePosition += indexChannel.write(indexEntry, filePosition);
+        }
+        addIndexEntry(offset, timestamp, position);
+    }
+
+    private synchronized void addIndexEntry(long offset, long timestamp, int position) {
+        if (indexCount == indexOffsets.length) {
+            indexOffsets = Arrays.copyOf(indexOffsets, indexCount * 2);
+            indexTimestamps = Arrays.copyOf(indexTimestamps, indexCount * 2);
+            indexPositions = Arrays.copyOf(indexPositions, indexCount * 2);
+        }
+        indexOffsets[indexCount] = offset;
+        indexTimestamps[indexCount] = timestamp;
+        indexPositions[indexCount] = position;
+        indexCount++;
+    }
+
+    /**
+     * @return 值不大于key的最后一个索引项，没有时返回-1（调用方持有this的锁）
+     */
+    private int floorIndex(long[] values, long key) {
+        int low = 0;
+        int high = indexCount - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] <= key) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+}
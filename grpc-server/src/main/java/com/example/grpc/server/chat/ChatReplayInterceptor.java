@@ -0,0 +1,34 @@
+package com.example.grpc.server.chat;
+
+import com.example.grpc.common.chat.ChatReplayHeaders;
+import com.example.grpc.server.interceptor.ServerInterceptorOrder;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import org.springframework.core.annotation.Order;
+
+/**
+ * 聊天历史回放拦截器
+ *
+ * 从请求头读取回放起点放入调用的Context，UserChat开始时据此先推送历史消息
+ */
+@Order(ServerInterceptorOrder.CHAT_REPLAY)
+public class ChatReplayInterceptor implements ServerInterceptor {
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        long fromOffset = ChatReplayHeaders.parse(headers.get(ChatReplayHeaders.FROM_OFFSET));
+        long fromTimestamp = ChatReplayHeaders.parse(headers.get(ChatReplayHeaders.FROM_TIMESTAMP));
+        if (fromOffset == 0 && fromTimestamp == 0) {
+            return next.startCall(call, headers);
+        }
+        Context context = Context.current().withValue(ChatReplayRequest.KEY,
+                new ChatReplayRequest(fromOffset, fromTimestamp));
+        return Contexts.interceptCall(context, call, headers, next);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.grpc.server.chat;
+
+import io.grpc.Context;
+import lombok.Value;
+
+/**
+ * 当前UserChat调用请求的历史回放起点
+ *
+ * 由ChatReplayInterceptor从请求头解析后放入调用的Context
+ */
+@Value
+public class ChatReplayRequest {
+
+    static final Context.Key<ChatReplayRequest> KEY = Context.key("chat-replay");
+
+    /**
+     * 回放起点的偏移量，0表示未指定
+     */
+    long fromOffset;
+
+    /**
+     * 回放起点的时间戳，0表示未指定
+     */
+    long fromTimestamp;
+
+    /**
+     * @return 当前调用的回放请求，没有请求回放时为null
+     */
+    public static ChatReplayRequest current() {
+        return KEY.get();
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.grpc.server.cluster;
+
+import com.example.grpc.proto.User;
+import com.example.grpc.server.store.UserProjection;
+import com.example.grpc.server.store.UserStore;
+import com.example.grpc.server.store.UserUpdate;
+import com.example.grpc.server.store.UserWriteResult;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 带本地缓存的用户存储
+ *
+ * 包装实际的UserStore：按ID查询先查本地缓存；本节点的写入提交后更新缓存，并追加到InvalidationLog广播给其他节点。
+ * 同一用户的写入按ID分段加锁串行执行，保证本节点内提交、更新缓存和分配序号的顺序一致
+ */
+public class CachingUserStore implements UserStore, DisposableBean {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final UserStore delegate;
+    private final UserCache cache;
+    private final InvalidationLog invalidationLog;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public CachingUserStore(UserStore delegate, UserCache cache, InvalidationLog invalidationLog) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.invalidationLog = invalidationLog;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @return 被包装的存储
+     */
+    public UserStore getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public UserWriteResult create(String username, String email, int age) {
+        UserWriteResult result = delegate.create(username, email, age);
+        if (result.isSuccess()) {
+            synchronized (lockFor(result.getUser().getId())) {
+                cache.put(result.getUser());
+                invalidationLog.appendUpdated(result.getUser());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Optional<User> findById(long id) {
+        Optional<User> cached = cache.get(id);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        long generation = cache.generation();
+        Optional<User> user = delegate.findById(id);
+        user.ifPresent(value -> cache.populate(value, generation));
+        return user;
+    }
+
+    /**
+     * 缓存中有这个用户时直接取它的版本号；否则只向实际的存储查询版本号，不填充缓存
+     */
+    @Override
+    public Optional<Long> findVersion(long id) {
+        Optional<User> cached = cache.get(id);
+        if (cached.isPresent()) {
+            return cached.map(User::getVersion);
+        }
+        return delegate.findVersion(id);
+    }
+
+    @Override
+    public List<User> findAll() {
+        return delegate.findAll();
+    }
+
+    /**
+     * 查询全部用户不经过缓存，直接让实际的存储只查询需要的列
+     */
+    @Override
+    public List<User> findAll(UserProjection projection) {
+        return delegate.findAll(projection);
+    }
+
+    @Override
+    public UserWriteResult update(long id, String username, String email, int age) {
+        synchronized (lockFor(id)) {
+            UserWriteResult result = delegate.update(id, username, email, age);
+            if (result.isSuccess()) {
+                cache.put(result.getUser());
+                invalidationLog.appendUpdated(result.getUser());
+            } else if (result.getOutcome() == UserWriteResult.Outcome.NOT_FOUND) {
+                cache.invalidate(id);
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public boolean delete(long id) {
+        synchronized (lockFor(id)) {
+            boolean deleted = delegate.delete(id);
+            cache.invalidate(id);
+            if (deleted) {
+                invalidationLog.appendDeleted(id);
+            }
+            return deleted;
+        }
+    }
+
+    /**
+     * 按顺序锁住这一块涉及的全部分段后再写入，与单个更新的锁顺序一致，不会死锁
+     */
+    @Override
+    public List<UserWriteResult> updateAll(List<UserUpdate> updates) {
+        return withLocks(stripesOf(updates.stream().map(UserUpdate::getId).toList()), 0, () -> {
+            List<UserWriteResult> results = delegate.updateAll(updates);
+            for (int i = 0; i < results.size(); i++) {
+                UserWriteResult result = results.get(i);
+                if (result.isSuccess()) {
+                    cache.put(result.getUser());
+                    invalidationLog.appendUpdated(result.getUser());
+                } else if (result.getOutcome() == UserWriteResult.Outcome.NOT_FOUND) {
+                    cache.invalidate(updates.get(i).getId());
+                }
+            }
+            return results;
+        });
+    }
+
+    @Override
+    public List<Boolean> deleteAll(List<Long> ids) {
+        return withLocks(stripesOf(ids), 0, () -> {
+            List<Boolean> results = delegate.deleteAll(ids);
+            for (int i = 0; i < results.size(); i++) {
+                long id = ids.get(i);
+                cache.invalidate(id);
+                if (results.get(i)) {
+                    invalidationLog.appendDeleted(id);
+                }
+            }
+            return results;
+        });
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public void scan(int fetchSize, Consumer<User> consumer) {
+        delegate.scan(fetchSize, consumer);
+    }
+
+    /**
+     * 快照恢复只在本节点启动时执行，其他节点各自恢复，不广播
+     */
+    @Override
+    public void batchInsert(List<User> users) {
+        delegate.batchInsert(users);
+        cache.clear();
+    }
+
+    @Override
+    public void restartIdentity() {
+        delegate.restartIdentity();
+    }
+
+    @Override
+    public long maxId() {
+        return delegate.maxId();
+    }
+
+    /**
+     * 包装后容器只能看到这个对象，由它转发被包装存储的关闭回调
+     */
+    @Override
+    public void destroy() throws Exception {
+        if (delegate instanceof DisposableBean disposable) {
+            disposable.destroy();
+        }
+    }
+
+    private Object lockFor(long id) {
+        return locks[Math.floorMod(id, LOCK_STRIPES)];
+    }
+
+    /**
+     * @return 这些ID所在的分段，从小到大排列、不重复
+     */
+    private static int[] stripesOf(List<Long> ids) {
+        return ids.stream().mapToInt(id -> Math.floorMod(id, LOCK_STRIPES)).distinct().sorted().toArray();
+    }
+
+    /**
+     * 依次锁住stripes中从index开始的分段，全部锁住后执行action
+     */
+    private <T> T withLocks(int[] stripes, int index, Supplier<T> action) {
+        if (index == stripes.length) {
+            return action.get();
+        }
+        synchronized (locks[stripes[index]]) {
+            return withLocks(stripes, index + 1, action);
+        }
+    }
+}
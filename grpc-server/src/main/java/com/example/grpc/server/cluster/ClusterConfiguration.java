@@ -0,0 +1,51 @@
+package com.example.grpc.server.cluster;
+
+import com.example.grpc.server.store.UserStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 多节点缓存配置
+ *
+ * 用CachingUserStore包装实际的UserStore，不改变存储模式的选择逻辑：
+ * UserGrpcService和快照服务注入的UserStore就是包装后的对象
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "user-service.cluster", name = "enabled", havingValue = "true")
+public class ClusterConfiguration {
+
+    @Bean
+    public UserCache userCache(ClusterProperties properties) {
+        return new UserCache(properties.getCacheMaxSize(), properties.getCacheTtl().toMillis());
+    }
+
+    @Bean
+    public InvalidationLog invalidationLog(ClusterProperties properties) {
+        return new InvalidationLog(properties.getRetainedEvents());
+    }
+
+    @Bean(destroyMethod = "close")
+    public PeerSubscriptions peerSubscriptions(ClusterProperties properties, UserCache userCache) {
+        return new PeerSubscriptions(properties, userCache);
+    }
+
+    /**
+     * BeanPostProcessor需要尽早创建，声明为static，依赖通过ObjectProvider延迟获取
+     */
+    @Bean
+    public static BeanPostProcessor cachingUserStorePostProcessor(ObjectProvider<UserCache> userCache,
+                                                                  ObjectProvider<InvalidationLog> invalidationLog) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof UserStore store && !(bean instanceof CachingUserStore)) {
+                    return new CachingUserStore(store, userCache.getObject(), invalidationLog.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
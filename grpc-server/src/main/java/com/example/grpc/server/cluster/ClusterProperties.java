@@ -0,0 +1,64 @@
+package com.example.grpc.server.cluster;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 多节点缓存配置
+ *
+ * 对应application.yml中的user-service.cluster配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "user-service.cluster")
+public class ClusterProperties {
+
+    /**
+     * 是否启用按ID查询的本地用户缓存和节点间的失效广播
+     */
+    private boolean enabled = false;
+
+    /**
+     * 本节点ID，默认随机生成
+     */
+    private String nodeId = UUID.randomUUID().toString().substring(0, 8);
+
+    /**
+     * 其他节点的gRPC地址（host:port）
+     */
+    private List<String> peers = new ArrayList<>();
+
+    /**
+     * 本地缓存的最大用户数
+     */
+    private int cacheMaxSize = 100_000;
+
+    /**
+     * 缓存条目的存活时间，兜底节点之间断连或并发写入造成的过期数据
+     */
+    private Duration cacheTtl = Duration.ofSeconds(30);
+
+    /**
+     * 发布方保留的最近事件数，订阅方重连时落后超过这个数量只能清空缓存
+     */
+    private int retainedEvents = 10_000;
+
+    /**
+     * 每批最多推送的事件数
+     */
+    private int maxBatchSize = 256;
+
+    /**
+     * 推送间隔，同一间隔内同一用户的多次变更合并为一个事件
+     */
+    private Duration flushInterval = Duration.ofMillis(5);
+
+    /**
+     * 与其他节点断开后的重连间隔
+     */
+    private Duration reconnectDelay = Duration.ofSeconds(1);
+}
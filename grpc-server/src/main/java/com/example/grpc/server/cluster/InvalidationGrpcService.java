@@ -0,0 +1,197 @@
+package com.example.grpc.server.cluster;
+
+import com.example.grpc.proto.InvalidationBatch;
+import com.example.grpc.proto.InvalidationEvent;
+import com.example.grpc.proto.InvalidationSubscribeRequest;
+import com.example.grpc.proto.UserInvalidationServiceGrpc;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.service.GrpcService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存失效服务：把本节点的用户变更推送给订阅的其他节点
+ *
+ * 每个订阅记录下一个要推送的序号，推送线程每隔flush-interval从InvalidationLog拉取新事件：
+ * - 同一批内同一用户的多次变更只保留最后一次，突发写入时大幅减少推送的事件数
+ * - 订阅方的流暂时不可写（isReady为false）时跳过这一轮，事件留在日志中，实现背压
+ * - 订阅方落后超过日志保留的事件数时，推送一个reset批次，让订阅方清空缓存后从最新序号继续
+ */
+@GrpcService
+@ConditionalOnProperty(prefix = "user-service.cluster", name = "enabled", havingValue = "true")
+@Slf4j
+public class InvalidationGrpcService extends UserInvalidationServiceGrpc.UserInvalidationServiceImplBase {
+
+    private final InvalidationLog invalidationLog;
+    private final ClusterProperties properties;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService pusher;
+
+    public InvalidationGrpcService(InvalidationLog invalidationLog, ClusterProperties properties) {
+        this.invalidationLog = invalidationLog;
+        this.properties = properties;
+        this.pusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-invalidation-pusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMicros = Math.max(1, properties.getFlushInterval().toNanos() / 1000);
+        pusher.scheduleWithFixedDelay(this::pushAll, intervalMicros, intervalMicros, TimeUnit.MICROSECONDS);
+    }
+
+    @Override
+    public void subscribe(InvalidationSubscribeRequest request, StreamObserver<InvalidationBatch> responseObserver) {
+        ServerCallStreamObserver<InvalidationBatch> observer = (ServerCallStreamObserver<InvalidationBatch>) responseObserver;
+        Subscription subscription = new Subscription(request.getNodeId(), observer);
+
+        long next = request.getNextSequence();
+        boolean resumable = invalidationLog.getEpoch().equals(request.getEpoch())
+                && next >= invalidationLog.getOldestSequence()
+                && next <= invalidationLog.getLastSequence() + 1;
+        // 推送线程和这里都会调用onNext，同一个流上必须串行
+        synchronized (subscription) {
+            if (resumable) {
+                subscription.nextSequence = next;
+                log.info("节点{}恢复订阅: nextSequence={}", request.getNodeId(), next);
+            } else {
+                sendReset(subscription);
+                log.info("节点{}订阅，从序号{}开始", request.getNodeId(), subscription.nextSequence);
+            }
+        }
+
+        observer.setOnCancelHandler(() -> {
+            subscriptions.remove(subscription);
+            log.info("节点{}取消订阅", subscription.nodeId);
+        });
+        subscriptions.add(subscription);
+    }
+
+    /**
+     * @return 每个订阅方的节点ID和落后的事件数
+     */
+    public List<Map<String, Object>> getSubscriptions() {
+        long last = invalidationLog.getLastSequence();
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Subscription subscription : subscriptions) {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("nodeId", subscription.nodeId);
+            metrics.put("nextSequence", subscription.nextSequence);
+            metrics.put("lag", Math.max(0, last - subscription.nextSequence + 1));
+            metrics.put("batchesSent", subscription.batchesSent);
+            metrics.put("eventsSent", subscription.eventsSent);
+            metrics.put("eventsCoalesced", subscription.eventsCoalesced);
+            result.add(metrics);
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pusher.shutdownNow();
+        for (Subscription subscription : subscriptions) {
+            try {
+                subscription.observer.onCompleted();
+            } catch (RuntimeException e) {
+                log.debug("结束订阅流失败", e);
+            }
+        }
+    }
+
+    private void pushAll() {
+        for (Subscription subscription : subscriptions) {
+            try {
+                synchronized (subscription) {
+                    push(subscription);
+                }
+            } catch (RuntimeException e) {
+                // 流已经关闭，等待取消回调移除
+                log.debug("推送给节点{}失败", subscription.nodeId, e);
+            }
+        }
+    }
+
+    private void push(Subscription subscription) {
+        if (subscription.observer.isCancelled() || !subscription.observer.isReady()) {
+            return;
+        }
+        List<InvalidationEvent> events = invalidationLog.read(subscription.nextSequence, properties.getMaxBatchSize());
+        if (events == null) {
+            log.warn("节点{}落后超过保留的事件数，要求其清空缓存: nextSequence={}",
+                    subscription.nodeId, subscription.nextSequence);
+            sendReset(subscription);
+            return;
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+
+        long first = events.get(0).getSequence();
+        long last = events.get(events.size() - 1).getSequence();
+        List<InvalidationEvent> coalesced = coalesce(events);
+        subscription.observer.onNext(InvalidationBatch.newBuilder()
+                .setEpoch(invalidationLog.getEpoch())
+                .setOriginNode(properties.getNodeId())
+                .setFirstSequence(first)
+                .setLastSequence(last)
+                .addAllEvents(coalesced)
+                .build());
+        subscription.nextSequence = last + 1;
+        subscription.batchesSent++;
+        subscription.eventsSent += coalesced.size();
+        subscription.eventsCoalesced += events.size() - coalesced.size();
+    }
+
+    /**
+     * 同一用户只保留最后一个事件，按最后一次变更的顺序排列
+     */
+    private static List<InvalidationEvent> coalesce(List<InvalidationEvent> events) {
+        Map<Long, InvalidationEvent> latest = new LinkedHashMap<>();
+        for (InvalidationEvent event : events) {
+            latest.remove(event.getUserId());
+            latest.put(event.getUserId(), event);
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    private void sendReset(Subscription subscription) {
+        long last = invalidationLog.getLastSequence();
+        subscription.observer.onNext(InvalidationBatch.newBuilder()
+                .setEpoch(invalidationLog.getEpoch())
+                .setOriginNode(properties.getNodeId())
+                .setFirstSequence(last)
+                .setLastSequence(last)
+                .setReset(true)
+                .build());
+        subscription.nextSequence = last + 1;
+        subscription.batchesSent++;
+    }
+
+    /**
+     * 一个订阅方的推送进度（字段受该对象的锁保护，统计值允许无锁读取）
+     */
+    private static final class Subscription {
+        private final String nodeId;
+        private final ServerCallStreamObserver<InvalidationBatch> observer;
+        private volatile long nextSequence;
+        private volatile long batchesSent;
+        private volatile long eventsSent;
+        private volatile long eventsCoalesced;
+
+        Subscription(String nodeId, ServerCallStreamObserver<InvalidationBatch> observer) {
+            this.nodeId = nodeId;
+            this.observer = observer;
+            this.nextSequence = 1;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.grpc.server.cluster;
+
+import com.example.grpc.proto.InvalidationEvent;
+import com.example.grpc.proto.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 本节点发布的用户变更
+ *
+ * 每次写入提交后追加一个事件，分配连续递增的序号，最近retainedEvents个事件保存在环形数组中，
+ * 订阅方按序号从这里拉取。纪元在每次启动时随机生成，订阅方据此发现本节点重启过、之前的序号已经作废
+ */
+public class InvalidationLog {
+
+    private final String epoch = UUID.randomUUID().toString();
+    private final InvalidationEvent[] ring;
+
+    /**
+     * 最近一个事件的序号，0表示还没有事件（受this保护）
+     */
+    private long lastSequence;
+
+    public InvalidationLog(int retainedEvents) {
+        this.ring = new InvalidationEvent[Math.max(1, retainedEvents)];
+    }
+
+    public String getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * 发布用户的最新值
+     */
+    public long appendUpdated(User user) {
+        return append(InvalidationEvent.newBuilder()
+                .setUserId(user.getId())
+                .setType(InvalidationEvent.Type.UPDATED)
+                .setUser(user));
+    }
+
+    /**
+     * 发布用户已被删除
+     */
+    public long appendDeleted(long userId) {
+        return append(InvalidationEvent.newBuilder()
+                .setUserId(userId)
+                .setType(InvalidationEvent.Type.DELETED));
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return 仍然保留的最早序号
+     */
+    public synchronized long getOldestSequence() {
+        return Math.max(1, lastSequence - ring.length + 1);
+    }
+
+    /**
+     * 读取从指定序号开始的事件
+     *
+     * @param from 第一个序号
+     * @param max  最多读取的事件数
+     * @return 按序号排列的事件，没有新事件时为空；from之前的事件已被覆盖时返回null
+     */
+    public synchronized List<InvalidationEvent> read(long from, int max) {
+        if (from < getOldestSequence()) {
+            return null;
+        }
+        if (from > lastSequence) {
+            return Collections.emptyList();
+        }
+        int count = (int) Math.min(max, lastSequence - from + 1);
+        List<InvalidationEvent> events = new ArrayList<>(count);
+        for (long sequence = from; sequence < from + count; sequence++) {
+            events.add(ring[(int) (sequence % ring.length)]);
+        }
+        return events;
+    }
+
+    private synchronized long append(InvalidationEvent.Builder event) {
+        long sequence = ++lastSequence;
+        ring[(int) (sequence % ring.length)] = event.setSequence(sequence).build();
+        return sequence;
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.grpc.server.cluster;
+
+import com.example.grpc.proto.InvalidationBatch;
+import com.example.grpc.proto.InvalidationEvent;
+import com.example.grpc.proto.InvalidationSubscribeRequest;
+import com.example.grpc.proto.UserInvalidationServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 订阅一个其他节点的用户变更，按序号顺序应用到本地缓存
+ *
+ * 记录对方的纪元和下一个期望的序号，断开后按这个位置重新订阅，对方仍保留这些事件时不丢失也不重复。
+ * 收到的批次与期望的位置不连续（纪元变化或序号跳跃）时，说明错过了事件：清空本地缓存，从这一批之后继续
+ */
+@Slf4j
+public class PeerSubscriber {
+
+    private final String target;
+    private final String nodeId;
+    private final UserCache cache;
+    private final ScheduledExecutorService scheduler;
+    private final long reconnectDelayMillis;
+    private final ManagedChannel channel;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder events = new LongAdder();
+    private final LongAdder resets = new LongAdder();
+    private final LongAdder gaps = new LongAdder();
+
+    /**
+     * 以下状态只在gRPC回调中修改，同一个流的回调是串行的
+     */
+    private volatile String epoch = "";
+    private volatile long nextSequence = 1;
+    private volatile String originNode = "";
+    private volatile boolean connected;
+
+    private volatile ClientCallStreamObserver<InvalidationSubscribeRequest> call;
+    private volatile boolean running = true;
+
+    PeerSubscriber(String target, String nodeId, UserCache cache, ScheduledExecutorService scheduler,
+                   long reconnectDelayMillis) {
+        this.target = target;
+        this.nodeId = nodeId;
+        this.cache = cache;
+        this.scheduler = scheduler;
+        this.reconnectDelayMillis = reconnectDelayMillis;
+        this.channel = ManagedChannelBuilder.forTarget(target).usePlaintext().build();
+    }
+
+    void start() {
+        subscribe();
+    }
+
+    void stop() {
+        running = false;
+        ClientCallStreamObserver<InvalidationSubscribeRequest> current = call;
+        if (current != null) {
+            current.cancel("节点关闭", null);
+        }
+        channel.shutdownNow();
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public String getOriginNode() {
+        return originNode;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public long getNextSequence() {
+        return nextSequence;
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getEvents() {
+        return events.sum();
+    }
+
+    /**
+     * @return 对方要求清空缓存的次数（首次订阅、对方重启或落后太多）
+     */
+    public long getResets() {
+        return resets.sum();
+    }
+
+    /**
+     * @return 本节点发现序号不连续的次数
+     */
+    public long getGaps() {
+        return gaps.sum();
+    }
+
+    private void subscribe() {
+        if (!running) {
+            return;
+        }
+        InvalidationSubscribeRequest request = InvalidationSubscribeRequest.newBuilder()
+                .setNodeId(nodeId)
+                .setEpoch(epoch)
+                .setNextSequence(nextSequence)
+                .build();
+        ClientResponseObserver<InvalidationSubscribeRequest, InvalidationBatch> observer = new ClientResponseObserver<>() {
+            @Override
+            public void beforeStart(ClientCallStreamObserver<InvalidationSubscribeRequest> requestStream) {
+                call = requestStream;
+            }
+
+            @Override
+            public void onNext(InvalidationBatch batch) {
+                if (!connected) {
+                    connected = true;
+                    log.info("已订阅节点{}的用户变更: {}", target, batch.getOriginNode());
+                }
+                apply(batch);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                Status status = Status.fromThrowable(t);
+                disconnected(status.getCode() + " " + status.getDescription());
+            }
+
+            @Override
+            public void onCompleted() {
+                disconnected("对方结束了订阅流");
+            }
+        };
+        UserInvalidationServiceGrpc.newStub(channel).subscribe(request, observer);
+    }
+
+    /**
+     * 按顺序应用一批事件
+     */
+    void apply(InvalidationBatch batch) {
+        batches.increment();
+        originNode = batch.getOriginNode();
+        if (batch.getReset()) {
+            resets.increment();
+            cache.clear();
+        } else if (!batch.getEpoch().equals(epoch) || batch.getFirstSequence() != nextSequence) {
+            gaps.increment();
+            log.warn("节点{}的变更序号不连续，清空本地缓存: epoch={}/{}, expected={}, received={}",
+                    target, epoch, batch.getEpoch(), nextSequence, batch.getFirstSequence());
+            cache.clear();
+        }
+
+        for (InvalidationEvent event : batch.getEventsList()) {
+            if (event.getType() == InvalidationEvent.Type.DELETED) {
+                cache.invalidate(event.getUserId());
+            } else {
+                // 缓存中已有更新的版本（如本节点刚写入）时put会保留缓存中的值
+                cache.put(event.getUser());
+            }
+        }
+        events.add(batch.getEventsCount());
+        epoch = batch.getEpoch();
+        nextSequence = batch.getLastSequence() + 1;
+    }
+
+    private void disconnected(String reason) {
+        call = null;
+        if (!running) {
+            return;
+        }
+        if (connected) {
+            log.warn("与节点{}的订阅断开，{}ms后重连: {}", target, reconnectDelayMillis, reason);
+        } else {
+            log.debug("订阅节点{}失败，{}ms后重试: {}", target, reconnectDelayMillis, reason);
+        }
+        connected = false;
+        scheduler.schedule(this::subscribe, reconnectDelayMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.grpc.server.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 对所有其他节点的订阅
+ *
+ * 启动时订阅user-service.cluster.peers中的每个节点，对方尚未启动时按reconnect-delay重试
+ */
+@Slf4j
+public class PeerSubscriptions implements AutoCloseable {
+
+    private final ScheduledExecutorService scheduler;
+    private final List<PeerSubscriber> subscribers;
+
+    public PeerSubscriptions(ClusterProperties properties, UserCache cache) {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-invalidation-reconnect");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<PeerSubscriber> list = new ArrayList<>(properties.getPeers().size());
+        for (String peer : properties.getPeers()) {
+            list.add(new PeerSubscriber(peer, properties.getNodeId(), cache, scheduler,
+                    properties.getReconnectDelay().toMillis()));
+        }
+        this.subscribers = Collections.unmodifiableList(list);
+        subscribers.forEach(PeerSubscriber::start);
+        log.info("节点{}的缓存失效订阅已启动: peers={}", properties.getNodeId(), properties.getPeers());
+    }
+
+    public List<PeerSubscriber> getSubscribers() {
+        return subscribers;
+    }
+
+    @Override
+    public void close() {
+        subscribers.forEach(PeerSubscriber::stop);
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.grpc.server.cluster;
+
+import com.example.grpc.proto.User;
+import lombok.Value;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按用户ID缓存的本地用户
+ *
+ * 查询未命中时由调用方从存储读取后调用populate回填。读取期间可能有写入或失效事件到达，
+ * 所以回填前比较读取开始时的代数：期间发生过任何失效时放弃回填，避免把旧值写回缓存
+ */
+public class UserCache {
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final long ttlMillis;
+
+    /**
+     * 每次失效或更新加一
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder resets = new LongAdder();
+
+    public UserCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @return 未过期的缓存用户
+     */
+    public Optional<User> get(long id) {
+        Entry entry = entries.get(id);
+        if (entry == null || entry.getExpiresAt() < System.currentTimeMillis()) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(entry.getUser());
+    }
+
+    /**
+     * @return 当前代数，查询存储前获取，回填时传给populate
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * 回填查询结果
+     *
+     * @param generationBeforeRead 查询存储前的代数
+     */
+    public void populate(User user, long generationBeforeRead) {
+        if (generation.get() != generationBeforeRead) {
+            return;
+        }
+        store(user);
+        // 存入后再检查一次，覆盖存入过程中到达的失效
+        if (generation.get() != generationBeforeRead) {
+            entries.remove(user.getId());
+        }
+    }
+
+    /**
+     * 写入提交后的最新值
+     *
+     * 本地写入和对端的变更事件可能乱序到达，缓存中已有更新的版本时保留缓存中的值
+     */
+    public void put(User user) {
+        generation.incrementAndGet();
+        store(user);
+    }
+
+    public void invalidate(long id) {
+        generation.incrementAndGet();
+        entries.remove(id);
+        invalidations.increment();
+    }
+
+    /**
+     * 清空所有缓存，用于无法确定哪些用户已经过期的情况
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        entries.clear();
+        resets.increment();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public long getResets() {
+        return resets.sum();
+    }
+
+    private void store(User user) {
+        if (entries.size() >= maxSize && !entries.containsKey(user.getId())) {
+            evictOne();
+        }
+        Entry entry = new Entry(user, System.currentTimeMillis() + ttlMillis);
+        entries.merge(user.getId(), entry, (cached, updated) ->
+                isNewer(cached.getUser(), updated.getUser()) ? cached : updated);
+    }
+
+    /**
+     * 版本号为0表示没有版本，无法比较时按新值处理
+     */
+    private static boolean isNewer(User cached, User updated) {
+        return cached.getVersion() != 0 && updated.getVersion() != 0 && cached.getVersion() > updated.getVersion();
+    }
+
+    /**
+     * 超出容量时淘汰一个条目：优先淘汰已过期的，否则淘汰遍历到的第一个
+     */
+    private void evictOne() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> iterator = entries.values().iterator();
+        Entry victim = null;
+        for (int scanned = 0; scanned < 16 && iterator.hasNext(); scanned++) {
+            Entry entry = iterator.next();
+            if (victim == null || entry.getExpiresAt() < now) {
+                victim = entry;
+            }
+            if (entry.getExpiresAt() < now) {
+                break;
+            }
+        }
+        if (victim != null) {
+            entries.remove(victim.getUser().getId(), victim);
+        }
+    }
+
+    @Value
+    private static class Entry {
+        User user;
+        long expiresAt;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.grpc.server.controller;
+
+import com.example.grpc.server.bulkhead.Bulkhead;
+import com.example.grpc.server.bulkhead.BulkheadRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 舱壁状态接口
+ * 
+ * 暴露每个舱壁的线程池、队列和调用配额使用情况
+ */
+@RestController
+@RequiredArgsConstructor
+public class BulkheadController {
+    
+    private final ObjectProvider<BulkheadRegistry> registryProvider;
+    
+    /**
+     * 舱壁状态 - GET /admin/bulkheads
+     * 
+     * @return 各舱壁的指标
+     */
+    @GetMapping("/admin/bulkheads")
+    public Map<String, Object> status() {
+        Map<String, Object> result = new HashMap<>();
+        BulkheadRegistry registry = registryProvider.getIfAvailable();
+        result.put("enabled", registry != null);
+        if (registry == null) {
+            return result;
+        }
+        
+        List<Map<String, Object>> bulkheads = new ArrayList<>();
+        for (Bulkhead bulkhead : registry.getBulkheads()) {
+            Map<String, Object> metrics = new HashMap<>();
+            metrics.put("name", bulkhead.getName());
+            metrics.put("poolSize", bulkhead.getPoolSize());
+            metrics.put("activeThreads", bulkhead.getActiveThreads());
+            metrics.put("queueDepth", bulkhead.getQueueDepth());
+            metrics.put("queueCapacity", bulkhead.getQueueCapacity());
+            metrics.put("completedTasks", bulkhead.getCompletedTasks());
+            metrics.put("maxConcurrentCalls", bulkhead.getMaxConcurrentCalls());
+            metrics.put("activeCalls", bulkhead.getActiveCalls());
+            metrics.put("acceptedCalls", bulkhead.getAcceptedCalls());
+            metrics.put("rejectedCalls", bulkhead.getRejectedCalls());
+            metrics.put("callerRuns", bulkhead.getCallerRuns());
+            bulkheads.add(metrics);
+        }
+        result.put("bulkheads", bulkheads);
+        return result;
+    }
+}
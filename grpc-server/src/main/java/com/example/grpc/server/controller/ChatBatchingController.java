@@ -0,0 +1,40 @@
+package com.example.grpc.server.controller;
+
+import com.example.grpc.server.chat.ChatBatching;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 聊天批量回复状态接口
+ * 
+ * 暴露UserChatBatched发送的批次数、平均批次大小，以及回复在缓冲中等待的时间
+ */
+@RestController
+@RequiredArgsConstructor
+public class ChatBatchingController {
+    
+    private final ChatBatching chatBatching;
+    
+    /**
+     * 批量回复统计 - GET /admin/chat-batching
+     * 
+     * @return 批次和等待时间的指标
+     */
+    @GetMapping("/admin/chat-batching")
+    public Map<String, Object> status() {
+        ChatBatching.Stats stats = chatBatching.getStats();
+        Map<String, Object> result = new HashMap<>();
+        result.put("batches", stats.getBatches());
+        result.put("messages", stats.getMessages());
+        result.put("averageBatchSize", stats.getAverageBatchSize());
+        result.put("averageWaitMillis", stats.getAverageWaitMillis());
+        result.put("p50WaitMillis", stats.getWaitPercentileMillis(0.50));
+        result.put("p99WaitMillis", stats.getWaitPercentileMillis(0.99));
+        result.put("maxWaitMillis", stats.getMaxWaitMillis());
+        return result;
+    }
+}
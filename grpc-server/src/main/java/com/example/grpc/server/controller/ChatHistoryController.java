@@ -0,0 +1,62 @@
+package com.example.grpc.server.controller;
+
+import com.example.grpc.server.chat.ChatHistory;
+import com.example.grpc.server.chat.ChatLog;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 聊天历史状态接口
+ * 
+ * 暴露聊天日志的偏移量范围、各日志段的大小，以及写入和回放的计数
+ */
+@RestController
+@RequiredArgsConstructor
+public class ChatHistoryController {
+    
+    private final ObjectProvider<ChatHistory> chatHistoryProvider;
+    
+    /**
+     * 聊天历史状态 - GET /admin/chat-history
+     * 
+     * @return 日志和日志段的指标
+     */
+    @GetMapping("/admin/chat-history")
+    public Map<String, Object> status() {
+        Map<String, Object> result = new HashMap<>();
+        ChatHistory chatHistory = chatHistoryProvider.getIfAvailable();
+        result.put("enabled", chatHistory != null);
+        if (chatHistory == null) {
+            return result;
+        }
+        
+        ChatLog chatLog = chatHistory.getChatLog();
+        result.put("firstOffset", chatLog.getFirstOffset());
+        result.put("nextOffset", chatLog.getNextOffset());
+        result.put("totalBytes", chatLog.getTotalBytes());
+        result.put("queueSize", chatHistory.getQueueSize());
+        result.put("appended", chatHistory.getAppended());
+        result.put("dropped", chatHistory.getDropped());
+        result.put("writeErrors", chatHistory.getWriteErrors());
+        result.put("replays", chatHistory.getReplays());
+        result.put("replayedMessages", chatHistory.getReplayedMessages());
+        List<Map<String, Object>> segments = new ArrayList<>();
+        for (ChatLog.SegmentInfo segment : chatLog.describeSegments()) {
+            Map<String, Object> metrics = new HashMap<>();
+            metrics.put("baseOffset", segment.getBaseOffset());
+            metrics.put("nextOffset", segment.getNextOffset());
+            metrics.put("bytes", segment.getBytes());
+            metrics.put("lastTimestamp", segment.getLastTimestamp());
+            segments.add(metrics);
+        }
+        result.put("segments", segments);
+        return result;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.grpc.server.controller;
+
+import com.example.grpc.server.cluster.ClusterProperties;
+import com.example.grpc.server.cluster.InvalidationGrpcService;
+import com.example.grpc.server.cluster.InvalidationLog;
+import com.example.grpc.server.cluster.PeerSubscriber;
+import com.example.grpc.server.cluster.PeerSubscriptions;
+import com.example.grpc.server.cluster.UserCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 多节点缓存状态接口
+ * 
+ * 暴露本地缓存的命中情况、本节点发布的序号、订阅方的进度，以及对其他节点的订阅进度
+ */
+@RestController
+@RequiredArgsConstructor
+public class ClusterController {
+    
+    private final ClusterProperties properties;
+    private final ObjectProvider<UserCache> userCacheProvider;
+    private final ObjectProvider<InvalidationLog> invalidationLogProvider;
+    private final ObjectProvider<InvalidationGrpcService> invalidationServiceProvider;
+    private final ObjectProvider<PeerSubscriptions> peerSubscriptionsProvider;
+    
+    /**
+     * 缓存和订阅状态 - GET /admin/cluster
+     * 
+     * @return 缓存指标、发布进度和订阅进度
+     */
+    @GetMapping("/admin/cluster")
+    public Map<String, Object> status() {
+        Map<String, Object> result = new HashMap<>();
+        UserCache cache = userCacheProvider.getIfAvailable();
+        result.put("enabled", cache != null);
+        if (cache == null) {
+            return result;
+        }
+        
+        result.put("nodeId", properties.getNodeId());
+        Map<String, Object> cacheMetrics = new HashMap<>();
+        cacheMetrics.put("size", cache.size());
+        cacheMetrics.put("hits", cache.getHits());
+        cacheMetrics.put("misses", cache.getMisses());
+        cacheMetrics.put("invalidations", cache.getInvalidations());
+        cacheMetrics.put("resets", cache.getResets());
+        result.put("cache", cacheMetrics);
+        
+        InvalidationLog invalidationLog = invalidationLogProvider.getObject();
+        result.put("epoch", invalidationLog.getEpoch());
+        result.put("lastSequence", invalidationLog.getLastSequence());
+        InvalidationGrpcService service = invalidationServiceProvider.getIfAvailable();
+        if (service != null) {
+            result.put("subscribers", service.getSubscriptions());
+        }
+        
+        List<Map<String, Object>> peers = new ArrayList<>();
+        for (PeerSubscriber subscriber : peerSubscriptionsProvider.getObject().getSubscribers()) {
+            Map<String, Object> metrics = new HashMap<>();
+            metrics.put("target", subscriber.getTarget());
+            metrics.put("nodeId", subscriber.getOriginNode());
+            metrics.put("connected", subscriber.isConnected());
+            metrics.put("nextSequence", subscriber.getNextSequence());
+            metrics.put("batches", subscriber.getBatches());
+            metrics.put("events", subscriber.getEvents());
+            metrics.put("resets", subscriber.getResets());
+            metrics.put("gaps", subscriber.getGaps());
+            peers.add(metrics);
+        }
+        result.put("peers", peers);
+        return result;
+    }
+}
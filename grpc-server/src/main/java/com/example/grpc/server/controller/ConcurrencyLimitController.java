@@ -0,0 +1,50 @@
+package com.example.grpc.server.controller;
+
+import com.example.grpc.server.limit.ConcurrencyLimitInterceptor;
+import com.example.grpc.server.limit.ConcurrencyLimitProperties;
+import com.example.grpc.server.limit.GradientConcurrencyLimit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 并发限制状态接口
+ * 
+ * 暴露当前的并发上限、在途调用数和各方法的拒绝次数，用于观察过载时的限流效果
+ */
+@RestController
+@RequiredArgsConstructor
+public class ConcurrencyLimitController {
+    
+    private final ObjectProvider<ConcurrencyLimitInterceptor> interceptorProvider;
+    private final ConcurrencyLimitProperties properties;
+    
+    /**
+     * 并发限制状态 - GET /admin/concurrency-limit
+     * 
+     * @return 并发限制状态
+     */
+    @GetMapping("/admin/concurrency-limit")
+    public Map<String, Object> status() {
+        Map<String, Object> status = new HashMap<>();
+        ConcurrencyLimitInterceptor interceptor = interceptorProvider.getIfAvailable();
+        status.put("enabled", interceptor != null);
+        if (interceptor == null) {
+            return status;
+        }
+        
+        GradientConcurrencyLimit limit = interceptor.getLimit();
+        status.put("limit", limit.getLimit());
+        status.put("inflight", limit.getInflight());
+        status.put("longRttMillis", limit.getLongRttMillis());
+        status.put("lastRttMillis", limit.getLastRttMillis());
+        status.put("priorities", properties.getPriorities());
+        status.put("accepted", interceptor.getAcceptedCounts());
+        status.put("rejected", interceptor.getRejectedCounts());
+        return status;
+    }
+}
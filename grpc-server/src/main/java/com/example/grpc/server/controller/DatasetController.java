@@ -0,0 +1,118 @@
+package com.example.grpc.server.controller;
+
+import com.example.grpc.server.dataset.DatasetProperties;
+import com.example.grpc.server.dataset.DatasetService;
+import com.example.grpc.server.store.UserStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 合成数据集管理接口
+ *
+ * 生成在后台线程执行，接口立即返回，通过GET查询进度
+ */
+@RestController
+@RequestMapping("/admin/dataset")
+@RequiredArgsConstructor
+public class DatasetController {
+
+    private final DatasetService datasetService;
+    private final DatasetProperties properties;
+    private final UserStore userStore;
+
+    /**
+     * 追加生成用户 - POST /admin/dataset?count=1000000&seed=42
+     *
+     * @param count 生成的用户数
+     * @param seed  随机种子，不指定时使用配置的种子
+     * @return 触发结果
+     */
+    @PostMapping
+    public Map<String, Object> generate(@RequestParam long count, @RequestParam(required = false) Long seed) {
+        Map<String, Object> result = new HashMap<>();
+        if (!properties.isEnabled()) {
+            result.put("success", false);
+            result.put("message", "合成数据集未启用");
+            return result;
+        }
+        if (count <= 0 || count > properties.getMaxCount()) {
+            result.put("success", false);
+            result.put("message", "用户数必须在1到" + properties.getMaxCount() + "之间");
+            return result;
+        }
+
+        DatasetService.Generation generation = datasetService.generateAsync(count,
+                seed != null ? seed : properties.getSeed());
+        if (generation == null) {
+            result.put("success", false);
+            result.put("message", "已经有生成任务在执行");
+            return result;
+        }
+        result.put("success", true);
+        result.put("message", "合成数据生成已在后台开始");
+        result.put("count", generation.getTarget());
+        result.put("seed", generation.getSeed());
+        return result;
+    }
+
+    /**
+     * 停止正在执行的生成 - DELETE /admin/dataset
+     */
+    @DeleteMapping
+    public Map<String, Object> cancel() {
+        Map<String, Object> result = new HashMap<>();
+        boolean cancelled = datasetService.cancel();
+        result.put("success", cancelled);
+        result.put("message", cancelled ? "生成任务将在当前批次写入后停止" : "没有正在执行的生成任务");
+        return result;
+    }
+
+    /**
+     * 查询生成进度和当前规模 - GET /admin/dataset
+     *
+     * maxId只在没有生成任务时返回，堆外存储需要遍历全部用户才能得到
+     */
+    @GetMapping
+    public Map<String, Object> status() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", properties.isEnabled());
+        status.put("userCount", userStore.count());
+
+        DatasetService.Generation generation = datasetService.getRunning();
+        status.put("inProgress", generation != null);
+        if (generation != null) {
+            Map<String, Object> progress = new HashMap<>();
+            progress.put("target", generation.getTarget());
+            progress.put("generated", generation.getGenerated());
+            progress.put("firstId", generation.getFirstId());
+            progress.put("elapsedMillis", generation.getElapsedMillis());
+            progress.put("usersPerSecond", generation.getUsersPerSecond());
+            status.put("progress", progress);
+        } else {
+            status.put("maxId", userStore.maxId());
+        }
+
+        DatasetService.GenerationResult lastResult = datasetService.getLastResult();
+        if (lastResult != null) {
+            Map<String, Object> last = new HashMap<>();
+            last.put("firstId", lastResult.getFirstId());
+            last.put("userCount", lastResult.getUserCount());
+            last.put("seed", lastResult.getSeed());
+            last.put("elapsedMillis", lastResult.getElapsedMillis());
+            last.put("timestamp", lastResult.getTimestamp());
+            if (lastResult.getError() != null) {
+                last.put("error", lastResult.getError());
+            }
+            status.put("lastResult", last);
+        }
+        return status;
+    }
+}
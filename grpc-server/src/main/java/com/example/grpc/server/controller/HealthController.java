@@ -1,5 +1,10 @@
 package com.example.grpc.server.controller;
 
+import com.example.grpc.server.health.LoadMonitor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -11,24 +16,52 @@ import java.util.Map;
  * 
  * 提供HTTP接口用于监控服务状态
  * 虽然主要使用gRPC通信，但HTTP接口对于监控和健康检查很有用
+ * 启用负载感知健康检查时，状态与gRPC健康服务一致：过载时返回503，让HTTP负载均衡器同样移走流量
  */
 @RestController
 public class HealthController {
     
+    private final ObjectProvider<LoadMonitor> loadMonitor;
+    private final int grpcPort;
+    private final int httpPort;
+    
+    public HealthController(ObjectProvider<LoadMonitor> loadMonitor,
+                            @Value("${grpc.server.port:9090}") int grpcPort,
+                            @Value("${server.port:8080}") int httpPort) {
+        this.loadMonitor = loadMonitor;
+        this.grpcPort = grpcPort;
+        this.httpPort = httpPort;
+    }
+    
     /**
      * 健康检查接口
      * 
-     * @return 服务状态信息
+     * @return 服务状态信息：UP、DEGRADED（负载较高但仍接收流量）或DOWN（过载，503）
      */
     @GetMapping("/health")
-    public Map<String, Object> health() {
+    public ResponseEntity<Map<String, Object>> health() {
         Map<String, Object> health = new HashMap<>();
-        health.put("status", "UP");
+        String status = "UP";
+        LoadMonitor monitor = loadMonitor.getIfAvailable();
+        if (monitor != null) {
+            LoadMonitor.Level level = monitor.getLevel();
+            status = level == LoadMonitor.Level.OVERLOADED ? "DOWN"
+                    : level == LoadMonitor.Level.DEGRADED ? "DEGRADED"
+                    : "UP";
+            Map<String, Object> load = new HashMap<>();
+            load.put("level", level.name());
+            load.put("reason", monitor.getReason());
+            load.put("since", monitor.getLevelSinceMillis());
+            load.put("signals", monitor.getSignals());
+            health.put("load", load);
+        }
+        health.put("status", status);
         health.put("service", "gRPC User Service");
         health.put("timestamp", System.currentTimeMillis());
-        health.put("grpc_port", 9090);
-        health.put("http_port", 8080);
-        return health;
+        health.put("grpc_port", grpcPort);
+        health.put("http_port", httpPort);
+        return ResponseEntity.status("DOWN".equals(status) ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.OK)
+                .body(health);
     }
     
     /**
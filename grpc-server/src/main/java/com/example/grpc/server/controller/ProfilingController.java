@@ -0,0 +1,104 @@
+package com.example.grpc.server.controller;
+
+import com.example.grpc.server.jfr.JfrProfiler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JFR性能分析接口
+ * 
+ * 不重启服务即可开始、导出和停止JFR录制，录制中包含自定义的RPC和数据访问层事件
+ */
+@RestController
+@RequestMapping("/admin/profiling")
+@RequiredArgsConstructor
+public class ProfilingController {
+    
+    private final JfrProfiler profiler;
+    
+    /**
+     * 查询录制状态 - GET /admin/profiling
+     * 
+     * @return 当前录制和可用的JFR设置
+     */
+    @GetMapping
+    public Map<String, Object> status() {
+        Map<String, Object> status = profiler.status();
+        status.put("availableSettings", profiler.availableSettings());
+        return status;
+    }
+    
+    /**
+     * 开始录制 - POST /admin/profiling/start?settings=profile&durationSeconds=300
+     * 
+     * @param settings JFR设置名称，为空时使用user-service.profiling.default-settings
+     * @param durationSeconds 录制时长（秒），为空时一直录制到停止
+     * @return 操作结果
+     */
+    @PostMapping("/start")
+    public Map<String, Object> start(@RequestParam(required = false) String settings,
+                                     @RequestParam(required = false) Long durationSeconds) {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            profiler.start(settings, durationSeconds == null ? null : Duration.ofSeconds(durationSeconds));
+            result.put("success", true);
+            result.putAll(profiler.status());
+        } catch (IllegalStateException | IOException | ParseException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+        }
+        return result;
+    }
+    
+    /**
+     * 导出当前录制的数据，录制继续进行 - POST /admin/profiling/dump
+     * 
+     * @return 导出的文件路径和大小
+     */
+    @PostMapping("/dump")
+    public Map<String, Object> dump() {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            putFile(result, profiler.dump());
+        } catch (IllegalStateException | IOException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+        }
+        return result;
+    }
+    
+    /**
+     * 停止录制并导出全部数据 - POST /admin/profiling/stop
+     * 
+     * @return 导出的文件路径和大小
+     */
+    @PostMapping("/stop")
+    public Map<String, Object> stop() {
+        Map<String, Object> result = new HashMap<>();
+        try {
+            putFile(result, profiler.stop());
+        } catch (IllegalStateException | IOException e) {
+            result.put("success", false);
+            result.put("message", e.getMessage());
+        }
+        return result;
+    }
+    
+    private static void putFile(Map<String, Object> result, Path file) throws IOException {
+        result.put("success", true);
+        result.put("path", file.toString());
+        result.put("bytes", Files.size(file));
+    }
+}
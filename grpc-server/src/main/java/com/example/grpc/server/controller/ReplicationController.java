@@ -0,0 +1,56 @@
+package com.example.grpc.server.controller;
+
+import com.example.grpc.server.replication.Replica;
+import com.example.grpc.server.replication.ReplicaSet;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 读写分离状态接口
+ * 
+ * 暴露每个副本的复制进度、延迟和承担的读请求数
+ */
+@RestController
+@RequiredArgsConstructor
+public class ReplicationController {
+    
+    private final ObjectProvider<ReplicaSet> replicaSetProvider;
+    
+    /**
+     * 副本状态 - GET /admin/replication
+     * 
+     * @return 复制序号和各副本的指标
+     */
+    @GetMapping("/admin/replication")
+    public Map<String, Object> status() {
+        Map<String, Object> result = new HashMap<>();
+        ReplicaSet replicaSet = replicaSetProvider.getIfAvailable();
+        result.put("enabled", replicaSet != null);
+        if (replicaSet == null) {
+            return result;
+        }
+        
+        result.put("currentLsn", replicaSet.getCurrentLsn());
+        result.put("primaryReads", replicaSet.getPrimaryReads());
+        result.put("waitedReads", replicaSet.getWaitedReads());
+        List<Map<String, Object>> replicas = new ArrayList<>();
+        for (Replica replica : replicaSet.getReplicas()) {
+            Map<String, Object> metrics = new HashMap<>();
+            metrics.put("index", replica.getIndex());
+            metrics.put("appliedLsn", replica.getAppliedLsn());
+            metrics.put("pendingChanges", replica.getPendingChanges());
+            metrics.put("lagMillis", replica.getLagMillis());
+            metrics.put("reads", replica.getReads());
+            replicas.add(metrics);
+        }
+        result.put("replicas", replicas);
+        return result;
+    }
+}
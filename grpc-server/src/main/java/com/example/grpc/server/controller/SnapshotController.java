@@ -0,0 +1,71 @@
+package com.example.grpc.server.controller;
+
+import com.example.grpc.server.snapshot.UserSnapshotProperties;
+import com.example.grpc.server.snapshot.UserSnapshotService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 快照管理接口
+ * 
+ * 用于在运行时手动触发快照导出，导出在后台线程执行，接口立即返回
+ */
+@RestController
+@RequestMapping("/admin/snapshot")
+@RequiredArgsConstructor
+public class SnapshotController {
+    
+    private final UserSnapshotService snapshotService;
+    private final UserSnapshotProperties properties;
+    
+    /**
+     * 触发快照导出 - POST /admin/snapshot
+     * 
+     * @return 触发结果
+     */
+    @PostMapping
+    public Map<String, Object> triggerSnapshot() {
+        Map<String, Object> result = new HashMap<>();
+        if (!properties.isEnabled()) {
+            result.put("success", false);
+            result.put("message", "快照功能未启用");
+            return result;
+        }
+        
+        snapshotService.snapshotAsync();
+        result.put("success", true);
+        result.put("message", "快照导出已在后台开始");
+        result.put("path", properties.getPath());
+        return result;
+    }
+    
+    /**
+     * 查询快照状态 - GET /admin/snapshot
+     * 
+     * @return 快照状态信息
+     */
+    @GetMapping
+    public Map<String, Object> status() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("enabled", properties.isEnabled());
+        status.put("path", properties.getPath());
+        status.put("inProgress", snapshotService.isSnapshotInProgress());
+        
+        UserSnapshotService.SnapshotResult lastResult = snapshotService.getLastResult();
+        if (lastResult != null) {
+            Map<String, Object> last = new HashMap<>();
+            last.put("operation", lastResult.getOperation());
+            last.put("userCount", lastResult.getUserCount());
+            last.put("elapsedMillis", lastResult.getElapsedMillis());
+            last.put("timestamp", lastResult.getTimestamp());
+            status.put("lastResult", last);
+        }
+        return status;
+    }
+}
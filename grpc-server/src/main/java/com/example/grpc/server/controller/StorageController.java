@@ -0,0 +1,62 @@
+package com.example.grpc.server.controller;
+
+import com.example.grpc.server.cluster.CachingUserStore;
+import com.example.grpc.server.store.OffHeapUserStore;
+import com.example.grpc.server.store.ShardedUserStore;
+import com.example.grpc.server.store.UserShard;
+import com.example.grpc.server.store.UserStore;
+import com.example.grpc.server.store.UserStoreProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户存储状态接口
+ *
+ * 暴露当前的存储模式，分片模式下还包括每个分片的用户数，用于观察数据分布是否均匀；
+ * 堆外模式下包括记录和索引占用的直接内存
+ */
+@RestController
+@RequiredArgsConstructor
+public class StorageController {
+
+    private final UserStore userStore;
+    private final UserStoreProperties properties;
+
+    /**
+     * 存储状态 - GET /admin/storage
+     *
+     * @return 存储模式和用户数
+     */
+    @GetMapping("/admin/storage")
+    public Map<String, Object> status() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("mode", properties.getMode());
+        result.put("userCount", userStore.count());
+
+        // 启用多节点缓存时实际的存储被CachingUserStore包装
+        UserStore store = userStore instanceof CachingUserStore caching ? caching.getDelegate() : userStore;
+        if (store instanceof ShardedUserStore shardedStore) {
+            List<Map<String, Object>> shards = new ArrayList<>();
+            for (UserShard shard : shardedStore.getShards()) {
+                Map<String, Object> metrics = new HashMap<>();
+                metrics.put("index", shard.getIndex());
+                metrics.put("userCount", shard.count());
+                shards.add(metrics);
+            }
+            result.put("shards", shards);
+        } else if (store instanceof OffHeapUserStore offHeapStore) {
+            Map<String, Object> offHeap = new HashMap<>();
+            offHeap.put("recordBytes", offHeapStore.getRecordBytes());
+            offHeap.put("indexBytes", offHeapStore.getIndexBytes());
+            offHeap.put("capacity", offHeapStore.getCapacity());
+            result.put("offHeap", offHeap);
+        }
+        return result;
+    }
+}
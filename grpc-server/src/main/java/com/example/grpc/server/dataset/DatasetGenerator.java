@@ -0,0 +1,59 @@
+package com.example.grpc.server.dataset;
+
+import com.example.grpc.server.snapshot.UserSnapshotWriter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 离线生成合成数据集快照
+ *
+ * 把SyntheticUserGenerator生成的用户直接写成快照文件，不需要启动服务端；
+ * 服务端启用快照（user-service.snapshot.enabled=true）后，启动时从这个文件通过内存映射批量导入。
+ * 10^7以上的数据集适合这样准备：生成只做一次，文件可以在多次测试之间复用
+ *
+ * 用法：
+ * java -cp ... com.example.grpc.server.dataset.DatasetGenerator
+ *     [--count=1000000] [--seed=42] [--output=data/users.snapshot]
+ *
+ * 同样的种子和数量生成的用户相同，只有注册时间以生成时刻为终点
+ */
+public class DatasetGenerator {
+
+    public static void main(String[] args) throws Exception {
+        long count = 1_000_000;
+        long seed = 42;
+        String output = "data/users.snapshot";
+
+        for (String arg : args) {
+            if (arg.startsWith("--count=")) {
+                count = Long.parseLong(arg.substring("--count=".length()));
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else if (arg.startsWith("--output=")) {
+                output = arg.substring("--output=".length());
+            }
+        }
+
+        Path path = Paths.get(output);
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        long start = System.nanoTime();
+        SyntheticUserGenerator generator = new SyntheticUserGenerator(seed, 1, count, System.currentTimeMillis());
+        try (UserSnapshotWriter writer = new UserSnapshotWriter(path)) {
+            for (long id = 1; id <= count; id++) {
+                writer.write(generator.generate(id));
+                if (id % 10_000_000 == 0) {
+                    System.out.printf("已生成%d个用户%n", id);
+                }
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        System.out.printf("生成完成: %d个用户, %s, %d字节, 耗时%.1fs (%.0f个/秒)%n",
+                count, path, Files.size(path), elapsedNanos / 1e9, count * 1e9 / elapsedNanos);
+    }
+}
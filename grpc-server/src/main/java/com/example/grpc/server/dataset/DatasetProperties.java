@@ -0,0 +1,34 @@
+package com.example.grpc.server.dataset;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 合成数据集配置
+ * 
+ * 对应application.yml中的user-service.dataset配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "user-service.dataset")
+public class DatasetProperties {
+    
+    /**
+     * 是否允许通过管理接口生成合成用户
+     */
+    private boolean enabled = false;
+    
+    /**
+     * 未指定种子时使用的随机种子
+     */
+    private long seed = 42;
+    
+    /**
+     * 每批插入的用户数
+     */
+    private int batchSize = 10000;
+    
+    /**
+     * 一次最多生成的用户数
+     */
+    private long maxCount = 100_000_000;
+}
@@ -0,0 +1,209 @@
+package com.example.grpc.server.dataset;
+
+import com.example.grpc.proto.User;
+import com.example.grpc.server.store.UserStore;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 合成数据集服务
+ *
+ * 在后台线程中用SyntheticUserGenerator生成用户，按批次通过UserStore.batchInsert写入当前的存储，
+ * 与快照恢复走同一条批量导入路径，用于观察各个RPC随用户表规模增长的变化。
+ *
+ * 新用户的ID从当前最大ID之后开始，可以多次调用逐步扩大数据集；
+ * 生成期间创建的用户会和生成的ID冲突，生成结束前不要并发创建用户
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DatasetService {
+
+    private final DatasetProperties properties;
+    private final UserStore userStore;
+
+    private final ExecutorService generatorExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dataset-generator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicReference<Generation> running = new AtomicReference<>();
+
+    private volatile GenerationResult lastResult;
+
+    /**
+     * 在后台追加生成用户
+     *
+     * @param count 生成的用户数
+     * @param seed  随机种子
+     * @return 开始执行的任务；已经有任务在执行时返回null
+     */
+    public Generation generateAsync(long count, long seed) {
+        Generation generation = new Generation(count, seed);
+        if (!running.compareAndSet(null, generation)) {
+            return null;
+        }
+
+        generatorExecutor.execute(() -> {
+            try {
+                GenerationResult result = generate(generation);
+                lastResult = result;
+                log.info("合成数据生成完成: {}个用户, ID从{}开始, 耗时{}ms",
+                        result.getUserCount(), result.getFirstId(), result.getElapsedMillis());
+            } catch (Exception e) {
+                log.error("合成数据生成失败: 已生成{}个用户", generation.getGenerated(), e);
+                lastResult = new GenerationResult(generation.getFirstId(), generation.getGenerated(), seed,
+                        elapsedMillis(generation.startNanos), System.currentTimeMillis(), e.toString());
+            } finally {
+                running.set(null);
+            }
+        });
+        return generation;
+    }
+
+    /**
+     * 停止正在执行的任务，已经写入的批次保留
+     *
+     * @return 是否有任务在执行
+     */
+    public boolean cancel() {
+        Generation generation = running.get();
+        if (generation == null) {
+            return false;
+        }
+        generation.cancelled = true;
+        return true;
+    }
+
+    /**
+     * @return 正在执行的任务，没有时为null
+     */
+    public Generation getRunning() {
+        return running.get();
+    }
+
+    /**
+     * @return 最近一次生成的结果，可能为null
+     */
+    public GenerationResult getLastResult() {
+        return lastResult;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cancel();
+        generatorExecutor.shutdown();
+    }
+
+    private GenerationResult generate(Generation generation) {
+        // 之前批量导入的用户可能还没有移动自增序列
+        userStore.restartIdentity();
+        long firstId = userStore.maxId() + 1;
+        generation.firstId = firstId;
+
+        SyntheticUserGenerator generator = new SyntheticUserGenerator(generation.seed, firstId, generation.target,
+                System.currentTimeMillis());
+        int batchSize = properties.getBatchSize();
+        List<User> batch = new ArrayList<>(batchSize);
+        long endId = firstId + generation.target;
+        for (long id = firstId; id < endId && !generation.cancelled; id++) {
+            batch.add(generator.generate(id));
+            if (batch.size() >= batchSize) {
+                insertBatch(batch, generation);
+            }
+        }
+        insertBatch(batch, generation);
+        userStore.restartIdentity();
+
+        return new GenerationResult(firstId, generation.generated, generation.seed,
+                elapsedMillis(generation.startNanos), System.currentTimeMillis(),
+                generation.cancelled ? "已取消" : null);
+    }
+
+    private void insertBatch(List<User> batch, Generation generation) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        userStore.batchInsert(batch);
+        generation.generated += batch.size();
+        batch.clear();
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * 进行中的生成任务，进度只由生成线程修改
+     */
+    public static class Generation {
+        private final long target;
+        private final long seed;
+        private final long startNanos = System.nanoTime();
+        private volatile long firstId;
+        private volatile long generated;
+        private volatile boolean cancelled;
+
+        Generation(long target, long seed) {
+            this.target = target;
+            this.seed = seed;
+        }
+
+        public long getTarget() {
+            return target;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        /**
+         * @return 第一个生成的ID，任务开始前为0
+         */
+        public long getFirstId() {
+            return firstId;
+        }
+
+        /**
+         * @return 已经写入存储的用户数
+         */
+        public long getGenerated() {
+            return generated;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis(startNanos);
+        }
+
+        public double getUsersPerSecond() {
+            long elapsedNanos = System.nanoTime() - startNanos;
+            return elapsedNanos == 0 ? 0 : generated * 1e9 / elapsedNanos;
+        }
+    }
+
+    /**
+     * 生成结果
+     */
+    @Value
+    public static class GenerationResult {
+        long firstId;
+        long userCount;
+        long seed;
+        long elapsedMillis;
+        long timestamp;
+        /**
+         * 失败或取消的原因，完成时为null
+         */
+        String error;
+    }
+}
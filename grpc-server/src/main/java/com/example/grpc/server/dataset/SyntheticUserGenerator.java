@@ -0,0 +1,160 @@
+package com.example.grpc.server.dataset;
+
+import com.example.grpc.proto.User;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合成用户生成器
+ *
+ * 按种子和用户ID确定性地生成用户：同一个种子、同一个ID总是得到同一个用户，
+ * 因此可以分批生成、中途停止后接着生成，也可以在不同机器上得到完全相同的数据集。
+ *
+ * 数据分布尽量接近真实的用户表：
+ * - 用户名和邮箱由常见的名、姓按Zipf分布组合，按权重选择几种常见格式，前缀大量重复
+ * - 邮箱域名按权重集中在少数几个邮件服务商
+ * - 年龄近似正态分布；注册时间随ID递增，越接近现在注册越密集
+ *
+ * 用户名和邮箱都以由ID打乱得到的数字结尾，而名、姓中没有数字，
+ * 所以不同ID的用户名（邮箱）一定不同，生成时不需要记录用过的名字，内存占用与数据量无关
+ */
+public final class SyntheticUserGenerator {
+
+    private static final String[] FIRST_NAMES = {
+            "wei", "fang", "na", "min", "jing", "li", "qiang", "lei", "jun", "yang",
+            "yong", "yan", "jie", "tao", "ming", "chao", "xiu", "xia", "ping", "gang",
+            "hui", "hong", "james", "john", "robert", "michael", "david", "william", "mary", "patricia",
+            "jennifer", "linda", "elizabeth", "sarah", "daniel", "thomas", "emma", "olivia", "noah", "liam",
+            "sophia", "lucas", "mia", "chen", "yu", "hao", "xin", "yi", "kai", "rui"
+    };
+
+    private static final String[] LAST_NAMES = {
+            "wang", "li", "zhang", "liu", "chen", "yang", "huang", "zhao", "wu", "zhou",
+            "xu", "sun", "ma", "zhu", "hu", "guo", "he", "lin", "luo", "gao",
+            "smith", "johnson", "williams", "brown", "jones", "garcia", "miller", "davis", "rodriguez", "martinez",
+            "lee", "walker", "hall", "young", "king", "wright"
+    };
+
+    private static final String[] DOMAINS = {
+            "gmail.com", "qq.com", "163.com", "outlook.com", "hotmail.com", "yahoo.com",
+            "icloud.com", "example.com", "126.com", "foxmail.com", "sina.com", "protonmail.com"
+    };
+    private static final double[] DOMAIN_WEIGHTS = {28, 18, 12, 9, 7, 6, 5, 5, 4, 3, 2, 1};
+
+    /**
+     * 名字的组合格式，用户名和邮箱前缀各自独立选择
+     */
+    private enum Format {
+        FIRST_LAST, FIRST_DOT_LAST, FIRST_UNDERSCORE_LAST, INITIAL_LAST, FIRST, LAST_FIRST
+    }
+    private static final double[] USERNAME_FORMAT_WEIGHTS = {25, 10, 10, 15, 30, 10};
+    private static final double[] EMAIL_FORMAT_WEIGHTS = {25, 30, 5, 20, 15, 5};
+
+    private static final double[] FIRST_NAME_CDF = cumulative(zipfWeights(FIRST_NAMES.length));
+    private static final double[] LAST_NAME_CDF = cumulative(zipfWeights(LAST_NAMES.length));
+    private static final double[] DOMAIN_CDF = cumulative(DOMAIN_WEIGHTS);
+    private static final double[] USERNAME_FORMAT_CDF = cumulative(USERNAME_FORMAT_WEIGHTS);
+    private static final double[] EMAIL_FORMAT_CDF = cumulative(EMAIL_FORMAT_WEIGHTS);
+
+    /**
+     * 注册时间分布在生成时刻之前的5年内
+     */
+    private static final long CREATED_SPAN_MILLIS = TimeUnit.DAYS.toMillis(5 * 365);
+
+    private final long seed;
+    private final long firstId;
+    private final long count;
+    private final long endMillis;
+
+    /**
+     * @param seed      随机种子
+     * @param firstId   数据集的第一个ID，与count一起决定注册时间的分布
+     * @param count     数据集的用户数
+     * @param endMillis 最后一个用户的注册时间
+     */
+    public SyntheticUserGenerator(long seed, long firstId, long count, long endMillis) {
+        this.seed = seed;
+        this.firstId = firstId;
+        this.count = Math.max(1, count);
+        this.endMillis = endMillis;
+    }
+
+    /**
+     * 生成指定ID的用户（版本号为1）
+     */
+    public User generate(long id) {
+        SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + id);
+        String suffix = Long.toString(scramble(id));
+
+        String username = format(random, USERNAME_FORMAT_CDF) + suffix;
+        String email = format(random, EMAIL_FORMAT_CDF) + suffix + "@" + DOMAINS[sample(random, DOMAIN_CDF)];
+        int age = (int) Math.round(34 + 11 * random.nextGaussian());
+
+        // 累计注册人数随时间平方增长：第f比例的用户在时间跨度的sqrt(f)处注册
+        double fraction = Math.min(1.0, (id - firstId + random.nextDouble()) / count);
+        long createdAt = endMillis - CREATED_SPAN_MILLIS + (long) (CREATED_SPAN_MILLIS * Math.sqrt(fraction));
+
+        return User.newBuilder()
+                .setId(id)
+                .setUsername(username)
+                .setEmail(email)
+                .setAge(Math.max(16, Math.min(80, age)))
+                .setCreatedAt(createdAt)
+                .setVersion(1)
+                .build();
+    }
+
+    private static String format(SplittableRandom random, double[] formatCdf) {
+        String first = FIRST_NAMES[sample(random, FIRST_NAME_CDF)];
+        String last = LAST_NAMES[sample(random, LAST_NAME_CDF)];
+        return switch (Format.values()[sample(random, formatCdf)]) {
+            case FIRST_LAST -> first + last;
+            case FIRST_DOT_LAST -> first + "." + last;
+            case FIRST_UNDERSCORE_LAST -> first + "_" + last;
+            case INITIAL_LAST -> first.charAt(0) + last;
+            case FIRST -> first;
+            case LAST_FIRST -> last + first;
+        };
+    }
+
+    /**
+     * 把ID的低32位做一次双射打乱，高32位保持不变：不同的ID得到不同的数字，
+     * 但相邻ID的后缀看不出顺序，按用户名插入索引时接近随机顺序
+     */
+    static long scramble(long id) {
+        int x = (int) id;
+        x *= 0x9E3779B1;
+        x ^= x >>> 16;
+        x *= 0x85EBCA6B;
+        x ^= x >>> 13;
+        return (id & 0xFFFFFFFF00000000L) | (x & 0xFFFFFFFFL);
+    }
+
+    private static int sample(SplittableRandom random, double[] cdf) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble() * cdf[cdf.length - 1]);
+        return Math.min(cdf.length - 1, index >= 0 ? index + 1 : -index - 1);
+    }
+
+    /**
+     * 第k个（从1开始）的权重为1/k，常见名字的出现次数远高于罕见名字
+     */
+    private static double[] zipfWeights(int n) {
+        double[] weights = new double[n];
+        for (int i = 0; i < n; i++) {
+            weights[i] = 1.0 / (i + 1);
+        }
+        return weights;
+    }
+
+    private static double[] cumulative(double[] weights) {
+        double[] cdf = new double[weights.length];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += weights[i];
+            cdf[i] = total;
+        }
+        return cdf;
+    }
+}
@@ -52,10 +52,21 @@ public class UserEntity {
     private Long createdAt;
     
     /**
-     * 在持久化之前自动设置创建时间
+     * 版本号 - 创建时为1，每次更新由JpaUserStore在行锁内加1
+     * 
+     * 没有使用@Version：它从0开始，而Proto中0表示没有版本
+     */
+    @Column(nullable = false)
+    private Long version;
+    
+    /**
+     * 在持久化之前自动设置创建时间和初始版本号
      */
     @PrePersist
     protected void onCreate() {
         createdAt = System.currentTimeMillis();
+        if (version == null) {
+            version = 1L;
+        }
     }
 } 
\ No newline at end of file
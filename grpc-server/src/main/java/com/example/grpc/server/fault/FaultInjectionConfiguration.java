@@ -0,0 +1,54 @@
+package com.example.grpc.server.fault;
+
+import com.example.grpc.common.fault.FaultInjectionProperties;
+import com.example.grpc.common.fault.FaultInjector;
+import jakarta.annotation.PreDestroy;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 故障注入配置
+ * 
+ * 只用于测试环境：在没有真实的坏网络时，检验截止时间、对冲、降载和流式背压在延迟、错误和停顿下的表现。
+ * 规则可以在运行时通过/admin/fault-injection修改
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "user-service.fault-injection", name = "enabled", havingValue = "true")
+public class FaultInjectionConfiguration {
+    
+    /**
+     * 执行延迟和停顿到期的定时线程；不注册为Bean，避免被当作应用的默认调度器
+     */
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "fault-injection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    @Bean
+    @ConfigurationProperties(prefix = "user-service.fault-injection")
+    public FaultInjectionProperties faultInjectionProperties() {
+        return new FaultInjectionProperties();
+    }
+    
+    @Bean
+    public FaultInjector faultInjector(FaultInjectionProperties properties) {
+        return properties.createInjector();
+    }
+    
+    @GrpcGlobalServerInterceptor
+    public FaultInjectionServerInterceptor faultInjectionServerInterceptor(FaultInjector faultInjector) {
+        return new FaultInjectionServerInterceptor(faultInjector, scheduler);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.grpc.server.fault;
+
+import com.example.grpc.common.fault.FaultDecision;
+import com.example.grpc.common.fault.FaultInjector;
+import com.example.grpc.common.fault.HeldActions;
+import com.example.grpc.server.interceptor.ServerInterceptorOrder;
+import io.grpc.Context;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.springframework.core.annotation.Order;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 服务端故障注入拦截器
+ * 
+ * - 延迟：从服务端第一次发出响应（响应头、消息或结束）开始，推迟之后的所有响应，
+ *   处理线程不被占用，但调用在外层拦截器看来没有结束，继续占用并发许可和舱壁配额
+ * - 错误：不执行服务方法，延迟之后直接以注入的状态结束
+ * - 流停顿：发出第N个响应消息后暂停，期间的响应排队，客户端看到流中途卡住
+ * 
+ * 延迟和停顿期间isReady()返回false，按isReady()发送的服务方法（聊天回放、批量回复、响应式流）停止生产，
+ * 与客户端接收变慢时一样经历背压，而不是把响应堆在内存里；排队的响应发出后再通知一次onReady()
+ * 
+ * 注入发生在单次尝试上，客户端的重试和对冲会重新抽样
+ */
+@Order(ServerInterceptorOrder.FAULT_INJECTION)
+public class FaultInjectionServerInterceptor implements ServerInterceptor {
+    
+    private final FaultInjector injector;
+    private final ScheduledExecutorService scheduler;
+    
+    public FaultInjectionServerInterceptor(FaultInjector injector, ScheduledExecutorService scheduler) {
+        this.injector = injector;
+        this.scheduler = scheduler;
+    }
+    
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        FaultDecision decision = injector.decide(call.getMethodDescriptor());
+        if (decision == null) {
+            return next.startCall(call, headers);
+        }
+        
+        if (decision.getError() != null) {
+            if (decision.getDelayNanos() > 0) {
+                scheduler.schedule(() -> call.close(decision.getError(), new Metadata()),
+                        decision.getDelayNanos(), TimeUnit.NANOSECONDS);
+            } else {
+                call.close(decision.getError(), new Metadata());
+            }
+            // 不请求消息，客户端发来的请求都不会送达
+            return new ServerCall.Listener<>() {
+            };
+        }
+        
+        if (decision.getDelayNanos() == 0 && decision.getStallNanos() == 0) {
+            return next.startCall(call, headers);
+        }
+        FaultInjectingServerCall<ReqT, RespT> faultCall = new FaultInjectingServerCall<>(call, decision);
+        return faultCall.listen(next.startCall(faultCall, headers));
+    }
+    
+    /**
+     * 推迟响应的调用
+     * 
+     * 服务方法对调用的操作本身是串行的，计数不需要同步；推迟的操作由HeldActions串行执行
+     */
+    private class FaultInjectingServerCall<ReqT, RespT>
+            extends ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT> {
+        
+        private final FaultDecision decision;
+        private final HeldActions actions = new HeldActions(scheduler, this::drained);
+        /**
+         * 外层拦截器附加的Context，补发的onReady()在其中执行
+         */
+        private final Context context = Context.current();
+        private volatile ReadyNotifyingListener<ReqT> listener;
+        private volatile boolean closed;
+        private boolean responded;
+        private long sentMessages;
+        
+        FaultInjectingServerCall(ServerCall<ReqT, RespT> delegate, FaultDecision decision) {
+            super(delegate);
+            this.decision = decision;
+        }
+        
+        ServerCall.Listener<ReqT> listen(ServerCall.Listener<ReqT> delegate) {
+            listener = new ReadyNotifyingListener<>(delegate, context);
+            return listener;
+        }
+        
+        @Override
+        public boolean isReady() {
+            // 与客户端拦截器相同：排队期间底层的流即使可写也报告不可写
+            return !actions.isHeld() && delegate().isReady();
+        }
+        
+        @Override
+        public void sendHeaders(Metadata headers) {
+            beforeResponse();
+            actions.run(() -> delegate().sendHeaders(headers));
+        }
+        
+        @Override
+        public void sendMessage(RespT message) {
+            beforeResponse();
+            if (decision.getStallNanos() > 0 && sentMessages++ == decision.getStallAfterMessages()) {
+                actions.hold(decision.getStallNanos());
+            }
+            actions.run(() -> delegate().sendMessage(message));
+        }
+        
+        @Override
+        public void setMessageCompression(boolean enabled) {
+            actions.run(() -> delegate().setMessageCompression(enabled));
+        }
+        
+        @Override
+        public void close(Status status, Metadata trailers) {
+            beforeResponse();
+            closed = true;
+            actions.run(() -> delegate().close(status, trailers));
+        }
+        
+        /**
+         * 排队的响应都已发出：底层的流一直可写，传输层不会再触发onReady()，由这里补发
+         */
+        private void drained() {
+            ReadyNotifyingListener<ReqT> current = listener;
+            if (!closed && current != null && delegate().isReady()) {
+                current.notifyReady();
+            }
+        }
+        
+        private void beforeResponse() {
+            if (!responded) {
+                responded = true;
+                if (decision.getDelayNanos() > 0) {
+                    actions.hold(decision.getDelayNanos());
+                }
+            }
+        }
+    }
+    
+    /**
+     * 可以从定时线程补发onReady()的监听器
+     * 
+     * gRPC的回调对同一个调用是串行的，补发的onReady()不能与它们并发：回调执行期间持有锁，
+     * 补发时拿不到锁就留给正在执行的回调在结束后补发，定时线程不会等待服务方法
+     */
+    private static final class ReadyNotifyingListener<ReqT>
+            extends ForwardingServerCallListener.SimpleForwardingServerCallListener<ReqT> {
+        
+        private final Context context;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final AtomicBoolean readyPending = new AtomicBoolean();
+        private volatile boolean finished;
+        
+        ReadyNotifyingListener(ServerCall.Listener<ReqT> delegate, Context context) {
+            super(delegate);
+            this.context = context;
+        }
+        
+        void notifyReady() {
+            readyPending.set(true);
+            runPendingReady();
+        }
+        
+        @Override
+        public void onMessage(ReqT message) {
+            callback(() -> super.onMessage(message));
+        }
+        
+        @Override
+        public void onHalfClose() {
+            callback(super::onHalfClose);
+        }
+        
+        @Override
+        public void onCancel() {
+            finished = true;
+            callback(super::onCancel);
+        }
+        
+        @Override
+        public void onComplete() {
+            finished = true;
+            callback(super::onComplete);
+        }
+        
+        @Override
+        public void onReady() {
+            // 传输层的onReady()同时满足了等待补发的通知
+            readyPending.set(false);
+            callback(super::onReady);
+        }
+        
+        private void callback(Runnable callback) {
+            lock.lock();
+            try {
+                callback.run();
+            } finally {
+                lock.unlock();
+            }
+            runPendingReady();
+        }
+        
+        /**
+         * 先设置readyPending再尝试加锁，释放锁后再检查readyPending，两边总有一方能补发
+         */
+        private void runPendingReady() {
+            while (readyPending.get() && lock.tryLock()) {
+                try {
+                    if (readyPending.getAndSet(false) && !finished) {
+                        context.run(delegate()::onReady);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.grpc.server.health;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 滑动窗口延迟直方图
+ * 
+ * 记录只写当前时间片的直方图（一次原子自增）；每次采集时roll把当前时间片移入环中，
+ * 分位数按环中最近slices个时间片计算。桶按2的幂分为4个子桶，相对误差不超过25%，
+ * 160个桶覆盖到数小时
+ */
+class LatencyWindow {
+    
+    private static final int BUCKETS = 160;
+    
+    private final AtomicReference<AtomicLongArray> current = new AtomicReference<>(new AtomicLongArray(BUCKETS));
+    
+    /**
+     * 已经结束的时间片（仅采集线程访问）
+     */
+    private final long[][] slices;
+    private int nextSlice;
+    
+    LatencyWindow(int slices) {
+        this.slices = new long[Math.max(1, slices)][BUCKETS];
+    }
+    
+    void record(long latencyNanos) {
+        current.get().incrementAndGet(bucketOf(TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+    }
+    
+    /**
+     * 结束当前时间片，最旧的时间片被覆盖（仅采集线程调用）
+     */
+    void roll() {
+        AtomicLongArray finished = current.getAndSet(new AtomicLongArray(BUCKETS));
+        long[] slice = slices[nextSlice];
+        for (int i = 0; i < BUCKETS; i++) {
+            slice[i] = finished.get(i);
+        }
+        nextSlice = (nextSlice + 1) % slices.length;
+    }
+    
+    /**
+     * @return 窗口内延迟的分位数（毫秒，取所在桶的上界），窗口内没有调用时为0
+     */
+    double percentileMillis(double percentile) {
+        long[] merged = new long[BUCKETS];
+        long total = 0;
+        for (long[] slice : slices) {
+            for (int i = 0; i < BUCKETS; i++) {
+                merged[i] += slice[i];
+                total += slice[i];
+            }
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += merged[i];
+            if (seen >= rank) {
+                return upperBoundMicros(i) / 1000.0;
+            }
+        }
+        return upperBoundMicros(BUCKETS - 1) / 1000.0;
+    }
+    
+    /**
+     * @return 窗口内的调用数
+     */
+    long count() {
+        long total = 0;
+        for (long[] slice : slices) {
+            for (long value : slice) {
+                total += value;
+            }
+        }
+        return total;
+    }
+    
+    static int bucketOf(long micros) {
+        if (micros < 4) {
+            return (int) Math.max(0, micros);
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) ((micros >>> (msb - 2)) & 3);
+        return Math.min(BUCKETS - 1, msb * 4 + sub);
+    }
+    
+    static long upperBoundMicros(int bucket) {
+        if (bucket < 4) {
+            return bucket + 1;
+        }
+        int msb = bucket / 4;
+        int sub = bucket % 4;
+        return (long) (5 + sub) << (msb - 2);
+    }
+}
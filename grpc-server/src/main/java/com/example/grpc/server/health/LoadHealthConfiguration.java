@@ -0,0 +1,45 @@
+package com.example.grpc.server.health;
+
+import com.example.grpc.server.bulkhead.BulkheadRegistry;
+import com.example.grpc.server.store.UserStore;
+import io.grpc.protobuf.services.HealthStatusManager;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * 负载感知健康检查配置
+ * 
+ * gRPC健康服务（grpc.health.v1.Health）由grpc-spring-boot-starter注册，这里根据负载更新它的状态
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "user-service.load-health", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class LoadHealthConfiguration {
+    
+    @Bean
+    public LatencyWindow loadHealthLatencyWindow(LoadHealthProperties properties) {
+        long slices = properties.getLatencyWindow().toMillis() / Math.max(1, properties.getInterval().toMillis());
+        return new LatencyWindow((int) Math.max(1, slices));
+    }
+    
+    @GrpcGlobalServerInterceptor
+    public LoadHealthInterceptor loadHealthInterceptor(LatencyWindow loadHealthLatencyWindow) {
+        return new LoadHealthInterceptor(loadHealthLatencyWindow);
+    }
+    
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public LoadMonitor loadMonitor(LoadHealthProperties properties,
+                                   LoadHealthInterceptor loadHealthInterceptor,
+                                   LatencyWindow loadHealthLatencyWindow,
+                                   ObjectProvider<DataSource> dataSource,
+                                   ObjectProvider<UserStore> userStore,
+                                   ObjectProvider<BulkheadRegistry> bulkheadRegistry,
+                                   ObjectProvider<HealthStatusManager> healthStatusManager) {
+        return new LoadMonitor(properties, loadHealthInterceptor, loadHealthLatencyWindow,
+                dataSource, userStore, bulkheadRegistry, healthStatusManager);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.grpc.server.health;
+
+import com.example.grpc.proto.UserServiceGrpc;
+import com.example.grpc.server.interceptor.CallCompletion;
+import com.example.grpc.server.interceptor.ServerInterceptorOrder;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import org.springframework.core.annotation.Order;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 统计正在处理的调用数和调用延迟，供LoadMonitor判断负载
+ * 
+ * 位于并发限制和舱壁之后，只统计被准入的调用，并且只统计UserService的调用：
+ * 健康检查的Watch、缓存失效的Subscribe等其他服务的流会一直打开，计入后正在处理的调用数永远不会降下来。
+ * 
+ * 一元调用统计到调用结束；服务端流（GetAllUsers）的总耗时取决于结果大小和演示延迟，
+ * 只统计到第一个响应消息（没有响应消息时到调用结束）。双向流和客户端流是长连接，不计入
+ */
+@Order(ServerInterceptorOrder.LOAD_HEALTH)
+public class LoadHealthInterceptor implements ServerInterceptor {
+    
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final LatencyWindow latency;
+    
+    LoadHealthInterceptor(LatencyWindow latency) {
+        this.latency = latency;
+    }
+    
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        MethodDescriptor<ReqT, RespT> method = call.getMethodDescriptor();
+        MethodDescriptor.MethodType type = method.getType();
+        if (!UserServiceGrpc.SERVICE_NAME.equals(method.getServiceName())
+                || (type != MethodDescriptor.MethodType.UNARY && type != MethodDescriptor.MethodType.SERVER_STREAMING)) {
+            return next.startCall(call, headers);
+        }
+        
+        long start = System.nanoTime();
+        AtomicBoolean recorded = new AtomicBoolean();
+        Runnable finish = () -> {
+            if (recorded.compareAndSet(false, true)) {
+                inflight.decrementAndGet();
+                latency.record(System.nanoTime() - start);
+            }
+        };
+        inflight.incrementAndGet();
+        
+        ServerCall<ReqT, RespT> measuredCall = call;
+        if (type == MethodDescriptor.MethodType.SERVER_STREAMING) {
+            measuredCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+                @Override
+                public void sendMessage(RespT message) {
+                    finish.run();
+                    super.sendMessage(message);
+                }
+            };
+        }
+        return CallCompletion.startCall(measuredCall, headers, next, status -> finish.run());
+    }
+    
+    int getInflight() {
+        return inflight.get();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.grpc.server.health;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 负载感知健康检查配置
+ * 
+ * 对应application.yml中的user-service.load-health配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "user-service.load-health")
+public class LoadHealthProperties {
+    
+    /**
+     * 是否根据负载信号更新gRPC健康状态
+     */
+    private boolean enabled = true;
+    
+    /**
+     * 采集负载信号的间隔
+     */
+    private Duration interval = Duration.ofSeconds(1);
+    
+    /**
+     * 计算p99延迟的时间窗口
+     */
+    private Duration latencyWindow = Duration.ofSeconds(10);
+    
+    /**
+     * 连续多少次采集都超过阈值才进入更差的状态
+     */
+    private int enterAfter = 3;
+    
+    /**
+     * 连续多少次采集都低于恢复阈值才回到更好的状态
+     */
+    private int exitAfter = 10;
+    
+    /**
+     * 恢复阈值与进入阈值的比例，两者之间的负载保持当前状态，避免在阈值附近反复切换
+     */
+    private double recoveryRatio = 0.8;
+    
+    /**
+     * DEGRADED状态下gRPC健康检查是否仍然返回SERVING（标准健康检查协议没有降级状态）
+     */
+    private boolean servingWhenDegraded = true;
+    
+    /**
+     * 数据库连接池饱和度：(活跃连接 + 等待连接的线程) / 最大连接数，取所有连接池的最大值
+     */
+    private Threshold poolSaturation = new Threshold(0.8, 1.0);
+    
+    /**
+     * 舱壁线程池队列使用率：排队任务数 / 队列容量，取所有舱壁的最大值
+     */
+    private Threshold queueSaturation = new Threshold(0.5, 0.9);
+    
+    /**
+     * 正在处理的一元和服务端流调用数（双向流是长连接，不计入）
+     */
+    private Threshold inflight = new Threshold(100, 200);
+    
+    /**
+     * 最近latency-window内一元和服务端流调用的p99延迟（毫秒）
+     */
+    private Threshold p99Millis = new Threshold(200, 1000);
+    
+    /**
+     * 一个负载信号的阈值
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Threshold {
+        
+        /**
+         * 达到这个值进入DEGRADED
+         */
+        private double degraded;
+        
+        /**
+         * 达到这个值进入OVERLOADED，gRPC健康检查返回NOT_SERVING
+         */
+        private double overloaded;
+    }
+}
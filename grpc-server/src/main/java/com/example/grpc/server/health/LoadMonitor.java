@@ -0,0 +1,268 @@
+package com.example.grpc.server.health;
+
+import com.example.grpc.proto.UserServiceGrpc;
+import com.example.grpc.server.bulkhead.Bulkhead;
+import com.example.grpc.server.bulkhead.BulkheadRegistry;
+import com.example.grpc.server.cluster.CachingUserStore;
+import com.example.grpc.server.store.ShardedUserStore;
+import com.example.grpc.server.store.UserShard;
+import com.example.grpc.server.store.UserStore;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.protobuf.services.HealthStatusManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 负载监控
+ * 
+ * 按interval采集四个负载信号：数据库连接池饱和度、舱壁队列使用率、正在处理的调用数和最近的p99延迟，
+ * 按阈值判断负载等级，并带滞后地更新标准的grpc.health.v1健康状态：
+ * - 任一信号达到degraded或overloaded阈值，且连续enter-after次采集都是如此，才进入更差的等级
+ * - 所有信号都低于阈值的recovery-ratio倍，且连续exit-after次采集都是如此，才回到更好的等级
+ * OVERLOADED时健康状态为NOT_SERVING，负载均衡器据此把流量从这个节点移走，负载下降后再恢复SERVING
+ */
+@Slf4j
+public class LoadMonitor implements AutoCloseable {
+    
+    /**
+     * 负载等级，从好到差
+     */
+    public enum Level {
+        NORMAL, DEGRADED, OVERLOADED
+    }
+    
+    private final LoadHealthProperties properties;
+    private final LoadHealthInterceptor interceptor;
+    private final LatencyWindow latency;
+    private final ObjectProvider<DataSource> dataSource;
+    private final ObjectProvider<UserStore> userStore;
+    private final ObjectProvider<BulkheadRegistry> bulkheadRegistry;
+    private final ObjectProvider<HealthStatusManager> healthStatusManager;
+    
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "load-monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * 连续超过进入阈值 / 低于恢复阈值的采集次数（仅采集线程访问）
+     */
+    private int worseSamples;
+    private int betterSamples;
+    
+    private volatile Level level = Level.NORMAL;
+    private volatile Map<String, Double> signals = Map.of();
+    private volatile String reason = "";
+    private volatile long levelSinceMillis = System.currentTimeMillis();
+    
+    LoadMonitor(LoadHealthProperties properties, LoadHealthInterceptor interceptor, LatencyWindow latency,
+                ObjectProvider<DataSource> dataSource, ObjectProvider<UserStore> userStore,
+                ObjectProvider<BulkheadRegistry> bulkheadRegistry,
+                ObjectProvider<HealthStatusManager> healthStatusManager) {
+        this.properties = properties;
+        this.interceptor = interceptor;
+        this.latency = latency;
+        this.dataSource = dataSource;
+        this.userStore = userStore;
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.healthStatusManager = healthStatusManager;
+    }
+    
+    public void start() {
+        long intervalMillis = properties.getInterval().toMillis();
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                evaluate();
+            } catch (RuntimeException e) {
+                log.warn("采集负载信号失败", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * @return 当前的负载等级
+     */
+    public Level getLevel() {
+        return level;
+    }
+    
+    /**
+     * @return 最近一次采集的负载信号
+     */
+    public Map<String, Double> getSignals() {
+        return signals;
+    }
+    
+    /**
+     * @return 进入当前等级的原因（超过阈值的信号），NORMAL时为空
+     */
+    public String getReason() {
+        return reason;
+    }
+    
+    public long getLevelSinceMillis() {
+        return levelSinceMillis;
+    }
+    
+    /**
+     * 停止采集，并把健康状态设为NOT_SERVING，让负载均衡器在关闭前移走流量
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        HealthStatusManager manager = healthStatusManager.getIfAvailable();
+        if (manager != null) {
+            manager.enterTerminalState();
+        }
+    }
+    
+    private void evaluate() {
+        latency.roll();
+        Map<String, Double> sampled = new LinkedHashMap<>();
+        sampled.put("poolSaturation", poolSaturation());
+        sampled.put("queueSaturation", queueSaturation());
+        sampled.put("inflight", (double) interceptor.getInflight());
+        sampled.put("p99Millis", latency.percentileMillis(0.99));
+        signals = sampled;
+        
+        List<String> exceeded = new ArrayList<>();
+        Level raw = classify(sampled, 1.0, exceeded);
+        Level recovered = classify(sampled, properties.getRecoveryRatio(), new ArrayList<>());
+        
+        if (raw.compareTo(level) > 0) {
+            betterSamples = 0;
+            if (++worseSamples >= properties.getEnterAfter()) {
+                transition(raw, String.join(", ", exceeded));
+            }
+        } else if (recovered.compareTo(level) < 0) {
+            worseSamples = 0;
+            if (++betterSamples >= properties.getExitAfter()) {
+                transition(recovered, recovered == Level.NORMAL ? "" : String.join(", ", exceeded));
+            }
+        } else {
+            worseSamples = 0;
+            betterSamples = 0;
+        }
+    }
+    
+    /**
+     * @param scale    阈值的倍数，判断是否可以恢复时小于1
+     * @param exceeded 输出：达到阈值的信号
+     * @return 所有信号中最差的等级
+     */
+    private Level classify(Map<String, Double> sampled, double scale, List<String> exceeded) {
+        Level worst = Level.NORMAL;
+        worst = max(worst, classify("poolSaturation", sampled, properties.getPoolSaturation(), scale, exceeded));
+        worst = max(worst, classify("queueSaturation", sampled, properties.getQueueSaturation(), scale, exceeded));
+        worst = max(worst, classify("inflight", sampled, properties.getInflight(), scale, exceeded));
+        worst = max(worst, classify("p99Millis", sampled, properties.getP99Millis(), scale, exceeded));
+        return worst;
+    }
+    
+    private static Level classify(String name, Map<String, Double> sampled, LoadHealthProperties.Threshold threshold,
+                                  double scale, List<String> exceeded) {
+        double value = sampled.get(name);
+        Level result = value >= threshold.getOverloaded() * scale ? Level.OVERLOADED
+                : value >= threshold.getDegraded() * scale ? Level.DEGRADED
+                : Level.NORMAL;
+        if (result != Level.NORMAL) {
+            exceeded.add(String.format("%s=%.2f", name, value));
+        }
+        return result;
+    }
+    
+    private static Level max(Level a, Level b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+    
+    private void transition(Level next, String cause) {
+        log.warn("负载等级变化: {} -> {} {}", level, next, cause);
+        level = next;
+        reason = cause;
+        levelSinceMillis = System.currentTimeMillis();
+        worseSamples = 0;
+        betterSamples = 0;
+        
+        HealthStatusManager manager = healthStatusManager.getIfAvailable();
+        if (manager != null) {
+            HealthCheckResponse.ServingStatus status =
+                    next == Level.OVERLOADED || (next == Level.DEGRADED && !properties.isServingWhenDegraded())
+                            ? HealthCheckResponse.ServingStatus.NOT_SERVING
+                            : HealthCheckResponse.ServingStatus.SERVING;
+            manager.setStatus(HealthStatusManager.SERVICE_NAME_ALL_SERVICES, status);
+            manager.setStatus(UserServiceGrpc.SERVICE_NAME, status);
+        }
+    }
+    
+    /**
+     * @return 所有数据库连接池中最大的饱和度
+     */
+    private double poolSaturation() {
+        double max = 0;
+        for (HikariDataSource pool : pools()) {
+            HikariPoolMXBean mxBean = pool.getHikariPoolMXBean();
+            if (mxBean != null && pool.getMaximumPoolSize() > 0) {
+                double saturation = (mxBean.getActiveConnections() + mxBean.getThreadsAwaitingConnection())
+                        / (double) pool.getMaximumPoolSize();
+                max = Math.max(max, saturation);
+            }
+        }
+        return max;
+    }
+    
+    /**
+     * @return JPA使用的主库连接池，以及分片模式下每个分片的连接池
+     */
+    private List<HikariDataSource> pools() {
+        List<HikariDataSource> pools = new ArrayList<>();
+        DataSource primary = dataSource.getIfAvailable();
+        try {
+            // 启用读写分离时主数据源是路由数据源，事务之外unwrap得到主库的连接池
+            if (primary != null && primary.isWrapperFor(HikariDataSource.class)) {
+                pools.add(primary.unwrap(HikariDataSource.class));
+            }
+        } catch (SQLException e) {
+            log.debug("无法获取主库连接池", e);
+        }
+        UserStore store = userStore.getIfAvailable();
+        if (store instanceof CachingUserStore caching) {
+            store = caching.getDelegate();
+        }
+        if (store instanceof ShardedUserStore shardedStore) {
+            for (UserShard shard : shardedStore.getShards()) {
+                pools.add(shard.getDataSource());
+            }
+        }
+        return pools;
+    }
+    
+    /**
+     * @return 所有舱壁中最大的队列使用率
+     */
+    private double queueSaturation() {
+        BulkheadRegistry registry = bulkheadRegistry.getIfAvailable();
+        if (registry == null) {
+            return 0;
+        }
+        double max = 0;
+        for (Bulkhead bulkhead : registry.getBulkheads()) {
+            if (bulkhead.getQueueCapacity() > 0) {
+                max = Math.max(max, bulkhead.getQueueDepth() / (double) bulkhead.getQueueCapacity());
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.grpc.server.interceptor;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.Status;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 调用结束回调工具
+ * 
+ * 一个gRPC调用可能以两种方式结束：服务端调用close()，或者客户端取消/超时触发onCancel()
+ * 拦截器需要在调用结束时释放资源（并发许可、线程池配额等），这里保证回调恰好执行一次
+ */
+public final class CallCompletion {
+    
+    private CallCompletion() {
+    }
+    
+    /**
+     * 启动调用，并在调用结束时回调onComplete
+     * 
+     * @param call 原始调用
+     * @param headers 请求头
+     * @param next 下一个处理器
+     * @param onComplete 结束回调，参数为最终状态（被取消时为CANCELLED）
+     * @return 包装后的监听器
+     */
+    public static <ReqT, RespT> ServerCall.Listener<ReqT> startCall(ServerCall<ReqT, RespT> call,
+                                                                    Metadata headers,
+                                                                    ServerCallHandler<ReqT, RespT> next,
+                                                                    Consumer<Status> onComplete) {
+        AtomicBoolean completed = new AtomicBoolean(false);
+        
+        ServerCall<ReqT, RespT> trackedCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                try {
+                    super.close(status, trailers);
+                } finally {
+                    if (completed.compareAndSet(false, true)) {
+                        onComplete.accept(status);
+                    }
+                }
+            }
+        };
+        
+        ServerCall.Listener<ReqT> listener;
+        try {
+            listener = next.startCall(trackedCall, headers);
+        } catch (RuntimeException e) {
+            if (completed.compareAndSet(false, true)) {
+                onComplete.accept(Status.fromThrowable(e));
+            }
+            throw e;
+        }
+        
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onCancel() {
+                try {
+                    super.onCancel();
+                } finally {
+                    if (completed.compareAndSet(false, true)) {
+                        onComplete.accept(Status.CANCELLED);
+                    }
+                }
+            }
+        };
+    }
+}
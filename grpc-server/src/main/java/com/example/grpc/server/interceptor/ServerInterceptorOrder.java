@@ -0,0 +1,53 @@
+package com.example.grpc.server.interceptor;
+
+/**
+ * 全局服务端拦截器的顺序
+ * 
+ * 数值越小越靠外层，越先看到请求
+ * 负载保护类的拦截器放在外层，尽早拒绝多余的调用
+ */
+public final class ServerInterceptorOrder {
+    
+    /**
+     * 链路追踪，放在最外层，耗时包括其他拦截器
+     */
+    public static final int TRACING = 50;
+    
+    /**
+     * JFR调用事件，耗时同样包括其他拦截器中的排队
+     */
+    public static final int JFR = 60;
+    
+    /**
+     * 自适应并发限制
+     */
+    public static final int CONCURRENCY_LIMIT = 100;
+    
+    /**
+     * 舱壁准入控制
+     */
+    public static final int BULKHEAD = 200;
+    
+    /**
+     * 负载统计（正在处理的调用数和延迟），只统计被准入的调用
+     */
+    public static final int LOAD_HEALTH = 250;
+    
+    /**
+     * 一致性令牌（读写分离）
+     */
+    public static final int CONSISTENCY_TOKEN = 300;
+    
+    /**
+     * 聊天历史回放起点
+     */
+    public static final int CHAT_REPLAY = 400;
+    
+    /**
+     * 故障注入，放在最内层，注入的延迟计入外层拦截器看到的处理时间并占用并发许可
+     */
+    public static final int FAULT_INJECTION = 500;
+    
+    private ServerInterceptorOrder() {
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.grpc.server.jfr;
+
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 自定义JFR事件配置
+ *
+ * RPC事件由全局拦截器为UserService的调用提交；数据访问层事件通过给Spring Data仓库和@Repository类的代理
+ * 加一个最外层的方法拦截器提交，不需要修改仓库代码
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "user-service.profiling", name = "events-enabled", havingValue = "true", matchIfMissing = true)
+public class JfrConfiguration {
+
+    @GrpcGlobalServerInterceptor
+    public JfrServerInterceptor jfrServerInterceptor() {
+        return new JfrServerInterceptor();
+    }
+
+    /**
+     * BeanPostProcessor需要尽早创建，声明为static
+     */
+    @Bean
+    public static BeanPostProcessor repositoryEventPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof org.springframework.data.repository.Repository<?, ?>)
+                        && AnnotationUtils.findAnnotation(AopUtils.getTargetClass(bean), Repository.class) == null) {
+                    return bean;
+                }
+                RepositoryEventInterceptor interceptor = new RepositoryEventInterceptor(beanName);
+                // Spring Data仓库的拦截器链最后一个拦截器直接执行查询，新的拦截器必须放在最前面
+                if (bean instanceof Advised advised && !advised.isFrozen()) {
+                    advised.addAdvice(0, interceptor);
+                    return bean;
+                }
+                ProxyFactory factory = new ProxyFactory(bean);
+                factory.setProxyTargetClass(true);
+                factory.addAdvice(interceptor);
+                return factory.getProxy();
+            }
+        };
+    }
+}
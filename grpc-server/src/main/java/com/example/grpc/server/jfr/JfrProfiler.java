@@ -0,0 +1,150 @@
+package com.example.grpc.server.jfr;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按需JFR录制
+ *
+ * 同一时间最多一个由管理接口启动的录制：启动时选择JFR设置，随时可以导出当前数据，
+ * 停止时导出并关闭录制。导出的文件可以用JDK Mission Control打开，
+ * 把com.example.grpc.Rpc和com.example.grpc.Repository事件与GC、锁竞争、内存分配等事件放在同一时间轴上分析
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class JfrProfiler {
+
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final ProfilingProperties properties;
+
+    private Recording recording;
+    private String settings;
+
+    /**
+     * 开始录制
+     *
+     * @param settingsName JFR设置名称（default、profile或自定义.jfc的名称），为空时使用默认设置
+     * @param duration     录制时长，到达后自动停止（数据仍然可以导出），为空时一直录制到手动停止
+     * @throws IllegalStateException 已有正在进行的录制
+     * @throws IOException           找不到指定的设置
+     */
+    public synchronized void start(String settingsName, Duration duration) throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("已有正在进行的录制: " + recording.getName());
+        }
+        closeRecording();
+
+        String name = settingsName == null || settingsName.isEmpty() ? properties.getDefaultSettings() : settingsName;
+        Recording newRecording = new Recording(Configuration.getConfiguration(name));
+        newRecording.setName("user-service-" + LocalDateTime.now().format(FILE_TIME));
+        newRecording.setToDisk(true);
+        newRecording.setMaxAge(properties.getMaxAge());
+        newRecording.setMaxSize(properties.getMaxSize().toBytes());
+        if (duration != null) {
+            newRecording.setDuration(duration);
+        }
+        newRecording.start();
+
+        recording = newRecording;
+        settings = name;
+        log.info("JFR录制已开始: name={}, settings={}, duration={}", newRecording.getName(), name, duration);
+    }
+
+    /**
+     * 把录制到目前为止的数据导出到文件，录制继续进行
+     *
+     * @return 导出的文件
+     * @throws IllegalStateException 没有录制
+     */
+    public synchronized Path dump() throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("没有录制");
+        }
+        Path directory = Paths.get(properties.getDirectory());
+        Files.createDirectories(directory);
+        Path file = directory.resolve(recording.getName() + "-" + LocalDateTime.now().format(FILE_TIME) + ".jfr")
+                .toAbsolutePath();
+        recording.dump(file);
+        log.info("JFR录制已导出: {}", file);
+        return file;
+    }
+
+    /**
+     * 停止录制，导出全部数据后关闭
+     *
+     * @return 导出的文件
+     * @throws IllegalStateException 没有录制
+     */
+    public synchronized Path stop() throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("没有录制");
+        }
+        if (recording.getState() == RecordingState.RUNNING) {
+            recording.stop();
+        }
+        Path file = dump();
+        closeRecording();
+        return file;
+    }
+
+    /**
+     * @return 当前录制的名称、状态、设置、开始时间和已录制的数据量
+     */
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("recording", recording != null);
+        if (recording != null) {
+            status.put("name", recording.getName());
+            status.put("state", recording.getState().name());
+            status.put("settings", settings);
+            status.put("startTime", recording.getStartTime() == null ? null : recording.getStartTime().toEpochMilli());
+            status.put("duration", recording.getDuration() == null ? null : recording.getDuration().toString());
+            status.put("bytes", recording.getSize());
+        }
+        return status;
+    }
+
+    /**
+     * @return 可用的JFR设置名称
+     */
+    public List<String> availableSettings() {
+        List<String> names = new ArrayList<>();
+        for (Configuration configuration : Configuration.getConfigurations()) {
+            names.add(configuration.getName());
+        }
+        return names;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        closeRecording();
+    }
+
+    private void closeRecording() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+            settings = null;
+        }
+    }
+}
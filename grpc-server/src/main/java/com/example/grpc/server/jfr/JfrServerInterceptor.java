@@ -0,0 +1,68 @@
+package com.example.grpc.server.jfr;
+
+import com.example.grpc.server.interceptor.CallCompletion;
+import com.example.grpc.proto.UserServiceGrpc;
+import com.example.grpc.server.interceptor.ServerInterceptorOrder;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import org.springframework.core.annotation.Order;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 为每次UserService调用提交一个RpcEvent
+ *
+ * 拦截器是全局注册的，其他服务（健康检查、失效订阅等长期存在的流）直接放行，不产生事件。
+ * 没有正在进行的JFR录制（或录制禁用了这个事件）时直接放行，只多一次isEnabled判断。
+ * 调用期间数据访问层的行数通过Context中的计数器累加到事件上
+ */
+@Order(ServerInterceptorOrder.JFR)
+public class JfrServerInterceptor implements ServerInterceptor {
+
+    /**
+     * 当前调用的数据访问行数，由RepositoryEventInterceptor累加
+     */
+    static final Context.Key<LongAdder> ROWS = Context.key("jfr-rows");
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        if (!UserServiceGrpc.SERVICE_NAME.equals(call.getMethodDescriptor().getServiceName())) {
+            return next.startCall(call, headers);
+        }
+        RpcEvent event = new RpcEvent();
+        if (!event.isEnabled()) {
+            return next.startCall(call, headers);
+        }
+        event.begin();
+        event.method = call.getMethodDescriptor().getFullMethodName();
+
+        LongAdder rows = new LongAdder();
+        LongAdder responses = new LongAdder();
+        Context context = Context.current().withValue(ROWS, rows);
+        ServerCall<ReqT, RespT> countingCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void sendMessage(RespT message) {
+                responses.increment();
+                super.sendMessage(message);
+            }
+        };
+        return CallCompletion.startCall(countingCall, headers,
+                (tracedCall, tracedHeaders) -> Contexts.interceptCall(context, tracedCall, tracedHeaders, next),
+                status -> {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.status = status.getCode().name();
+                        event.rows = rows.sum();
+                        event.responses = responses.sum();
+                        event.commit();
+                    }
+                });
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.grpc.server.jfr;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * JFR性能分析配置
+ *
+ * 对应application.yml中的user-service.profiling配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "user-service.profiling")
+public class ProfilingProperties {
+
+    /**
+     * 是否提交自定义的RPC和数据访问层JFR事件（没有进行中的录制时几乎没有开销）
+     */
+    private boolean eventsEnabled = true;
+
+    /**
+     * 导出的录制文件所在的目录
+     */
+    private String directory = "data/jfr";
+
+    /**
+     * 未指定时使用的JFR设置：default（开销约1%）或profile（更详细，开销约2%）
+     */
+    private String defaultSettings = "profile";
+
+    /**
+     * 录制保留的最长时间，更早的数据会被丢弃
+     */
+    private Duration maxAge = Duration.ofMinutes(30);
+
+    /**
+     * 录制保留的最大数据量
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(256);
+}
@@ -0,0 +1,33 @@
+package com.example.grpc.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR事件：一次数据访问层调用
+ *
+ * 保留调用栈，在JMC中可以看到是哪个RPC、哪段代码发起的查询
+ */
+@Name("com.example.grpc.Repository")
+@Label("Repository Call")
+@Category({"gRPC Demo", "Repository"})
+@Description("UserRepository或UserBulkRepository的一次方法调用")
+class RepositoryEvent extends Event {
+
+    @Label("Repository")
+    String repository;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Rows")
+    @Description("返回或写入的行数，计数和存在性查询为0")
+    long rows;
+
+    @Label("Error")
+    @Description("抛出的异常类型，成功时为空")
+    String error;
+}
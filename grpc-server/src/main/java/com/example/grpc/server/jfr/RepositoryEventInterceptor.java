@@ -0,0 +1,79 @@
+package com.example.grpc.server.jfr;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 为数据访问层的每次方法调用提交一个RepositoryEvent，并把行数累加到所在调用的RpcEvent
+ */
+class RepositoryEventInterceptor implements MethodInterceptor {
+
+    private final String repository;
+
+    RepositoryEventInterceptor(String repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (invocation.getMethod().getDeclaringClass() == Object.class) {
+            return invocation.proceed();
+        }
+        RepositoryEvent event = new RepositoryEvent();
+        if (!event.isEnabled()) {
+            return invocation.proceed();
+        }
+
+        event.begin();
+        long rows = 0;
+        try {
+            Object result = invocation.proceed();
+            rows = rowCount(result);
+            return result;
+        } catch (Throwable t) {
+            event.error = t.getClass().getName();
+            throw t;
+        } finally {
+            event.end();
+            LongAdder callRows = JfrServerInterceptor.ROWS.get();
+            if (callRows != null) {
+                callRows.add(rows);
+            }
+            if (event.shouldCommit()) {
+                event.repository = repository;
+                event.operation = invocation.getMethod().getName();
+                event.rows = rows;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * 估算一次调用涉及的行数：集合和数组按元素数（JDBC批处理返回每批的更新数），Map按条目数（如lockByIds），
+     * Optional按是否存在，计数、存在性查询和void为0，其他返回值（单个实体）为1
+     */
+    private static long rowCount(Object result) {
+        if (result == null || result instanceof Number || result instanceof Boolean) {
+            return 0;
+        }
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Map<?, ?> map) {
+            return map.size();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        if (result.getClass().isArray()) {
+            return Array.getLength(result);
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.grpc.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR事件：一次UserService调用
+ *
+ * 持续时间从服务端收到调用到调用结束（close或被取消），包括排队和发送响应的时间
+ */
+@Name("com.example.grpc.Rpc")
+@Label("gRPC Call")
+@Category({"gRPC Demo", "RPC"})
+@Description("UserService的一次gRPC调用")
+@StackTrace(false)
+class RpcEvent extends Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Status")
+    String status;
+
+    @Label("Rows")
+    @Description("调用期间数据访问层读取或写入的行数")
+    long rows;
+
+    @Label("Responses")
+    @Description("发送的响应消息数")
+    long responses;
+}
@@ -0,0 +1,119 @@
+package com.example.grpc.server.limit;
+
+import com.example.grpc.proto.UserServiceGrpc;
+import com.example.grpc.server.interceptor.CallCompletion;
+import com.example.grpc.server.interceptor.ServerInterceptorOrder;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 自适应并发限制拦截器
+ * 
+ * 数据库变慢时，如果不加限制，请求会不断堆积直到线程和内存耗尽，所有请求的延迟一起崩溃
+ * 这个拦截器根据观测到的RTT动态调整并发上限，超出上限的调用立即以RESOURCE_EXHAUSTED拒绝
+ * 
+ * - 只有一元调用的耗时会作为RTT样本，流式调用的耗时取决于数据量，不能反映服务端负载
+ * - 每个方法有优先级，低优先级（如BatchCreateUsers）只能使用部分配额，过载时先被拒绝
+ * - 只作用于UserService，健康检查和反射服务不受影响
+ */
+@GrpcGlobalServerInterceptor
+@Order(ServerInterceptorOrder.CONCURRENCY_LIMIT)
+@ConditionalOnProperty(prefix = "user-service.concurrency-limit", name = "enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class ConcurrencyLimitInterceptor implements ServerInterceptor {
+    
+    private final ConcurrencyLimitProperties properties;
+    private final GradientConcurrencyLimit limit;
+    
+    private final Map<String, LongAdder> acceptedCounts = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> rejectedCounts = new ConcurrentHashMap<>();
+    
+    public ConcurrencyLimitInterceptor(ConcurrencyLimitProperties properties) {
+        this.properties = properties;
+        this.limit = new GradientConcurrencyLimit(
+                properties.getInitialLimit(),
+                properties.getMinLimit(),
+                properties.getMaxLimit(),
+                properties.getSmoothing(),
+                properties.getRttTolerance(),
+                properties.getLongWindow());
+    }
+    
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        MethodDescriptor<ReqT, RespT> method = call.getMethodDescriptor();
+        String methodName = method.getBareMethodName();
+        
+        if (!UserServiceGrpc.SERVICE_NAME.equals(method.getServiceName())
+                || properties.getExcludedMethods().contains(methodName)) {
+            return next.startCall(call, headers);
+        }
+        
+        MethodPriority priority = properties.getPriorities().getOrDefault(methodName, MethodPriority.NORMAL);
+        if (!limit.tryAcquire(priority.getLimitShare())) {
+            rejectedCounts.computeIfAbsent(methodName, key -> new LongAdder()).increment();
+            log.warn("并发超出上限，拒绝调用: method={}, priority={}, limit={}, inflight={}",
+                    methodName, priority, limit.getLimit(), limit.getInflight());
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription("服务端并发已达上限，请稍后重试"), new Metadata());
+            return new ServerCall.Listener<>() {
+            };
+        }
+        acceptedCounts.computeIfAbsent(methodName, key -> new LongAdder()).increment();
+        
+        boolean sampleRtt = method.getType() == MethodDescriptor.MethodType.UNARY;
+        int inflightAtStart = limit.getInflight();
+        long startNanos = System.nanoTime();
+        
+        return CallCompletion.startCall(call, headers, next, status -> {
+            if (status.getCode() == Status.Code.DEADLINE_EXCEEDED) {
+                limit.releaseWithTimeout();
+            } else if (sampleRtt && status.isOk()) {
+                limit.releaseWithSample(System.nanoTime() - startNanos, inflightAtStart);
+            } else {
+                limit.release();
+            }
+        });
+    }
+    
+    /**
+     * @return 并发限制器
+     */
+    public GradientConcurrencyLimit getLimit() {
+        return limit;
+    }
+    
+    /**
+     * @return 各方法通过的调用数
+     */
+    public Map<String, Long> getAcceptedCounts() {
+        return toCounts(acceptedCounts);
+    }
+    
+    /**
+     * @return 各方法被拒绝的调用数
+     */
+    public Map<String, Long> getRejectedCounts() {
+        return toCounts(rejectedCounts);
+    }
+    
+    private static Map<String, Long> toCounts(Map<String, LongAdder> adders) {
+        Map<String, Long> counts = new TreeMap<>();
+        adders.forEach((method, adder) -> counts.put(method, adder.sum()));
+        return counts;
+    }
+}
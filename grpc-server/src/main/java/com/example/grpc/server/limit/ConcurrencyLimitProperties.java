@@ -0,0 +1,64 @@
+package com.example.grpc.server.limit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 自适应并发限制配置
+ * 
+ * 对应application.yml中的user-service.concurrency-limit配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "user-service.concurrency-limit")
+public class ConcurrencyLimitProperties {
+    
+    /**
+     * 是否启用并发限制
+     */
+    private boolean enabled = true;
+    
+    /**
+     * 初始并发上限
+     */
+    private int initialLimit = 20;
+    
+    /**
+     * 并发上限的下界
+     */
+    private int minLimit = 4;
+    
+    /**
+     * 并发上限的上界
+     */
+    private int maxLimit = 200;
+    
+    /**
+     * 上限调整的平滑系数（0~1，越大调整越快）
+     */
+    private double smoothing = 0.2;
+    
+    /**
+     * RTT容忍度，当前RTT超过长期RTT的这个倍数时才开始收缩上限
+     */
+    private double rttTolerance = 1.5;
+    
+    /**
+     * 长期RTT移动平均的窗口（样本数）
+     */
+    private int longWindow = 600;
+    
+    /**
+     * 方法优先级，key为方法名（如GetUser），未配置的方法为NORMAL
+     */
+    private Map<String, MethodPriority> priorities = new HashMap<>();
+    
+    /**
+     * 不参与并发限制的方法（如长连接的聊天流）
+     */
+    private List<String> excludedMethods = new ArrayList<>();
+}
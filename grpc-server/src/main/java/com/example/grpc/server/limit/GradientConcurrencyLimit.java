@@ -0,0 +1,149 @@
+package com.example.grpc.server.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于梯度算法的自适应并发上限
+ * 
+ * 思路参考Netflix concurrency-limits的Gradient2：
+ * - longRtt：RTT的长期指数移动平均，近似无负载时的延迟
+ * - shortRtt：最新的RTT样本
+ * - gradient = clamp(tolerance * longRtt / shortRtt, 0.5, 1.0)
+ * - newLimit = limit * gradient + sqrt(limit)
+ * 
+ * 延迟上升时gradient小于1，上限收缩；延迟稳定时上限以sqrt(limit)的速度缓慢增长
+ * 数据库变慢时，上限会随之下降，多余的调用在排队之前就被拒绝
+ */
+public class GradientConcurrencyLimit {
+    
+    /**
+     * 超时时上限的衰减系数
+     */
+    private static final double TIMEOUT_BACKOFF_RATIO = 0.9;
+    
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double rttTolerance;
+    private final double longRttFactor;
+    
+    private final AtomicInteger inflight = new AtomicInteger(0);
+    
+    private volatile double estimatedLimit;
+    private volatile double longRttNanos;
+    private volatile long lastRttNanos;
+    
+    public GradientConcurrencyLimit(int initialLimit, int minLimit, int maxLimit,
+                                    double smoothing, double rttTolerance, int longWindow) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.rttTolerance = rttTolerance;
+        this.longRttFactor = 2.0 / (longWindow + 1);
+        this.estimatedLimit = initialLimit;
+    }
+    
+    /**
+     * 尝试获取一个并发许可
+     * 
+     * @param limitShare 调用方可以使用的上限比例（由优先级决定）
+     * @return 是否获取成功
+     */
+    public boolean tryAcquire(double limitShare) {
+        int allowed = Math.max(1, (int) (estimatedLimit * limitShare));
+        while (true) {
+            int current = inflight.get();
+            if (current >= allowed) {
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * 释放许可，不更新上限（流式调用或被取消的调用）
+     */
+    public void release() {
+        inflight.decrementAndGet();
+    }
+    
+    /**
+     * 释放许可并记录一个RTT样本
+     * 
+     * @param rttNanos 调用耗时
+     * @param inflightAtStart 开始时的并发数，用于判断是否处于负载不足状态
+     */
+    public void releaseWithSample(long rttNanos, int inflightAtStart) {
+        inflight.decrementAndGet();
+        onSample(rttNanos, inflightAtStart);
+    }
+    
+    /**
+     * 释放许可并记录一次超时，超时说明已经过载，上限按比例收缩
+     */
+    public synchronized void releaseWithTimeout() {
+        inflight.decrementAndGet();
+        estimatedLimit = clamp(estimatedLimit * TIMEOUT_BACKOFF_RATIO);
+    }
+    
+    private synchronized void onSample(long rttNanos, int inflightAtStart) {
+        lastRttNanos = rttNanos;
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+            return;
+        }
+        
+        double shortRtt = rttNanos;
+        double longRtt = longRttNanos * (1 - longRttFactor) + shortRtt * longRttFactor;
+        // 长期RTT明显高于当前RTT时快速回落，避免负载恢复后上限迟迟不增长
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        longRttNanos = longRtt;
+        
+        // 并发远低于上限时，RTT样本不能反映容量，不调整上限
+        if (inflightAtStart < estimatedLimit / 2) {
+            return;
+        }
+        
+        double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRtt / shortRtt));
+        double queueSize = Math.sqrt(estimatedLimit);
+        double newLimit = estimatedLimit * gradient + queueSize;
+        newLimit = estimatedLimit * (1 - smoothing) + newLimit * smoothing;
+        estimatedLimit = clamp(newLimit);
+    }
+    
+    private double clamp(double limit) {
+        return Math.max(minLimit, Math.min(maxLimit, limit));
+    }
+    
+    /**
+     * @return 当前并发上限
+     */
+    public int getLimit() {
+        return (int) estimatedLimit;
+    }
+    
+    /**
+     * @return 当前正在处理的调用数
+     */
+    public int getInflight() {
+        return inflight.get();
+    }
+    
+    /**
+     * @return 长期RTT（毫秒）
+     */
+    public double getLongRttMillis() {
+        return longRttNanos / 1_000_000.0;
+    }
+    
+    /**
+     * @return 最近一次RTT（毫秒）
+     */
+    public double getLastRttMillis() {
+        return lastRttNanos / 1_000_000.0;
+    }
+}
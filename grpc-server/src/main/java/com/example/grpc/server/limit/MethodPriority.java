@@ -0,0 +1,37 @@
+package com.example.grpc.server.limit;
+
+/**
+ * 方法优先级
+ * 
+ * 每个优先级只能使用并发上限的一部分，过载时低优先级的调用先被拒绝
+ */
+public enum MethodPriority {
+    
+    /**
+     * 关键调用，可以使用全部并发配额
+     */
+    CRITICAL(1.0),
+    
+    /**
+     * 普通调用
+     */
+    NORMAL(0.9),
+    
+    /**
+     * 批量/后台调用，最先被拒绝
+     */
+    BULK(0.6);
+    
+    private final double limitShare;
+    
+    MethodPriority(double limitShare) {
+        this.limitShare = limitShare;
+    }
+    
+    /**
+     * @return 该优先级可使用的并发上限比例
+     */
+    public double getLimitShare() {
+        return limitShare;
+    }
+}
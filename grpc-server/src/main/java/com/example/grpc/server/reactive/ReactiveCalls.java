@@ -0,0 +1,32 @@
+package com.example.grpc.server.reactive;
+
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+/**
+ * 一元调用和Mono之间的桥接
+ */
+final class ReactiveCalls {
+
+    private ReactiveCalls() {
+    }
+
+    /**
+     * 订阅响应并在结果到达时结束调用，处理方法随即返回，不等待结果
+     *
+     * 调用取消或超时（调用的Context被取消）时取消订阅，进行中的事务回滚并归还连接
+     */
+    static <T> void unary(Mono<T> response, StreamObserver<T> observer) {
+        Context context = Context.current();
+        Disposable subscription = response.single().subscribe(
+                value -> {
+                    observer.onNext(value);
+                    observer.onCompleted();
+                },
+                error -> observer.onError(Status.fromThrowable(error).asRuntimeException()));
+        context.addListener(cancelled -> subscription.dispose(), Runnable::run);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.grpc.server.reactive;
+
+import com.example.grpc.server.cluster.ClusterProperties;
+import com.example.grpc.server.replication.ReplicationProperties;
+import com.example.grpc.server.store.UserStoreProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 响应式执行路径配置
+ *
+ * ReactiveUserRepository直接读写JPA的users表，不经过UserStore，
+ * 所以只支持jpa存储模式，也不能和读写分离、多节点缓存同时启用（写入不会发布给副本和其他节点）
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "user-service.reactive", name = "enabled", havingValue = "true")
+public class ReactiveConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public ReactiveUserRepository reactiveUserRepository(ReactiveProperties properties,
+                                                         DataSourceProperties dataSourceProperties,
+                                                         UserStoreProperties storeProperties,
+                                                         ReplicationProperties replicationProperties,
+                                                         ClusterProperties clusterProperties) {
+        if (storeProperties.getMode() != UserStoreProperties.Mode.JPA) {
+            throw new IllegalStateException("响应式执行路径只支持jpa存储模式，当前为" + storeProperties.getMode());
+        }
+        if (replicationProperties.isEnabled() || clusterProperties.isEnabled()) {
+            throw new IllegalStateException("响应式执行路径不能和读写分离、多节点缓存同时启用");
+        }
+        return new ReactiveUserRepository(properties, dataSourceProperties.determineUsername(),
+                dataSourceProperties.determinePassword());
+    }
+}
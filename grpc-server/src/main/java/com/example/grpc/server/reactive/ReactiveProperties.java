@@ -0,0 +1,46 @@
+package com.example.grpc.server.reactive;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 响应式执行路径配置
+ *
+ * 对应application.yml中的user-service.reactive配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "user-service.reactive")
+public class ReactiveProperties {
+
+    /**
+     * 是否用ReactiveUserGrpcService代替UserGrpcService
+     */
+    private boolean enabled = false;
+
+    /**
+     * R2DBC连接地址，需要和spring.datasource.url指向同一个数据库（表由JPA创建）
+     */
+    private String url = "r2dbc:h2:mem:///grpc_demo";
+
+    /**
+     * 连接池的初始连接数
+     */
+    private int initialSize = 4;
+
+    /**
+     * 连接池的最大连接数；连接用完时调用在池中异步等待，不占用线程
+     */
+    private int maxSize = 16;
+
+    /**
+     * 获取连接的最长等待时间
+     */
+    private Duration maxAcquireTime = Duration.ofSeconds(5);
+
+    /**
+     * 流式返回时每次向数据库请求的行数，只有响应流就绪时才继续请求
+     */
+    private int prefetch = 64;
+}
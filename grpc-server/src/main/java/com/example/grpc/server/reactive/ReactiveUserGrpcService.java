@@ -0,0 +1,299 @@
+package com.example.grpc.server.reactive;
+
+import com.example.grpc.proto.*;
+import com.example.grpc.server.chat.ChatBatching;
+import com.example.grpc.server.chat.ChatHistory;
+import com.example.grpc.server.service.BulkWriteProperties;
+import com.example.grpc.server.service.StreamingProperties;
+import com.example.grpc.server.service.UserGrpcService;
+import com.example.grpc.server.store.UserProjection;
+import com.example.grpc.server.store.UserStore;
+import com.example.grpc.server.store.UserWriteResult;
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.service.GrpcService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * 响应式的gRPC用户服务
+ *
+ * 启用user-service.reactive时代替UserGrpcService：用户的增删改查通过ReactiveUserRepository执行，
+ * 处理方法只组装Mono/Flux并订阅，随即返回，不在gRPC的线程上等待数据库，并发调用数不再受线程数限制。
+ * 聊天相关的方法本来就是基于回调的，直接继承UserGrpcService的实现；
+ * BatchUpdateUsers和BatchDeleteUsers也继承UserGrpcService的实现，每块在gRPC的线程上通过JPA存储执行
+ *
+ * - 一元调用：结果到达时发送响应并结束调用，调用取消时取消订阅（进行中的事务回滚）
+ * - GetAllUsers：响应流就绪时才向数据库请求下一批行（ServerStreamSubscriber）
+ * - BatchCreateUsers：关闭自动请求，上一个用户写入完成后才读取下一条请求，客户端发送得再快也不会在服务端堆积
+ */
+@GrpcService
+@ConditionalOnProperty(prefix = "user-service.reactive", name = "enabled", havingValue = "true")
+@Slf4j
+public class ReactiveUserGrpcService extends UserGrpcService {
+
+    private final ReactiveUserRepository repository;
+    private final StreamingProperties streamingProperties;
+    private final int prefetch;
+
+    public ReactiveUserGrpcService(UserStore userStore, StreamingProperties streamingProperties,
+                                   ObjectProvider<ChatHistory> chatHistoryProvider, ChatBatching chatBatching,
+                                   BulkWriteProperties bulkWriteProperties,
+                                   ReactiveUserRepository repository, ReactiveProperties properties) {
+        super(userStore, streamingProperties, chatHistoryProvider, chatBatching, bulkWriteProperties);
+        this.repository = repository;
+        this.streamingProperties = streamingProperties;
+        this.prefetch = properties.getPrefetch();
+    }
+
+    @Override
+    public void createUser(CreateUserRequest request, StreamObserver<CreateUserResponse> responseObserver) {
+        log.info("收到创建用户请求: username={}, email={}, age={}",
+                request.getUsername(), request.getEmail(), request.getAge());
+
+        if (request.getUsername().isEmpty() || request.getEmail().isEmpty()) {
+            responseObserver.onNext(CreateUserResponse.newBuilder()
+                    .setSuccess(false)
+                    .setMessage("用户名和邮箱不能为空")
+                    .build());
+            responseObserver.onCompleted();
+            return;
+        }
+
+        ReactiveCalls.unary(repository.create(request.getUsername(), request.getEmail(), request.getAge())
+                .map(UserGrpcService::createUserResponse)
+                .onErrorResume(e -> {
+                    log.error("创建用户失败", e);
+                    return Mono.just(CreateUserResponse.newBuilder()
+                            .setSuccess(false)
+                            .setMessage("服务器内部错误: " + e.getMessage())
+                            .build());
+                }), responseObserver);
+    }
+
+    @Override
+    public void getUser(GetUserRequest request, StreamObserver<GetUserResponse> responseObserver) {
+        log.info("收到获取用户请求: userId={}, fieldMask={}, ifVersionNot={}", request.getUserId(),
+                request.getFieldMask().getPathsList(), request.getIfVersionNot());
+
+        UserProjection projection;
+        try {
+            projection = UserProjection.of(request.getFieldMask());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onNext(GetUserResponse.newBuilder()
+                    .setSuccess(false)
+                    .setMessage("无效的字段掩码: " + e.getMessage())
+                    .build());
+            responseObserver.onCompleted();
+            return;
+        }
+
+        long userId = request.getUserId();
+        Mono<GetUserResponse> response = repository.findById(userId, projection)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .map(UserGrpcService::getUserResponse);
+        // 条件查询：先只查版本号，未修改时不读取用户
+        long ifVersionNot = request.getIfVersionNot();
+        if (ifVersionNot > 0) {
+            response = repository.findVersion(userId)
+                    .filter(version -> version == ifVersionNot)
+                    .map(version -> notModifiedResponse())
+                    .switchIfEmpty(response);
+        }
+
+        ReactiveCalls.unary(response.onErrorResume(e -> {
+            log.error("获取用户失败", e);
+            return Mono.just(GetUserResponse.newBuilder()
+                    .setSuccess(false)
+                    .setMessage("服务器内部错误: " + e.getMessage())
+                    .build());
+        }), responseObserver);
+    }
+
+    @Override
+    public void getAllUsers(GetAllUsersRequest request, StreamObserver<User> responseObserver) {
+        log.info("收到获取所有用户请求: pageSize={}, fieldMask={}",
+                request.getPageSize(), request.getFieldMask().getPathsList());
+
+        UserProjection projection;
+        try {
+            projection = UserProjection.of(request.getFieldMask());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("无效的字段掩码: " + e.getMessage())
+                    .asRuntimeException());
+            return;
+        }
+
+        Flux<User> users = repository.findAll(projection);
+        // 模拟延迟用定时器实现，等待期间不占用线程
+        long delay = streamingProperties.getEmitDelayMillis();
+        if (delay > 0) {
+            users = users.delayElements(Duration.ofMillis(delay));
+        }
+        ServerStreamSubscriber.subscribe(users.doOnError(e -> log.error("获取所有用户失败", e)),
+                (ServerCallStreamObserver<User>) responseObserver, prefetch);
+    }
+
+    @Override
+    public void updateUser(UpdateUserRequest request, StreamObserver<UpdateUserResponse> responseObserver) {
+        log.info("收到更新用户请求: userId={}", request.getUserId());
+
+        ReactiveCalls.unary(repository.update(request.getUserId(),
+                        request.getUsername(), request.getEmail(), request.getAge())
+                .map(UserGrpcService::updateUserResponse)
+                .onErrorResume(e -> {
+                    log.error("更新用户失败", e);
+                    return Mono.just(UpdateUserResponse.newBuilder()
+                            .setSuccess(false)
+                            .setMessage("服务器内部错误: " + e.getMessage())
+                            .build());
+                }), responseObserver);
+    }
+
+    @Override
+    public void deleteUser(DeleteUserRequest request, StreamObserver<DeleteUserResponse> responseObserver) {
+        log.info("收到删除用户请求: userId={}", request.getUserId());
+
+        ReactiveCalls.unary(repository.delete(request.getUserId())
+                .map(UserGrpcService::deleteUserResponse)
+                .onErrorResume(e -> {
+                    log.error("删除用户失败", e);
+                    return Mono.just(DeleteUserResponse.newBuilder()
+                            .setSuccess(false)
+                            .setMessage("服务器内部错误: " + e.getMessage())
+                            .build());
+                }), responseObserver);
+    }
+
+    /**
+     * 批量创建用户：每次只请求一条消息，写入完成后再请求下一条
+     */
+    @Override
+    public StreamObserver<CreateUserRequest> batchCreateUsers(StreamObserver<CreateUserResponse> responseObserver) {
+        log.info("开始批量创建用户");
+
+        ServerCallStreamObserver<CreateUserResponse> serverObserver =
+                (ServerCallStreamObserver<CreateUserResponse>) responseObserver;
+        serverObserver.disableAutoRequest();
+        BatchCreateObserver requestObserver = new BatchCreateObserver(serverObserver);
+        serverObserver.request(1);
+        return requestObserver;
+    }
+
+    /**
+     * 批量创建的请求流
+     *
+     * 同一时间最多只有一个写入在进行：半关闭可能在最后一个写入完成之前到达，此时等写入完成后再发送汇总
+     */
+    private final class BatchCreateObserver implements StreamObserver<CreateUserRequest> {
+
+        private final ServerCallStreamObserver<CreateUserResponse> responseObserver;
+        private int successCount;
+        private int failureCount;
+        private boolean inFlight;
+        private boolean halfClosed;
+        private Disposable current;
+
+        BatchCreateObserver(ServerCallStreamObserver<CreateUserResponse> responseObserver) {
+            this.responseObserver = responseObserver;
+        }
+
+        @Override
+        public void onNext(CreateUserRequest request) {
+            log.info("收到批量创建用户请求: username={}", request.getUsername());
+            synchronized (this) {
+                inFlight = true;
+            }
+            Disposable subscription = repository.create(request.getUsername(), request.getEmail(), request.getAge())
+                    .map(UserWriteResult::isSuccess)
+                    .onErrorResume(e -> {
+                        log.error("批量创建用户失败: " + request.getUsername(), e);
+                        return Mono.just(false);
+                    })
+                    .subscribe(created -> afterCreate(request.getUsername(), created));
+            synchronized (this) {
+                if (inFlight) {
+                    current = subscription;
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            Disposable subscription;
+            synchronized (this) {
+                subscription = current;
+            }
+            if (subscription != null) {
+                subscription.dispose();
+            }
+            if (Context.current().isCancelled()) {
+                log.info("批量创建用户调用已取消: 成功{}个, 失败{}个", successCount, failureCount);
+                return;
+            }
+            log.error("批量创建用户过程中发生错误", t);
+            responseObserver.onNext(CreateUserResponse.newBuilder()
+                    .setSuccess(false)
+                    .setMessage("批量创建过程中发生错误: " + t.getMessage())
+                    .build());
+            responseObserver.onCompleted();
+        }
+
+        @Override
+        public void onCompleted() {
+            synchronized (this) {
+                halfClosed = true;
+                if (inFlight) {
+                    return;
+                }
+            }
+            finish();
+        }
+
+        private void afterCreate(String username, boolean created) {
+            boolean complete;
+            synchronized (this) {
+                if (created) {
+                    successCount++;
+                } else {
+                    failureCount++;
+                    log.warn("用户创建失败: {}", username);
+                }
+                inFlight = false;
+                current = null;
+                complete = halfClosed;
+            }
+            if (complete) {
+                finish();
+            } else {
+                responseObserver.request(1);
+            }
+        }
+
+        private void finish() {
+            int success;
+            int failure;
+            synchronized (this) {
+                success = successCount;
+                failure = failureCount;
+            }
+            log.info("批量创建用户完成: 成功{}个, 失败{}个", success, failure);
+            responseObserver.onNext(CreateUserResponse.newBuilder()
+                    .setSuccess(true)
+                    .setMessage(String.format("批量创建完成：成功%d个，失败%d个", success, failure))
+                    .build());
+            responseObserver.onCompleted();
+        }
+    }
+}
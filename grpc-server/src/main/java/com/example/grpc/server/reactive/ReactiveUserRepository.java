@@ -0,0 +1,236 @@
+package com.example.grpc.server.reactive;
+
+import com.example.grpc.proto.User;
+import com.example.grpc.server.store.UserProjection;
+import com.example.grpc.server.store.UserWriteResult;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * 基于R2DBC的用户数据访问
+ *
+ * 所有方法返回Mono/Flux，订阅后才执行：获取连接、执行语句和提交都是异步的，
+ * 连接池用完时调用在池中排队等待，而不是占用一个线程阻塞等待。
+ * 写操作在一个事务中执行，与JpaUserStore相同：更新先锁定要修改的行，再检查用户名和邮箱的唯一性，版本号加1
+ *
+ * H2是嵌入式数据库，r2dbc-h2在请求数据的线程上直接执行SQL，没有网络I/O可以让出；
+ * 换成网络数据库的R2DBC驱动后，等待数据库返回的时间也不再占用线程
+ */
+public class ReactiveUserRepository implements AutoCloseable {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO users (username, email, age, created_at, version) VALUES ($1, $2, $3, $4, 1)";
+
+    private static final String UPDATE_SQL =
+            "UPDATE users SET username = $1, email = $2, age = $3, version = $4 WHERE id = $5";
+
+    /**
+     * 查找使用了这个用户名或邮箱的其他用户，空字符串不会匹配任何用户
+     */
+    private static final String CONFLICT_SQL =
+            "SELECT username FROM users WHERE (username = $1 OR email = $2) AND id <> $3";
+
+    private final ConnectionPool pool;
+    private final int prefetch;
+
+    public ReactiveUserRepository(ReactiveProperties properties, String username, String password) {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(properties.getUrl()).mutate();
+        if (username != null) {
+            options.option(ConnectionFactoryOptions.USER, username);
+        }
+        if (password != null) {
+            options.option(ConnectionFactoryOptions.PASSWORD, password);
+        }
+        this.pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .name("user-reactive")
+                .initialSize(properties.getInitialSize())
+                .maxSize(properties.getMaxSize())
+                .maxAcquireTime(properties.getMaxAcquireTime())
+                .build());
+        this.prefetch = properties.getPrefetch();
+    }
+
+    /**
+     * 只查询投影中的列
+     */
+    public Mono<User> findById(long id, UserProjection projection) {
+        return query(connection -> Flux.from(connection
+                        .createStatement("SELECT " + projection.columns() + " FROM users WHERE id = $1")
+                        .bind(0, id)
+                        .execute())
+                .concatMap(result -> result.map((row, metadata) -> read(row, metadata, projection))))
+                .next();
+    }
+
+    /**
+     * 只查询version列
+     */
+    public Mono<Long> findVersion(long id) {
+        return query(connection -> Flux.from(connection
+                        .createStatement("SELECT version FROM users WHERE id = $1")
+                        .bind(0, id)
+                        .execute())
+                .concatMap(result -> result.map((row, metadata) -> row.get(0, Long.class))))
+                .next();
+    }
+
+    /**
+     * 按ID升序查询全部用户，只查询投影中的列
+     *
+     * 行按下游的请求逐批读取（concatMap把下游的需求原样传给结果集），下游不再请求时查询也暂停
+     */
+    public Flux<User> findAll(UserProjection projection) {
+        return query(connection -> Flux.from(connection
+                        .createStatement("SELECT " + projection.columns() + " FROM users ORDER BY id")
+                        .fetchSize(prefetch)
+                        .execute())
+                .concatMap(result -> result.map((row, metadata) -> read(row, metadata, projection))));
+    }
+
+    public Mono<UserWriteResult> create(String username, String email, int age) {
+        return inTransaction(connection -> findConflict(connection, username, email, 0)
+                .map(UserWriteResult::failure)
+                .switchIfEmpty(Mono.defer(() -> insert(connection, username, email, age))));
+    }
+
+    /**
+     * 空字符串和不大于0的年龄表示不修改对应字段
+     */
+    public Mono<UserWriteResult> update(long id, String username, String email, int age) {
+        return inTransaction(connection -> Flux.from(connection
+                        .createStatement("SELECT " + UserProjection.ALL.columns() + " FROM users WHERE id = $1 FOR UPDATE")
+                        .bind(0, id)
+                        .execute())
+                .concatMap(result -> result.map((row, metadata) -> read(row, metadata, UserProjection.ALL)))
+                .next()
+                .flatMap(current -> findConflict(connection, username, email, id)
+                        .map(UserWriteResult::failure)
+                        .switchIfEmpty(Mono.defer(() -> save(connection, current, username, email, age))))
+                .defaultIfEmpty(UserWriteResult.failure(UserWriteResult.Outcome.NOT_FOUND)));
+    }
+
+    /**
+     * @return 用户是否存在并已删除
+     */
+    public Mono<Boolean> delete(long id) {
+        return query(connection -> Flux.from(connection
+                        .createStatement("DELETE FROM users WHERE id = $1")
+                        .bind(0, id)
+                        .execute())
+                .concatMap(Result::getRowsUpdated))
+                .reduce(0L, Long::sum)
+                .map(deleted -> deleted > 0);
+    }
+
+    @Override
+    public void close() {
+        pool.dispose();
+    }
+
+    private Mono<UserWriteResult.Outcome> findConflict(Connection connection, String username, String email,
+                                                       long excludedId) {
+        return Flux.from(connection.createStatement(CONFLICT_SQL)
+                        .bind(0, username)
+                        .bind(1, email)
+                        .bind(2, excludedId)
+                        .execute())
+                .concatMap(result -> result.map((row, metadata) -> row.get(0, String.class)))
+                .map(existing -> existing.equals(username)
+                        ? UserWriteResult.Outcome.USERNAME_TAKEN
+                        : UserWriteResult.Outcome.EMAIL_TAKEN)
+                // 用户名和邮箱都冲突时与JpaUserStore一样先报告用户名
+                .sort()
+                .next();
+    }
+
+    private Mono<UserWriteResult> insert(Connection connection, String username, String email, int age) {
+        long createdAt = System.currentTimeMillis();
+        return Flux.from(connection.createStatement(INSERT_SQL)
+                        .bind(0, username)
+                        .bind(1, email)
+                        .bind(2, age)
+                        .bind(3, createdAt)
+                        .returnGeneratedValues("id")
+                        .execute())
+                .concatMap(result -> result.map((row, metadata) -> row.get(0, Long.class)))
+                .next()
+                .map(id -> UserWriteResult.success(User.newBuilder()
+                        .setId(id)
+                        .setUsername(username)
+                        .setEmail(email)
+                        .setAge(age)
+                        .setCreatedAt(createdAt)
+                        .setVersion(1)
+                        .build()));
+    }
+
+    private Mono<UserWriteResult> save(Connection connection, User current, String username, String email, int age) {
+        User.Builder updated = current.toBuilder();
+        if (!username.isEmpty()) {
+            updated.setUsername(username);
+        }
+        if (!email.isEmpty()) {
+            updated.setEmail(email);
+        }
+        if (age > 0) {
+            updated.setAge(age);
+        }
+        // 行已经被FOR UPDATE锁定，版本号不会重复
+        User saved = updated.setVersion(current.getVersion() + 1).build();
+
+        return Flux.from(connection.createStatement(UPDATE_SQL)
+                        .bind(0, saved.getUsername())
+                        .bind(1, saved.getEmail())
+                        .bind(2, saved.getAge())
+                        .bind(3, saved.getVersion())
+                        .bind(4, saved.getId())
+                        .execute())
+                .concatMap(Result::getRowsUpdated)
+                .then(Mono.just(UserWriteResult.success(saved)));
+    }
+
+    /**
+     * 借用一个连接执行查询，结束、出错或下游取消时归还连接
+     */
+    private <T> Flux<T> query(Function<Connection, Publisher<T>> work) {
+        return Flux.usingWhen(pool.create(), work, Connection::close);
+    }
+
+    /**
+     * 在一个事务中执行，成功时提交；出错或下游取消（调用被取消）时回滚，最后都归还连接
+     */
+    private <T> Mono<T> inTransaction(Function<Connection, Mono<T>> work) {
+        return Mono.usingWhen(pool.create(),
+                connection -> Mono.from(connection.beginTransaction())
+                        .then(work.apply(connection))
+                        .flatMap(value -> Mono.from(connection.commitTransaction()).thenReturn(value)),
+                Connection::close,
+                (connection, error) -> rollbackAndClose(connection),
+                ReactiveUserRepository::rollbackAndClose);
+    }
+
+    private static Mono<Void> rollbackAndClose(Connection connection) {
+        return Mono.from(connection.rollbackTransaction())
+                .onErrorResume(e -> Mono.empty())
+                .then(Mono.from(connection.close()));
+    }
+
+    private static User read(Row row, RowMetadata metadata, UserProjection projection) {
+        Object[] values = new Object[metadata.getColumnMetadatas().size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = row.get(i);
+        }
+        return projection.read(values);
+    }
+}
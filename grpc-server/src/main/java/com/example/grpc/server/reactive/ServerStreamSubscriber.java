@@ -0,0 +1,82 @@
+package com.example.grpc.server.reactive;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 把Flux的需求和gRPC服务端流的流控连接起来
+ *
+ * 只有响应流就绪（isReady）时才向上游请求数据，最多保持prefetch个已请求但尚未到达的元素；
+ * 客户端读得慢、传输缓冲写满时不再请求，上游的数据库查询也随之暂停，内存中不会堆积响应。
+ * 调用取消时取消订阅，上游的查询随之停止并归还连接
+ */
+final class ServerStreamSubscriber<T> extends BaseSubscriber<T> {
+
+    private final ServerCallStreamObserver<T> observer;
+    private final int prefetch;
+
+    /**
+     * 已请求但尚未到达的元素数
+     */
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private ServerStreamSubscriber(ServerCallStreamObserver<T> observer, int prefetch) {
+        this.observer = observer;
+        this.prefetch = Math.max(1, prefetch);
+    }
+
+    /**
+     * 订阅flux并把元素发送到响应流，必须在处理方法返回之前调用（需要设置响应流的回调）
+     */
+    static <T> void subscribe(Flux<T> flux, ServerCallStreamObserver<T> observer, int prefetch) {
+        ServerStreamSubscriber<T> subscriber = new ServerStreamSubscriber<>(observer, prefetch);
+        observer.setOnReadyHandler(subscriber::requestIfReady);
+        observer.setOnCancelHandler(subscriber::dispose);
+        flux.subscribe(subscriber);
+    }
+
+    @Override
+    protected void hookOnSubscribe(Subscription subscription) {
+        requestIfReady();
+    }
+
+    @Override
+    protected void hookOnNext(T value) {
+        outstanding.decrementAndGet();
+        observer.onNext(value);
+        requestIfReady();
+    }
+
+    @Override
+    protected void hookOnComplete() {
+        observer.onCompleted();
+    }
+
+    @Override
+    protected void hookOnError(Throwable throwable) {
+        observer.onError(Status.fromThrowable(throwable).asRuntimeException());
+    }
+
+    /**
+     * 响应流就绪且未到达的元素不超过一半时，把请求补足到prefetch个
+     *
+     * 在gRPC的onReady回调和上游发送元素的线程上都会调用，用CAS保证不会多请求
+     */
+    private void requestIfReady() {
+        while (upstream() != null && !isDisposed() && observer.isReady()) {
+            int current = outstanding.get();
+            if (current > prefetch / 2) {
+                return;
+            }
+            if (outstanding.compareAndSet(current, prefetch)) {
+                request(prefetch - current);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.grpc.server.replication;
+
+import io.grpc.Context;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 当前gRPC调用的一致性令牌
+ *
+ * 由ConsistencyTokenInterceptor放入调用的Context：
+ * 记录请求要求读到的复制序号，以及调用中的写入提交后分配的复制序号
+ */
+public final class ConsistencyContext {
+
+    static final Context.Key<ConsistencyContext> KEY = Context.key("consistency-token");
+
+    private final long requiredLsn;
+    private final AtomicLong writtenLsn = new AtomicLong();
+
+    ConsistencyContext(long requiredLsn) {
+        this.requiredLsn = requiredLsn;
+    }
+
+    /**
+     * @return 当前调用要求读到的复制序号，不在gRPC调用中或没有携带令牌时为0
+     */
+    public static long requiredLsn() {
+        ConsistencyContext current = KEY.get();
+        return current == null ? 0 : current.requiredLsn;
+    }
+
+    /**
+     * 记录当前调用中一次写入的复制序号，调用结束时作为令牌返回给客户端
+     */
+    public static void recordWrite(long lsn) {
+        ConsistencyContext current = KEY.get();
+        if (current != null) {
+            current.writtenLsn.accumulateAndGet(lsn, Math::max);
+        }
+    }
+
+    long getWrittenLsn() {
+        return writtenLsn.get();
+    }
+}
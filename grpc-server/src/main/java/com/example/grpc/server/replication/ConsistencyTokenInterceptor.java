@@ -0,0 +1,44 @@
+package com.example.grpc.server.replication;
+
+import com.example.grpc.common.consistency.ConsistencyTokens;
+import com.example.grpc.server.interceptor.ServerInterceptorOrder;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.springframework.core.annotation.Order;
+
+/**
+ * 一致性令牌拦截器
+ *
+ * 从请求头读取客户端要求的复制序号放入调用的Context，供只读事务选择副本；
+ * 调用中有写入时，在响应尾部返回写入的复制序号作为新的令牌
+ */
+@Order(ServerInterceptorOrder.CONSISTENCY_TOKEN)
+public class ConsistencyTokenInterceptor implements ServerInterceptor {
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        ConsistencyContext consistency = new ConsistencyContext(
+                ConsistencyTokens.parse(headers.get(ConsistencyTokens.METADATA_KEY)));
+        Context context = Context.current().withValue(ConsistencyContext.KEY, consistency);
+
+        ServerCall<ReqT, RespT> tokenCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                long written = consistency.getWrittenLsn();
+                if (written > 0) {
+                    trailers.put(ConsistencyTokens.METADATA_KEY, Long.toString(written));
+                }
+                super.close(status, trailers);
+            }
+        };
+        return Contexts.interceptCall(context, tokenCall, headers, next);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.grpc.server.replication;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * 按当前线程选择的目标路由连接：未选择副本时使用主库
+ *
+ * 目标在事务开始前由DeadlineAwareTransactions设置，事务获取连接时生效
+ */
+public class ReadRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final ThreadLocal<Integer> TARGET = new ThreadLocal<>();
+
+    /**
+     * 当前线程之后获取的连接来自指定副本；replica为null时来自主库
+     */
+    public static void route(Replica replica) {
+        if (replica == null) {
+            TARGET.remove();
+        } else {
+            TARGET.set(replica.getIndex());
+        }
+    }
+
+    public static void clear() {
+        TARGET.remove();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TARGET.get();
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.grpc.server.replication;
+
+import com.example.grpc.proto.User;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个只读副本：独立的H2内存数据库，由专门的复制线程按复制序号（LSN）顺序追赶主库
+ *
+ * 复制的变更只记录发生变化的用户ID，应用时从主库读取这些用户的当前状态写入副本，主库中已不存在的用户从副本删除。
+ * 变更在主库事务提交后才发布，所以应用到某个序号时，副本中的数据至少和该序号对应的写入一样新
+ */
+@Slf4j
+public class Replica implements AutoCloseable {
+
+    private static final String CREATE_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS users (
+                id BIGINT PRIMARY KEY,
+                username VARCHAR(50) NOT NULL,
+                email VARCHAR(100) NOT NULL,
+                age INT NOT NULL,
+                created_at BIGINT NOT NULL,
+                version BIGINT NOT NULL
+            )""";
+
+    private static final String MERGE_SQL =
+            "MERGE INTO users (id, username, email, age, created_at, version) KEY (id) VALUES (?, ?, ?, ?, ?, ?)";
+
+    /**
+     * 从主库读取时每条IN查询的最大ID数
+     */
+    private static final int READ_CHUNK_SIZE = 1000;
+
+    private static final RowMapper<User> USER_ROW_MAPPER = (rs, rowNum) -> User.newBuilder()
+            .setId(rs.getLong(1))
+            .setUsername(rs.getString(2))
+            .setEmail(rs.getString(3))
+            .setAge(rs.getInt(4))
+            .setCreatedAt(rs.getLong(5))
+            .setVersion(rs.getLong(6))
+            .build();
+
+    private final int index;
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate primary;
+    private final long applyDelayMillis;
+    private final int applyBatchSize;
+
+    private final LinkedBlockingQueue<Change> pending = new LinkedBlockingQueue<>();
+    private final Thread applier;
+    private final Object progressLock = new Object();
+    private final LongAdder reads = new LongAdder();
+
+    private volatile long appliedLsn;
+
+    /**
+     * 正在应用的批次中最早一条变更的发布时间，没有正在应用的批次时为0
+     */
+    private volatile long applyingSince;
+
+    private volatile boolean running = true;
+
+    Replica(int index, JdbcTemplate primary, ReplicationProperties properties) {
+        this.index = index;
+        this.primary = primary;
+        this.applyDelayMillis = properties.getApplyDelay().toMillis();
+        this.applyBatchSize = Math.max(1, properties.getApplyBatchSize());
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("user-replica-" + index);
+        config.setJdbcUrl("jdbc:h2:mem:grpc_demo_replica" + index + ";DB_CLOSE_DELAY=-1");
+        config.setUsername("sa");
+        config.setPassword("");
+        config.setMaximumPoolSize(properties.getPoolSize());
+        this.dataSource = new HikariDataSource(config);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.execute(CREATE_TABLE_SQL);
+
+        this.applier = new Thread(this::applyLoop, "user-replica-applier-" + index);
+        this.applier.setDaemon(true);
+        this.applier.start();
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    HikariDataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * @return 已经应用到的复制序号
+     */
+    public long getAppliedLsn() {
+        return appliedLsn;
+    }
+
+    /**
+     * @return 等待应用的变更数
+     */
+    public int getPendingChanges() {
+        return pending.size();
+    }
+
+    /**
+     * @return 最早一条未应用变更已经等待的时间，全部应用完毕时为0
+     */
+    public long getLagMillis() {
+        long oldest = applyingSince;
+        if (oldest == 0) {
+            Change head = pending.peek();
+            oldest = head == null ? 0 : head.getPublishedAt();
+        }
+        return oldest == 0 ? 0 : Math.max(0, System.currentTimeMillis() - oldest);
+    }
+
+    /**
+     * @return 路由到这个副本的读事务数
+     */
+    public long getReads() {
+        return reads.sum();
+    }
+
+    void recordRead() {
+        reads.increment();
+    }
+
+    void enqueue(Change change) {
+        pending.add(change);
+    }
+
+    /**
+     * 等待副本应用到指定的复制序号
+     *
+     * @return 在超时前是否已经追上
+     */
+    boolean awaitLsn(long lsn, long timeoutNanos) throws InterruptedException {
+        if (appliedLsn >= lsn) {
+            return true;
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        synchronized (progressLock) {
+            while (appliedLsn < lsn) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(progressLock, remaining);
+            }
+            return true;
+        }
+    }
+
+    private void applyLoop() {
+        List<Change> batch = new ArrayList<>(applyBatchSize);
+        while (running) {
+            try {
+                if (batch.isEmpty()) {
+                    batch.add(pending.take());
+                    pending.drainTo(batch, applyBatchSize - 1);
+                }
+                applyingSince = batch.get(0).getPublishedAt();
+                if (applyDelayMillis > 0) {
+                    long wait = batch.get(0).getPublishedAt() + applyDelayMillis - System.currentTimeMillis();
+                    if (wait > 0) {
+                        Thread.sleep(wait);
+                    }
+                }
+
+                apply(batch);
+                long lsn = batch.get(batch.size() - 1).getLsn();
+                batch.clear();
+                synchronized (progressLock) {
+                    appliedLsn = lsn;
+                    applyingSince = 0;
+                    progressLock.notifyAll();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // 主库或副本暂时不可用时保留这一批，稍后重试，复制序号不前进
+                log.warn("副本{}应用变更失败，1秒后重试", index, e);
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 从主库读取变更涉及的用户的当前状态，在一个副本事务中写入
+     */
+    private void apply(List<Change> batch) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Change change : batch) {
+            ids.addAll(change.getUserIds());
+        }
+
+        List<User> users = new ArrayList<>(ids.size());
+        List<Long> chunk = new ArrayList<>(READ_CHUNK_SIZE);
+        for (Long id : ids) {
+            chunk.add(id);
+            if (chunk.size() == READ_CHUNK_SIZE) {
+                users.addAll(readFromPrimary(chunk));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            users.addAll(readFromPrimary(chunk));
+        }
+
+        Set<Long> deleted = new HashSet<>(ids);
+        for (User user : users) {
+            deleted.remove(user.getId());
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!users.isEmpty()) {
+                jdbcTemplate.batchUpdate(MERGE_SQL, users, users.size(), (ps, user) -> {
+                    ps.setLong(1, user.getId());
+                    ps.setString(2, user.getUsername());
+                    ps.setString(3, user.getEmail());
+                    ps.setInt(4, user.getAge());
+                    ps.setLong(5, user.getCreatedAt());
+                    ps.setLong(6, user.getVersion());
+                });
+            }
+            if (!deleted.isEmpty()) {
+                List<Long> deletedIds = new ArrayList<>(deleted);
+                jdbcTemplate.batchUpdate("DELETE FROM users WHERE id = ?", deletedIds, deletedIds.size(),
+                        (ps, id) -> ps.setLong(1, id));
+            }
+        });
+    }
+
+    private List<User> readFromPrimary(List<Long> ids) {
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        return primary.query("SELECT id, username, email, age, created_at, version FROM users WHERE id IN (" + placeholders + ")",
+                USER_ROW_MAPPER, ids.toArray());
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        applier.interrupt();
+        try {
+            applier.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        jdbcTemplate.execute("SHUTDOWN");
+        dataSource.close();
+    }
+
+    /**
+     * 一次已提交的写入
+     */
+    @Value
+    static class Change {
+        long lsn;
+        Collection<Long> userIds;
+        long publishedAt;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.grpc.server.replication;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 主库和一组只读副本
+ *
+ * - 写入：主库事务提交后调用publish，分配一个递增的复制序号（LSN）并发给每个副本的复制线程
+ * - 读取：selectForRead为只读事务挑选副本，跳过落后超过max-lag的副本；
+ *   请求带有一致性令牌时只选择已经应用到该序号的副本，都没追上时最多等待read-your-writes-wait，仍未追上则读主库
+ */
+@Slf4j
+public class ReplicaSet implements AutoCloseable {
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas;
+    private final ReadRoutingDataSource routingDataSource;
+    private final long maxLagMillis;
+    private final long readYourWritesWaitNanos;
+
+    private final AtomicLong lsn = new AtomicLong();
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder primaryReads = new LongAdder();
+    private final LongAdder waitedReads = new LongAdder();
+
+    public ReplicaSet(HikariDataSource primary, ReplicationProperties properties) {
+        this.primary = primary;
+        this.maxLagMillis = properties.getMaxLag().toMillis();
+        this.readYourWritesWaitNanos = properties.getReadYourWritesWait().toNanos();
+
+        JdbcTemplate primaryTemplate = new JdbcTemplate(primary);
+        List<Replica> list = new ArrayList<>(properties.getReplicas());
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < properties.getReplicas(); i++) {
+            Replica replica = new Replica(i, primaryTemplate, properties);
+            list.add(replica);
+            targets.put(i, replica.getDataSource());
+        }
+        this.replicas = Collections.unmodifiableList(list);
+
+        this.routingDataSource = new ReadRoutingDataSource();
+        routingDataSource.setDefaultTargetDataSource(primary);
+        routingDataSource.setTargetDataSources(targets);
+        routingDataSource.afterPropertiesSet();
+        log.info("读写分离已启用: replicas={}, maxLag={}ms, applyDelay={}",
+                replicas.size(), maxLagMillis, properties.getApplyDelay());
+    }
+
+    /**
+     * @return 按线程路由到主库或副本的数据源
+     */
+    public DataSource getRoutingDataSource() {
+        return routingDataSource;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * @return 最近一次发布的复制序号
+     */
+    public long getCurrentLsn() {
+        return lsn.get();
+    }
+
+    public long getPrimaryReads() {
+        return primaryReads.sum();
+    }
+
+    /**
+     * @return 等待副本追上一致性令牌后才读取的次数
+     */
+    public long getWaitedReads() {
+        return waitedReads.sum();
+    }
+
+    /**
+     * 发布一次已提交的写入
+     *
+     * 加锁保证复制序号的分配顺序和进入各副本队列的顺序一致
+     *
+     * @param userIds 写入涉及的用户ID
+     * @return 分配的复制序号
+     */
+    public synchronized long publish(Collection<Long> userIds) {
+        Replica.Change change = new Replica.Change(lsn.incrementAndGet(), List.copyOf(userIds),
+                System.currentTimeMillis());
+        for (Replica replica : replicas) {
+            replica.enqueue(change);
+        }
+        return change.getLsn();
+    }
+
+    /**
+     * 为只读事务选择副本
+     *
+     * @param requiredLsn 读取必须看到的复制序号，0表示没有要求
+     * @return 选中的副本，返回null时读主库
+     */
+    public Replica selectForRead(long requiredLsn) {
+        int size = replicas.size();
+        if (size == 0) {
+            primaryReads.increment();
+            return null;
+        }
+
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        Replica fresh = null;
+        for (int i = 0; i < size; i++) {
+            Replica candidate = replicas.get((start + i) % size);
+            if (candidate.getLagMillis() > maxLagMillis) {
+                continue;
+            }
+            if (candidate.getAppliedLsn() >= requiredLsn) {
+                candidate.recordRead();
+                return candidate;
+            }
+            if (fresh == null) {
+                fresh = candidate;
+            }
+        }
+
+        if (fresh != null && readYourWritesWaitNanos > 0) {
+            try {
+                if (fresh.awaitLsn(requiredLsn, readYourWritesWaitNanos)) {
+                    waitedReads.increment();
+                    fresh.recordRead();
+                    return fresh;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        primaryReads.increment();
+        return null;
+    }
+
+    @Override
+    public void close() {
+        for (Replica replica : replicas) {
+            try {
+                replica.close();
+            } catch (RuntimeException e) {
+                log.warn("关闭副本{}失败", replica.getIndex(), e);
+            }
+        }
+        primary.close();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.grpc.server.replication;
+
+import com.zaxxer.hikari.HikariDataSource;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+
+/**
+ * 读写分离配置
+ *
+ * 用按线程路由的数据源替换Spring Boot自动配置的数据源：
+ * 主库仍然使用spring.datasource的配置，JPA、JdbcTemplate和H2控制台默认都访问主库，
+ * 只有DeadlineAwareTransactions中的只读事务会被路由到副本。
+ * 只对jpa存储模式生效，分片存储不经过这个数据源
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "user-service.replication", name = "enabled", havingValue = "true")
+public class ReplicationConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public ReplicaSet replicaSet(DataSourceProperties dataSourceProperties, ReplicationProperties properties) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primary.setPoolName("user-primary");
+        return new ReplicaSet(primary, properties);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaSet replicaSet) {
+        return replicaSet.getRoutingDataSource();
+    }
+
+    @GrpcGlobalServerInterceptor
+    public ConsistencyTokenInterceptor consistencyTokenInterceptor() {
+        return new ConsistencyTokenInterceptor();
+    }
+}
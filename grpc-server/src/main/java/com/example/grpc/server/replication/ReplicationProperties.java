@@ -0,0 +1,51 @@
+package com.example.grpc.server.replication;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 读写分离配置
+ *
+ * 对应application.yml中的user-service.replication配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "user-service.replication")
+public class ReplicationProperties {
+
+    /**
+     * 是否启用读写分离
+     */
+    private boolean enabled = false;
+
+    /**
+     * 只读副本数
+     */
+    private int replicas = 2;
+
+    /**
+     * 每个副本的连接池大小
+     */
+    private int poolSize = 4;
+
+    /**
+     * 副本最大允许落后的时间，超过时不再承担读请求
+     */
+    private Duration maxLag = Duration.ofSeconds(1);
+
+    /**
+     * 请求携带一致性令牌而副本尚未追上时，最长等待副本的时间，超时后改读主库
+     */
+    private Duration readYourWritesWait = Duration.ofMillis(100);
+
+    /**
+     * 人为增加的复制延迟，用于在本地观察过期读和一致性令牌的效果
+     */
+    private Duration applyDelay = Duration.ZERO;
+
+    /**
+     * 复制线程每批最多应用的变更数
+     */
+    private int applyBatchSize = 500;
+}
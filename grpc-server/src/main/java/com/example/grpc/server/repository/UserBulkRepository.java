@@ -0,0 +1,192 @@
+package com.example.grpc.server.repository;
+
+import com.example.grpc.proto.User;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 用户批量数据访问层
+ * 
+ * 绕过JPA直接使用JDBC，用于快照导出、启动时的批量导入，以及批量更新和删除
+ * 这些场景数据量大，逐条走Hibernate的save会非常慢
+ * 
+ * 按ID集合查询和删除的方法用一条IN (...)语句完成，集合大小由调用方分块控制
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserBulkRepository {
+    
+    private static final String INSERT_SQL =
+            "INSERT INTO users (id, username, email, age, created_at, version) VALUES (?, ?, ?, ?, ?, ?)";
+    
+    private static final String SCAN_SQL =
+            "SELECT id, username, email, age, created_at, version FROM users ORDER BY id";
+    
+    private static final String UPDATE_SQL =
+            "UPDATE users SET username = ?, email = ?, age = ?, version = ? WHERE id = ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * 统计用户总数
+     * 
+     * @return 用户数量
+     */
+    public long count() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+        return count == null ? 0 : count;
+    }
+    
+    /**
+     * 按ID顺序扫描全部用户，逐行回调，不会把整张表加载到内存
+     * 
+     * @param fetchSize JDBC每次抓取的行数
+     * @param consumer 每一行转换成Proto用户后的回调
+     */
+    public void scan(int fetchSize, Consumer<User> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(SCAN_SQL);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }, rs -> {
+            consumer.accept(toUser(rs));
+        });
+    }
+    
+    /**
+     * 查询并锁定指定ID的用户（SELECT ... FOR UPDATE），必须在事务中调用
+     * 
+     * @param ids 用户ID，不存在的ID没有对应的结果
+     * @return 按ID索引的用户
+     */
+    public Map<Long, User> lockByIds(Collection<Long> ids) {
+        Map<Long, User> users = new HashMap<>();
+        if (ids.isEmpty()) {
+            return users;
+        }
+        jdbcTemplate.query("SELECT id, username, email, age, created_at, version FROM users WHERE id IN ("
+                        + placeholders(ids.size()) + ") FOR UPDATE",
+                rs -> {
+                    User user = toUser(rs);
+                    users.put(user.getId(), user);
+                }, ids.toArray());
+        return users;
+    }
+    
+    /**
+     * @param usernames 用户名
+     * @return 已被使用的用户名及其所属的用户ID
+     */
+    public Map<String, Long> findIdsByUsernames(Collection<String> usernames) {
+        return findIdsBy("username", usernames);
+    }
+    
+    /**
+     * @param emails 邮箱
+     * @return 已被使用的邮箱及其所属的用户ID
+     */
+    public Map<String, Long> findIdsByEmails(Collection<String> emails) {
+        return findIdsBy("email", emails);
+    }
+    
+    /**
+     * 使用JDBC批处理按ID更新用户名、邮箱、年龄和版本号，按列表顺序执行
+     * 
+     * @param users 更新后的用户
+     */
+    public void batchUpdate(List<User> users) {
+        jdbcTemplate.batchUpdate(UPDATE_SQL, users, users.size(), (ps, user) -> {
+            ps.setString(1, user.getUsername());
+            ps.setString(2, user.getEmail());
+            ps.setInt(3, user.getAge());
+            ps.setLong(4, user.getVersion());
+            ps.setLong(5, user.getId());
+        });
+    }
+    
+    /**
+     * 一条语句删除指定ID的用户
+     * 
+     * @param ids 用户ID
+     * @return 删除的行数
+     */
+    public int deleteByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update("DELETE FROM users WHERE id IN (" + placeholders(ids.size()) + ")",
+                ids.toArray());
+    }
+    
+    /**
+     * 使用JDBC批处理插入用户（保留原有ID和版本号）
+     * 
+     * 没有版本号的旧快照按版本1导入
+     * 
+     * @param users 要插入的用户
+     */
+    public void batchInsert(List<User> users) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, users, users.size(), (ps, user) -> {
+            ps.setLong(1, user.getId());
+            ps.setString(2, user.getUsername());
+            ps.setString(3, user.getEmail());
+            ps.setInt(4, user.getAge());
+            ps.setLong(5, user.getCreatedAt());
+            ps.setLong(6, Math.max(1, user.getVersion()));
+        });
+    }
+    
+    /**
+     * 批量导入指定ID后，把自增序列移动到当前最大ID之后，避免后续插入主键冲突
+     */
+    public void restartIdentity() {
+        jdbcTemplate.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + (maxId() + 1));
+    }
+    
+    /**
+     * @return 当前最大的用户ID，没有用户时为0
+     */
+    public long maxId() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM users", Long.class);
+        return maxId == null ? 0 : maxId;
+    }
+    
+    private Map<String, Long> findIdsBy(String column, Collection<String> values) {
+        Map<String, Long> owners = new HashMap<>();
+        if (values.isEmpty()) {
+            return owners;
+        }
+        jdbcTemplate.query("SELECT " + column + ", id FROM users WHERE " + column + " IN ("
+                        + placeholders(values.size()) + ")",
+                rs -> {
+                    owners.put(rs.getString(1), rs.getLong(2));
+                }, values.toArray());
+        return owners;
+    }
+    
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+    
+    private static User toUser(ResultSet rs) throws SQLException {
+        return User.newBuilder()
+                .setId(rs.getLong(1))
+                .setUsername(rs.getString(2))
+                .setEmail(rs.getString(3))
+                .setAge(rs.getInt(4))
+                .setCreatedAt(rs.getLong(5))
+                .setVersion(rs.getLong(6))
+                .build();
+    }
+}
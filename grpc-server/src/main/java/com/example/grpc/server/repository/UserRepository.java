@@ -1,7 +1,11 @@
 package com.example.grpc.server.repository;
 
 import com.example.grpc.server.entity.UserEntity;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -55,4 +59,23 @@ public interface UserRepository extends JpaRepository<UserEntity, Long> {
      * @return 是否存在
      */
     boolean existsByEmail(String email);
-} 
\ No newline at end of file
+    
+    /**
+     * 查询并锁定用户（SELECT ... FOR UPDATE），用于更新时递增版本号
+     * 
+     * @param id 用户ID
+     * @return Optional包装的用户实体
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM UserEntity u WHERE u.id = :id")
+    Optional<UserEntity> findByIdForUpdate(@Param("id") Long id);
+    
+    /**
+     * 只查询用户的版本号，用于条件查询
+     * 
+     * @param id 用户ID
+     * @return 版本号，用户不存在时为空
+     */
+    @Query("SELECT u.version FROM UserEntity u WHERE u.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+}
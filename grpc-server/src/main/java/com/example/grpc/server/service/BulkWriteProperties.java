@@ -0,0 +1,19 @@
+package com.example.grpc.server.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 批量更新/删除配置
+ * 
+ * 对应application.yml中的user-service.bulk-write配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "user-service.bulk-write")
+public class BulkWriteProperties {
+    
+    /**
+     * BatchUpdateUsers和BatchDeleteUsers每块的请求数，每块在一个事务中执行
+     */
+    private int chunkSize = 500;
+}
@@ -0,0 +1,143 @@
+package com.example.grpc.server.service;
+
+import com.example.grpc.common.trace.Trace;
+import com.example.grpc.server.replication.ConsistencyContext;
+import com.example.grpc.server.replication.ReadRoutingDataSource;
+import com.example.grpc.server.replication.Replica;
+import com.example.grpc.server.replication.ReplicaSet;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 感知gRPC截止时间和取消的事务执行器
+ * 
+ * 替代静态的@Transactional：
+ * - 开始前检查调用是否已取消，已取消的调用不再访问数据库
+ * - 事务超时设置为调用剩余的截止时间，Hibernate会据此设置JDBC语句超时
+ * - 调用被取消（客户端取消或截止时间到达）时，立即取消正在执行的JDBC语句
+ * - 事务结束前调用已被取消时回滚，不为已经放弃的调用提交数据
+ * - 启用读写分离时，只读事务按一致性令牌路由到副本，写事务始终使用主库
+ * - 事务的总耗时（包括获取连接和提交）记录为链路追踪的阶段
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeadlineAwareTransactions {
+    
+    private final PlatformTransactionManager transactionManager;
+    private final EntityManager entityManager;
+    private final ObjectProvider<ReplicaSet> replicaSet;
+    
+    /**
+     * 在当前gRPC调用的上下文中执行事务
+     * 
+     * @param readOnly 是否只读事务
+     * @param action 事务内执行的操作
+     * @return 操作结果
+     * @throws StatusRuntimeException 调用已被取消或截止时间已过（状态为CANCELLED或DEADLINE_EXCEEDED）
+     */
+    public <T> T execute(boolean readOnly, TransactionCallback<T> action) {
+        checkCancelled(Context.current());
+        
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(readOnly);
+        
+        // 事务开始时获取连接，必须在此之前选好目标
+        ReplicaSet replicas = readOnly ? replicaSet.getIfAvailable() : null;
+        Replica replica = replicas == null ? null : replicas.selectForRead(ConsistencyContext.requiredLsn());
+        ReadRoutingDataSource.route(replica);
+        long start = System.nanoTime();
+        try {
+            return execute(template, () -> {
+                Session session = entityManager.unwrap(Session.class);
+                return () -> cancelRunningQuery(session);
+            }, action);
+        } finally {
+            ReadRoutingDataSource.clear();
+            Trace.stage(readOnly ? "readTransaction" : "transaction", start);
+        }
+    }
+    
+    /**
+     * 在当前gRPC调用的上下文中用给定的事务模板执行事务，JPA和分片存储共用
+     * 
+     * 开始前和提交前检查调用是否已取消，事务超时设置为调用剩余的截止时间，
+     * 调用被取消时在监听器线程中执行queryCanceller给出的操作，中断正在执行的语句
+     * 
+     * @param template 事务模板，超时会被覆盖
+     * @param queryCanceller 在事务内调用，返回取消当前事务中正在执行的语句的操作（需要允许跨线程调用）
+     * @param action 事务内执行的操作
+     * @return 操作结果
+     * @throws StatusRuntimeException 调用已被取消或截止时间已过（状态为CANCELLED或DEADLINE_EXCEEDED）
+     */
+    public static <T> T execute(TransactionTemplate template, Supplier<Runnable> queryCanceller,
+                                TransactionCallback<T> action) {
+        Context context = Context.current();
+        checkCancelled(context);
+        
+        Deadline deadline = context.getDeadline();
+        if (deadline != null) {
+            // 事务超时以秒为单位，而Hibernate在剩余时间不足1秒时就会直接报超时，
+            // 所以这里多留1秒作为兜底，精确到毫秒的中断由下面的取消监听器完成
+            long remainingMillis = Math.max(0, deadline.timeRemaining(TimeUnit.MILLISECONDS));
+            template.setTimeout((int) TimeUnit.MILLISECONDS.toSeconds(remainingMillis + 999) + 1);
+        }
+        
+        return template.execute(status -> {
+            Runnable cancelQuery = queryCanceller.get();
+            Context.CancellationListener listener = cancelled -> cancelQuery.run();
+            context.addListener(listener, Runnable::run);
+            try {
+                T result = action.doInTransaction(status);
+                checkCancelled(context);
+                return result;
+            } finally {
+                context.removeListener(listener);
+            }
+        });
+    }
+    
+    /**
+     * 检查当前调用是否已被取消
+     * 
+     * @throws StatusRuntimeException 调用已被取消
+     */
+    public static void checkCancelled(Context context) {
+        if (context.isCancelled()) {
+            Status status = Status.fromThrowable(context.cancellationCause());
+            if (status.getCode() == Status.Code.UNKNOWN) {
+                status = Status.CANCELLED;
+            }
+            throw status.withDescription("调用已取消").asRuntimeException();
+        }
+    }
+    
+    /**
+     * 取消会话中正在执行的语句
+     * 
+     * 在取消监听器的线程中执行，Hibernate的cancelQuery允许跨线程调用
+     */
+    private static void cancelRunningQuery(Session session) {
+        try {
+            session.cancelQuery();
+            log.info("调用已取消，已中断正在执行的数据库语句");
+        } catch (RuntimeException e) {
+            // 语句已经执行完毕或连接已归还时取消会失败，可以忽略
+            log.debug("取消数据库语句失败", e);
+        }
+    }
+}
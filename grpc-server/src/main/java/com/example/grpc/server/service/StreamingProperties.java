@@ -0,0 +1,24 @@
+package com.example.grpc.server.service;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 流式RPC配置
+ * 
+ * 对应application.yml中的user-service.streaming配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "user-service.streaming")
+public class StreamingProperties {
+    
+    /**
+     * GetAllUsers每发送一个用户后的演示延迟（毫秒），设置为0关闭
+     */
+    private long emitDelayMillis = 100;
+    
+    /**
+     * 是否使用ZeroCopyMarshaller编解码UserService的消息，减少大批量流式传输时的内存分配和拷贝
+     */
+    private boolean zeroCopyMarshalling = false;
+}
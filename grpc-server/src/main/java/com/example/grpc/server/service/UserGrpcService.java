@@ -1,17 +1,36 @@
 package com.example.grpc.server.service;
 
 import com.example.grpc.proto.*;
-import com.example.grpc.server.entity.UserEntity;
-import com.example.grpc.server.repository.UserRepository;
+import com.example.grpc.server.chat.ChatBatcher;
+import com.example.grpc.server.chat.ChatBatching;
+import com.example.grpc.server.chat.ChatHistory;
+import com.example.grpc.server.chat.ChatLog;
+import com.example.grpc.server.chat.ChatReplayRequest;
+import com.example.grpc.server.store.UserProjection;
+import com.example.grpc.server.store.UserStore;
+import com.example.grpc.server.store.UserUpdate;
+import com.example.grpc.server.store.UserWriteResult;
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 /**
  * gRPC用户服务实现类
@@ -20,13 +39,25 @@ import java.util.concurrent.atomic.AtomicInteger;
  * 继承UserServiceGrpc.UserServiceImplBase（由proto文件生成）
  * 
  * 这个类实现了.proto文件中定义的所有RPC方法
+ * 数据访问通过UserStore完成，不关心用户保存在单个数据库还是多个分片中
+ * 
+ * 所有处理方法都会检查Context.current()的取消状态和截止时间：
+ * 客户端取消或超时后不再继续访问数据库和发送数据
+ * 
+ * 启用响应式执行（user-service.reactive.enabled）时由ReactiveUserGrpcService代替，
+ * 它继承这个类的聊天方法，用户的增删改查改为基于R2DBC的非阻塞实现
  */
 @GrpcService  // 标识这是一个gRPC服务
+@ConditionalOnProperty(prefix = "user-service.reactive", name = "enabled", havingValue = "false", matchIfMissing = true)
 @RequiredArgsConstructor  // Lombok注解：为final字段生成构造函数
 @Slf4j  // Lombok注解：自动生成日志对象
 public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
     
-    private final UserRepository userRepository;
+    private final UserStore userStore;
+    private final StreamingProperties streamingProperties;
+    private final ObjectProvider<ChatHistory> chatHistoryProvider;
+    private final ChatBatching chatBatching;
+    private final BulkWriteProperties bulkWriteProperties;
     
     /**
      * 创建用户 - 一元RPC
@@ -37,7 +68,6 @@ public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
      * @param responseObserver 响应观察者（用于发送响应）
      */
     @Override
-    @Transactional  // 数据库事务
     public void createUser(CreateUserRequest request, StreamObserver<CreateUserResponse> responseObserver) {
         log.info("收到创建用户请求: username={}, email={}, age={}", 
                 request.getUsername(), request.getEmail(), request.getAge());
@@ -54,50 +84,21 @@ public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
                 return;
             }
             
-            // 2. 检查用户名和邮箱是否已存在
-            if (userRepository.existsByUsername(request.getUsername())) {
-                CreateUserResponse response = CreateUserResponse.newBuilder()
-                        .setSuccess(false)
-                        .setMessage("用户名已存在")
-                        .build();
-                responseObserver.onNext(response);
-                responseObserver.onCompleted();
-                return;
-            }
+            // 2~4. 在截止时间内完成唯一性检查和保存
+            UserWriteResult result = userStore.create(request.getUsername(), request.getEmail(), request.getAge());
             
-            if (userRepository.existsByEmail(request.getEmail())) {
-                CreateUserResponse response = CreateUserResponse.newBuilder()
-                        .setSuccess(false)
-                        .setMessage("邮箱已存在")
-                        .build();
-                responseObserver.onNext(response);
-                responseObserver.onCompleted();
-                return;
+            if (result.isSuccess()) {
+                log.info("用户创建成功: id={}", result.getUser().getId());
             }
             
-            // 3. 创建用户实体
-            UserEntity userEntity = new UserEntity();
-            userEntity.setUsername(request.getUsername());
-            userEntity.setEmail(request.getEmail());
-            userEntity.setAge(request.getAge());
-            
-            // 4. 保存到数据库
-            UserEntity savedUser = userRepository.save(userEntity);
-            log.info("用户创建成功: id={}", savedUser.getId());
-            
-            // 5. 构建响应
-            User user = convertToProtoUser(savedUser);
-            CreateUserResponse response = CreateUserResponse.newBuilder()
-                    .setSuccess(true)
-                    .setMessage("用户创建成功")
-                    .setUser(user)
-                    .build();
-            
-            // 6. 发送响应
-            responseObserver.onNext(response);
+            // 5. 构建并发送响应
+            responseObserver.onNext(createUserResponse(result));
             responseObserver.onCompleted();  // 标识响应完成
             
         } catch (Exception e) {
+            if (isCancelled("创建用户")) {
+                return;
+            }
             log.error("创建用户失败", e);
             CreateUserResponse response = CreateUserResponse.newBuilder()
                     .setSuccess(false)
@@ -116,30 +117,40 @@ public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
      */
     @Override
     public void getUser(GetUserRequest request, StreamObserver<GetUserResponse> responseObserver) {
-        log.info("收到获取用户请求: userId={}", request.getUserId());
+        log.info("收到获取用户请求: userId={}, fieldMask={}, ifVersionNot={}", request.getUserId(),
+                request.getFieldMask().getPathsList(), request.getIfVersionNot());
         
+        UserProjection projection;
         try {
-            Optional<UserEntity> userOpt = userRepository.findById(request.getUserId());
-            
-            if (userOpt.isPresent()) {
-                User user = convertToProtoUser(userOpt.get());
-                GetUserResponse response = GetUserResponse.newBuilder()
-                        .setSuccess(true)
-                        .setMessage("用户查询成功")
-                        .setUser(user)
-                        .build();
-                responseObserver.onNext(response);
-            } else {
-                GetUserResponse response = GetUserResponse.newBuilder()
-                        .setSuccess(false)
-                        .setMessage("用户不存在")
-                        .build();
-                responseObserver.onNext(response);
+            projection = UserProjection.of(request.getFieldMask());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onNext(GetUserResponse.newBuilder()
+                    .setSuccess(false)
+                    .setMessage("无效的字段掩码: " + e.getMessage())
+                    .build());
+            responseObserver.onCompleted();
+            return;
+        }
+        
+        try {
+            // 条件查询：先只查版本号，未修改时不读取也不传输用户
+            if (request.getIfVersionNot() > 0) {
+                Optional<Long> version = userStore.findVersion(request.getUserId());
+                if (version.isPresent() && version.get() == request.getIfVersionNot()) {
+                    responseObserver.onNext(notModifiedResponse());
+                    responseObserver.onCompleted();
+                    return;
+                }
             }
             
+            Optional<User> userOpt = userStore.findById(request.getUserId(), projection);
+            responseObserver.onNext(getUserResponse(userOpt));
             responseObserver.onCompleted();
             
         } catch (Exception e) {
+            if (isCancelled("获取用户")) {
+                return;
+            }
             log.error("获取用户失败", e);
             GetUserResponse response = GetUserResponse.newBuilder()
                     .setSuccess(false)
@@ -161,29 +172,56 @@ public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
      */
     @Override
     public void getAllUsers(GetAllUsersRequest request, StreamObserver<User> responseObserver) {
-        log.info("收到获取所有用户请求: pageSize={}", request.getPageSize());
+        log.info("收到获取所有用户请求: pageSize={}, fieldMask={}",
+                request.getPageSize(), request.getFieldMask().getPathsList());
+        
+        UserProjection projection;
+        try {
+            projection = UserProjection.of(request.getFieldMask());
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("无效的字段掩码: " + e.getMessage())
+                    .asRuntimeException());
+            return;
+        }
+        
+        ServerCallStreamObserver<User> serverObserver = (ServerCallStreamObserver<User>) responseObserver;
+        CountDownLatch cancelled = new CountDownLatch(1);
+        // 设置取消回调后，调用取消时onNext不会抛异常，由下面的循环检查并退出
+        serverObserver.setOnCancelHandler(cancelled::countDown);
         
         try {
-            List<UserEntity> users = userRepository.findAll();
+            List<User> users = userStore.findAll(projection);
             log.info("查询到{}个用户", users.size());
             
             // 流式发送每个用户
-            for (UserEntity userEntity : users) {
-                User user = convertToProtoUser(userEntity);
+            int sent = 0;
+            for (User user : users) {
+                if (serverObserver.isCancelled()) {
+                    log.info("获取所有用户调用已取消，停止发送: 已发送{}个", sent);
+                    return;
+                }
+                
                 responseObserver.onNext(user);  // 发送一个用户
+                sent++;
                 
-                // 模拟延迟，演示流式响应效果
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
+                // 模拟延迟，演示流式响应效果；调用取消时立即结束等待
+                long delay = streamingProperties.getEmitDelayMillis();
+                if (delay > 0 && cancelled.await(delay, TimeUnit.MILLISECONDS)) {
+                    log.info("获取所有用户调用已取消，停止发送: 已发送{}个", sent);
+                    return;
                 }
             }
             
             responseObserver.onCompleted();  // 标识流结束
             
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            responseObserver.onError(e);
         } catch (Exception e) {
+            if (isCancelled("获取所有用户")) {
+                return;
+            }
             log.error("获取所有用户失败", e);
             responseObserver.onError(e);  // 发送错误
         }
@@ -193,72 +231,20 @@ public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
      * 更新用户 - 一元RPC
      */
     @Override
-    @Transactional
     public void updateUser(UpdateUserRequest request, StreamObserver<UpdateUserResponse> responseObserver) {
         log.info("收到更新用户请求: userId={}", request.getUserId());
         
         try {
-            Optional<UserEntity> userOpt = userRepository.findById(request.getUserId());
-            
-            if (userOpt.isPresent()) {
-                UserEntity user = userOpt.get();
-                
-                // 更新字段
-                if (!request.getUsername().isEmpty()) {
-                    // 检查新用户名是否已被其他用户使用
-                    Optional<UserEntity> existingUser = userRepository.findByUsername(request.getUsername());
-                    if (existingUser.isPresent() && !existingUser.get().getId().equals(user.getId())) {
-                        UpdateUserResponse response = UpdateUserResponse.newBuilder()
-                                .setSuccess(false)
-                                .setMessage("用户名已被其他用户使用")
-                                .build();
-                        responseObserver.onNext(response);
-                        responseObserver.onCompleted();
-                        return;
-                    }
-                    user.setUsername(request.getUsername());
-                }
-                
-                if (!request.getEmail().isEmpty()) {
-                    // 检查新邮箱是否已被其他用户使用
-                    Optional<UserEntity> existingUser = userRepository.findByEmail(request.getEmail());
-                    if (existingUser.isPresent() && !existingUser.get().getId().equals(user.getId())) {
-                        UpdateUserResponse response = UpdateUserResponse.newBuilder()
-                                .setSuccess(false)
-                                .setMessage("邮箱已被其他用户使用")
-                                .build();
-                        responseObserver.onNext(response);
-                        responseObserver.onCompleted();
-                        return;
-                    }
-                    user.setEmail(request.getEmail());
-                }
-                
-                if (request.getAge() > 0) {
-                    user.setAge(request.getAge());
-                }
-                
-                UserEntity savedUser = userRepository.save(user);
-                User protoUser = convertToProtoUser(savedUser);
-                
-                UpdateUserResponse response = UpdateUserResponse.newBuilder()
-                        .setSuccess(true)
-                        .setMessage("用户更新成功")
-                        .setUser(protoUser)
-                        .build();
-                responseObserver.onNext(response);
-                
-            } else {
-                UpdateUserResponse response = UpdateUserResponse.newBuilder()
-                        .setSuccess(false)
-                        .setMessage("用户不存在")
-                        .build();
-                responseObserver.onNext(response);
-            }
+            UserWriteResult result = userStore.update(request.getUserId(),
+                    request.getUsername(), request.getEmail(), request.getAge());
             
+            responseObserver.onNext(updateUserResponse(result));
             responseObserver.onCompleted();
             
         } catch (Exception e) {
+            if (isCancelled("更新用户")) {
+                return;
+            }
             log.error("更新用户失败", e);
             UpdateUserResponse response = UpdateUserResponse.newBuilder()
                     .setSuccess(false)
@@ -273,30 +259,17 @@ public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
      * 删除用户 - 一元RPC
      */
     @Override
-    @Transactional
     public void deleteUser(DeleteUserRequest request, StreamObserver<DeleteUserResponse> responseObserver) {
         log.info("收到删除用户请求: userId={}", request.getUserId());
         
         try {
-            if (userRepository.existsById(request.getUserId())) {
-                userRepository.deleteById(request.getUserId());
-                
-                DeleteUserResponse response = DeleteUserResponse.newBuilder()
-                        .setSuccess(true)
-                        .setMessage("用户删除成功")
-                        .build();
-                responseObserver.onNext(response);
-            } else {
-                DeleteUserResponse response = DeleteUserResponse.newBuilder()
-                        .setSuccess(false)
-                        .setMessage("用户不存在")
-                        .build();
-                responseObserver.onNext(response);
-            }
-            
+            responseObserver.onNext(deleteUserResponse(userStore.delete(request.getUserId())));
             responseObserver.onCompleted();
             
         } catch (Exception e) {
+            if (isCancelled("删除用户")) {
+                return;
+            }
             log.error("删除用户失败", e);
             DeleteUserResponse response = DeleteUserResponse.newBuilder()
                     .setSuccess(false)
@@ -329,25 +302,28 @@ public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
                 // 每次收到一个用户创建请求
                 log.info("收到批量创建用户请求: username={}", request.getUsername());
                 
+                // 调用已取消时，剩余的请求不再写入数据库
+                if (Context.current().isCancelled()) {
+                    return;
+                }
+                
                 try {
-                    // 检查用户名和邮箱是否已存在
-                    if (userRepository.existsByUsername(request.getUsername()) || 
-                        userRepository.existsByEmail(request.getEmail())) {
+                    // 用户名或邮箱已存在时创建失败
+                    boolean created = userStore.create(
+                            request.getUsername(), request.getEmail(), request.getAge()).isSuccess();
+                    
+                    if (created) {
+                        successCount.incrementAndGet();
+                        log.info("用户创建成功: {}", request.getUsername());
+                    } else {
                         failureCount.incrementAndGet();
                         log.warn("用户创建失败，用户名或邮箱已存在: {}", request.getUsername());
-                        return;
                     }
                     
-                    UserEntity userEntity = new UserEntity();
-                    userEntity.setUsername(request.getUsername());
-                    userEntity.setEmail(request.getEmail());
-                    userEntity.setAge(request.getAge());
-                    
-                    userRepository.save(userEntity);
-                    successCount.incrementAndGet();
-                    log.info("用户创建成功: {}", request.getUsername());
-                    
                 } catch (Exception e) {
+                    if (isCancelled("批量创建用户")) {
+                        return;
+                    }
                     failureCount.incrementAndGet();
                     log.error("批量创建用户失败: " + request.getUsername(), e);
                 }
@@ -355,6 +331,11 @@ public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
             
             @Override
             public void onError(Throwable t) {
+                // 客户端取消或超时，调用已经结束，无需再发送响应
+                if (Context.current().isCancelled()) {
+                    log.info("批量创建用户调用已取消: 成功{}个, 失败{}个", successCount.get(), failureCount.get());
+                    return;
+                }
                 log.error("批量创建用户过程中发生错误", t);
                 CreateUserResponse response = CreateUserResponse.newBuilder()
                         .setSuccess(false)
@@ -380,12 +361,180 @@ public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
         };
     }
     
+    /**
+     * 批量更新用户 - 双向流式RPC
+     * 
+     * 收到的请求攒满一块（user-service.bulk-write.chunk-size）后交给UserStore.updateAll，
+     * JPA存储在一个事务中用集合查询和JDBC批处理完成整块，提交后立即返回这一块每个请求的结果；
+     * 客户端结束发送后执行最后一块
+     * 
+     * @param responseObserver 响应观察者
+     * @return 请求观察者
+     */
+    @Override
+    public StreamObserver<UpdateUserRequest> batchUpdateUsers(
+            StreamObserver<BatchWriteUsersResponse> responseObserver) {
+        log.info("开始批量更新用户");
+        return new ChunkedWriteObserver<UpdateUserRequest>("批量更新用户", responseObserver, UpdateUserRequest::getUserId, chunk -> {
+            List<UserWriteResult> results = userStore.updateAll(chunk.stream()
+                    .map(request -> new UserUpdate(request.getUserId(),
+                            request.getUsername(), request.getEmail(), request.getAge()))
+                    .toList());
+            List<BatchWriteResult> items = new ArrayList<>(results.size());
+            for (int i = 0; i < results.size(); i++) {
+                items.add(batchUpdateResult(chunk.get(i).getUserId(), results.get(i)));
+            }
+            return items;
+        });
+    }
+    
+    /**
+     * 批量删除用户 - 双向流式RPC
+     * 
+     * 与批量更新相同地分块并逐块返回结果，JPA存储每块执行一次DELETE ... WHERE id IN (...)
+     * 
+     * @param responseObserver 响应观察者
+     * @return 请求观察者
+     */
+    @Override
+    public StreamObserver<DeleteUserRequest> batchDeleteUsers(
+            StreamObserver<BatchWriteUsersResponse> responseObserver) {
+        log.info("开始批量删除用户");
+        return new ChunkedWriteObserver<DeleteUserRequest>("批量删除用户", responseObserver, DeleteUserRequest::getUserId, chunk -> {
+            List<Boolean> results = userStore.deleteAll(chunk.stream().map(DeleteUserRequest::getUserId).toList());
+            List<BatchWriteResult> items = new ArrayList<>(results.size());
+            for (int i = 0; i < results.size(); i++) {
+                items.add(batchDeleteResult(chunk.get(i).getUserId(), results.get(i)));
+            }
+            return items;
+        });
+    }
+    
+    /**
+     * 批量更新/删除的请求观察者：按块执行，每块提交后发送这一块的结果
+     * 
+     * 服务端只保留成功、失败的总数用于日志，每个请求的结果随所在的块发出，内存占用与任务大小无关，
+     * 单个响应的大小也不超过一块。同一个调用的回调由gRPC串行执行，不需要同步。
+     * 一块执行失败时这一块的请求都记为失败，后面的块继续执行；调用取消后不再执行
+     */
+    private final class ChunkedWriteObserver<ReqT> implements StreamObserver<ReqT> {
+        
+        private final String operation;
+        private final StreamObserver<BatchWriteUsersResponse> responseObserver;
+        private final ToLongFunction<ReqT> userIdOf;
+        private final Function<List<ReqT>, List<BatchWriteResult>> executor;
+        private final int chunkSize = Math.max(1, bulkWriteProperties.getChunkSize());
+        private List<ReqT> chunk = new ArrayList<>();
+        private int successCount;
+        private int failureCount;
+        
+        ChunkedWriteObserver(String operation, StreamObserver<BatchWriteUsersResponse> responseObserver,
+                             ToLongFunction<ReqT> userIdOf, Function<List<ReqT>, List<BatchWriteResult>> executor) {
+            this.operation = operation;
+            this.responseObserver = responseObserver;
+            this.userIdOf = userIdOf;
+            this.executor = executor;
+        }
+        
+        @Override
+        public void onNext(ReqT request) {
+            // 调用已取消时，剩余的请求不再写入数据库
+            if (Context.current().isCancelled()) {
+                return;
+            }
+            chunk.add(request);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+        
+        @Override
+        public void onError(Throwable t) {
+            // 客户端取消或超时，调用已经结束，无需再发送响应
+            if (Context.current().isCancelled()) {
+                log.info("{}调用已取消: 成功{}个, 失败{}个", operation, successCount, failureCount);
+                return;
+            }
+            log.error("{}过程中发生错误", operation, t);
+            // 已经提交的块的结果都已发出，这里只通知调用方剩余的请求没有执行
+            responseObserver.onNext(BatchWriteUsersResponse.newBuilder()
+                    .setSuccess(false)
+                    .setMessage(operation + "过程中发生错误: " + t.getMessage())
+                    .build());
+            responseObserver.onCompleted();
+        }
+        
+        @Override
+        public void onCompleted() {
+            flush();
+            if (isCancelled(operation)) {
+                return;
+            }
+            log.info("{}完成: 成功{}个, 失败{}个", operation, successCount, failureCount);
+            responseObserver.onCompleted();
+        }
+        
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            List<ReqT> current = chunk;
+            chunk = new ArrayList<>(chunkSize);
+            log.debug("{}: 执行一块{}个请求", operation, current.size());
+            
+            List<BatchWriteResult> results;
+            try {
+                results = executor.apply(current);
+            } catch (Exception e) {
+                if (isCancelled(operation)) {
+                    return;
+                }
+                log.error("{}的一块执行失败: {}个请求", operation, current.size(), e);
+                results = new ArrayList<>(current.size());
+                for (ReqT request : current) {
+                    results.add(BatchWriteResult.newBuilder()
+                            .setUserId(userIdOf.applyAsLong(request))
+                            .setSuccess(false)
+                            .setMessage("服务器内部错误: " + e.getMessage())
+                            .build());
+                }
+            }
+            int chunkSuccesses = 0;
+            for (BatchWriteResult result : results) {
+                if (result.getSuccess()) {
+                    chunkSuccesses++;
+                }
+            }
+            int chunkFailures = results.size() - chunkSuccesses;
+            successCount += chunkSuccesses;
+            failureCount += chunkFailures;
+            // 取消后调用已经结束，不能再发送响应
+            if (isCancelled(operation)) {
+                return;
+            }
+            responseObserver.onNext(BatchWriteUsersResponse.newBuilder()
+                    .setSuccess(true)
+                    .setMessage(String.format("%s：一块%d个请求，成功%d个，失败%d个",
+                            operation, results.size(), chunkSuccesses, chunkFailures))
+                    .setSuccessCount(chunkSuccesses)
+                    .setFailureCount(chunkFailures)
+                    .addAllResults(results)
+                    .build());
+        }
+    }
+    
     /**
      * 用户聊天 - 双向流式RPC
      * 
      * 这种RPC类型：客户端和服务器都可以发送多个消息（双向流）
      * 适用于实时通信的场景
      * 
+     * 使用手动流控：只有响应流就绪时才读取下一条消息，
+     * 客户端不读取回复时服务端也不再读取请求，不会在内存中堆积回复
+     * 
+     * 启用聊天历史（user-service.chat-history）时，收到的消息异步写入聊天日志；
+     * 请求头指定了回放起点时，先按响应流的就绪状态推送历史消息，推送完才开始读取新的消息
+     * 
      * @param responseObserver 响应观察者
      * @return 请求观察者
      */
@@ -393,19 +542,62 @@ public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
     public StreamObserver<ChatMessage> userChat(StreamObserver<ChatMessage> responseObserver) {
         log.info("开始用户聊天会话");
         
+        ServerCallStreamObserver<ChatMessage> serverObserver = (ServerCallStreamObserver<ChatMessage>) responseObserver;
+        serverObserver.disableAutoRequest();
+        
+        ChatHistory chatHistory = chatHistoryProvider.getIfAvailable();
+        ChatReplayRequest replayRequest = ChatReplayRequest.current();
+        AtomicReference<ChatLog.Cursor> replay = new AtomicReference<>(chatHistory != null && replayRequest != null
+                ? chatHistory.openReplay(replayRequest) : null);
+        AtomicLong replayed = new AtomicLong();
+        
+        // 响应流从未就绪变为就绪时请求下一条消息（回放期间不读取新的消息）
+        AtomicBoolean wasReady = new AtomicBoolean(false);
+        serverObserver.setOnReadyHandler(() -> {
+            ChatLog.Cursor cursor = replay.get();
+            if (cursor != null) {
+                while (serverObserver.isReady() && !serverObserver.isCancelled()) {
+                    ChatMessage history = cursor.next();
+                    if (history == null) {
+                        log.info("聊天历史回放完成: {}条, 起点={}", replayed.get(), replayRequest);
+                        chatHistory.recordReplayed(replayed.get());
+                        replay.set(null);
+                        break;
+                    }
+                    responseObserver.onNext(history);
+                    replayed.incrementAndGet();
+                }
+                if (replay.get() != null) {
+                    return;
+                }
+            }
+            if (serverObserver.isReady() && wasReady.compareAndSet(false, true)) {
+                serverObserver.request(1);
+            }
+        });
+        
         return new StreamObserver<ChatMessage>() {
             @Override
             public void onNext(ChatMessage message) {
                 log.info("收到聊天消息: userId={}, message={}", message.getUserId(), message.getMessage());
                 
+                if (Context.current().isCancelled()) {
+                    return;
+                }
+                
+                if (chatHistory != null) {
+                    chatHistory.append(message);
+                }
+                
                 // 模拟服务器处理聊天消息并回复
-                ChatMessage response = ChatMessage.newBuilder()
-                        .setUserId(0)  // 0表示系统/服务器
-                        .setMessage("服务器收到你的消息: " + message.getMessage())
-                        .setTimestamp(System.currentTimeMillis())
-                        .build();
+                responseObserver.onNext(chatReply(message));
                 
-                responseObserver.onNext(response);
+                // 仍然就绪则继续读取，否则等待onReadyHandler
+                if (serverObserver.isReady()) {
+                    serverObserver.request(1);
+                } else {
+                    wasReady.set(false);
+                }
             }
             
             @Override
@@ -418,31 +610,267 @@ public class UserGrpcService extends UserServiceGrpc.UserServiceImplBase {
                 log.info("聊天会话结束");
                 
                 // 发送告别消息
-                ChatMessage farewell = ChatMessage.newBuilder()
-                        .setUserId(0)
-                        .setMessage("聊天会话已结束，再见！")
-                        .setTimestamp(System.currentTimeMillis())
-                        .build();
-                
-                responseObserver.onNext(farewell);
+                responseObserver.onNext(chatFarewell());
                 responseObserver.onCompleted();
             }
         };
     }
     
     /**
-     * 将JPA实体转换为Proto消息
+     * 用户聊天（批量回复） - 双向流式RPC
+     * 
+     * 与userChat的处理相同，区别在于回复不是逐条发送：
+     * 先放入ChatBatcher，攒够max-batch-size条或等待超过flush-interval后合并为一个ChatMessageBatch发送，
+     * 高消息速率下每个响应帧承载多条消息，代价是每条回复最多多等待flush-interval
      * 
-     * @param userEntity JPA用户实体
-     * @return Proto用户消息
+     * 流控与userChat一致：响应流未就绪时不再读取请求；回放的历史消息同样按批发送
+     * 
+     * @param responseObserver 响应观察者
+     * @return 请求观察者
+     */
+    @Override
+    public StreamObserver<ChatMessage> userChatBatched(StreamObserver<ChatMessageBatch> responseObserver) {
+        log.info("开始用户聊天会话（批量回复）");
+        
+        ServerCallStreamObserver<ChatMessageBatch> serverObserver =
+                (ServerCallStreamObserver<ChatMessageBatch>) responseObserver;
+        serverObserver.disableAutoRequest();
+        ChatBatcher batcher = chatBatching.open(serverObserver);
+        serverObserver.setOnCancelHandler(batcher::cancel);
+        
+        ChatHistory chatHistory = chatHistoryProvider.getIfAvailable();
+        ChatReplayRequest replayRequest = ChatReplayRequest.current();
+        AtomicReference<ChatLog.Cursor> replay = new AtomicReference<>(chatHistory != null && replayRequest != null
+                ? chatHistory.openReplay(replayRequest) : null);
+        AtomicLong replayed = new AtomicLong();
+        
+        // 响应流变为就绪时先发送积压的回复，再请求下一条消息（回放期间不读取新的消息）
+        AtomicBoolean wasReady = new AtomicBoolean(false);
+        serverObserver.setOnReadyHandler(() -> {
+            batcher.flush();
+            ChatLog.Cursor cursor = replay.get();
+            if (cursor != null) {
+                while (serverObserver.isReady() && !serverObserver.isCancelled()) {
+                    ChatMessageBatch.Builder batch = ChatMessageBatch.newBuilder();
+                    ChatMessage history = null;
+                    while (batch.getMessagesCount() < chatBatching.getMaxBatchSize()
+                            && (history = cursor.next()) != null) {
+                        batch.addMessages(history);
+                    }
+                    if (batch.getMessagesCount() > 0) {
+                        responseObserver.onNext(batch.build());
+                        replayed.addAndGet(batch.getMessagesCount());
+                    }
+                    if (history == null) {
+                        log.info("聊天历史回放完成: {}条, 起点={}", replayed.get(), replayRequest);
+                        chatHistory.recordReplayed(replayed.get());
+                        replay.set(null);
+                        break;
+                    }
+                }
+                if (replay.get() != null) {
+                    return;
+                }
+            }
+            if (serverObserver.isReady() && wasReady.compareAndSet(false, true)) {
+                serverObserver.request(1);
+            }
+        });
+        
+        return new StreamObserver<ChatMessage>() {
+            @Override
+            public void onNext(ChatMessage message) {
+                // 这个方法面向高消息速率，逐条日志只在DEBUG级别输出
+                log.debug("收到聊天消息: userId={}, message={}", message.getUserId(), message.getMessage());
+                
+                if (Context.current().isCancelled()) {
+                    return;
+                }
+                
+                if (chatHistory != null) {
+                    chatHistory.append(message);
+                }
+                batcher.add(chatReply(message));
+                
+                // 仍然就绪则继续读取，否则等待onReadyHandler
+                if (serverObserver.isReady()) {
+                    serverObserver.request(1);
+                } else {
+                    wasReady.set(false);
+                }
+            }
+            
+            @Override
+            public void onError(Throwable t) {
+                batcher.cancel();
+                log.error("聊天过程中发生错误", t);
+            }
+            
+            @Override
+            public void onCompleted() {
+                log.info("聊天会话结束（批量回复）");
+                batcher.complete(chatFarewell());
+            }
+        };
+    }
+    
+    /**
+     * 根据创建结果构建响应
+     */
+    protected static CreateUserResponse createUserResponse(UserWriteResult result) {
+        return switch (result.getOutcome()) {
+            case USERNAME_TAKEN -> CreateUserResponse.newBuilder()
+                    .setSuccess(false)
+                    .setMessage("用户名已存在")
+                    .build();
+            case EMAIL_TAKEN -> CreateUserResponse.newBuilder()
+                    .setSuccess(false)
+                    .setMessage("邮箱已存在")
+                    .build();
+            default -> CreateUserResponse.newBuilder()
+                    .setSuccess(true)
+                    .setMessage("用户创建成功")
+                    .setUser(result.getUser())
+                    .build();
+        };
+    }
+    
+    /**
+     * 根据查询结果构建响应
      */
-    private User convertToProtoUser(UserEntity userEntity) {
-        return User.newBuilder()
-                .setId(userEntity.getId())
-                .setUsername(userEntity.getUsername())
-                .setEmail(userEntity.getEmail())
-                .setAge(userEntity.getAge())
-                .setCreatedAt(userEntity.getCreatedAt())
+    protected static GetUserResponse getUserResponse(Optional<User> user) {
+        if (user.isEmpty()) {
+            return GetUserResponse.newBuilder()
+                    .setSuccess(false)
+                    .setMessage("用户不存在")
+                    .build();
+        }
+        return GetUserResponse.newBuilder()
+                .setSuccess(true)
+                .setMessage("用户查询成功")
+                .setUser(user.get())
                 .build();
     }
+    
+    /**
+     * 用户自客户端缓存的版本以来没有修改时的响应
+     */
+    protected static GetUserResponse notModifiedResponse() {
+        return GetUserResponse.newBuilder()
+                .setSuccess(true)
+                .setMessage("用户未修改")
+                .setNotModified(true)
+                .build();
+    }
+    
+    /**
+     * 根据更新结果构建响应
+     */
+    protected static UpdateUserResponse updateUserResponse(UserWriteResult result) {
+        return switch (result.getOutcome()) {
+            case NOT_FOUND -> UpdateUserResponse.newBuilder()
+                    .setSuccess(false)
+                    .setMessage("用户不存在")
+                    .build();
+            // 新用户名或邮箱已被其他用户使用
+            case USERNAME_TAKEN -> UpdateUserResponse.newBuilder()
+                    .setSuccess(false)
+                    .setMessage("用户名已被其他用户使用")
+                    .build();
+            case EMAIL_TAKEN -> UpdateUserResponse.newBuilder()
+                    .setSuccess(false)
+                    .setMessage("邮箱已被其他用户使用")
+                    .build();
+            case SUCCESS -> UpdateUserResponse.newBuilder()
+                    .setSuccess(true)
+                    .setMessage("用户更新成功")
+                    .setUser(result.getUser())
+                    .build();
+        };
+    }
+    
+    /**
+     * 批量更新中一个请求的结果，失败原因与UpdateUser相同
+     */
+    protected static BatchWriteResult batchUpdateResult(long userId, UserWriteResult result) {
+        UpdateUserResponse response = updateUserResponse(result);
+        BatchWriteResult.Builder builder = BatchWriteResult.newBuilder()
+                .setUserId(userId)
+                .setSuccess(response.getSuccess());
+        if (response.getSuccess()) {
+            builder.setVersion(response.getUser().getVersion());
+        } else {
+            builder.setMessage(response.getMessage());
+        }
+        return builder.build();
+    }
+    
+    /**
+     * 批量删除中一个请求的结果
+     */
+    protected static BatchWriteResult batchDeleteResult(long userId, boolean deleted) {
+        BatchWriteResult.Builder builder = BatchWriteResult.newBuilder()
+                .setUserId(userId)
+                .setSuccess(deleted);
+        if (!deleted) {
+            builder.setMessage(deleteUserResponse(false).getMessage());
+        }
+        return builder.build();
+    }
+    
+    /**
+     * 根据删除结果构建响应
+     */
+    protected static DeleteUserResponse deleteUserResponse(boolean deleted) {
+        if (!deleted) {
+            return DeleteUserResponse.newBuilder()
+                    .setSuccess(false)
+                    .setMessage("用户不存在")
+                    .build();
+        }
+        return DeleteUserResponse.newBuilder()
+                .setSuccess(true)
+                .setMessage("用户删除成功")
+                .build();
+    }
+    
+    /**
+     * 服务器对一条聊天消息的回复
+     */
+    private static ChatMessage chatReply(ChatMessage message) {
+        return ChatMessage.newBuilder()
+                .setUserId(0)  // 0表示系统/服务器
+                .setMessage("服务器收到你的消息: " + message.getMessage())
+                .setTimestamp(System.currentTimeMillis())
+                .build();
+    }
+    
+    /**
+     * 聊天会话结束时的告别消息
+     */
+    private static ChatMessage chatFarewell() {
+        return ChatMessage.newBuilder()
+                .setUserId(0)
+                .setMessage("聊天会话已结束，再见！")
+                .setTimestamp(System.currentTimeMillis())
+                .build();
+    }
+    
+    /**
+     * 判断当前调用是否已被取消或超时
+     * 
+     * 已取消的调用失败是预期行为（例如正在执行的语句被中断），只记录info日志，也不需要再发送响应
+     * 
+     * @param operation 操作名称，用于日志
+     * @return 是否已取消
+     */
+    private boolean isCancelled(String operation) {
+        Context context = Context.current();
+        if (!context.isCancelled()) {
+            return false;
+        }
+        log.info("{}调用已取消或超时，放弃处理: {}", operation,
+                context.cancellationCause() == null ? "CANCELLED" : context.cancellationCause().getMessage());
+        return true;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.example.grpc.server.service;
+
+import com.example.grpc.common.marshal.ZeroCopyMarshalling;
+import com.example.grpc.proto.UserServiceGrpc;
+import lombok.extern.slf4j.Slf4j;
+import net.devh.boot.grpc.server.service.AnnotationGrpcServiceDiscoverer;
+import net.devh.boot.grpc.server.service.GrpcServiceDefinition;
+import net.devh.boot.grpc.server.service.GrpcServiceDiscoverer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Collection;
+
+/**
+ * UserService的编解码器配置
+ * 
+ * 生成的UserServiceImplBase.bindService()是final的，不能直接重写，
+ * 这里包装默认的服务发现器，在服务注册前把UserService所有方法的编解码器替换为ZeroCopyMarshaller。
+ * 发现器返回的服务定义已经应用了全局拦截器，只替换方法描述符，处理器链不变
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "user-service.streaming", name = "zero-copy-marshalling", havingValue = "true")
+@Slf4j
+public class ZeroCopyMarshallingConfiguration {
+    
+    @Bean
+    public GrpcServiceDiscoverer zeroCopyGrpcServiceDiscoverer(ApplicationContext applicationContext) {
+        AnnotationGrpcServiceDiscoverer delegate = new AnnotationGrpcServiceDiscoverer();
+        delegate.setApplicationContext(applicationContext);
+        
+        return () -> {
+            Collection<GrpcServiceDefinition> services = delegate.findGrpcServices();
+            return services.stream()
+                    .map(service -> {
+                        if (!UserServiceGrpc.SERVICE_NAME.equals(service.getDefinition().getServiceDescriptor().getName())) {
+                            return service;
+                        }
+                        log.info("UserService使用ZeroCopyMarshaller编解码");
+                        return new GrpcServiceDefinition(service.getBeanName(), service.getBeanClazz(),
+                                ZeroCopyMarshalling.wrap(service.getDefinition()));
+                    })
+                    .toList();
+        };
+    }
+}
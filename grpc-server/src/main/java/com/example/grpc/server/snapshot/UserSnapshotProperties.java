@@ -0,0 +1,39 @@
+package com.example.grpc.server.snapshot;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 用户快照配置
+ * 
+ * 对应application.yml中的user-service.snapshot配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "user-service.snapshot")
+public class UserSnapshotProperties {
+    
+    /**
+     * 是否启用快照功能
+     */
+    private boolean enabled = false;
+    
+    /**
+     * 快照文件路径
+     */
+    private String path = "data/users.snapshot";
+    
+    /**
+     * 启动时是否从快照文件恢复数据
+     */
+    private boolean loadOnStartup = true;
+    
+    /**
+     * 关闭时是否自动保存快照
+     */
+    private boolean saveOnShutdown = true;
+    
+    /**
+     * 批量导入/导出时每批的行数
+     */
+    private int batchSize = 5000;
+}
@@ -0,0 +1,96 @@
+package com.example.grpc.server.snapshot;
+
+import com.example.grpc.proto.User;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * 基于内存映射的快照读取器
+ * 
+ * 快照文件格式：连续的长度前缀Proto消息（varint长度 + User字节），
+ * 与User.writeDelimitedTo / parseDelimitedFrom兼容
+ * 
+ * 文件按窗口分段映射，单个窗口不超过MAX_WINDOW_BYTES，
+ * 因此可以读取超过2GB的快照文件；跨窗口的记录会在下一个窗口重新读取
+ */
+public final class UserSnapshotReader {
+    
+    /**
+     * 单次映射的最大字节数
+     */
+    private static final long MAX_WINDOW_BYTES = 256L * 1024 * 1024;
+    
+    private UserSnapshotReader() {
+    }
+    
+    /**
+     * 读取快照文件中的所有用户
+     * 
+     * @param path 快照文件路径
+     * @param consumer 每读到一个用户的回调
+     * @return 读取的用户数量
+     * @throws IOException 文件读取失败或内容损坏
+     */
+    public static long read(Path path, Consumer<User> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            long count = 0;
+            
+            while (position < size) {
+                long windowSize = Math.min(MAX_WINDOW_BYTES, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+                int consumed = 0;
+                
+                while (window.hasRemaining()) {
+                    int start = window.position();
+                    int length = readVarint32(window);
+                    if (length < 0 || window.remaining() < length) {
+                        // 记录跨越了窗口边界，留给下一个窗口处理
+                        window.position(start);
+                        break;
+                    }
+                    
+                    ByteBuffer record = window.slice(window.position(), length);
+                    consumer.accept(User.parseFrom(record));
+                    window.position(window.position() + length);
+                    consumed = window.position();
+                    count++;
+                }
+                
+                if (consumed == 0) {
+                    throw new IOException("快照文件不完整或已损坏: offset=" + position);
+                }
+                position += consumed;
+            }
+            
+            return count;
+        }
+    }
+    
+    /**
+     * 读取varint32长度前缀
+     * 
+     * @return 长度；缓冲区剩余字节不足时返回-1
+     */
+    private static int readVarint32(ByteBuffer buffer) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            byte b = buffer.get();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("快照文件中的长度前缀格式错误");
+    }
+}
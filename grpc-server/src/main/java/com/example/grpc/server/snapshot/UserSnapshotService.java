@@ -0,0 +1,237 @@
+package com.example.grpc.server.snapshot;
+
+import com.example.grpc.proto.User;
+import com.example.grpc.server.store.UserStore;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 用户数据快照服务
+ * 
+ * 服务端使用H2内存数据库，每次重启数据都会丢失，
+ * 这个服务负责把UserStore中的用户导出为快照文件，并在启动时通过内存映射快速恢复
+ * 快照与存储模式无关：分片存储导出的快照可以恢复到JPA存储，反之亦然
+ * 
+ * - 启动时：在gRPC端口开放之前（所有单例初始化完成后）从快照批量导入
+ * - 运行时：通过管理接口触发，在独立线程中导出，不阻塞RPC处理
+ * - 关闭时：可选地自动保存一次快照
+ * 
+ * 启用延迟初始化（fast-startup配置）时也必须立即创建，否则启动预热不会执行
+ */
+@Service
+@Lazy(false)
+@RequiredArgsConstructor
+@Slf4j
+public class UserSnapshotService implements SmartInitializingSingleton {
+    
+    private final UserSnapshotProperties properties;
+    private final UserStore userStore;
+    
+    /**
+     * 快照导出专用线程，保证同一时间只有一个导出任务
+     */
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final AtomicReference<CompletableFuture<SnapshotResult>> running = new AtomicReference<>();
+    
+    private volatile SnapshotResult lastResult;
+    
+    /**
+     * 启动预热：所有单例创建完成后、gRPC服务开始监听之前执行
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!properties.isEnabled() || !properties.isLoadOnStartup()) {
+            return;
+        }
+        
+        Path path = snapshotPath();
+        if (!Files.exists(path)) {
+            log.info("快照文件不存在，跳过预热: {}", path);
+            return;
+        }
+        
+        if (userStore.count() > 0) {
+            log.warn("用户表非空，跳过快照恢复: {}", path);
+            return;
+        }
+        
+        try {
+            lastResult = restore(path);
+            log.info("快照恢复完成: {}个用户, 耗时{}ms", lastResult.getUserCount(), lastResult.getElapsedMillis());
+        } catch (IOException e) {
+            // 快照损坏时直接启动失败，避免以空库启动后关闭时覆盖掉原快照
+            throw new IllegalStateException("快照恢复失败: " + path, e);
+        }
+    }
+    
+    /**
+     * 异步触发一次快照导出
+     * 
+     * 如果已经有导出任务在执行，直接返回正在执行的任务
+     * 
+     * @return 导出结果
+     */
+    public CompletableFuture<SnapshotResult> snapshotAsync() {
+        CompletableFuture<SnapshotResult> future = new CompletableFuture<>();
+        while (!running.compareAndSet(null, future)) {
+            CompletableFuture<SnapshotResult> existing = running.get();
+            if (existing != null) {
+                return existing;
+            }
+        }
+        
+        snapshotExecutor.execute(() -> {
+            try {
+                SnapshotResult result = snapshot(snapshotPath());
+                lastResult = result;
+                log.info("快照导出完成: {}个用户, 耗时{}ms", result.getUserCount(), result.getElapsedMillis());
+                future.complete(result);
+            } catch (Exception e) {
+                log.error("快照导出失败", e);
+                future.completeExceptionally(e);
+            } finally {
+                running.set(null);
+            }
+        });
+        return future;
+    }
+    
+    /**
+     * @return 当前是否有导出任务在执行
+     */
+    public boolean isSnapshotInProgress() {
+        return running.get() != null;
+    }
+    
+    /**
+     * @return 最近一次导出或恢复的结果，可能为null
+     */
+    public SnapshotResult getLastResult() {
+        return lastResult;
+    }
+    
+    /**
+     * 应用关闭时保存快照
+     * 
+     * ContextClosedEvent在gRPC服务停止和数据源关闭之前发布，此时表中数据仍然完整
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void onContextClosed() {
+        if (!properties.isEnabled() || !properties.isSaveOnShutdown()) {
+            return;
+        }
+        
+        try {
+            snapshotAsync().join();
+        } catch (Exception e) {
+            log.error("关闭时保存快照失败", e);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        snapshotExecutor.shutdown();
+    }
+    
+    /**
+     * 导出快照：先写临时文件，完成后原子替换，导出中途失败不会破坏旧快照
+     */
+    private SnapshotResult snapshot(Path path) throws IOException {
+        long start = System.nanoTime();
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        long count;
+        try (UserSnapshotWriter writer = new UserSnapshotWriter(tempPath)) {
+            userStore.scan(properties.getBatchSize(), user -> {
+                try {
+                    writer.write(user);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            count = writer.getCount();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new SnapshotResult("snapshot", path.toString(), count, elapsedMillis(start), System.currentTimeMillis());
+    }
+    
+    /**
+     * 从快照恢复：内存映射读取，按批次走JDBC批量插入
+     */
+    private SnapshotResult restore(Path path) throws IOException {
+        long start = System.nanoTime();
+        int batchSize = properties.getBatchSize();
+        List<User> batch = new ArrayList<>(batchSize);
+        
+        long count = UserSnapshotReader.read(path, user -> {
+            batch.add(user);
+            if (batch.size() >= batchSize) {
+                insertBatch(batch);
+            }
+        });
+        insertBatch(batch);
+        userStore.restartIdentity();
+        
+        return new SnapshotResult("restore", path.toString(), count, elapsedMillis(start), System.currentTimeMillis());
+    }
+    
+    private void insertBatch(List<User> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        userStore.batchInsert(batch);
+        batch.clear();
+    }
+    
+    private Path snapshotPath() {
+        return Paths.get(properties.getPath());
+    }
+    
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+    
+    /**
+     * 快照操作结果
+     */
+    @Value
+    public static class SnapshotResult {
+        String operation;
+        String path;
+        long userCount;
+        long elapsedMillis;
+        long timestamp;
+    }
+}
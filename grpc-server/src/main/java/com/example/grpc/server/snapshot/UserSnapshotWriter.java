@@ -0,0 +1,55 @@
+package com.example.grpc.server.snapshot;
+
+import com.example.grpc.proto.User;
+import com.google.protobuf.CodedOutputStream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 快照写入器
+ * 
+ * 以长度前缀格式顺序写入User消息，整个文件共用一个CodedOutputStream缓冲区，
+ * 避免writeDelimitedTo每次调用都创建新的缓冲区
+ */
+public final class UserSnapshotWriter implements Closeable {
+    
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    private final OutputStream out;
+    private final CodedOutputStream coded;
+    private long count;
+    
+    public UserSnapshotWriter(Path path) throws IOException {
+        this.out = Files.newOutputStream(path);
+        this.coded = CodedOutputStream.newInstance(out, BUFFER_SIZE);
+    }
+    
+    /**
+     * 写入一个用户
+     */
+    public void write(User user) throws IOException {
+        coded.writeUInt32NoTag(user.getSerializedSize());
+        user.writeTo(coded);
+        count++;
+    }
+    
+    /**
+     * @return 已写入的用户数量
+     */
+    public long getCount() {
+        return count;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            coded.flush();
+        } finally {
+            out.close();
+        }
+    }
+}
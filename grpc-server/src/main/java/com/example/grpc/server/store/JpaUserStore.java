@@ -0,0 +1,358 @@
+package com.example.grpc.server.store;
+
+import com.example.grpc.common.trace.Trace;
+import com.example.grpc.proto.User;
+import com.example.grpc.server.entity.UserEntity;
+import com.example.grpc.server.repository.UserBulkRepository;
+import com.example.grpc.server.repository.UserRepository;
+import com.example.grpc.server.replication.ConsistencyContext;
+import com.example.grpc.server.replication.ReplicaSet;
+import com.example.grpc.server.service.DeadlineAwareTransactions;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 基于JPA的用户存储：所有用户保存在同一个H2数据库中
+ *
+ * 单条操作通过DeadlineAwareTransactions在调用的截止时间内执行，
+ * 快照使用的批量操作和批量更新、删除绕过JPA直接走JDBC（UserBulkRepository）
+ *
+ * 启用读写分离时，每次写入提交后把涉及的用户ID发布给副本，并把分配的复制序号记录为调用的一致性令牌
+ * 创建和查询用户的各步骤记录为链路追踪的阶段（未启用追踪时不记录）
+ * 带字段投影的查询用JPQL只选择需要的列，条件查询只选择version列
+ */
+@Component
+@ConditionalOnProperty(prefix = "user-service.storage", name = "mode", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaUserStore implements UserStore {
+
+    private final UserRepository userRepository;
+    private final UserBulkRepository userBulkRepository;
+    private final DeadlineAwareTransactions transactions;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<ReplicaSet> replicaSet;
+    private final EntityManager entityManager;
+
+    @Override
+    public UserWriteResult create(String username, String email, int age) {
+        return transactions.execute(false, status -> {
+            long start = System.nanoTime();
+            boolean usernameTaken = userRepository.existsByUsername(username);
+            Trace.stage("existsByUsername", start);
+            if (usernameTaken) {
+                return UserWriteResult.failure(UserWriteResult.Outcome.USERNAME_TAKEN);
+            }
+            start = System.nanoTime();
+            boolean emailTaken = userRepository.existsByEmail(email);
+            Trace.stage("existsByEmail", start);
+            if (emailTaken) {
+                return UserWriteResult.failure(UserWriteResult.Outcome.EMAIL_TAKEN);
+            }
+
+            UserEntity userEntity = new UserEntity();
+            userEntity.setUsername(username);
+            userEntity.setEmail(email);
+            userEntity.setAge(age);
+            start = System.nanoTime();
+            UserEntity savedUser = userRepository.save(userEntity);
+            Trace.stage("save", start);
+            replicateOnCommit(List.of(savedUser.getId()));
+            start = System.nanoTime();
+            User user = toProto(savedUser);
+            Trace.stage("convertToProtoUser", start);
+            return UserWriteResult.success(user);
+        });
+    }
+
+    @Override
+    public Optional<User> findById(long id) {
+        return transactions.execute(true, status -> {
+            long start = System.nanoTime();
+            Optional<UserEntity> user = userRepository.findById(id);
+            Trace.stage("findById", start);
+            return user.map(JpaUserStore::toProto);
+        });
+    }
+
+    @Override
+    public Optional<Long> findVersion(long id) {
+        return transactions.execute(true, status -> {
+            long start = System.nanoTime();
+            Optional<Long> version = userRepository.findVersionById(id);
+            Trace.stage("findVersion", start);
+            return version;
+        });
+    }
+
+    @Override
+    public List<User> findAll() {
+        return transactions.execute(true, status -> userRepository.findAll(Sort.by("id")).stream()
+                .map(JpaUserStore::toProto)
+                .toList());
+    }
+
+    /**
+     * 只查询投影中的列，不加载实体（也不进入持久化上下文）
+     */
+    @Override
+    public Optional<User> findById(long id, UserProjection projection) {
+        if (projection.isAll()) {
+            return findById(id);
+        }
+        return transactions.execute(true, status -> {
+            long start = System.nanoTime();
+            List<Tuple> rows = entityManager.createQuery(
+                            "SELECT " + projection.attributes("u") + " FROM UserEntity u WHERE u.id = :id", Tuple.class)
+                    .setParameter("id", id)
+                    .getResultList();
+            Trace.stage("findById", start);
+            return rows.stream().findFirst().map(row -> projection.read(row.toArray()));
+        });
+    }
+
+    @Override
+    public List<User> findAll(UserProjection projection) {
+        if (projection.isAll()) {
+            return findAll();
+        }
+        return transactions.execute(true, status -> entityManager.createQuery(
+                        "SELECT " + projection.attributes("u") + " FROM UserEntity u ORDER BY u.id", Tuple.class)
+                .getResultStream()
+                .map(row -> projection.read(row.toArray()))
+                .toList());
+    }
+
+    @Override
+    public UserWriteResult update(long id, String username, String email, int age) {
+        return transactions.execute(false, status -> {
+            // 锁定这一行，并发更新同一用户时版本号不会重复
+            Optional<UserEntity> userOpt = userRepository.findByIdForUpdate(id);
+            if (userOpt.isEmpty()) {
+                return UserWriteResult.failure(UserWriteResult.Outcome.NOT_FOUND);
+            }
+            UserEntity user = userOpt.get();
+
+            if (!username.isEmpty()) {
+                // 检查新用户名是否已被其他用户使用
+                Optional<UserEntity> existingUser = userRepository.findByUsername(username);
+                if (existingUser.isPresent() && !existingUser.get().getId().equals(user.getId())) {
+                    return UserWriteResult.failure(UserWriteResult.Outcome.USERNAME_TAKEN);
+                }
+                user.setUsername(username);
+            }
+
+            if (!email.isEmpty()) {
+                // 检查新邮箱是否已被其他用户使用
+                Optional<UserEntity> existingUser = userRepository.findByEmail(email);
+                if (existingUser.isPresent() && !existingUser.get().getId().equals(user.getId())) {
+                    return UserWriteResult.failure(UserWriteResult.Outcome.EMAIL_TAKEN);
+                }
+                user.setEmail(email);
+            }
+
+            if (age > 0) {
+                user.setAge(age);
+            }
+            user.setVersion(user.getVersion() + 1);
+
+            UserEntity savedUser = userRepository.save(user);
+            replicateOnCommit(List.of(id));
+            return UserWriteResult.success(toProto(savedUser));
+        });
+    }
+
+    @Override
+    public boolean delete(long id) {
+        return transactions.execute(false, status -> {
+            if (!userRepository.existsById(id)) {
+                return false;
+            }
+            userRepository.deleteById(id);
+            replicateOnCommit(List.of(id));
+            return true;
+        });
+    }
+
+    /**
+     * 在一个事务中完成一块更新：一次查询锁定并读出全部用户，两次查询得到新用户名、邮箱当前的所有者，
+     * 在内存中按顺序检查和修改，最后用JDBC批处理写回成功的更新
+     *
+     * 并发事务占用了同一个用户名或邮箱时唯一约束会使整块回滚，此时退回逐个更新
+     */
+    @Override
+    public List<UserWriteResult> updateAll(List<UserUpdate> updates) {
+        try {
+            return transactions.execute(false, status -> updateChunk(updates));
+        } catch (DataIntegrityViolationException e) {
+            return UserStore.super.updateAll(updates);
+        }
+    }
+
+    private List<UserWriteResult> updateChunk(List<UserUpdate> updates) {
+        Set<Long> ids = new LinkedHashSet<>();
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        for (UserUpdate update : updates) {
+            ids.add(update.getId());
+            if (!update.getUsername().isEmpty()) {
+                usernames.add(update.getUsername());
+            }
+            if (!update.getEmail().isEmpty()) {
+                emails.add(update.getEmail());
+            }
+        }
+
+        long start = System.nanoTime();
+        Map<Long, User> users = userBulkRepository.lockByIds(ids);
+        Trace.stage("lockByIds", start);
+        start = System.nanoTime();
+        Map<String, Long> usernameOwners = userBulkRepository.findIdsByUsernames(usernames);
+        Map<String, Long> emailOwners = userBulkRepository.findIdsByEmails(emails);
+        Trace.stage("findOwners", start);
+
+        List<UserWriteResult> results = new ArrayList<>(updates.size());
+        List<User> changed = new ArrayList<>();
+        for (UserUpdate update : updates) {
+            User user = users.get(update.getId());
+            if (user == null) {
+                results.add(UserWriteResult.failure(UserWriteResult.Outcome.NOT_FOUND));
+                continue;
+            }
+            String username = update.getUsername().isEmpty() ? user.getUsername() : update.getUsername();
+            String email = update.getEmail().isEmpty() ? user.getEmail() : update.getEmail();
+            if (usernameOwners.getOrDefault(username, user.getId()) != user.getId()) {
+                results.add(UserWriteResult.failure(UserWriteResult.Outcome.USERNAME_TAKEN));
+                continue;
+            }
+            if (emailOwners.getOrDefault(email, user.getId()) != user.getId()) {
+                results.add(UserWriteResult.failure(UserWriteResult.Outcome.EMAIL_TAKEN));
+                continue;
+            }
+
+            // 块内后面的请求要看到这次修改：旧的用户名、邮箱释放，新的归这个用户
+            usernameOwners.remove(user.getUsername(), user.getId());
+            emailOwners.remove(user.getEmail(), user.getId());
+            usernameOwners.put(username, user.getId());
+            emailOwners.put(email, user.getId());
+
+            User updated = user.toBuilder()
+                    .setUsername(username)
+                    .setEmail(email)
+                    .setAge(update.getAge() > 0 ? update.getAge() : user.getAge())
+                    .setVersion(user.getVersion() + 1)
+                    .build();
+            users.put(updated.getId(), updated);
+            changed.add(updated);
+            results.add(UserWriteResult.success(updated));
+        }
+
+        if (!changed.isEmpty()) {
+            start = System.nanoTime();
+            userBulkRepository.batchUpdate(changed);
+            Trace.stage("batchUpdate", start);
+            replicateOnCommit(changed.stream().map(User::getId).distinct().toList());
+        }
+        return results;
+    }
+
+    /**
+     * 在一个事务中完成一块删除：先锁定存在的用户，再用一条DELETE ... WHERE id IN (...)删除
+     */
+    @Override
+    public List<Boolean> deleteAll(List<Long> ids) {
+        return transactions.execute(false, status -> {
+            long start = System.nanoTime();
+            Set<Long> existing = new HashSet<>(userBulkRepository.lockByIds(new LinkedHashSet<>(ids)).keySet());
+            Trace.stage("lockByIds", start);
+            if (!existing.isEmpty()) {
+                start = System.nanoTime();
+                userBulkRepository.deleteByIds(existing);
+                Trace.stage("deleteByIds", start);
+                replicateOnCommit(List.copyOf(existing));
+            }
+
+            List<Boolean> results = new ArrayList<>(ids.size());
+            for (long id : ids) {
+                results.add(existing.remove(id));
+            }
+            return results;
+        });
+    }
+
+    @Override
+    public long count() {
+        return userBulkRepository.count();
+    }
+
+    @Override
+    public void scan(int fetchSize, Consumer<User> consumer) {
+        userBulkRepository.scan(fetchSize, consumer);
+    }
+
+    @Override
+    public void batchInsert(List<User> users) {
+        transactionTemplate.executeWithoutResult(status -> {
+            userBulkRepository.batchInsert(users);
+            replicateOnCommit(users.stream().map(User::getId).toList());
+        });
+    }
+
+    @Override
+    public void restartIdentity() {
+        userBulkRepository.restartIdentity();
+    }
+
+    @Override
+    public long maxId() {
+        return userBulkRepository.maxId();
+    }
+
+    /**
+     * 当前事务提交后把写入发布给副本；未启用读写分离时什么都不做
+     */
+    private void replicateOnCommit(Collection<Long> userIds) {
+        ReplicaSet replicas = replicaSet.getIfAvailable();
+        if (replicas == null) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ConsistencyContext.recordWrite(replicas.publish(userIds));
+            }
+        });
+    }
+
+    /**
+     * 将JPA实体转换为Proto消息
+     */
+    private static User toProto(UserEntity userEntity) {
+        return User.newBuilder()
+                .setId(userEntity.getId())
+                .setUsername(userEntity.getUsername())
+                .setEmail(userEntity.getEmail())
+                .setAge(userEntity.getAge())
+                .setCreatedAt(userEntity.getCreatedAt())
+                .setVersion(userEntity.getVersion())
+                .build();
+    }
+}
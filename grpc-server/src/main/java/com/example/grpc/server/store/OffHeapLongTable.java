@@ -0,0 +1,231 @@
+package com.example.grpc.server.store;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.LongPredicate;
+
+/**
+ * 堆外的long → long开放寻址哈希表（线性探测）
+ *
+ * 每个条目16字节（键、值），保存在直接内存的ByteBuffer中，不产生Long装箱对象，也不给GC增加需要扫描的引用。
+ * 同一个键可以对应多个值，由调用方通过find的谓词区分，用于用户名、邮箱这类只保存哈希值的索引。
+ *
+ * 写操作（put、remove）必须由调用方串行化；find不加锁，可以与写操作并发执行：
+ * 写入时先写值再以release语义写键，读取时以acquire语义读键，看到键时一定能看到对应的值。
+ * 扩容时构造新表后整体替换，正在旧表上查找的读操作不受影响
+ */
+final class OffHeapLongTable {
+
+    static final long NOT_FOUND = -1;
+
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = Long.MIN_VALUE;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final int ENTRY_BYTES = 16;
+
+    /**
+     * 每块直接内存最多容纳的条目数（4M个条目，64MB），单个ByteBuffer不能超过2GB
+     */
+    private static final int CHUNK_SHIFT = 22;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    /**
+     * 已用条目（包括墓碑）超过容量的这个比例时扩容或清理墓碑
+     */
+    private static final double MAX_LOAD = 0.7;
+
+    private volatile Table table;
+
+    /**
+     * 以下计数只由写线程访问
+     */
+    private long size;
+    private long tombstones;
+
+    /**
+     * @param expectedEntries 预计的条目数，用于确定初始容量
+     */
+    OffHeapLongTable(long expectedEntries) {
+        this.table = new Table(capacityFor(Math.max(16, expectedEntries)));
+    }
+
+    /**
+     * 把键转换为表中可用的键：0和Long.MIN_VALUE有特殊含义，需要避开
+     */
+    static long toKey(long hash) {
+        if (hash == EMPTY) {
+            return 1;
+        }
+        return hash == TOMBSTONE ? TOMBSTONE + 1 : hash;
+    }
+
+    /**
+     * 查找键对应的、满足谓词的第一个值
+     *
+     * @return 找到的值，没有时返回NOT_FOUND
+     */
+    long find(long key, LongPredicate matches) {
+        Table t = table;
+        long index = mix(key) & t.mask;
+        for (long probes = 0; probes < t.capacity; probes++) {
+            long k = t.keyAcquire(index);
+            if (k == EMPTY) {
+                return NOT_FOUND;
+            }
+            if (k == key) {
+                long value = t.value(index);
+                if (matches.test(value)) {
+                    return value;
+                }
+            }
+            index = (index + 1) & t.mask;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * 插入一个条目，不检查重复
+     */
+    void put(long key, long value) {
+        if ((size + tombstones + 1) > table.capacity * MAX_LOAD) {
+            rehash();
+        }
+        Table t = table;
+        long index = mix(key) & t.mask;
+        while (true) {
+            long k = t.keyAcquire(index);
+            if (k == EMPTY || k == TOMBSTONE) {
+                if (k == TOMBSTONE) {
+                    tombstones--;
+                }
+                t.setValue(index, value);
+                t.setKeyRelease(index, key);
+                size++;
+                return;
+            }
+            index = (index + 1) & t.mask;
+        }
+    }
+
+    /**
+     * 删除一个条目
+     *
+     * @return 条目是否存在
+     */
+    boolean remove(long key, long value) {
+        Table t = table;
+        long index = mix(key) & t.mask;
+        for (long probes = 0; probes < t.capacity; probes++) {
+            long k = t.keyAcquire(index);
+            if (k == EMPTY) {
+                return false;
+            }
+            if (k == key && t.value(index) == value) {
+                t.setKeyRelease(index, TOMBSTONE);
+                size--;
+                tombstones++;
+                return true;
+            }
+            index = (index + 1) & t.mask;
+        }
+        return false;
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * @return 占用的直接内存字节数
+     */
+    long allocatedBytes() {
+        return table.capacity * ENTRY_BYTES;
+    }
+
+    /**
+     * 按当前条目数重建表，同时清除所有墓碑
+     */
+    private void rehash() {
+        Table old = table;
+        Table rebuilt = new Table(capacityFor(size + 1));
+        for (long i = 0; i < old.capacity; i++) {
+            long k = old.keyAcquire(i);
+            if (k != EMPTY && k != TOMBSTONE) {
+                long index = mix(k) & rebuilt.mask;
+                while (rebuilt.keyAcquire(index) != EMPTY) {
+                    index = (index + 1) & rebuilt.mask;
+                }
+                rebuilt.setValue(index, old.value(i));
+                rebuilt.setKeyRelease(index, k);
+            }
+        }
+        tombstones = 0;
+        table = rebuilt;
+    }
+
+    /**
+     * 保证装载因子不超过一半的2的幂容量
+     */
+    private static long capacityFor(long entries) {
+        long capacity = Long.highestOneBit(Math.max(16, entries * 2 - 1)) << 1;
+        return Math.max(16, capacity);
+    }
+
+    /**
+     * murmur3的64位终结函数，打散连续的ID
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * 一张固定容量的表，按块分配直接内存
+     */
+    private static final class Table {
+
+        private final ByteBuffer[] chunks;
+        private final long capacity;
+        private final long mask;
+
+        Table(long capacity) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            long chunkEntries = Math.min(capacity, 1L << CHUNK_SHIFT);
+            int chunkCount = (int) ((capacity + chunkEntries - 1) / chunkEntries);
+            this.chunks = new ByteBuffer[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                // allocateDirect分配的内存已清零，即所有条目都是EMPTY
+                chunks[i] = ByteBuffer.allocateDirect((int) (chunkEntries * ENTRY_BYTES)).order(ByteOrder.nativeOrder());
+            }
+        }
+
+        long keyAcquire(long index) {
+            return (long) LONGS.getAcquire(chunks[(int) (index >>> CHUNK_SHIFT)], offset(index));
+        }
+
+        void setKeyRelease(long index, long key) {
+            LONGS.setRelease(chunks[(int) (index >>> CHUNK_SHIFT)], offset(index), key);
+        }
+
+        long value(long index) {
+            return (long) LONGS.get(chunks[(int) (index >>> CHUNK_SHIFT)], offset(index) + 8);
+        }
+
+        void setValue(long index, long value) {
+            LONGS.set(chunks[(int) (index >>> CHUNK_SHIFT)], offset(index) + 8, value);
+        }
+
+        private static int offset(long index) {
+            return (int) ((index & CHUNK_MASK) * ENTRY_BYTES);
+        }
+    }
+}
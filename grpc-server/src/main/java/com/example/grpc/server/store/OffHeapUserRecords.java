@@ -0,0 +1,247 @@
+package com.example.grpc.server.store;
+
+import com.example.grpc.proto.User;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 堆外的定长用户记录
+ *
+ * 记录按槽位编号，保存在固定大小的直接内存块（slab）中，每条记录192字节：
+ * <pre>
+ *   0  long  seq        顺序锁版本号，奇数表示正在写入
+ *   8  long  id         用户ID，0表示空闲槽位
+ *  16  long  createdAt
+ *  24  int   age
+ *  28  byte  用户名字节数
+ *  29  byte  邮箱字节数
+ *  32  byte[50]  用户名（UTF-8）
+ *  82  byte[100] 邮箱（UTF-8）
+ * 184  long  version    用户的版本号
+ * </pre>
+ *
+ * 写操作必须由调用方串行化；读操作不加锁，通过顺序锁（seqlock）检测并重试被并发写入打断的读取
+ */
+final class OffHeapUserRecords {
+
+    static final int MAX_USERNAME_BYTES = 50;
+    static final int MAX_EMAIL_BYTES = 100;
+
+    static final int RECORD_SIZE = 192;
+
+    private static final int SEQ = 0;
+    private static final int ID = 8;
+    private static final int CREATED_AT = 16;
+    private static final int AGE = 24;
+    private static final int USERNAME_LENGTH = 28;
+    private static final int EMAIL_LENGTH = 29;
+    private static final int USERNAME = 32;
+    private static final int EMAIL = USERNAME + MAX_USERNAME_BYTES;
+    private static final int VERSION = 184;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final int recordsPerSlab;
+    private final long maxRecords;
+    private final ByteBuffer[] slabs;
+
+    /**
+     * 已经使用过的最大槽位数，读线程据此遍历所有记录
+     */
+    private volatile long highWatermark;
+
+    /**
+     * 被删除后可以复用的槽位（只由写线程访问）
+     */
+    private long[] freeSlots = new long[64];
+    private int freeCount;
+
+    /**
+     * @param slabBytes 每块直接内存的大小
+     * @param maxBytes  记录最多占用的直接内存
+     */
+    OffHeapUserRecords(long slabBytes, long maxBytes) {
+        this.recordsPerSlab = (int) Math.max(1, Math.min(Integer.MAX_VALUE, slabBytes) / RECORD_SIZE);
+        int maxSlabs = (int) Math.max(1, maxBytes / ((long) recordsPerSlab * RECORD_SIZE));
+        this.maxRecords = (long) maxSlabs * recordsPerSlab;
+        this.slabs = new ByteBuffer[maxSlabs];
+    }
+
+    /**
+     * 分配一个槽位，优先复用已删除的槽位
+     *
+     * @throws IllegalStateException 达到配置的最大内存
+     */
+    long allocate() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        long slot = highWatermark;
+        if (slot >= maxRecords) {
+            throw new IllegalStateException("堆外用户存储已满: " + maxRecords + "条记录");
+        }
+        int slabIndex = (int) (slot / recordsPerSlab);
+        if (slabs[slabIndex] == null) {
+            slabs[slabIndex] = ByteBuffer.allocateDirect(recordsPerSlab * RECORD_SIZE).order(ByteOrder.nativeOrder());
+        }
+        highWatermark = slot + 1;
+        return slot;
+    }
+
+    /**
+     * 释放槽位，记录必须已经通过clear清除
+     */
+    void free(long slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    /**
+     * 写入一条记录
+     */
+    void write(long slot, long id, long createdAt, int age, byte[] username, byte[] email, long version) {
+        ByteBuffer slab = slab(slot);
+        int base = offset(slot);
+        long seq = beginWrite(slab, base);
+        slab.putLong(base + ID, id);
+        slab.putLong(base + CREATED_AT, createdAt);
+        slab.putInt(base + AGE, age);
+        slab.put(base + USERNAME_LENGTH, (byte) username.length);
+        slab.put(base + EMAIL_LENGTH, (byte) email.length);
+        slab.put(base + USERNAME, username);
+        slab.put(base + EMAIL, email);
+        slab.putLong(base + VERSION, version);
+        endWrite(slab, base, seq);
+    }
+
+    /**
+     * 清除一条记录，之后按ID读取该槽位会失败
+     */
+    void clear(long slot) {
+        ByteBuffer slab = slab(slot);
+        int base = offset(slot);
+        long seq = beginWrite(slab, base);
+        slab.putLong(base + ID, 0);
+        endWrite(slab, base, seq);
+    }
+
+    /**
+     * 无锁读取一条记录
+     *
+     * @param expectedId 期望的用户ID，小于等于0表示读取任意有效记录
+     * @return 记录对应的用户；槽位为空或已经属于其他用户时返回null
+     */
+    User read(long slot, long expectedId) {
+        ByteBuffer slab = slab(slot);
+        int base = offset(slot);
+        byte[] username = new byte[MAX_USERNAME_BYTES];
+        byte[] email = new byte[MAX_EMAIL_BYTES];
+        while (true) {
+            long seq = (long) LONGS.getAcquire(slab, base + SEQ);
+            if ((seq & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            long id = slab.getLong(base + ID);
+            long createdAt = slab.getLong(base + CREATED_AT);
+            int age = slab.getInt(base + AGE);
+            int usernameLength = slab.get(base + USERNAME_LENGTH);
+            int emailLength = slab.get(base + EMAIL_LENGTH);
+            slab.get(base + USERNAME, username, 0, MAX_USERNAME_BYTES);
+            slab.get(base + EMAIL, email, 0, MAX_EMAIL_BYTES);
+            long version = slab.getLong(base + VERSION);
+
+            VarHandle.acquireFence();
+            if ((long) LONGS.get(slab, base + SEQ) != seq) {
+                continue;
+            }
+            if (id == 0 || (expectedId > 0 && id != expectedId)) {
+                return null;
+            }
+            return User.newBuilder()
+                    .setId(id)
+                    .setUsername(new String(username, 0, usernameLength, StandardCharsets.UTF_8))
+                    .setEmail(new String(email, 0, emailLength, StandardCharsets.UTF_8))
+                    .setAge(age)
+                    .setCreatedAt(createdAt)
+                    .setVersion(version)
+                    .build();
+        }
+    }
+
+    /**
+     * 比较记录中的用户名，只能由写线程调用
+     */
+    boolean usernameEquals(long slot, byte[] username) {
+        return bytesEqual(slot, USERNAME_LENGTH, USERNAME, username);
+    }
+
+    /**
+     * 比较记录中的邮箱，只能由写线程调用
+     */
+    boolean emailEquals(long slot, byte[] email) {
+        return bytesEqual(slot, EMAIL_LENGTH, EMAIL, email);
+    }
+
+    long getHighWatermark() {
+        return highWatermark;
+    }
+
+    /**
+     * @return 已经分配的直接内存字节数
+     */
+    long allocatedBytes() {
+        long bytes = 0;
+        for (ByteBuffer slab : slabs) {
+            if (slab != null) {
+                bytes += slab.capacity();
+            }
+        }
+        return bytes;
+    }
+
+    long getMaxRecords() {
+        return maxRecords;
+    }
+
+    private boolean bytesEqual(long slot, int lengthOffset, int dataOffset, byte[] expected) {
+        ByteBuffer slab = slab(slot);
+        int base = offset(slot);
+        if (slab.getLong(base + ID) == 0 || slab.get(base + lengthOffset) != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (slab.get(base + dataOffset + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long beginWrite(ByteBuffer slab, int base) {
+        long seq = (long) LONGS.get(slab, base + SEQ);
+        LONGS.setOpaque(slab, base + SEQ, seq + 1);
+        VarHandle.storeStoreFence();
+        return seq;
+    }
+
+    private static void endWrite(ByteBuffer slab, int base, long seq) {
+        LONGS.setRelease(slab, base + SEQ, seq + 2);
+    }
+
+    private ByteBuffer slab(long slot) {
+        return slabs[(int) (slot / recordsPerSlab)];
+    }
+
+    private int offset(long slot) {
+        return (int) (slot % recordsPerSlab) * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.grpc.server.store;
+
+import com.example.grpc.proto.User;
+import com.example.grpc.server.service.DeadlineAwareTransactions;
+import io.grpc.Context;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 堆外内存中的用户存储
+ *
+ * 用户以定长记录保存在直接内存中（OffHeapUserRecords），索引也都是堆外的开放寻址哈希表（OffHeapLongTable）：
+ * - ID索引：用户ID → 记录槽位，键是原始的long，不产生Long装箱对象
+ * - 用户名、邮箱索引：UTF-8字节的64位哈希 → 记录槽位，哈希冲突时回到记录中比较原始字节
+ *
+ * 堆上只保留少量固定大小的对象，千万级用户时GC几乎不受影响；代价是用户名、邮箱有字节长度上限，
+ * 数据只在内存中，重启后为空（可以配合快照使用）。
+ *
+ * 写操作由一把锁串行化；按ID查询和遍历不加锁，通过记录上的顺序锁保证读到完整的记录
+ */
+@Component
+@ConditionalOnProperty(prefix = "user-service.storage", name = "mode", havingValue = "off-heap")
+@Slf4j
+public class OffHeapUserStore implements UserStore {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final OffHeapUserRecords records;
+    private final OffHeapLongTable idIndex;
+    private final OffHeapLongTable usernameIndex;
+    private final OffHeapLongTable emailIndex;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * 以下字段只在持有writeLock时修改
+     */
+    private long idSequence;
+    private volatile long userCount;
+
+    public OffHeapUserStore(UserStoreProperties properties) {
+        UserStoreProperties.OffHeap offHeap = properties.getOffHeap();
+        this.records = new OffHeapUserRecords(offHeap.getSlabSize().toBytes(), offHeap.getMaxMemory().toBytes());
+        this.idIndex = new OffHeapLongTable(offHeap.getInitialCapacity());
+        this.usernameIndex = new OffHeapLongTable(offHeap.getInitialCapacity());
+        this.emailIndex = new OffHeapLongTable(offHeap.getInitialCapacity());
+        log.info("堆外用户存储已创建: slabSize={}, maxMemory={}, 最多{}个用户",
+                offHeap.getSlabSize(), offHeap.getMaxMemory(), records.getMaxRecords());
+    }
+
+    @Override
+    public UserWriteResult create(String username, String email, int age) {
+        DeadlineAwareTransactions.checkCancelled(Context.current());
+        byte[] usernameBytes = encode(username, OffHeapUserRecords.MAX_USERNAME_BYTES, "用户名");
+        byte[] emailBytes = encode(email, OffHeapUserRecords.MAX_EMAIL_BYTES, "邮箱");
+
+        writeLock.lock();
+        try {
+            if (findUsername(usernameBytes) != OffHeapLongTable.NOT_FOUND) {
+                return UserWriteResult.failure(UserWriteResult.Outcome.USERNAME_TAKEN);
+            }
+            if (findEmail(emailBytes) != OffHeapLongTable.NOT_FOUND) {
+                return UserWriteResult.failure(UserWriteResult.Outcome.EMAIL_TAKEN);
+            }
+
+            User user = User.newBuilder()
+                    .setId(++idSequence)
+                    .setUsername(username)
+                    .setEmail(email)
+                    .setAge(age)
+                    .setCreatedAt(System.currentTimeMillis())
+                    .setVersion(1)
+                    .build();
+            insert(user, usernameBytes, emailBytes);
+            return UserWriteResult.success(user);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<User> findById(long id) {
+        DeadlineAwareTransactions.checkCancelled(Context.current());
+        long slot = idIndex.find(OffHeapLongTable.toKey(id), candidate -> true);
+        if (slot == OffHeapLongTable.NOT_FOUND) {
+            return Optional.empty();
+        }
+        // 查到槽位后记录可能已被删除并分配给其他用户，read会校验ID
+        return Optional.ofNullable(records.read(slot, id));
+    }
+
+    @Override
+    public List<User> findAll() {
+        DeadlineAwareTransactions.checkCancelled(Context.current());
+        List<User> users = new ArrayList<>((int) Math.min(Integer.MAX_VALUE, userCount));
+        scan(0, users::add);
+        // 删除后的槽位会被复用，槽位顺序不等于ID顺序
+        users.sort(Comparator.comparingLong(User::getId));
+        return users;
+    }
+
+    @Override
+    public UserWriteResult update(long id, String username, String email, int age) {
+        DeadlineAwareTransactions.checkCancelled(Context.current());
+        byte[] usernameBytes = encode(username, OffHeapUserRecords.MAX_USERNAME_BYTES, "用户名");
+        byte[] emailBytes = encode(email, OffHeapUserRecords.MAX_EMAIL_BYTES, "邮箱");
+
+        writeLock.lock();
+        try {
+            long slot = idIndex.find(OffHeapLongTable.toKey(id), candidate -> true);
+            User current = slot == OffHeapLongTable.NOT_FOUND ? null : records.read(slot, id);
+            if (current == null) {
+                return UserWriteResult.failure(UserWriteResult.Outcome.NOT_FOUND);
+            }
+
+            byte[] oldUsername = current.getUsername().getBytes(StandardCharsets.UTF_8);
+            byte[] oldEmail = current.getEmail().getBytes(StandardCharsets.UTF_8);
+            boolean usernameChanged = !username.isEmpty() && !username.equals(current.getUsername());
+            boolean emailChanged = !email.isEmpty() && !email.equals(current.getEmail());
+            if (usernameChanged && findUsername(usernameBytes) != OffHeapLongTable.NOT_FOUND) {
+                return UserWriteResult.failure(UserWriteResult.Outcome.USERNAME_TAKEN);
+            }
+            if (emailChanged && findEmail(emailBytes) != OffHeapLongTable.NOT_FOUND) {
+                return UserWriteResult.failure(UserWriteResult.Outcome.EMAIL_TAKEN);
+            }
+
+            User.Builder updated = current.toBuilder();
+            if (usernameChanged) {
+                updated.setUsername(username);
+            } else {
+                usernameBytes = oldUsername;
+            }
+            if (emailChanged) {
+                updated.setEmail(email);
+            } else {
+                emailBytes = oldEmail;
+            }
+            if (age > 0) {
+                updated.setAge(age);
+            }
+            updated.setVersion(current.getVersion() + 1);
+
+            User saved = updated.build();
+            records.write(slot, id, saved.getCreatedAt(), saved.getAge(), usernameBytes, emailBytes,
+                    saved.getVersion());
+            if (usernameChanged) {
+                usernameIndex.remove(hashKey(oldUsername), slot);
+                usernameIndex.put(hashKey(usernameBytes), slot);
+            }
+            if (emailChanged) {
+                emailIndex.remove(hashKey(oldEmail), slot);
+                emailIndex.put(hashKey(emailBytes), slot);
+            }
+            return UserWriteResult.success(saved);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean delete(long id) {
+        DeadlineAwareTransactions.checkCancelled(Context.current());
+        writeLock.lock();
+        try {
+            long slot = idIndex.find(OffHeapLongTable.toKey(id), candidate -> true);
+            User current = slot == OffHeapLongTable.NOT_FOUND ? null : records.read(slot, id);
+            if (current == null) {
+                return false;
+            }
+
+            records.clear(slot);
+            idIndex.remove(OffHeapLongTable.toKey(id), slot);
+            usernameIndex.remove(hashKey(current.getUsername().getBytes(StandardCharsets.UTF_8)), slot);
+            emailIndex.remove(hashKey(current.getEmail().getBytes(StandardCharsets.UTF_8)), slot);
+            records.free(slot);
+            userCount--;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        return userCount;
+    }
+
+    /**
+     * 按槽位顺序遍历所有记录，不加锁，遍历期间的并发写入可能看到也可能看不到
+     *
+     * @param fetchSize 堆外存储不分批读取，忽略
+     */
+    @Override
+    public void scan(int fetchSize, Consumer<User> consumer) {
+        long highWatermark = records.getHighWatermark();
+        for (long slot = 0; slot < highWatermark; slot++) {
+            User user = records.read(slot, 0);
+            if (user != null) {
+                consumer.accept(user);
+            }
+        }
+    }
+
+    @Override
+    public void batchInsert(List<User> users) {
+        writeLock.lock();
+        try {
+            for (User user : users) {
+                insert(user,
+                        encode(user.getUsername(), OffHeapUserRecords.MAX_USERNAME_BYTES, "用户名"),
+                        encode(user.getEmail(), OffHeapUserRecords.MAX_EMAIL_BYTES, "邮箱"));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void restartIdentity() {
+        writeLock.lock();
+        try {
+            scan(0, user -> idSequence = Math.max(idSequence, user.getId()));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return 记录占用的直接内存字节数
+     */
+    public long getRecordBytes() {
+        return records.allocatedBytes();
+    }
+
+    /**
+     * @return 三个索引占用的直接内存字节数
+     */
+    public long getIndexBytes() {
+        writeLock.lock();
+        try {
+            return idIndex.allocatedBytes() + usernameIndex.allocatedBytes() + emailIndex.allocatedBytes();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return 配置的最大内存能容纳的用户数
+     */
+    public long getCapacity() {
+        return records.getMaxRecords();
+    }
+
+    /**
+     * 写入记录和所有索引，调用方必须持有writeLock
+     *
+     * 先写记录再发布ID索引，读线程通过索引找到槽位时记录已经完整
+     */
+    private void insert(User user, byte[] usernameBytes, byte[] emailBytes) {
+        long slot = records.allocate();
+        // 没有版本号的旧快照按版本1导入
+        records.write(slot, user.getId(), user.getCreatedAt(), user.getAge(), usernameBytes, emailBytes,
+                Math.max(1, user.getVersion()));
+        idIndex.put(OffHeapLongTable.toKey(user.getId()), slot);
+        usernameIndex.put(hashKey(usernameBytes), slot);
+        emailIndex.put(hashKey(emailBytes), slot);
+        userCount++;
+    }
+
+    private long findUsername(byte[] username) {
+        return usernameIndex.find(hashKey(username), slot -> records.usernameEquals(slot, username));
+    }
+
+    private long findEmail(byte[] email) {
+        return emailIndex.find(hashKey(email), slot -> records.emailEquals(slot, email));
+    }
+
+    /**
+     * FNV-1a 64位哈希
+     */
+    private static long hashKey(byte[] bytes) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return OffHeapLongTable.toKey(hash);
+    }
+
+    private static byte[] encode(String value, int maxBytes, String field) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > maxBytes) {
+            throw new IllegalArgumentException(field + "超过" + maxBytes + "字节");
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,384 @@
+package com.example.grpc.server.store;
+
+import com.example.grpc.proto.User;
+import io.grpc.Context;
+import io.grpc.Status;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 按用户ID哈希分片的用户存储
+ *
+ * 用户按ID的哈希分布到N个独立的H2内存数据库（UserShard）中：
+ * - 写入：ID由进程内的序列生成，每次创建、更新、删除只在一个分片上开启事务，不同分片的写入互不阻塞
+ * - 按ID查询：直接路由到所在分片
+ * - 查询全部：并行查询所有分片（scatter），再按ID归并排序（gather）
+ *
+ * 用户名和邮箱需要全局唯一，而唯一约束只在分片内有效，所以在内存中维护用户名、邮箱到用户ID的索引：
+ * 写入前先在索引中占位，事务提交后释放旧值，回滚时撤销占位。
+ * 占位期间其他请求会看到该用户名已被使用，即使这次写入最终回滚
+ *
+ * 分片都是内存数据库，重启后为空；修改分片数后通过快照恢复会按新的分片数重新分布
+ */
+@Component
+@ConditionalOnProperty(prefix = "user-service.storage", name = "mode", havingValue = "sharded")
+@Slf4j
+public class ShardedUserStore implements UserStore, DisposableBean {
+
+    private final List<UserShard> shards;
+
+    /**
+     * 并行查询各分片的线程池，每个分片一个线程
+     */
+    private final ExecutorService scatterExecutor;
+
+    private final AtomicLong idSequence = new AtomicLong();
+    private final Map<String, Long> usernameIndex = new ConcurrentHashMap<>();
+    private final Map<String, Long> emailIndex = new ConcurrentHashMap<>();
+
+    public ShardedUserStore(UserStoreProperties properties) {
+        int shardCount = properties.effectiveShards();
+        List<UserShard> list = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            list.add(new UserShard(i, properties.getPoolSize()));
+        }
+        this.shards = Collections.unmodifiableList(list);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.scatterExecutor = Executors.newFixedThreadPool(shardCount, runnable -> {
+            Thread thread = new Thread(runnable, "user-shard-scatter-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("分片用户存储已创建: shards={}, poolSize={}", shardCount, properties.getPoolSize());
+    }
+
+    /**
+     * @return 所有分片
+     */
+    public List<UserShard> getShards() {
+        return shards;
+    }
+
+    /**
+     * 计算用户所在的分片
+     *
+     * ID是连续递增的，先乘以黄金分割常数打散，避免相邻ID的分布规律与分片数相关
+     */
+    UserShard shardFor(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return shards.get(Math.floorMod((int) (hash >>> 32), shards.size()));
+    }
+
+    @Override
+    public UserWriteResult create(String username, String email, int age) {
+        long id = idSequence.incrementAndGet();
+        UserShard shard = shardFor(id);
+        return shard.execute(false, status -> {
+            if (!reserve(usernameIndex, username, id)) {
+                return UserWriteResult.failure(UserWriteResult.Outcome.USERNAME_TAKEN);
+            }
+            if (!reserve(emailIndex, email, id)) {
+                return rollback(status, UserWriteResult.Outcome.EMAIL_TAKEN);
+            }
+
+            User user = User.newBuilder()
+                    .setId(id)
+                    .setUsername(username)
+                    .setEmail(email)
+                    .setAge(age)
+                    .setCreatedAt(System.currentTimeMillis())
+                    .setVersion(1)
+                    .build();
+            shard.insert(user);
+            return UserWriteResult.success(user);
+        });
+    }
+
+    @Override
+    public Optional<User> findById(long id) {
+        UserShard shard = shardFor(id);
+        return shard.execute(true, status -> shard.findById(id));
+    }
+
+    @Override
+    public Optional<User> findById(long id, UserProjection projection) {
+        UserShard shard = shardFor(id);
+        return shard.execute(true, status -> shard.findById(id, projection));
+    }
+
+    @Override
+    public Optional<Long> findVersion(long id) {
+        UserShard shard = shardFor(id);
+        return shard.execute(true, status -> shard.findVersion(id));
+    }
+
+    @Override
+    public List<User> findAll() {
+        return scatter(UserShard::findAll);
+    }
+
+    /**
+     * 各分片只查询投影中的列；归并需要ID，没有请求id时归并后再清除
+     */
+    @Override
+    public List<User> findAll(UserProjection projection) {
+        UserProjection withId = projection.withId();
+        List<User> merged = scatter(shard -> shard.findAll(withId));
+        return withId == projection ? merged : merged.stream().map(projection::apply).toList();
+    }
+
+    /**
+     * 在所有分片上并行执行只读查询，按ID归并结果
+     */
+    private List<User> scatter(Function<UserShard, List<User>> query) {
+        // 传播gRPC上下文，调用取消后各分片的查询也会停止
+        Context context = Context.current();
+        List<Future<List<User>>> futures = new ArrayList<>(shards.size());
+        for (UserShard shard : shards) {
+            futures.add(scatterExecutor.submit(context.wrap(() -> shard.execute(true, status -> query.apply(shard)))));
+        }
+
+        List<List<User>> results = new ArrayList<>(shards.size());
+        try {
+            for (Future<List<User>> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Status.CANCELLED.withDescription("查询分片时被中断").withCause(e).asRuntimeException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("查询分片失败", e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        return mergeById(results);
+    }
+
+    /**
+     * 归并多个按ID升序排列的列表
+     */
+    static List<User> mergeById(List<List<User>> sortedLists) {
+        int total = 0;
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(Comparator.comparingLong(Cursor::currentId));
+        for (List<User> list : sortedLists) {
+            total += list.size();
+            if (!list.isEmpty()) {
+                queue.add(new Cursor(list));
+            }
+        }
+
+        List<User> merged = new ArrayList<>(total);
+        while (!queue.isEmpty()) {
+            Cursor cursor = queue.poll();
+            merged.add(cursor.list.get(cursor.position++));
+            if (cursor.position < cursor.list.size()) {
+                queue.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public UserWriteResult update(long id, String username, String email, int age) {
+        UserShard shard = shardFor(id);
+        return shard.execute(false, status -> {
+            Optional<User> current = shard.findByIdForUpdate(id);
+            if (current.isEmpty()) {
+                return UserWriteResult.failure(UserWriteResult.Outcome.NOT_FOUND);
+            }
+            User user = current.get();
+            User.Builder updated = user.toBuilder();
+
+            if (!username.isEmpty() && !username.equals(user.getUsername())) {
+                if (!reserve(usernameIndex, username, id)) {
+                    return rollback(status, UserWriteResult.Outcome.USERNAME_TAKEN);
+                }
+                releaseOnCommit(usernameIndex, user.getUsername(), id);
+                updated.setUsername(username);
+            }
+
+            if (!email.isEmpty() && !email.equals(user.getEmail())) {
+                if (!reserve(emailIndex, email, id)) {
+                    return rollback(status, UserWriteResult.Outcome.EMAIL_TAKEN);
+                }
+                releaseOnCommit(emailIndex, user.getEmail(), id);
+                updated.setEmail(email);
+            }
+
+            if (age > 0) {
+                updated.setAge(age);
+            }
+            // 行已经被FOR UPDATE锁定，版本号不会重复
+            updated.setVersion(user.getVersion() + 1);
+
+            User saved = updated.build();
+            shard.update(saved);
+            return UserWriteResult.success(saved);
+        });
+    }
+
+    @Override
+    public boolean delete(long id) {
+        UserShard shard = shardFor(id);
+        return shard.execute(false, status -> {
+            Optional<User> current = shard.findByIdForUpdate(id);
+            if (current.isEmpty()) {
+                return false;
+            }
+            shard.delete(id);
+            releaseOnCommit(usernameIndex, current.get().getUsername(), id);
+            releaseOnCommit(emailIndex, current.get().getEmail(), id);
+            return true;
+        });
+    }
+
+    @Override
+    public long count() {
+        long count = 0;
+        for (UserShard shard : shards) {
+            count += shard.count();
+        }
+        return count;
+    }
+
+    /**
+     * 依次扫描每个分片，用户在分片内按ID有序，分片之间不保证顺序
+     */
+    @Override
+    public void scan(int fetchSize, Consumer<User> consumer) {
+        for (UserShard shard : shards) {
+            shard.scan(fetchSize, consumer);
+        }
+    }
+
+    @Override
+    public void batchInsert(List<User> users) {
+        List<List<User>> byShard = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            byShard.add(new ArrayList<>());
+        }
+        for (User user : users) {
+            byShard.get(shardFor(user.getId()).getIndex()).add(user);
+        }
+
+        for (int i = 0; i < shards.size(); i++) {
+            List<User> batch = byShard.get(i);
+            if (!batch.isEmpty()) {
+                shards.get(i).batchInsert(batch);
+            }
+        }
+        for (User user : users) {
+            usernameIndex.put(user.getUsername(), user.getId());
+            emailIndex.put(user.getEmail(), user.getId());
+        }
+    }
+
+    @Override
+    public void restartIdentity() {
+        idSequence.accumulateAndGet(maxId(), Math::max);
+    }
+
+    @Override
+    public long maxId() {
+        long maxId = 0;
+        for (UserShard shard : shards) {
+            maxId = Math.max(maxId, shard.maxId());
+        }
+        return maxId;
+    }
+
+    @Override
+    public void destroy() {
+        scatterExecutor.shutdownNow();
+        for (UserShard shard : shards) {
+            try {
+                shard.close();
+            } catch (RuntimeException e) {
+                log.warn("关闭分片{}失败", shard.getIndex(), e);
+            }
+        }
+    }
+
+    /**
+     * 在唯一索引中为用户占位，事务回滚时自动撤销
+     *
+     * @return 占位成功，或者该值本来就属于这个用户
+     */
+    private static boolean reserve(Map<String, Long> index, String key, long id) {
+        Long owner = index.putIfAbsent(key, id);
+        if (owner != null) {
+            return owner == id;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    index.remove(key, id);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 标记事务回滚，撤销本次事务中的所有占位
+     */
+    private static UserWriteResult rollback(TransactionStatus status, UserWriteResult.Outcome outcome) {
+        status.setRollbackOnly();
+        return UserWriteResult.failure(outcome);
+    }
+
+    /**
+     * 事务提交后从唯一索引中释放用户原来的值
+     */
+    private static void releaseOnCommit(Map<String, Long> index, String key, long id) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                index.remove(key, id);
+            }
+        });
+    }
+
+    /**
+     * 归并时指向某个列表当前位置的游标
+     */
+    private static final class Cursor {
+        private final List<User> list;
+        private int position;
+
+        Cursor(List<User> list) {
+            this.list = list;
+        }
+
+        long currentId() {
+            return list.get(position).getId();
+        }
+    }
+}
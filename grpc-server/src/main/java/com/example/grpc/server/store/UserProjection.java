@@ -0,0 +1,226 @@
+package com.example.grpc.server.store;
+
+import com.example.grpc.proto.User;
+import com.google.protobuf.FieldMask;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * 查询用户时需要的字段（由请求中的FieldMask决定）
+ *
+ * 存储只查询需要的列，转换为Proto时只设置需要的字段；
+ * id列总是查询（排序、分片归并和缓存都依赖它），但只有请求了id时才设置到结果中
+ */
+public final class UserProjection {
+
+    /**
+     * User的字段，以及对应的数据库列名和JPA属性名
+     */
+    public enum Field {
+        ID("id", "id", "id"),
+        USERNAME("username", "username", "username"),
+        EMAIL("email", "email", "email"),
+        AGE("age", "age", "age"),
+        CREATED_AT("created_at", "created_at", "createdAt"),
+        VERSION("version", "version", "version");
+
+        private final String path;
+        private final String column;
+        private final String attribute;
+
+        Field(String path, String column, String attribute) {
+            this.path = path;
+            this.column = column;
+            this.attribute = attribute;
+        }
+
+        /**
+         * @return FieldMask中的路径（Proto字段名）
+         */
+        public String getPath() {
+            return path;
+        }
+
+        private static Field fromPath(String path) {
+            for (Field field : values()) {
+                // JSON格式的FieldMask使用驼峰命名
+                if (field.path.equals(path) || field.attribute.equals(path)) {
+                    return field;
+                }
+            }
+            throw new IllegalArgumentException("User没有字段: " + path);
+        }
+    }
+
+    /**
+     * 全部字段，等同于没有FieldMask
+     */
+    public static final UserProjection ALL = new UserProjection(EnumSet.allOf(Field.class));
+
+    private final Set<Field> fields;
+
+    /**
+     * 查询的列，id总是第一列
+     */
+    private final Field[] columns;
+
+    private UserProjection(Set<Field> fields) {
+        this.fields = fields;
+        EnumSet<Field> selected = EnumSet.copyOf(fields);
+        selected.add(Field.ID);
+        this.columns = selected.toArray(new Field[0]);
+    }
+
+    /**
+     * @param mask 请求中的FieldMask，没有路径时表示全部字段
+     * @throws IllegalArgumentException 路径不是User的字段（不支持嵌套路径）
+     */
+    public static UserProjection of(FieldMask mask) {
+        return of(mask.getPathsList());
+    }
+
+    /**
+     * @param paths FieldMask的路径，为空时表示全部字段
+     * @throws IllegalArgumentException 路径不是User的字段
+     */
+    public static UserProjection of(List<String> paths) {
+        if (paths.isEmpty()) {
+            return ALL;
+        }
+        EnumSet<Field> fields = EnumSet.noneOf(Field.class);
+        for (String path : paths) {
+            fields.add(Field.fromPath(path));
+        }
+        return fields.size() == Field.values().length ? ALL : new UserProjection(fields);
+    }
+
+    /**
+     * @return 同时设置id的投影，用于需要按ID归并的结果，归并后再用apply清除id
+     */
+    public UserProjection withId() {
+        if (fields.contains(Field.ID)) {
+            return this;
+        }
+        EnumSet<Field> withId = EnumSet.copyOf(fields);
+        withId.add(Field.ID);
+        return withId.size() == Field.values().length ? ALL : new UserProjection(withId);
+    }
+
+    public boolean isAll() {
+        return this == ALL;
+    }
+
+    public boolean includes(Field field) {
+        return fields.contains(field);
+    }
+
+    /**
+     * @return SQL的列列表，如"id, username"
+     */
+    public String columns() {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (Field field : columns) {
+            joiner.add(field.column);
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * @param alias JPQL中实体的别名
+     * @return JPQL的选择列表，如"u.id, u.username"，顺序与columns相同
+     */
+    public String attributes(String alias) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (Field field : columns) {
+            joiner.add(alias + "." + field.attribute);
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * 从按columns查询的结果行读取用户
+     */
+    public User read(ResultSet rs) throws SQLException {
+        User.Builder builder = User.newBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            Field field = columns[i];
+            if (!fields.contains(field)) {
+                continue;
+            }
+            switch (field) {
+                case ID -> builder.setId(rs.getLong(i + 1));
+                case USERNAME -> builder.setUsername(rs.getString(i + 1));
+                case EMAIL -> builder.setEmail(rs.getString(i + 1));
+                case AGE -> builder.setAge(rs.getInt(i + 1));
+                case CREATED_AT -> builder.setCreatedAt(rs.getLong(i + 1));
+                case VERSION -> builder.setVersion(rs.getLong(i + 1));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 从按attributes查询的JPQL结果（或按columns查询的R2DBC行）读取用户
+     */
+    public User read(Object[] values) {
+        User.Builder builder = User.newBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            Field field = columns[i];
+            if (!fields.contains(field)) {
+                continue;
+            }
+            switch (field) {
+                case ID -> builder.setId(((Number) values[i]).longValue());
+                case USERNAME -> builder.setUsername((String) values[i]);
+                case EMAIL -> builder.setEmail((String) values[i]);
+                case AGE -> builder.setAge(((Number) values[i]).intValue());
+                case CREATED_AT -> builder.setCreatedAt(((Number) values[i]).longValue());
+                case VERSION -> builder.setVersion(((Number) values[i]).longValue());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 清除完整用户中不需要的字段，用于数据已经在内存中的存储
+     */
+    public User apply(User user) {
+        if (isAll()) {
+            return user;
+        }
+        User.Builder builder = User.newBuilder();
+        if (fields.contains(Field.ID)) {
+            builder.setId(user.getId());
+        }
+        if (fields.contains(Field.USERNAME)) {
+            builder.setUsername(user.getUsername());
+        }
+        if (fields.contains(Field.EMAIL)) {
+            builder.setEmail(user.getEmail());
+        }
+        if (fields.contains(Field.AGE)) {
+            builder.setAge(user.getAge());
+        }
+        if (fields.contains(Field.CREATED_AT)) {
+            builder.setCreatedAt(user.getCreatedAt());
+        }
+        if (fields.contains(Field.VERSION)) {
+            builder.setVersion(user.getVersion());
+        }
+        return builder.build();
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(",", "[", "]");
+        for (Field field : fields) {
+            joiner.add(field.path);
+        }
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.grpc.server.store;
+
+import com.example.grpc.proto.User;
+import com.example.grpc.server.service.DeadlineAwareTransactions;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 一个用户分片：独立的H2内存数据库、连接池和事务管理器
+ *
+ * 分片之间不共享任何锁或连接，写入不同分片的事务可以完全并行
+ */
+@Slf4j
+public class UserShard implements AutoCloseable {
+
+    private static final String CREATE_TABLE_SQL = """
+            CREATE TABLE IF NOT EXISTS users (
+                id BIGINT PRIMARY KEY,
+                username VARCHAR(50) NOT NULL UNIQUE,
+                email VARCHAR(100) NOT NULL UNIQUE,
+                age INT NOT NULL,
+                created_at BIGINT NOT NULL,
+                version BIGINT NOT NULL
+            )""";
+
+    private static final String COLUMNS = "id, username, email, age, created_at, version";
+
+    private static final String INSERT_SQL = "INSERT INTO users (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_SQL = "UPDATE users SET username = ?, email = ?, age = ?, version = ? WHERE id = ?";
+
+    private static final RowMapper<User> USER_ROW_MAPPER = (rs, rowNum) -> User.newBuilder()
+            .setId(rs.getLong(1))
+            .setUsername(rs.getString(2))
+            .setEmail(rs.getString(3))
+            .setAge(rs.getInt(4))
+            .setCreatedAt(rs.getLong(5))
+            .setVersion(rs.getLong(6))
+            .build();
+
+    private final int index;
+    private final HikariDataSource dataSource;
+    private final CancellableJdbcTemplate jdbcTemplate;
+    private final DataSourceTransactionManager transactionManager;
+
+    UserShard(int index, int poolSize) {
+        this.index = index;
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("user-shard-" + index);
+        // DB_CLOSE_DELAY=-1：连接池中的连接全部关闭时不销毁内存数据库
+        config.setJdbcUrl("jdbc:h2:mem:grpc_demo_shard" + index + ";DB_CLOSE_DELAY=-1");
+        config.setUsername("sa");
+        config.setPassword("");
+        config.setMaximumPoolSize(poolSize);
+        this.dataSource = new HikariDataSource(config);
+        this.jdbcTemplate = new CancellableJdbcTemplate(dataSource);
+        this.transactionManager = new DataSourceTransactionManager(dataSource);
+
+        jdbcTemplate.execute(CREATE_TABLE_SQL);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return 分片的连接池，用于观察连接池的使用情况
+     */
+    public HikariDataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * 在当前gRPC调用的上下文中执行分片内的事务
+     *
+     * 与JPA存储共用DeadlineAwareTransactions.execute：事务超时设置为调用剩余的截止时间，
+     * JdbcTemplate会据此设置语句超时；调用被取消时取消当前线程正在执行的语句
+     */
+    <T> T execute(boolean readOnly, TransactionCallback<T> action) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(readOnly);
+
+        AtomicReference<Statement> running = new AtomicReference<>();
+        AtomicReference<Statement> previous = jdbcTemplate.track(running);
+        try {
+            return DeadlineAwareTransactions.execute(template, () -> () -> cancel(running.get()), action);
+        } finally {
+            jdbcTemplate.track(previous);
+        }
+    }
+
+    Optional<User> findById(long id) {
+        return jdbcTemplate.query("SELECT " + COLUMNS + " FROM users WHERE id = ?", USER_ROW_MAPPER, id)
+                .stream().findFirst();
+    }
+
+    /**
+     * 查询并锁定一行，必须在execute的事务中调用
+     */
+    Optional<User> findByIdForUpdate(long id) {
+        return jdbcTemplate.query("SELECT " + COLUMNS + " FROM users WHERE id = ? FOR UPDATE", USER_ROW_MAPPER, id)
+                .stream().findFirst();
+    }
+
+    /**
+     * @return 分片内按ID升序排列的全部用户
+     */
+    List<User> findAll() {
+        return jdbcTemplate.query("SELECT " + COLUMNS + " FROM users ORDER BY id", USER_ROW_MAPPER);
+    }
+
+    /**
+     * 只查询version列
+     */
+    Optional<Long> findVersion(long id) {
+        return jdbcTemplate.queryForList("SELECT version FROM users WHERE id = ?", Long.class, id)
+                .stream().findFirst();
+    }
+
+    /**
+     * 只查询投影中的列
+     */
+    Optional<User> findById(long id, UserProjection projection) {
+        return jdbcTemplate.query("SELECT " + projection.columns() + " FROM users WHERE id = ?",
+                        (rs, rowNum) -> projection.read(rs), id)
+                .stream().findFirst();
+    }
+
+    /**
+     * 只查询投影中的列，按ID升序
+     */
+    List<User> findAll(UserProjection projection) {
+        return jdbcTemplate.query("SELECT " + projection.columns() + " FROM users ORDER BY id",
+                (rs, rowNum) -> projection.read(rs));
+    }
+
+    void insert(User user) {
+        jdbcTemplate.update(INSERT_SQL, user.getId(), user.getUsername(), user.getEmail(),
+                user.getAge(), user.getCreatedAt(), user.getVersion());
+    }
+
+    void update(User user) {
+        jdbcTemplate.update(UPDATE_SQL, user.getUsername(), user.getEmail(), user.getAge(), user.getVersion(), user.getId());
+    }
+
+    boolean delete(long id) {
+        return jdbcTemplate.update("DELETE FROM users WHERE id = ?", id) > 0;
+    }
+
+    public long count() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    long maxId() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM users", Long.class);
+        return maxId == null ? 0 : maxId;
+    }
+
+    /**
+     * 按ID顺序扫描分片内的全部用户，逐行回调
+     */
+    void scan(int fetchSize, Consumer<User> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement("SELECT " + COLUMNS + " FROM users ORDER BY id");
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }, rs -> {
+            consumer.accept(USER_ROW_MAPPER.mapRow(rs, 0));
+        });
+    }
+
+    /**
+     * 使用JDBC批处理在一个事务中插入用户（保留原有ID和版本号，没有版本号的旧快照按版本1导入）
+     */
+    void batchInsert(List<User> users) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(INSERT_SQL, users, users.size(), (ps, user) -> {
+                    ps.setLong(1, user.getId());
+                    ps.setString(2, user.getUsername());
+                    ps.setString(3, user.getEmail());
+                    ps.setInt(4, user.getAge());
+                    ps.setLong(5, user.getCreatedAt());
+                    ps.setLong(6, Math.max(1, user.getVersion()));
+                }));
+    }
+
+    private static void cancel(Statement statement) {
+        if (statement == null) {
+            return;
+        }
+        try {
+            statement.cancel();
+            log.info("调用已取消，已中断分片上正在执行的数据库语句");
+        } catch (SQLException e) {
+            // 语句已经执行完毕并关闭时取消会失败，可以忽略
+            log.debug("取消分片数据库语句失败", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        jdbcTemplate.execute("SHUTDOWN");
+        dataSource.close();
+    }
+
+    /**
+     * 记录当前线程最近创建的语句，调用被取消时由监听器线程取消它（JDBC允许跨线程调用Statement.cancel）
+     */
+    private static final class CancellableJdbcTemplate extends JdbcTemplate {
+
+        private final ThreadLocal<AtomicReference<Statement>> running = new ThreadLocal<>();
+
+        CancellableJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        /**
+         * @param tracker 接收当前线程之后创建的语句，为null时不再记录
+         * @return 之前的记录位置，执行结束后恢复
+         */
+        AtomicReference<Statement> track(AtomicReference<Statement> tracker) {
+            AtomicReference<Statement> previous = running.get();
+            if (tracker == null) {
+                running.remove();
+            } else {
+                running.set(tracker);
+            }
+            return previous;
+        }
+
+        @Override
+        protected void applyStatementSettings(Statement stmt) throws SQLException {
+            super.applyStatementSettings(stmt);
+            AtomicReference<Statement> tracker = running.get();
+            if (tracker != null) {
+                tracker.set(stmt);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.grpc.server.store;
+
+import com.example.grpc.proto.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * 用户存储
+ *
+ * UserGrpcService和快照服务只依赖这个接口，具体使用哪种存储由user-service.storage.mode决定：
+ * - jpa：单个H2数据库，通过JPA访问（JpaUserStore）
+ * - sharded：按用户ID哈希分片到多个独立的H2数据库（ShardedUserStore）
+ * - off-heap：保存在堆外内存中（OffHeapUserStore）
+ *
+ * 所有方法都在当前gRPC调用的上下文中执行，调用取消或超时时抛出StatusRuntimeException
+ */
+public interface UserStore {
+
+    /**
+     * 创建用户，用户名和邮箱必须唯一
+     *
+     * @return 成功时包含新用户；用户名或邮箱已存在时返回对应结果
+     */
+    UserWriteResult create(String username, String email, int age);
+
+    /**
+     * 根据ID查找用户
+     */
+    Optional<User> findById(long id);
+
+    /**
+     * 查询所有用户
+     *
+     * @return 按ID升序排列的用户
+     */
+    List<User> findAll();
+
+    /**
+     * 根据ID查找用户，只返回投影中的字段
+     *
+     * 默认查询完整的用户后清除不需要的字段；基于数据库的存储只查询需要的列
+     */
+    default Optional<User> findById(long id, UserProjection projection) {
+        Optional<User> user = findById(id);
+        return projection.isAll() ? user : user.map(projection::apply);
+    }
+
+    /**
+     * 查询所有用户，只返回投影中的字段
+     *
+     * @return 按ID升序排列的用户
+     */
+    default List<User> findAll(UserProjection projection) {
+        List<User> users = findAll();
+        return projection.isAll() ? users : users.stream().map(projection::apply).toList();
+    }
+
+    /**
+     * 只查询用户的版本号，用于条件查询（GetUserRequest.if_version_not）
+     *
+     * 默认查询完整的用户后取版本号；基于数据库的存储只查询version列
+     *
+     * @return 版本号，用户不存在时为空
+     */
+    default Optional<Long> findVersion(long id) {
+        return findById(id).map(User::getVersion);
+    }
+
+    /**
+     * 更新用户，空字符串和不大于0的年龄表示不修改对应字段，成功时版本号加1
+     *
+     * @return 成功时包含更新后的用户；用户不存在或用户名、邮箱被其他用户使用时返回对应结果
+     */
+    UserWriteResult update(long id, String username, String email, int age);
+
+    /**
+     * 删除用户
+     *
+     * @return 用户是否存在并已删除
+     */
+    boolean delete(long id);
+
+    /**
+     * 批量更新，按顺序执行，每个请求的语义与update相同（后面的请求能看到前面请求的修改）
+     *
+     * 默认逐个调用update；能在一个事务中用集合操作完成的存储应覆盖
+     *
+     * @return 与updates顺序相同的结果
+     */
+    default List<UserWriteResult> updateAll(List<UserUpdate> updates) {
+        List<UserWriteResult> results = new ArrayList<>(updates.size());
+        for (UserUpdate update : updates) {
+            results.add(update(update.getId(), update.getUsername(), update.getEmail(), update.getAge()));
+        }
+        return results;
+    }
+
+    /**
+     * 批量删除
+     *
+     * 默认逐个调用delete；能在一个事务中用集合操作完成的存储应覆盖
+     *
+     * @return 与ids顺序相同，每个用户是否存在并已删除（重复的ID只有第一次为true）
+     */
+    default List<Boolean> deleteAll(List<Long> ids) {
+        List<Boolean> results = new ArrayList<>(ids.size());
+        for (long id : ids) {
+            results.add(delete(id));
+        }
+        return results;
+    }
+
+    /**
+     * 统计用户总数
+     */
+    long count();
+
+    /**
+     * 逐个扫描全部用户，不会把所有用户加载到内存，用于快照导出
+     *
+     * @param fetchSize JDBC每次抓取的行数
+     * @param consumer 每个用户的回调
+     */
+    void scan(int fetchSize, Consumer<User> consumer);
+
+    /**
+     * 批量插入用户（保留原有ID），用于快照恢复
+     */
+    void batchInsert(List<User> users);
+
+    /**
+     * 批量插入完成后调用，使后续创建的用户ID从当前最大ID之后开始
+     */
+    void restartIdentity();
+
+    /**
+     * 默认遍历全部用户，能直接查询最大ID的存储应覆盖
+     *
+     * @return 当前最大的用户ID，没有用户时为0
+     */
+    default long maxId() {
+        long[] maxId = new long[1];
+        scan(1000, user -> maxId[0] = Math.max(maxId[0], user.getId()));
+        return maxId[0];
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.grpc.server.store;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * 用户存储配置
+ *
+ * 对应application.yml中的user-service.storage配置项
+ */
+@Data
+@ConfigurationProperties(prefix = "user-service.storage")
+public class UserStoreProperties {
+
+    public enum Mode {
+        /**
+         * 单个H2数据库，通过JPA访问
+         */
+        JPA,
+        /**
+         * 按用户ID哈希分片到多个独立的H2数据库
+         */
+        SHARDED,
+        /**
+         * 保存在堆外内存中，配置值为off-heap
+         */
+        OFF_HEAP
+    }
+
+    /**
+     * 存储模式
+     */
+    private Mode mode = Mode.JPA;
+
+    /**
+     * 分片数，0表示使用CPU核数
+     */
+    private int shards = 0;
+
+    /**
+     * 每个分片的连接池大小
+     */
+    private int poolSize = 4;
+
+    /**
+     * 堆外存储配置
+     */
+    private OffHeap offHeap = new OffHeap();
+
+    /**
+     * @return 实际使用的分片数
+     */
+    public int effectiveShards() {
+        return shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+    }
+
+    @Data
+    public static class OffHeap {
+
+        /**
+         * 每块记录内存的大小，按块增长
+         */
+        private DataSize slabSize = DataSize.ofMegabytes(64);
+
+        /**
+         * 记录最多占用的内存，还受JVM参数-XX:MaxDirectMemorySize限制
+         */
+        private DataSize maxMemory = DataSize.ofGigabytes(4);
+
+        /**
+         * 索引的初始容量（用户数），超过后自动扩容
+         */
+        private long initialCapacity = 1 << 16;
+    }
+}
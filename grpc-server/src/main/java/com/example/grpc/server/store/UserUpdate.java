@@ -0,0 +1,23 @@
+package com.example.grpc.server.store;
+
+import lombok.Value;
+
+/**
+ * 批量更新中的一个请求，字段含义与UserStore.update的参数相同
+ */
+@Value
+public class UserUpdate {
+    long id;
+    /**
+     * 为空字符串时不修改
+     */
+    String username;
+    /**
+     * 为空字符串时不修改
+     */
+    String email;
+    /**
+     * 不大于0时不修改
+     */
+    int age;
+}
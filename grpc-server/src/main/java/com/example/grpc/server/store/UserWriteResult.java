@@ -0,0 +1,37 @@
+package com.example.grpc.server.store;
+
+import com.example.grpc.proto.User;
+import lombok.Value;
+
+/**
+ * 用户写操作（创建、更新）的结果
+ */
+@Value
+public class UserWriteResult {
+
+    public enum Outcome {
+        SUCCESS,
+        NOT_FOUND,
+        USERNAME_TAKEN,
+        EMAIL_TAKEN
+    }
+
+    Outcome outcome;
+
+    /**
+     * 写入后的用户，仅在成功时不为null
+     */
+    User user;
+
+    public static UserWriteResult success(User user) {
+        return new UserWriteResult(Outcome.SUCCESS, user);
+    }
+
+    public static UserWriteResult failure(Outcome outcome) {
+        return new UserWriteResult(outcome, null);
+    }
+
+    public boolean isSuccess() {
+        return outcome == Outcome.SUCCESS;
+    }
+}
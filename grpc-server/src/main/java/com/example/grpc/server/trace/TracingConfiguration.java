@@ -0,0 +1,33 @@
+package com.example.grpc.server.trace;
+
+import com.example.grpc.common.trace.TraceRecorder;
+import com.example.grpc.common.trace.TracingProperties;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 链路追踪配置
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "user-service.tracing", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class TracingConfiguration {
+
+    @Bean
+    @ConfigurationProperties(prefix = "user-service.tracing")
+    public TracingProperties tracingProperties() {
+        return new TracingProperties();
+    }
+
+    @Bean
+    public TraceRecorder traceRecorder(TracingProperties properties) {
+        return properties.createRecorder();
+    }
+
+    @GrpcGlobalServerInterceptor
+    public TracingServerInterceptor tracingServerInterceptor(TraceRecorder traceRecorder) {
+        return new TracingServerInterceptor(traceRecorder);
+    }
+}
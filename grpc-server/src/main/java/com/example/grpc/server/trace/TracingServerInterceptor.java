@@ -0,0 +1,68 @@
+package com.example.grpc.server.trace;
+
+import com.example.grpc.common.trace.Trace;
+import com.example.grpc.common.trace.TraceHeaders;
+import com.example.grpc.common.trace.TraceRecorder;
+import com.example.grpc.server.interceptor.ServerInterceptorOrder;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.springframework.core.annotation.Order;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 链路追踪拦截器
+ *
+ * 位于最外层：用请求头中的追踪ID创建服务端追踪并放入调用的Context，处理过程中各层通过Trace.stage记录阶段；
+ * 发送响应消息的耗时合并为一个sendMessage阶段。调用结束时在响应尾部返回服务端的总耗时，交给记录器决定是否保留
+ */
+@Order(ServerInterceptorOrder.TRACING)
+public class TracingServerInterceptor implements ServerInterceptor {
+
+    private final TraceRecorder recorder;
+
+    public TracingServerInterceptor(TraceRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        Trace trace = recorder.start(headers.get(TraceHeaders.TRACE_ID),
+                call.getMethodDescriptor().getFullMethodName(), "1".equals(headers.get(TraceHeaders.SAMPLED)));
+        Context context = trace.attach(Context.current());
+
+        ServerCall<ReqT, RespT> tracingCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            private final AtomicLong firstSend = new AtomicLong();
+            private final AtomicLong sendNanos = new AtomicLong();
+
+            @Override
+            public void sendMessage(RespT message) {
+                long start = System.nanoTime();
+                super.sendMessage(message);
+                firstSend.compareAndSet(0, start);
+                sendNanos.addAndGet(System.nanoTime() - start);
+            }
+
+            @Override
+            public void close(Status status, Metadata trailers) {
+                if (firstSend.get() != 0) {
+                    trace.record("sendMessage", firstSend.get(), sendNanos.get());
+                }
+                long elapsed = System.nanoTime() - trace.getStartNanos();
+                trailers.put(TraceHeaders.SERVER_TIME_MICROS, Long.toString(TimeUnit.NANOSECONDS.toMicros(elapsed)));
+                recorder.finish(trace, status.getCode().name());
+                super.close(status, trailers);
+            }
+        };
+        return Contexts.interceptCall(context, tracingCall, headers, next);
+    }
+}
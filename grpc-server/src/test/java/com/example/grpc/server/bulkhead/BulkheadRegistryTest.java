@@ -0,0 +1,62 @@
+package com.example.grpc.server.bulkhead;
+
+import com.example.grpc.proto.UserServiceGrpc;
+import io.grpc.health.v1.HealthGrpc;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * BulkheadRegistry测试
+ */
+class BulkheadRegistryTest {
+
+    @Test
+    void routesByMethodType() {
+        BulkheadRegistry registry = new BulkheadRegistry(new BulkheadProperties());
+        try {
+            assertEquals(BulkheadProperties.UNARY, registry.forMethod(UserServiceGrpc.getGetUserMethod()).getName());
+            assertEquals(BulkheadProperties.STREAMING,
+                    registry.forMethod(UserServiceGrpc.getGetAllUsersMethod()).getName());
+            assertEquals(BulkheadProperties.STREAMING,
+                    registry.forMethod(UserServiceGrpc.getUserChatMethod()).getName());
+            assertNull(registry.forMethod(HealthGrpc.getCheckMethod()));
+        } finally {
+            registry.shutdown();
+        }
+    }
+
+    @Test
+    void methodOverrideWins() {
+        BulkheadProperties properties = new BulkheadProperties();
+        properties.getPools().put("bulk", new BulkheadProperties.Pool(2, 8, 4));
+        properties.getMethods().put("BatchCreateUsers", "bulk");
+        properties.getMethods().put("GetUser", BulkheadProperties.STREAMING);
+
+        BulkheadRegistry registry = new BulkheadRegistry(properties);
+        try {
+            assertEquals("bulk", registry.forMethod(UserServiceGrpc.getBatchCreateUsersMethod()).getName());
+            assertEquals(BulkheadProperties.STREAMING, registry.forMethod(UserServiceGrpc.getGetUserMethod()).getName());
+            assertEquals(3, registry.getBulkheads().size());
+        } finally {
+            registry.shutdown();
+        }
+    }
+
+    @Test
+    void invalidConfigurationIsRejected() {
+        BulkheadProperties smallQueue = new BulkheadProperties();
+        smallQueue.getPools().put(BulkheadProperties.UNARY, new BulkheadProperties.Pool(4, 8, 16));
+        assertThrows(IllegalStateException.class, () -> new BulkheadRegistry(smallQueue));
+
+        BulkheadProperties missingDefault = new BulkheadProperties();
+        missingDefault.getPools().remove(BulkheadProperties.STREAMING);
+        assertThrows(IllegalStateException.class, () -> new BulkheadRegistry(missingDefault));
+
+        BulkheadProperties unknownPool = new BulkheadProperties();
+        unknownPool.getMethods().put("GetUser", "missing");
+        assertThrows(IllegalStateException.class, () -> new BulkheadRegistry(unknownPool));
+    }
+}
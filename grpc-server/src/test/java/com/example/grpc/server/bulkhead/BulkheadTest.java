@@ -0,0 +1,77 @@
+package com.example.grpc.server.bulkhead;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bulkhead测试
+ */
+class BulkheadTest {
+
+    private final Bulkhead bulkhead = new Bulkhead("test", new BulkheadProperties.Pool(1, 1, 2));
+
+    @AfterEach
+    void tearDown() {
+        bulkhead.shutdown();
+    }
+
+    @Test
+    void callPermitsAreBounded() {
+        assertTrue(bulkhead.tryAcquireCall());
+        assertTrue(bulkhead.tryAcquireCall());
+        assertFalse(bulkhead.tryAcquireCall());
+        assertEquals(2, bulkhead.getActiveCalls());
+        assertEquals(2, bulkhead.getAcceptedCalls());
+        assertEquals(1, bulkhead.getRejectedCalls());
+
+        bulkhead.releaseCall();
+        assertEquals(1, bulkhead.getActiveCalls());
+        assertTrue(bulkhead.tryAcquireCall());
+    }
+
+    @Test
+    void tasksRunOnBulkheadThreads() throws InterruptedException {
+        AtomicReference<String> threadName = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        bulkhead.getExecutor().execute(() -> {
+            threadName.set(Thread.currentThread().getName());
+            done.countDown();
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(threadName.get().startsWith("grpc-test-"), threadName.get());
+    }
+
+    @Test
+    void fullQueueRunsOnCallerThread() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        bulkhead.getExecutor().execute(() -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        // 唯一的线程被占用，第一个任务进入队列，第二个任务队列已满
+        bulkhead.getExecutor().execute(() -> { });
+
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        bulkhead.getExecutor().execute(() -> ranOn.set(Thread.currentThread()));
+        release.countDown();
+
+        assertSame(Thread.currentThread(), ranOn.get());
+        assertEquals(1, bulkhead.getCallerRuns());
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.grpc.server.chat;
+
+import com.example.grpc.proto.ChatMessage;
+import com.example.grpc.proto.ChatMessageBatch;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ChatBatcher测试，定时发送由测试手动触发
+ */
+class ChatBatcherTest {
+
+    private static final long FLUSH_INTERVAL = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final ManualScheduler scheduler = new ManualScheduler();
+    private final RecordingObserver observer = new RecordingObserver();
+    private final ChatBatching.Stats stats = new ChatBatching.Stats();
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private ChatBatcher batcher(int maxBatchSize, long flushIntervalNanos) {
+        return new ChatBatcher(observer, maxBatchSize, flushIntervalNanos, scheduler, stats);
+    }
+
+    private static ChatMessage message(long i) {
+        return ChatMessage.newBuilder().setUserId(i).setMessage("m" + i).build();
+    }
+
+    private List<Integer> batchSizes() {
+        return observer.batches.stream().map(ChatMessageBatch::getMessagesCount).toList();
+    }
+
+    @Test
+    void fullBatchIsSentImmediately() {
+        ChatBatcher batcher = batcher(3, FLUSH_INTERVAL);
+        for (int i = 0; i < 7; i++) {
+            batcher.add(message(i));
+        }
+
+        assertEquals(List.of(3, 3), batchSizes());
+        assertEquals(3, observer.batches.get(1).getMessages(0).getUserId());
+        assertEquals(2, stats.getBatches());
+        assertEquals(6, stats.getMessages());
+        assertEquals(3.0, stats.getAverageBatchSize(), 0);
+    }
+
+    @Test
+    void partialBatchIsSentByTimer() {
+        ChatBatcher batcher = batcher(10, FLUSH_INTERVAL);
+        batcher.add(message(1));
+        batcher.add(message(2));
+        // 只有每批的第一条消息安排定时发送
+        assertEquals(1, scheduler.pending());
+        assertTrue(observer.batches.isEmpty());
+
+        scheduler.runNext();
+        assertEquals(List.of(2), batchSizes());
+    }
+
+    @Test
+    void notReadyDefersUntilFlush() {
+        ChatBatcher batcher = batcher(2, FLUSH_INTERVAL);
+        observer.ready = false;
+        for (int i = 0; i < 5; i++) {
+            batcher.add(message(i));
+        }
+        assertTrue(observer.batches.isEmpty());
+
+        // onReady时发送积压的全部消息
+        observer.ready = true;
+        batcher.flush();
+        assertEquals(List.of(5), batchSizes());
+    }
+
+    @Test
+    void zeroIntervalSendsEachMessage() {
+        ChatBatcher batcher = batcher(10, 0);
+        batcher.add(message(1));
+        batcher.add(message(2));
+
+        assertEquals(List.of(1, 1), batchSizes());
+        assertEquals(0, scheduler.pending());
+    }
+
+    @Test
+    void completeSendsRemainderEvenIfNotReady() {
+        ChatBatcher batcher = batcher(10, FLUSH_INTERVAL);
+        batcher.add(message(1));
+        observer.ready = false;
+        batcher.complete(message(2));
+
+        assertEquals(List.of(2), batchSizes());
+        assertTrue(observer.completed);
+        assertTrue(scheduler.lastFuture.isCancelled());
+
+        // 结束后的消息和定时发送都被忽略
+        batcher.add(message(3));
+        batcher.flush();
+        assertEquals(1, observer.batches.size());
+    }
+
+    @Test
+    void cancelDropsPending() {
+        ChatBatcher batcher = batcher(10, FLUSH_INTERVAL);
+        batcher.add(message(1));
+        batcher.cancel();
+        observer.cancelled = true;
+        scheduler.runNext();
+
+        assertTrue(observer.batches.isEmpty());
+        assertTrue(scheduler.lastFuture.isCancelled());
+    }
+
+    @Test
+    void statsWaitPercentiles() {
+        long sentAt = TimeUnit.MILLISECONDS.toNanos(100);
+        long[] enqueuedAt = new long[10];
+        for (int i = 0; i < enqueuedAt.length; i++) {
+            // 等待时间1毫秒到10毫秒
+            enqueuedAt[i] = sentAt - TimeUnit.MILLISECONDS.toNanos(i + 1);
+        }
+        stats.recordBatch(enqueuedAt.length, enqueuedAt, sentAt);
+
+        assertEquals(5.5, stats.getAverageWaitMillis(), 1e-9);
+        assertEquals(10.0, stats.getMaxWaitMillis(), 1e-9);
+        assertEquals(5.01, stats.getWaitPercentileMillis(0.5), 1e-9);
+        assertEquals(10.01, stats.getWaitPercentileMillis(1.0), 1e-9);
+    }
+
+    /**
+     * 只记录安排的任务，由测试手动执行；返回的future可以正常取消
+     */
+    private static class ManualScheduler extends ScheduledThreadPoolExecutor {
+
+        private final List<Runnable> tasks = new ArrayList<>();
+        private ScheduledFuture<?> lastFuture;
+
+        ManualScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            tasks.add(command);
+            lastFuture = super.schedule(() -> { }, 1, TimeUnit.DAYS);
+            return lastFuture;
+        }
+
+        void runNext() {
+            tasks.remove(0).run();
+        }
+
+        int pending() {
+            return tasks.size();
+        }
+    }
+
+    private static class RecordingObserver extends ServerCallStreamObserver<ChatMessageBatch> {
+
+        private final List<ChatMessageBatch> batches = new ArrayList<>();
+        private boolean ready = true;
+        private boolean cancelled;
+        private boolean completed;
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void onNext(ChatMessageBatch value) {
+            batches.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.grpc.server.chat;
+
+import com.example.grpc.proto.ChatMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ChatLogSegment测试
+ */
+class ChatLogSegmentTest {
+
+    private static final int CAPACITY = 4096;
+
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("chat-log-segment");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static byte[] message(String text) {
+        return ChatMessage.newBuilder().setUserId(1).setMessage(text).build().toByteArray();
+    }
+
+    @Test
+    void appendThenRead() throws IOException {
+        ChatLogSegment segment = ChatLogSegment.open(directory, 1, CAPACITY, 1024);
+        assertTrue(segment.append(1, 100, message("a")));
+        assertTrue(segment.append(2, 200, message("b")));
+
+        assertEquals(3, segment.getNextOffset());
+        assertEquals(200, segment.getLastTimestamp());
+
+        int first = segment.positionOfOffset(1);
+        ChatMessage a = segment.messageAt(first);
+        assertEquals("a", a.getMessage());
+        assertEquals(1, a.getOffset());
+
+        ChatMessage b = segment.messageAt(segment.nextPosition(first));
+        assertEquals("b", b.getMessage());
+        assertEquals(2, b.getOffset());
+        assertEquals(segment.size(), segment.nextPosition(segment.nextPosition(first)));
+        segment.close();
+    }
+
+    @Test
+    void emptyMessageIsNotEndMarker() throws IOException {
+        byte[] empty = ChatMessage.getDefaultInstance().toByteArray();
+        assertEquals(0, empty.length);
+
+        ChatLogSegment segment = ChatLogSegment.open(directory, 1, CAPACITY, 1024);
+        segment.append(1, 100, empty);
+        segment.append(2, 100, message("after"));
+        segment.flush();
+        segment.close();
+
+        ChatLogSegment reopened = ChatLogSegment.open(directory, 1, CAPACITY, 1024);
+        assertEquals(3, reopened.getNextOffset());
+        assertEquals("", reopened.messageAt(0).getMessage());
+        assertEquals("after", reopened.messageAt(reopened.nextPosition(0)).getMessage());
+        reopened.close();
+    }
+
+    @Test
+    void reopenRecoversState() throws IOException {
+        ChatLogSegment segment = ChatLogSegment.open(directory, 10, CAPACITY, 64);
+        for (int i = 0; i < 20; i++) {
+            segment.append(10 + i, 1000 + i, message("m" + i));
+        }
+        int size = segment.size();
+        segment.flush();
+        segment.close();
+
+        ChatLogSegment reopened = ChatLogSegment.open(directory, 10, CAPACITY, 64);
+        assertEquals(30, reopened.getNextOffset());
+        assertEquals(size, reopened.size());
+        assertEquals(1019, reopened.getLastTimestamp());
+        assertEquals("m15", reopened.messageAt(reopened.positionOfOffset(25)).getMessage());
+
+        // 恢复后可以继续追加
+        assertTrue(reopened.append(30, 1020, message("m20")));
+        assertEquals("m20", reopened.messageAt(reopened.positionOfOffset(30)).getMessage());
+        reopened.close();
+    }
+
+    @Test
+    void recoveryStopsAtCorruptedRecord() throws IOException {
+        // 索引间隔足够大，只有第一条记录有索引项，恢复时从头扫描
+        ChatLogSegment segment = ChatLogSegment.open(directory, 1, CAPACITY, CAPACITY);
+        for (int i = 1; i <= 5; i++) {
+            segment.append(i, i, message("m" + i));
+        }
+        int third = segment.positionOfOffset(3);
+        segment.flush();
+        segment.close();
+
+        Path logFile = directory.resolve(ChatLogSegment.fileName(1, ChatLog.LOG_SUFFIX));
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), third + ChatLogSegment.RECORD_HEADER_BYTES);
+        }
+
+        ChatLogSegment reopened = ChatLogSegment.open(directory, 1, CAPACITY, CAPACITY);
+        assertEquals(3, reopened.getNextOffset());
+        assertEquals(third, reopened.size());
+        assertEquals(2, reopened.getLastTimestamp());
+        reopened.close();
+    }
+
+    @Test
+    void recoveryDropsIndexEntriesPastTheLog() throws IOException {
+        ChatLogSegment segment = ChatLogSegment.open(directory, 1, CAPACITY, 1);
+        for (int i = 1; i <= 5; i++) {
+            segment.append(i, i, message("m" + i));
+        }
+        int fourth = segment.positionOfOffset(4);
+        int size = segment.size();
+        segment.flush();
+        segment.close();
+
+        // 模拟崩溃时索引已经写入、最后两条日志记录还没有落盘
+        Path logFile = directory.resolve(ChatLogSegment.fileName(1, ChatLog.LOG_SUFFIX));
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(size - fourth), fourth);
+        }
+
+        ChatLogSegment reopened = ChatLogSegment.open(directory, 1, CAPACITY, 1);
+        assertEquals(4, reopened.getNextOffset());
+        assertEquals(fourth, reopened.size());
+        assertEquals(reopened.size(), reopened.positionOfOffset(4));
+        reopened.close();
+    }
+
+    @Test
+    void positionOfTimestampFindsFirstDuplicate() throws IOException {
+        ChatLogSegment segment = ChatLogSegment.open(directory, 1, CAPACITY, 1);
+        long[] timestamps = {10, 20, 20, 20, 30};
+        for (int i = 0; i < timestamps.length; i++) {
+            segment.append(i + 1, timestamps[i], message("m" + i));
+        }
+
+        assertEquals(2, segment.messageAt(segment.positionOfTimestamp(20)).getOffset());
+        assertEquals(2, segment.messageAt(segment.positionOfTimestamp(15)).getOffset());
+        assertEquals(5, segment.messageAt(segment.positionOfTimestamp(30)).getOffset());
+        assertEquals(1, segment.messageAt(segment.positionOfTimestamp(0)).getOffset());
+        assertEquals(segment.size(), segment.positionOfTimestamp(31));
+        segment.close();
+    }
+
+    @Test
+    void appendFailsWhenFull() throws IOException {
+        ChatLogSegment segment = ChatLogSegment.open(directory, 1, 160, 1024);
+        // 每条记录24字节头加44字节消息，160字节放得下两条
+        byte[] payload = message("0123456789012345678901234567890123456789");
+        assertEquals(44, payload.length);
+        assertTrue(segment.append(1, 1, payload));
+        assertTrue(segment.append(2, 2, payload));
+        assertFalse(segment.append(3, 3, payload));
+
+        assertEquals(3, segment.getNextOffset());
+        segment.close();
+    }
+}
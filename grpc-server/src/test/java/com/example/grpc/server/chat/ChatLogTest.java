@@ -0,0 +1,165 @@
+package com.example.grpc.server.chat;
+
+import com.example.grpc.proto.ChatMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ChatLog测试
+ */
+class ChatLogTest {
+
+    /**
+     * 每个日志段能放下几条测试消息，追加多条后会滚动
+     */
+    private static final int SEGMENT_BYTES = 256;
+
+    private Path directory;
+    private ChatLog chatLog;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("chat-log");
+        chatLog = new ChatLog(directory, SEGMENT_BYTES, 64);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        chatLog.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static byte[] message(long i) {
+        return ChatMessage.newBuilder().setUserId(i).setMessage("message-" + i).build().toByteArray();
+    }
+
+    private void appendMessages(int count, long timestamp) throws IOException {
+        for (int i = 0; i < count; i++) {
+            long offset = chatLog.getNextOffset();
+            assertEquals(offset, chatLog.append(timestamp, message(offset)));
+        }
+    }
+
+    @Test
+    void offsetsAreContiguousAcrossSegments() throws IOException {
+        appendMessages(50, 1000);
+
+        assertEquals(1, chatLog.getFirstOffset());
+        assertEquals(51, chatLog.getNextOffset());
+        assertTrue(chatLog.describeSegments().size() > 1);
+
+        ChatLog.Cursor cursor = chatLog.fromOffset(1);
+        for (long offset = 1; offset <= 50; offset++) {
+            ChatMessage message = cursor.next();
+            assertEquals(offset, message.getOffset());
+            assertEquals("message-" + offset, message.getMessage());
+        }
+        assertNull(cursor.next());
+    }
+
+    @Test
+    void cursorContinuesAfterNewAppends() throws IOException {
+        appendMessages(3, 1000);
+        ChatLog.Cursor cursor = chatLog.fromOffset(3);
+        assertEquals(3, cursor.next().getOffset());
+        assertNull(cursor.next());
+
+        appendMessages(30, 1000);
+        for (long offset = 4; offset <= 33; offset++) {
+            assertEquals(offset, cursor.next().getOffset());
+        }
+        assertNull(cursor.next());
+    }
+
+    @Test
+    void fromTimestamp() throws IOException {
+        appendMessages(10, 1000);
+        appendMessages(10, 2000);
+        appendMessages(10, 3000);
+
+        assertEquals(11, chatLog.fromTimestamp(1500).next().getOffset());
+        assertEquals(21, chatLog.fromTimestamp(3000).next().getOffset());
+        assertEquals(1, chatLog.fromTimestamp(0).next().getOffset());
+        assertNull(chatLog.fromTimestamp(3001).next());
+    }
+
+    @Test
+    void timestampsNeverDecrease() throws IOException {
+        chatLog.append(2000, message(1));
+        chatLog.append(1000, message(2));
+
+        // 第二条消息按第一条的时间记录，按时间查找不会跳过它
+        ChatLog.Cursor cursor = chatLog.fromTimestamp(2000);
+        assertEquals(1, cursor.next().getOffset());
+        assertEquals(2, cursor.next().getOffset());
+    }
+
+    @Test
+    void retentionBySizeKeepsActiveSegment() throws IOException {
+        appendMessages(50, 1000);
+        int segments = chatLog.describeSegments().size();
+
+        int deleted = chatLog.enforceRetention(0, 0);
+        assertEquals(segments - 1, deleted);
+        assertEquals(1, chatLog.describeSegments().size());
+        assertEquals(51, chatLog.getNextOffset());
+
+        // 已删除的偏移量从最早保留的消息开始读取
+        long firstOffset = chatLog.getFirstOffset();
+        assertTrue(firstOffset > 1);
+        assertEquals(firstOffset, chatLog.fromOffset(1).next().getOffset());
+    }
+
+    @Test
+    void retentionByAge() throws IOException {
+        appendMessages(20, 1000);
+        long oldNext = chatLog.getNextOffset();
+        appendMessages(20, 5000);
+
+        chatLog.enforceRetention(Long.MAX_VALUE, 2000);
+
+        // 只删除最后一条消息早于2000的日志段，包含5000的日志段保留
+        assertTrue(chatLog.getFirstOffset() <= oldNext);
+        assertTrue(chatLog.getFirstOffset() > 1);
+        for (ChatLog.SegmentInfo segment : chatLog.describeSegments()) {
+            assertEquals(5000, segment.getLastTimestamp());
+        }
+    }
+
+    @Test
+    void reopenContinuesOffsets() throws IOException {
+        appendMessages(25, 1000);
+        chatLog.close();
+
+        chatLog = new ChatLog(directory, SEGMENT_BYTES, 64);
+        assertEquals(26, chatLog.getNextOffset());
+        assertEquals(26, chatLog.append(1000, message(26)));
+
+        ChatLog.Cursor cursor = chatLog.fromOffset(20);
+        for (long offset = 20; offset <= 26; offset++) {
+            assertEquals(offset, cursor.next().getOffset());
+        }
+    }
+
+    @Test
+    void oversizedMessageIsRejected() {
+        byte[] payload = new byte[SEGMENT_BYTES];
+        assertThrows(IllegalArgumentException.class, () -> chatLog.append(1000, payload));
+    }
+}
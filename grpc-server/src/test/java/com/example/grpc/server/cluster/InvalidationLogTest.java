@@ -0,0 +1,84 @@
+package com.example.grpc.server.cluster;
+
+import com.example.grpc.proto.InvalidationEvent;
+import com.example.grpc.proto.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * InvalidationLog测试
+ */
+class InvalidationLogTest {
+
+    private static User user(long id) {
+        return User.newBuilder().setId(id).setUsername("user-" + id).build();
+    }
+
+    @Test
+    void sequencesAreContiguous() {
+        InvalidationLog log = new InvalidationLog(8);
+        assertEquals(0, log.getLastSequence());
+        assertEquals(1, log.appendUpdated(user(10)));
+        assertEquals(2, log.appendDeleted(11));
+        assertEquals(3, log.appendUpdated(user(12)));
+
+        List<InvalidationEvent> events = log.read(1, 10);
+        assertEquals(3, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(i + 1, events.get(i).getSequence());
+        }
+        assertEquals(InvalidationEvent.Type.UPDATED, events.get(0).getType());
+        assertEquals(10, events.get(0).getUser().getId());
+        assertEquals(InvalidationEvent.Type.DELETED, events.get(1).getType());
+        assertEquals(11, events.get(1).getUserId());
+    }
+
+    @Test
+    void readRespectsMax() {
+        InvalidationLog log = new InvalidationLog(8);
+        for (long id = 1; id <= 5; id++) {
+            log.appendUpdated(user(id));
+        }
+
+        List<InvalidationEvent> events = log.read(2, 2);
+        assertEquals(2, events.size());
+        assertEquals(2, events.get(0).getSequence());
+        assertEquals(3, events.get(1).getSequence());
+    }
+
+    @Test
+    void readPastEndIsEmpty() {
+        InvalidationLog log = new InvalidationLog(8);
+        assertTrue(log.read(1, 10).isEmpty());
+
+        log.appendDeleted(1);
+        assertTrue(log.read(2, 10).isEmpty());
+    }
+
+    @Test
+    void overwrittenEventsReturnNull() {
+        InvalidationLog log = new InvalidationLog(4);
+        for (long id = 1; id <= 10; id++) {
+            log.appendUpdated(user(id));
+        }
+
+        assertEquals(7, log.getOldestSequence());
+        assertNull(log.read(6, 10));
+
+        List<InvalidationEvent> events = log.read(7, 10);
+        assertEquals(4, events.size());
+        assertEquals(7, events.get(0).getSequence());
+        assertEquals(10, events.get(3).getSequence());
+    }
+
+    @Test
+    void epochDiffersPerInstance() {
+        assertNotEquals(new InvalidationLog(1).getEpoch(), new InvalidationLog(1).getEpoch());
+    }
+}
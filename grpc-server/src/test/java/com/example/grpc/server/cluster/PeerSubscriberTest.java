@@ -0,0 +1,125 @@
+package com.example.grpc.server.cluster;
+
+import com.example.grpc.proto.InvalidationBatch;
+import com.example.grpc.proto.InvalidationEvent;
+import com.example.grpc.proto.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * PeerSubscriber按序号应用事件的测试（不建立连接，直接调用apply）
+ */
+class PeerSubscriberTest {
+
+    private UserCache cache;
+    private PeerSubscriber subscriber;
+
+    @BeforeEach
+    void setUp() {
+        cache = new UserCache(100, 60_000);
+        subscriber = new PeerSubscriber("localhost:1", "node-a", cache, null, 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        subscriber.stop();
+    }
+
+    private static InvalidationEvent updated(long sequence, long id, long version) {
+        return InvalidationEvent.newBuilder()
+                .setSequence(sequence)
+                .setUserId(id)
+                .setType(InvalidationEvent.Type.UPDATED)
+                .setUser(User.newBuilder().setId(id).setUsername("user-" + id).setVersion(version))
+                .build();
+    }
+
+    private static InvalidationEvent deleted(long sequence, long id) {
+        return InvalidationEvent.newBuilder()
+                .setSequence(sequence)
+                .setUserId(id)
+                .setType(InvalidationEvent.Type.DELETED)
+                .build();
+    }
+
+    private static InvalidationBatch batch(String epoch, boolean reset, InvalidationEvent... events) {
+        InvalidationBatch.Builder batch = InvalidationBatch.newBuilder()
+                .setEpoch(epoch)
+                .setOriginNode("node-b")
+                .setReset(reset);
+        for (InvalidationEvent event : events) {
+            batch.addEvents(event);
+        }
+        if (events.length > 0) {
+            batch.setFirstSequence(events[0].getSequence()).setLastSequence(events[events.length - 1].getSequence());
+        }
+        return batch.build();
+    }
+
+    @Test
+    void contiguousBatchesKeepCache() {
+        subscriber.apply(batch("e1", true, updated(1, 1, 1)));
+        cache.put(User.newBuilder().setId(99).setVersion(1).build());
+
+        subscriber.apply(batch("e1", false, updated(2, 2, 1), deleted(3, 1)));
+
+        assertEquals(4, subscriber.getNextSequence());
+        assertEquals(0, subscriber.getGaps());
+        assertEquals(1, subscriber.getResets());
+        assertTrue(cache.get(99).isPresent());
+        assertTrue(cache.get(2).isPresent());
+        assertTrue(cache.get(1).isEmpty());
+        assertEquals("node-b", subscriber.getOriginNode());
+    }
+
+    @Test
+    void sequenceGapClearsCache() {
+        subscriber.apply(batch("e1", true, updated(1, 1, 1)));
+        cache.put(User.newBuilder().setId(99).setVersion(1).build());
+
+        subscriber.apply(batch("e1", false, updated(5, 2, 1)));
+
+        assertEquals(1, subscriber.getGaps());
+        assertTrue(cache.get(99).isEmpty());
+        assertTrue(cache.get(2).isPresent());
+        assertEquals(6, subscriber.getNextSequence());
+    }
+
+    @Test
+    void epochChangeClearsCache() {
+        subscriber.apply(batch("e1", true, updated(1, 1, 1)));
+        cache.put(User.newBuilder().setId(99).setVersion(1).build());
+
+        subscriber.apply(batch("e2", false, updated(2, 2, 1)));
+
+        assertEquals(1, subscriber.getGaps());
+        assertTrue(cache.get(99).isEmpty());
+    }
+
+    @Test
+    void resetClearsCacheWithoutCountingGap() {
+        subscriber.apply(batch("e1", true, updated(1, 1, 1)));
+        cache.put(User.newBuilder().setId(99).setVersion(1).build());
+
+        subscriber.apply(batch("e2", true, updated(40, 2, 1)));
+
+        assertEquals(0, subscriber.getGaps());
+        assertEquals(2, subscriber.getResets());
+        assertTrue(cache.get(99).isEmpty());
+        assertEquals(41, subscriber.getNextSequence());
+    }
+
+    @Test
+    void olderPeerEventKeepsNewerLocalWrite() {
+        subscriber.apply(batch("e1", true));
+        cache.put(User.newBuilder().setId(1).setUsername("local").setVersion(3).build());
+
+        subscriber.apply(batch("e1", false, updated(1, 1, 2)));
+
+        assertEquals("local", cache.get(1).orElseThrow().getUsername());
+    }
+}
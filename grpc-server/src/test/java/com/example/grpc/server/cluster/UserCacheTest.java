@@ -0,0 +1,112 @@
+package com.example.grpc.server.cluster;
+
+import com.example.grpc.proto.User;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * UserCache测试
+ */
+class UserCacheTest {
+
+    private static User user(long id, String username, long version) {
+        return User.newBuilder().setId(id).setUsername(username).setVersion(version).build();
+    }
+
+    @Test
+    void putThenGet() {
+        UserCache cache = new UserCache(100, 60_000);
+        cache.put(user(1, "alice", 1));
+
+        assertEquals("alice", cache.get(1).orElseThrow().getUsername());
+        assertTrue(cache.get(2).isEmpty());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void olderVersionDoesNotReplaceNewer() {
+        UserCache cache = new UserCache(100, 60_000);
+        cache.put(user(1, "new", 5));
+        cache.put(user(1, "old", 4));
+
+        assertEquals("new", cache.get(1).orElseThrow().getUsername());
+
+        cache.put(user(1, "newer", 6));
+        assertEquals("newer", cache.get(1).orElseThrow().getUsername());
+    }
+
+    @Test
+    void missingVersionAlwaysReplaces() {
+        UserCache cache = new UserCache(100, 60_000);
+        cache.put(user(1, "versioned", 5));
+        cache.put(user(1, "unversioned", 0));
+        assertEquals("unversioned", cache.get(1).orElseThrow().getUsername());
+
+        cache.put(user(1, "versioned-again", 1));
+        assertEquals("versioned-again", cache.get(1).orElseThrow().getUsername());
+    }
+
+    @Test
+    void populateIsDroppedAfterInvalidation() {
+        UserCache cache = new UserCache(100, 60_000);
+        long generation = cache.generation();
+        cache.invalidate(1);
+        cache.populate(user(1, "stale", 1), generation);
+
+        assertTrue(cache.get(1).isEmpty());
+        assertEquals(1, cache.getInvalidations());
+    }
+
+    @Test
+    void populateIsDroppedAfterUnrelatedWrite() {
+        UserCache cache = new UserCache(100, 60_000);
+        long generation = cache.generation();
+        cache.put(user(2, "bob", 1));
+        cache.populate(user(1, "alice", 1), generation);
+
+        assertTrue(cache.get(1).isEmpty());
+        assertTrue(cache.get(2).isPresent());
+    }
+
+    @Test
+    void populateWithCurrentGeneration() {
+        UserCache cache = new UserCache(100, 60_000);
+        cache.populate(user(1, "alice", 1), cache.generation());
+
+        assertEquals("alice", cache.get(1).orElseThrow().getUsername());
+    }
+
+    @Test
+    void clearRemovesEverything() {
+        UserCache cache = new UserCache(100, 60_000);
+        cache.put(user(1, "alice", 1));
+        cache.put(user(2, "bob", 1));
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getResets());
+    }
+
+    @Test
+    void expiredEntryIsMiss() throws InterruptedException {
+        UserCache cache = new UserCache(100, 1);
+        cache.put(user(1, "alice", 1));
+        Thread.sleep(5);
+
+        assertTrue(cache.get(1).isEmpty());
+    }
+
+    @Test
+    void sizeIsBounded() {
+        UserCache cache = new UserCache(10, 60_000);
+        for (long id = 1; id <= 100; id++) {
+            cache.put(user(id, "user-" + id, 1));
+        }
+
+        assertTrue(cache.size() <= 10);
+        assertTrue(cache.get(100).isPresent());
+    }
+}
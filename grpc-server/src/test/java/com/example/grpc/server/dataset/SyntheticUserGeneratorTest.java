@@ -0,0 +1,85 @@
+package com.example.grpc.server.dataset;
+
+import com.example.grpc.proto.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SyntheticUserGenerator测试
+ */
+class SyntheticUserGeneratorTest {
+
+    private static final long END_MILLIS = 1_700_000_000_000L;
+    private static final int COUNT = 20_000;
+
+    private final SyntheticUserGenerator generator = new SyntheticUserGenerator(42, 1, COUNT, END_MILLIS);
+
+    @Test
+    void sameSeedAndIdGiveSameUser() {
+        SyntheticUserGenerator other = new SyntheticUserGenerator(42, 1, COUNT, END_MILLIS);
+        for (long id = 1; id <= 100; id++) {
+            assertEquals(generator.generate(id), other.generate(id));
+        }
+    }
+
+    @Test
+    void differentSeedGivesDifferentUsers() {
+        SyntheticUserGenerator other = new SyntheticUserGenerator(7, 1, COUNT, END_MILLIS);
+        int same = 0;
+        for (long id = 1; id <= 100; id++) {
+            if (generator.generate(id).getEmail().equals(other.generate(id).getEmail())) {
+                same++;
+            }
+        }
+        assertTrue(same < 10, "不同种子生成的邮箱大多应不同: " + same);
+    }
+
+    @Test
+    void usernamesAndEmailsAreUnique() {
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        for (long id = 1; id <= COUNT; id++) {
+            User user = generator.generate(id);
+            assertTrue(usernames.add(user.getUsername()), "用户名重复: " + user.getUsername());
+            assertTrue(emails.add(user.getEmail()), "邮箱重复: " + user.getEmail());
+        }
+    }
+
+    @Test
+    void fieldsStayInRange() {
+        long earliest = END_MILLIS - TimeUnit.DAYS.toMillis(5 * 365);
+        for (long id = 1; id <= COUNT; id += 97) {
+            User user = generator.generate(id);
+            assertEquals(id, user.getId());
+            assertEquals(1, user.getVersion());
+            assertTrue(user.getAge() >= 16 && user.getAge() <= 80, "年龄超出范围: " + user.getAge());
+            assertTrue(user.getCreatedAt() >= earliest && user.getCreatedAt() <= END_MILLIS,
+                    "注册时间超出范围: " + user.getCreatedAt());
+            assertTrue(user.getEmail().contains("@"));
+        }
+    }
+
+    @Test
+    void laterIdsRegisterLater() {
+        assertTrue(generator.generate(1).getCreatedAt() < generator.generate(COUNT / 2).getCreatedAt());
+        assertTrue(generator.generate(COUNT / 2).getCreatedAt() < generator.generate(COUNT).getCreatedAt());
+    }
+
+    @Test
+    void scrambleKeepsHighBitsAndIsInjective() {
+        Set<Long> seen = new HashSet<>();
+        for (long id = 0; id < 100_000; id++) {
+            assertTrue(seen.add(SyntheticUserGenerator.scramble(id)), "打乱后重复: " + id);
+        }
+        long high = 5L << 32;
+        assertEquals(high, SyntheticUserGenerator.scramble(high + 3) & 0xFFFFFFFF00000000L);
+        assertNotEquals(SyntheticUserGenerator.scramble(1) + 1, SyntheticUserGenerator.scramble(2));
+    }
+}
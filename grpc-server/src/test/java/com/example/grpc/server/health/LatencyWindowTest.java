@@ -0,0 +1,88 @@
+package com.example.grpc.server.health;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LatencyWindow测试
+ */
+class LatencyWindowTest {
+
+    @Test
+    void emptyWindowReportsZero() {
+        LatencyWindow window = new LatencyWindow(4);
+        assertEquals(0, window.count());
+        assertEquals(0.0, window.percentileMillis(0.99));
+    }
+
+    @Test
+    void recordsCountOnlyAfterRoll() {
+        LatencyWindow window = new LatencyWindow(4);
+        window.record(TimeUnit.MILLISECONDS.toNanos(1));
+        window.record(TimeUnit.MILLISECONDS.toNanos(2));
+        assertEquals(0, window.count());
+
+        window.roll();
+        assertEquals(2, window.count());
+    }
+
+    @Test
+    void oldestSliceIsOverwritten() {
+        LatencyWindow window = new LatencyWindow(2);
+        window.record(TimeUnit.MILLISECONDS.toNanos(1));
+        window.roll();
+        window.roll();
+        assertEquals(1, window.count());
+
+        window.roll();
+        assertEquals(0, window.count());
+    }
+
+    @Test
+    void percentilesFollowTheTail() {
+        LatencyWindow window = new LatencyWindow(4);
+        for (int i = 0; i < 99; i++) {
+            window.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        window.roll();
+        window.record(TimeUnit.MILLISECONDS.toNanos(100));
+        window.roll();
+
+        assertEquals(100, window.count());
+        assertInBucket(1.0, window.percentileMillis(0.5));
+        assertInBucket(1.0, window.percentileMillis(0.99));
+        assertInBucket(100.0, window.percentileMillis(0.999));
+    }
+
+    @Test
+    void bucketUpperBoundIsWithinTwentyFivePercent() {
+        for (long micros = 0; micros < 10_000_000; micros = micros * 9 / 8 + 1) {
+            long upper = LatencyWindow.upperBoundMicros(LatencyWindow.bucketOf(micros));
+            assertTrue(upper > micros, "上界应大于记录值: " + micros);
+            if (micros >= 4) {
+                assertTrue(upper <= micros * 1.25, "相对误差超过25%: " + micros + " -> " + upper);
+            }
+        }
+    }
+
+    @Test
+    void bucketsAreMonotonicAndClamped() {
+        int previous = 0;
+        for (long micros = 0; micros < 1_000_000; micros++) {
+            int bucket = LatencyWindow.bucketOf(micros);
+            assertTrue(bucket >= previous, "桶序号应随延迟单调不减: " + micros);
+            previous = bucket;
+        }
+        assertEquals(0, LatencyWindow.bucketOf(-5));
+        assertEquals(159, LatencyWindow.bucketOf(Long.MAX_VALUE));
+    }
+
+    private static void assertInBucket(double expectedMillis, double actualMillis) {
+        assertTrue(actualMillis > expectedMillis && actualMillis <= expectedMillis * 1.25,
+                "分位数 " + actualMillis + " 不在 " + expectedMillis + " 所在的桶");
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.grpc.server.jfr;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * JfrProfiler测试
+ */
+class JfrProfilerTest {
+
+    private Path directory;
+    private JfrProfiler profiler;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("jfr-profiler-test");
+        ProfilingProperties properties = new ProfilingProperties();
+        properties.setDirectory(directory.toString());
+        profiler = new JfrProfiler(properties);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        profiler.shutdown();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void builtInSettingsAreAvailable() {
+        assertTrue(profiler.availableSettings().contains("default"));
+        assertTrue(profiler.availableSettings().contains("profile"));
+    }
+
+    @Test
+    void onlyOneRecordingAtATime() throws Exception {
+        profiler.start("default", null);
+        assertEquals(true, profiler.status().get("recording"));
+        assertEquals("RUNNING", profiler.status().get("state"));
+        assertEquals("default", profiler.status().get("settings"));
+
+        assertThrows(IllegalStateException.class, () -> profiler.start("default", null));
+    }
+
+    @Test
+    void unknownSettingsAreRejected() {
+        assertThrows(IOException.class, () -> profiler.start("no-such-settings", null));
+        assertEquals(false, profiler.status().get("recording"));
+    }
+
+    @Test
+    void dumpOrStopWithoutRecordingFails() {
+        assertThrows(IllegalStateException.class, () -> profiler.dump());
+        assertThrows(IllegalStateException.class, () -> profiler.stop());
+    }
+
+    @Test
+    void stopWritesCustomEventsAndCloses() throws Exception {
+        profiler.start("default", null);
+        RpcEvent event = new RpcEvent();
+        event.begin();
+        event.method = "example.UserService/GetUser";
+        event.status = "OK";
+        event.rows = 1;
+        event.responses = 1;
+        event.commit();
+
+        Path file = profiler.stop();
+
+        assertTrue(file.startsWith(directory.toAbsolutePath()));
+        assertFalse(profiler.status().containsKey("state"));
+        boolean found = false;
+        for (RecordedEvent recorded : RecordingFile.readAllEvents(file)) {
+            if (recorded.getEventType().getName().equals("com.example.grpc.Rpc")) {
+                assertEquals("example.UserService/GetUser", recorded.getString("method"));
+                assertEquals(1, recorded.getLong("rows"));
+                found = true;
+            }
+        }
+        assertTrue(found, "导出的文件中应包含RPC事件");
+    }
+
+    @Test
+    void stoppedRecordingCanBeRestarted() throws Exception {
+        profiler.start("default", null);
+        profiler.stop();
+
+        profiler.start("profile", null);
+        assertEquals("profile", profiler.status().get("settings"));
+    }
+}
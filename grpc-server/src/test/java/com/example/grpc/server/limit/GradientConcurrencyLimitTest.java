@@ -0,0 +1,121 @@
+package com.example.grpc.server.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GradientConcurrencyLimit测试
+ */
+class GradientConcurrencyLimitTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static GradientConcurrencyLimit limit(int initialLimit) {
+        return new GradientConcurrencyLimit(initialLimit, 4, 200, 0.5, 1.5, 100);
+    }
+
+    /**
+     * 在满负载下完成一次调用
+     */
+    private static void sample(GradientConcurrencyLimit limit, long rttNanos) {
+        assertTrue(limit.tryAcquire(MethodPriority.CRITICAL.getLimitShare()));
+        limit.releaseWithSample(rttNanos, limit.getLimit());
+    }
+
+    @Test
+    void rejectsBeyondLimit() {
+        GradientConcurrencyLimit limit = limit(10);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limit.tryAcquire(MethodPriority.CRITICAL.getLimitShare()));
+        }
+        assertFalse(limit.tryAcquire(MethodPriority.CRITICAL.getLimitShare()));
+        assertEquals(10, limit.getInflight());
+
+        limit.release();
+        assertTrue(limit.tryAcquire(MethodPriority.CRITICAL.getLimitShare()));
+    }
+
+    @Test
+    void lowerPriorityIsRejectedFirst() {
+        GradientConcurrencyLimit limit = limit(10);
+        for (int i = 0; i < 6; i++) {
+            assertTrue(limit.tryAcquire(MethodPriority.BULK.getLimitShare()));
+        }
+        assertFalse(limit.tryAcquire(MethodPriority.BULK.getLimitShare()));
+        assertTrue(limit.tryAcquire(MethodPriority.NORMAL.getLimitShare()));
+        assertTrue(limit.tryAcquire(MethodPriority.NORMAL.getLimitShare()));
+        assertTrue(limit.tryAcquire(MethodPriority.NORMAL.getLimitShare()));
+        assertFalse(limit.tryAcquire(MethodPriority.NORMAL.getLimitShare()));
+        assertTrue(limit.tryAcquire(MethodPriority.CRITICAL.getLimitShare()));
+        assertFalse(limit.tryAcquire(MethodPriority.CRITICAL.getLimitShare()));
+    }
+
+    @Test
+    void growsWhileLatencyIsStable() {
+        GradientConcurrencyLimit limit = limit(20);
+        for (int i = 0; i < 50; i++) {
+            sample(limit, RTT);
+        }
+
+        assertTrue(limit.getLimit() > 20, "limit=" + limit.getLimit());
+        assertEquals(0, limit.getInflight());
+    }
+
+    @Test
+    void shrinksWhenLatencyRises() {
+        GradientConcurrencyLimit limit = limit(100);
+        for (int i = 0; i < 20; i++) {
+            sample(limit, RTT);
+        }
+        int before = limit.getLimit();
+
+        for (int i = 0; i < 20; i++) {
+            sample(limit, RTT * 10);
+        }
+        assertTrue(limit.getLimit() < before, "before=" + before + ", after=" + limit.getLimit());
+    }
+
+    @Test
+    void idleSamplesDoNotChangeLimit() {
+        GradientConcurrencyLimit limit = limit(100);
+        limit.tryAcquire(1.0);
+        limit.releaseWithSample(RTT, 1);
+        for (int i = 0; i < 20; i++) {
+            limit.tryAcquire(1.0);
+            limit.releaseWithSample(RTT * 10, 1);
+        }
+
+        assertEquals(100, limit.getLimit());
+        assertEquals(100, limit.getLastRttMillis(), 0.001);
+    }
+
+    @Test
+    void timeoutBacksOffButStaysAboveMinimum() {
+        GradientConcurrencyLimit limit = limit(10);
+        limit.tryAcquire(1.0);
+        limit.releaseWithTimeout();
+        assertEquals(9, limit.getLimit());
+
+        for (int i = 0; i < 50; i++) {
+            limit.tryAcquire(1.0);
+            limit.releaseWithTimeout();
+        }
+        assertEquals(4, limit.getLimit());
+        assertEquals(0, limit.getInflight());
+    }
+
+    @Test
+    void limitNeverExceedsMaximum() {
+        GradientConcurrencyLimit limit = limit(190);
+        for (int i = 0; i < 200; i++) {
+            sample(limit, RTT);
+        }
+
+        assertEquals(200, limit.getLimit());
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.grpc.server.reactive;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ServerStreamSubscriber测试
+ */
+class ServerStreamSubscriberTest {
+
+    private final RecordingObserver observer = new RecordingObserver();
+    private final AtomicLong requested = new AtomicLong();
+
+    @Test
+    void allElementsAreSentWhileReady() {
+        ServerStreamSubscriber.subscribe(range(10), observer, 4);
+
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), observer.values);
+        assertTrue(observer.completed);
+    }
+
+    @Test
+    void nothingIsRequestedUntilReady() {
+        observer.ready = false;
+        ServerStreamSubscriber.subscribe(range(10), observer, 4);
+        assertEquals(0, requested.get());
+        assertTrue(observer.values.isEmpty());
+
+        observer.ready = true;
+        observer.onReady.run();
+        assertEquals(10, observer.values.size());
+        assertTrue(observer.completed);
+    }
+
+    @Test
+    void requestsPauseWhenTransportIsFull() {
+        observer.pauseAfter = 2;
+        ServerStreamSubscriber.subscribe(range(10), observer, 4);
+
+        // 已请求的元素仍然会到达，但不再请求更多
+        assertEquals(4, requested.get());
+        assertEquals(4, observer.values.size());
+        assertFalse(observer.completed);
+
+        observer.ready = true;
+        observer.onReady.run();
+        assertEquals(10, observer.values.size());
+        assertTrue(observer.completed);
+    }
+
+    @Test
+    void cancelDisposesUpstream() {
+        AtomicBoolean upstreamCancelled = new AtomicBoolean();
+        ServerStreamSubscriber.subscribe(Flux.<Integer>never().doOnCancel(() -> upstreamCancelled.set(true)),
+                observer, 4);
+
+        observer.onCancel.run();
+        assertTrue(upstreamCancelled.get());
+    }
+
+    @Test
+    void errorIsSentAsStatus() {
+        ServerStreamSubscriber.subscribe(Flux.error(Status.NOT_FOUND.withDescription("gone").asRuntimeException()),
+                observer, 4);
+
+        assertEquals(Status.Code.NOT_FOUND, Status.fromThrowable(observer.error).getCode());
+        assertFalse(observer.completed);
+    }
+
+    private Flux<Integer> range(int count) {
+        return Flux.range(1, count).doOnRequest(requested::addAndGet);
+    }
+
+    private static class RecordingObserver extends ServerCallStreamObserver<Integer> {
+
+        private final List<Integer> values = new ArrayList<>();
+        private boolean ready = true;
+        private int pauseAfter = -1;
+        private boolean completed;
+        private Throwable error;
+        private Runnable onReady;
+        private Runnable onCancel;
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+            this.onCancel = onCancelHandler;
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+            this.onReady = onReadyHandler;
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void onNext(Integer value) {
+            values.add(value);
+            if (values.size() == pauseAfter) {
+                ready = false;
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+    }
+}
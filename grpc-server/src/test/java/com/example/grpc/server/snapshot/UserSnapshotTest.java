@@ -0,0 +1,102 @@
+package com.example.grpc.server.snapshot;
+
+import com.example.grpc.proto.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * UserSnapshotWriter和UserSnapshotReader测试
+ */
+class UserSnapshotTest {
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("user-snapshot", ".bin");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static User user(long id) {
+        return User.newBuilder()
+                .setId(id)
+                .setUsername("user-" + id)
+                .setEmail("user-" + id + "@example.com")
+                .setAge((int) (id % 80))
+                .setCreatedAt(1_700_000_000_000L + id)
+                .build();
+    }
+
+    @Test
+    void writeThenRead() throws IOException {
+        List<User> written = new ArrayList<>();
+        try (UserSnapshotWriter writer = new UserSnapshotWriter(file)) {
+            for (long id = 1; id <= 5000; id++) {
+                User user = user(id);
+                writer.write(user);
+                written.add(user);
+            }
+            assertEquals(5000, writer.getCount());
+        }
+
+        List<User> read = new ArrayList<>();
+        assertEquals(5000, UserSnapshotReader.read(file, read::add));
+        assertEquals(written, read);
+    }
+
+    @Test
+    void readsDelimitedProtobufFormat() throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            user(1).writeDelimitedTo(out);
+            // 所有字段都是默认值的消息长度为0
+            User.getDefaultInstance().writeDelimitedTo(out);
+            user(2).writeDelimitedTo(out);
+        }
+
+        List<User> read = new ArrayList<>();
+        assertEquals(3, UserSnapshotReader.read(file, read::add));
+        assertEquals(List.of(user(1), User.getDefaultInstance(), user(2)), read);
+    }
+
+    @Test
+    void emptySnapshot() throws IOException {
+        new UserSnapshotWriter(file).close();
+
+        List<User> read = new ArrayList<>();
+        assertEquals(0, UserSnapshotReader.read(file, read::add));
+        assertTrue(read.isEmpty());
+    }
+
+    @Test
+    void truncatedSnapshotFails() throws IOException {
+        try (UserSnapshotWriter writer = new UserSnapshotWriter(file)) {
+            writer.write(user(1));
+            writer.write(user(2));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        List<User> read = new ArrayList<>();
+        assertThrows(IOException.class, () -> UserSnapshotReader.read(file, read::add));
+        assertEquals(List.of(user(1)), read);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.grpc.server.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * OffHeapLongTable测试
+ */
+class OffHeapLongTableTest {
+
+    @Test
+    void putThenFind() {
+        OffHeapLongTable table = new OffHeapLongTable(16);
+        table.put(100, 1);
+        table.put(200, 2);
+
+        assertEquals(1, table.find(100, value -> true));
+        assertEquals(2, table.find(200, value -> true));
+        assertEquals(OffHeapLongTable.NOT_FOUND, table.find(300, value -> true));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    void duplicateKeysAreResolvedByPredicate() {
+        OffHeapLongTable table = new OffHeapLongTable(16);
+        table.put(7, 10);
+        table.put(7, 11);
+        table.put(7, 12);
+
+        assertEquals(11, table.find(7, value -> value == 11));
+        assertEquals(12, table.find(7, value -> value > 11));
+        assertEquals(OffHeapLongTable.NOT_FOUND, table.find(7, value -> value == 13));
+        assertEquals(3, table.size());
+    }
+
+    @Test
+    void removeOnlyMatchingEntry() {
+        OffHeapLongTable table = new OffHeapLongTable(16);
+        table.put(7, 10);
+        table.put(7, 11);
+
+        assertFalse(table.remove(7, 12));
+        assertTrue(table.remove(7, 10));
+        assertFalse(table.remove(7, 10));
+
+        // 墓碑之后的同键条目仍然能找到
+        assertEquals(OffHeapLongTable.NOT_FOUND, table.find(7, value -> value == 10));
+        assertEquals(11, table.find(7, value -> true));
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void removedSlotIsReused() {
+        OffHeapLongTable table = new OffHeapLongTable(16);
+        for (int round = 0; round < 1000; round++) {
+            table.put(42, round);
+            assertTrue(table.remove(42, round));
+        }
+        assertEquals(0, table.size());
+        assertEquals(OffHeapLongTable.NOT_FOUND, table.find(42, value -> true));
+    }
+
+    @Test
+    void growsBeyondInitialCapacity() {
+        OffHeapLongTable table = new OffHeapLongTable(16);
+        long initialBytes = table.allocatedBytes();
+        int entries = 10_000;
+        for (int i = 1; i <= entries; i++) {
+            table.put(OffHeapLongTable.toKey(i * 31L), i);
+        }
+
+        assertEquals(entries, table.size());
+        assertTrue(table.allocatedBytes() > initialBytes);
+        for (int i = 1; i <= entries; i++) {
+            long expected = i;
+            assertEquals(expected, table.find(OffHeapLongTable.toKey(i * 31L), value -> value == expected));
+        }
+    }
+
+    @Test
+    void rehashDropsTombstones() {
+        OffHeapLongTable table = new OffHeapLongTable(16);
+        List<Long> kept = new ArrayList<>();
+        for (long i = 1; i <= 5_000; i++) {
+            table.put(i, i);
+            if (i % 2 == 0) {
+                assertTrue(table.remove(i, i));
+            } else {
+                kept.add(i);
+            }
+        }
+
+        assertEquals(kept.size(), table.size());
+        for (long key : kept) {
+            assertEquals(key, table.find(key, value -> true));
+        }
+        assertEquals(OffHeapLongTable.NOT_FOUND, table.find(2, value -> true));
+    }
+
+    @Test
+    void toKeyAvoidsReservedValues() {
+        assertEquals(1, OffHeapLongTable.toKey(0));
+        assertEquals(Long.MIN_VALUE + 1, OffHeapLongTable.toKey(Long.MIN_VALUE));
+        assertEquals(12345, OffHeapLongTable.toKey(12345));
+        assertEquals(-1, OffHeapLongTable.toKey(-1));
+
+        OffHeapLongTable table = new OffHeapLongTable(16);
+        table.put(OffHeapLongTable.toKey(0), 5);
+        table.put(OffHeapLongTable.toKey(Long.MIN_VALUE), 6);
+        assertEquals(5, table.find(OffHeapLongTable.toKey(0), value -> true));
+        assertEquals(6, table.find(OffHeapLongTable.toKey(Long.MIN_VALUE), value -> true));
+    }
+}
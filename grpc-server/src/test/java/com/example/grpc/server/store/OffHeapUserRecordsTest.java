@@ -0,0 +1,150 @@
+package com.example.grpc.server.store;
+
+import com.example.grpc.proto.User;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * OffHeapUserRecords测试
+ */
+class OffHeapUserRecordsTest {
+
+    private static final int RECORDS_PER_SLAB = 4;
+
+    private static OffHeapUserRecords records(int slabs) {
+        long slabBytes = (long) RECORDS_PER_SLAB * OffHeapUserRecords.RECORD_SIZE;
+        return new OffHeapUserRecords(slabBytes, slabBytes * slabs);
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void writeThenRead() {
+        OffHeapUserRecords records = records(1);
+        long slot = records.allocate();
+        records.write(slot, 7, 1_700_000_000_000L, 30, utf8("张三"), utf8("zhangsan@example.com"), 3);
+
+        User user = records.read(slot, 7);
+        assertNotNull(user);
+        assertEquals(7, user.getId());
+        assertEquals("张三", user.getUsername());
+        assertEquals("zhangsan@example.com", user.getEmail());
+        assertEquals(30, user.getAge());
+        assertEquals(1_700_000_000_000L, user.getCreatedAt());
+        assertEquals(3, user.getVersion());
+
+        assertNotNull(records.read(slot, 0));
+        assertTrue(records.usernameEquals(slot, utf8("张三")));
+        assertFalse(records.usernameEquals(slot, utf8("李四")));
+        assertTrue(records.emailEquals(slot, utf8("zhangsan@example.com")));
+    }
+
+    @Test
+    void readWithDifferentIdReturnsNull() {
+        OffHeapUserRecords records = records(1);
+        long slot = records.allocate();
+        records.write(slot, 7, 0, 30, utf8("alice"), utf8("alice@example.com"), 1);
+
+        assertNull(records.read(slot, 8));
+    }
+
+    @Test
+    void clearedSlotReadsAsEmpty() {
+        OffHeapUserRecords records = records(1);
+        long slot = records.allocate();
+        records.write(slot, 7, 0, 30, utf8("alice"), utf8("alice@example.com"), 1);
+        records.clear(slot);
+
+        assertNull(records.read(slot, 7));
+        assertNull(records.read(slot, 0));
+        assertFalse(records.usernameEquals(slot, utf8("alice")));
+    }
+
+    @Test
+    void freedSlotIsReusedFirst() {
+        OffHeapUserRecords records = records(2);
+        long first = records.allocate();
+        long second = records.allocate();
+        records.clear(first);
+        records.free(first);
+
+        assertEquals(first, records.allocate());
+        assertEquals(second + 1, records.allocate());
+        assertEquals(3, records.getHighWatermark());
+    }
+
+    @Test
+    void fullStoreThrows() {
+        OffHeapUserRecords records = records(2);
+        assertEquals(2 * RECORDS_PER_SLAB, records.getMaxRecords());
+        for (int i = 0; i < records.getMaxRecords(); i++) {
+            records.allocate();
+        }
+
+        assertThrows(IllegalStateException.class, records::allocate);
+    }
+
+    @Test
+    void slabsAreAllocatedOnDemand() {
+        OffHeapUserRecords records = records(4);
+        assertEquals(0, records.allocatedBytes());
+
+        records.allocate();
+        long oneSlab = records.allocatedBytes();
+        assertEquals((long) RECORDS_PER_SLAB * OffHeapUserRecords.RECORD_SIZE, oneSlab);
+
+        for (int i = 1; i <= RECORDS_PER_SLAB; i++) {
+            records.allocate();
+        }
+        assertEquals(2 * oneSlab, records.allocatedBytes());
+    }
+
+    @Test
+    void concurrentReadsNeverSeeTornRecords() throws InterruptedException {
+        OffHeapUserRecords records = records(1);
+        long slot = records.allocate();
+        records.write(slot, 1, 1, 1, utf8("user-1"), utf8("user-1@example.com"), 1);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> torn = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (running.get() && torn.get() == null) {
+                User user = records.read(slot, 0);
+                if (user == null) {
+                    torn.set("读到空记录");
+                    continue;
+                }
+                // 一次写入的所有字段都来自同一个序号，读到混合的字段说明顺序锁失效
+                long n = user.getId();
+                if (user.getCreatedAt() != n || user.getAge() != (int) n || user.getVersion() != n
+                        || !user.getUsername().equals("user-" + n)
+                        || !user.getEmail().equals("user-" + n + "@example.com")) {
+                    torn.set(user.toString());
+                }
+            }
+        });
+        reader.start();
+
+        try {
+            for (long n = 2; n <= 200_000 && torn.get() == null; n++) {
+                records.write(slot, n, n, (int) n, utf8("user-" + n), utf8("user-" + n + "@example.com"), n);
+            }
+        } finally {
+            running.set(false);
+            reader.join();
+        }
+        assertNull(torn.get());
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.grpc.server.store;
+
+import com.example.grpc.proto.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * OffHeapUserStore测试
+ */
+class OffHeapUserStoreTest {
+
+    private static OffHeapUserStore store() {
+        UserStoreProperties properties = new UserStoreProperties();
+        properties.getOffHeap().setSlabSize(DataSize.ofKilobytes(64));
+        properties.getOffHeap().setMaxMemory(DataSize.ofMegabytes(4));
+        properties.getOffHeap().setInitialCapacity(16);
+        return new OffHeapUserStore(properties);
+    }
+
+    @Test
+    void createThenFind() {
+        OffHeapUserStore store = store();
+        UserWriteResult result = store.create("alice", "alice@example.com", 30);
+
+        assertTrue(result.isSuccess());
+        User created = result.getUser();
+        assertEquals(1, created.getId());
+        assertEquals(1, created.getVersion());
+        assertEquals(created, store.findById(1).orElseThrow());
+        assertTrue(store.findById(2).isEmpty());
+        assertEquals(1, store.count());
+    }
+
+    @Test
+    void usernameAndEmailAreUnique() {
+        OffHeapUserStore store = store();
+        store.create("alice", "alice@example.com", 30);
+
+        assertEquals(UserWriteResult.Outcome.USERNAME_TAKEN, store.create("alice", "other@example.com", 30).getOutcome());
+        assertEquals(UserWriteResult.Outcome.EMAIL_TAKEN, store.create("bob", "alice@example.com", 30).getOutcome());
+        assertEquals(1, store.count());
+    }
+
+    @Test
+    void updateChangesOnlyGivenFields() {
+        OffHeapUserStore store = store();
+        store.create("alice", "alice@example.com", 30);
+
+        UserWriteResult result = store.update(1, "alice2", "", 0);
+        assertTrue(result.isSuccess());
+        User updated = store.findById(1).orElseThrow();
+        assertEquals("alice2", updated.getUsername());
+        assertEquals("alice@example.com", updated.getEmail());
+        assertEquals(30, updated.getAge());
+        assertEquals(2, updated.getVersion());
+
+        // 旧用户名释放，新用户名被占用
+        assertTrue(store.create("alice", "new@example.com", 20).isSuccess());
+        assertEquals(UserWriteResult.Outcome.USERNAME_TAKEN, store.create("alice2", "x@example.com", 20).getOutcome());
+    }
+
+    @Test
+    void updateConflictsAndMissingUser() {
+        OffHeapUserStore store = store();
+        store.create("alice", "alice@example.com", 30);
+        store.create("bob", "bob@example.com", 40);
+
+        assertEquals(UserWriteResult.Outcome.USERNAME_TAKEN, store.update(2, "alice", "", 0).getOutcome());
+        assertEquals(UserWriteResult.Outcome.EMAIL_TAKEN, store.update(2, "", "alice@example.com", 0).getOutcome());
+        assertEquals(UserWriteResult.Outcome.NOT_FOUND, store.update(3, "carol", "", 0).getOutcome());
+        // 改成自己当前的用户名不算冲突
+        assertTrue(store.update(2, "bob", "bob@example.com", 41).isSuccess());
+    }
+
+    @Test
+    void deleteFreesSlotAndNames() {
+        OffHeapUserStore store = store();
+        store.create("alice", "alice@example.com", 30);
+        store.create("bob", "bob@example.com", 40);
+
+        assertTrue(store.delete(1));
+        assertFalse(store.delete(1));
+        assertTrue(store.findById(1).isEmpty());
+        assertEquals(1, store.count());
+
+        // 复用被删除的槽位，ID继续递增
+        User carol = store.create("alice", "alice@example.com", 25).getUser();
+        assertEquals(3, carol.getId());
+        assertTrue(store.findById(1).isEmpty());
+        assertEquals(List.of(2L, 3L), store.findAll().stream().map(User::getId).toList());
+    }
+
+    @Test
+    void batchInsertKeepsIdsAndRestartsIdentity() {
+        OffHeapUserStore store = store();
+        List<User> users = new ArrayList<>();
+        for (long id = 10; id < 20; id++) {
+            users.add(User.newBuilder().setId(id).setUsername("user-" + id).setEmail("user-" + id + "@example.com")
+                    .setAge(20).setCreatedAt(id).build());
+        }
+        store.batchInsert(users);
+        store.restartIdentity();
+
+        assertEquals(10, store.count());
+        assertEquals(19, store.maxId());
+        // 没有版本号的快照按版本1导入
+        assertEquals(1, store.findById(15).orElseThrow().getVersion());
+        assertEquals(20, store.create("new", "new@example.com", 30).getUser().getId());
+    }
+
+    @Test
+    void oversizedFieldsAreRejected() {
+        OffHeapUserStore store = store();
+        String longName = "名".repeat(OffHeapUserRecords.MAX_USERNAME_BYTES / 3 + 1);
+
+        assertThrows(IllegalArgumentException.class, () -> store.create(longName, "a@example.com", 30));
+        assertEquals(0, store.count());
+    }
+
+    @Test
+    void manyUsersGrowIndexes() {
+        OffHeapUserStore store = store();
+        long indexBytes = store.getIndexBytes();
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(store.create("user-" + i, "user-" + i + "@example.com", 20).isSuccess());
+        }
+
+        assertTrue(store.getIndexBytes() > indexBytes);
+        assertEquals(5000, store.findAll().size());
+        assertEquals("user-4321", store.findById(4322).orElseThrow().getUsername());
+        assertEquals(UserWriteResult.Outcome.USERNAME_TAKEN, store.create("user-4321", "x@example.com", 1).getOutcome());
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.grpc.server.store;
+
+import com.example.grpc.proto.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ShardedUserStore测试
+ *
+ * 分片本身需要数据库，这里只测试scatter-gather读取时的归并
+ */
+class ShardedUserStoreTest {
+
+    @Test
+    void interleavedListsAreMergedInIdOrder() {
+        List<User> merged = ShardedUserStore.mergeById(List.of(
+                users(1, 4, 7, 10),
+                users(2, 5, 8),
+                users(3, 6, 9, 11, 12)));
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L, 12L), ids(merged));
+    }
+
+    @Test
+    void emptyListsAreSkipped() {
+        List<User> merged = ShardedUserStore.mergeById(List.of(users(), users(5, 6), users()));
+        assertEquals(List.of(5L, 6L), ids(merged));
+
+        assertTrue(ShardedUserStore.mergeById(List.of()).isEmpty());
+        assertTrue(ShardedUserStore.mergeById(List.of(users(), users())).isEmpty());
+    }
+
+    @Test
+    void unevenShardsAreDrainedCompletely() {
+        List<User> merged = ShardedUserStore.mergeById(List.of(users(100), users(1, 2, 3, 4, 5)));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 100L), ids(merged));
+    }
+
+    private static List<User> users(long... ids) {
+        List<User> users = new ArrayList<>();
+        for (long id : ids) {
+            users.add(User.newBuilder().setId(id).setUsername("user-" + id).build());
+        }
+        return users;
+    }
+
+    private static List<Long> ids(List<User> users) {
+        return users.stream().map(User::getId).toList();
+    }
+}
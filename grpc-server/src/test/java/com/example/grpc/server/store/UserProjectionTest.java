@@ -0,0 +1,99 @@
+package com.example.grpc.server.store;
+
+import com.example.grpc.proto.User;
+import com.google.protobuf.FieldMask;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * UserProjection测试
+ */
+class UserProjectionTest {
+
+    private static final User USER = User.newBuilder()
+            .setId(7)
+            .setUsername("alice")
+            .setEmail("alice@example.com")
+            .setAge(30)
+            .setCreatedAt(1_700_000_000_000L)
+            .setVersion(3)
+            .build();
+
+    @Test
+    void emptyMaskMeansAllFields() {
+        UserProjection projection = UserProjection.of(FieldMask.getDefaultInstance());
+
+        assertSame(UserProjection.ALL, projection);
+        assertSame(USER, projection.apply(USER));
+        assertEquals("id, username, email, age, created_at, version", projection.columns());
+    }
+
+    @Test
+    void allPathsMeansAllFields() {
+        assertSame(UserProjection.ALL,
+                UserProjection.of(List.of("id", "username", "email", "age", "created_at", "version")));
+    }
+
+    @Test
+    void applyKeepsOnlyRequestedFields() {
+        UserProjection projection = UserProjection.of(List.of("username", "age"));
+
+        assertFalse(projection.isAll());
+        assertEquals(User.newBuilder().setUsername("alice").setAge(30).build(), projection.apply(USER));
+    }
+
+    @Test
+    void idColumnIsAlwaysSelected() {
+        UserProjection projection = UserProjection.of(List.of("email"));
+
+        assertEquals("id, email", projection.columns());
+        assertEquals("u.id, u.email", projection.attributes("u"));
+        assertFalse(projection.includes(UserProjection.Field.ID));
+
+        // 查询结果中有id列，但没有请求id时不设置
+        User read = projection.read(new Object[]{7L, "alice@example.com"});
+        assertEquals(User.newBuilder().setEmail("alice@example.com").build(), read);
+    }
+
+    @Test
+    void withIdAddsIdForMerging() {
+        UserProjection projection = UserProjection.of(List.of("username"));
+        UserProjection withId = projection.withId();
+
+        assertTrue(withId.includes(UserProjection.Field.ID));
+        assertEquals(User.newBuilder().setId(7).setUsername("alice").build(), withId.apply(USER));
+        assertSame(withId, withId.withId());
+        assertEquals(User.newBuilder().setUsername("alice").build(), projection.apply(withId.apply(USER)));
+    }
+
+    @Test
+    void camelCasePathsAreAccepted() {
+        UserProjection projection = UserProjection.of(List.of("createdAt"));
+
+        assertTrue(projection.includes(UserProjection.Field.CREATED_AT));
+        assertEquals("id, created_at", projection.columns());
+        assertEquals("u.id, u.createdAt", projection.attributes("u"));
+    }
+
+    @Test
+    void readFollowsColumnOrder() {
+        UserProjection projection = UserProjection.of(List.of("version", "id", "age"));
+
+        assertEquals("id, age, version", projection.columns());
+        assertEquals(User.newBuilder().setId(7).setAge(30).setVersion(3).build(),
+                projection.read(new Object[]{7L, 30, 3L}));
+    }
+
+    @Test
+    void unknownPathIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> UserProjection.of(List.of("password")));
+        assertThrows(IllegalArgumentException.class, () -> UserProjection.of(List.of("username.first")));
+    }
+}
@@ -0,0 +1,71 @@
+#!/usr/bin/env bash
+#
+# 快速启动脚本：Spring AOT + AppCDS + 延迟初始化
+#
+# 用法:
+#   scripts/fast-startup.sh build                      构建AOT产物并复制运行时依赖
+#   scripts/fast-startup.sh train <server|client>      训练运行一次，生成AppCDS归档
+#   scripts/fast-startup.sh run <server|client> [参数]  以快速启动模式运行
+#   scripts/fast-startup.sh benchmark [次数]            对比普通启动和快速启动的服务端耗时
+#
+set -euo pipefail
+
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+
+module_dir() {
+    echo "$ROOT/grpc-$1"
+}
+
+main_class() {
+    case "$1" in
+        server) echo "com.example.grpc.server.GrpcServerApplication" ;;
+        client) echo "com.example.grpc.client.GrpcClientApplication" ;;
+        *) echo "未知模块: $1" >&2; exit 1 ;;
+    esac
+}
+
+# CDS要求训练和运行时的classpath完全一致，这里按文件名排序生成
+classpath() {
+    local dir
+    dir="$(module_dir "$1")/target"
+    echo "$dir/grpc-$1-1.0.0.jar:$(ls "$dir"/lib/*.jar | sort | tr '\n' ':')"
+}
+
+archive() {
+    echo "$(module_dir "$1")/target/application.jsa"
+}
+
+FAST_OPTS=(-Dspring.aot.enabled=true -Dspring.profiles.active=fast-startup)
+
+case "${1:-}" in
+    build)
+        (cd "$ROOT" && mvn -B -P fast-startup package -DskipTests)
+        ;;
+    train)
+        # spring.context.exit=onRefresh：上下文刷新完成后立即退出，JVM退出时写出CDS归档
+        java -XX:ArchiveClassesAtExit="$(archive "$2")" -Dspring.context.exit=onRefresh \
+            "${FAST_OPTS[@]}" -cp "$(classpath "$2")" "$(main_class "$2")"
+        ;;
+    run)
+        module="$2"
+        shift 2
+        exec java -XX:SharedArchiveFile="$(archive "$module")" -Xshare:auto \
+            "${FAST_OPTS[@]}" -cp "$(classpath "$module")" "$(main_class "$module")" "$@"
+        ;;
+    benchmark)
+        runs="${2:-5}"
+        bench_cp="$(classpath client)"
+        bench_main="com.example.grpc.client.benchmark.StartupBenchmark"
+        echo "== 普通启动 =="
+        java -cp "$bench_cp" "$bench_main" --runs="$runs" -- \
+            java -cp "$(classpath server)" "$(main_class server)"
+        echo "== 快速启动（AOT + AppCDS + 延迟初始化） =="
+        java -cp "$bench_cp" "$bench_main" --runs="$runs" -- \
+            java -XX:SharedArchiveFile="$(archive server)" -Xshare:auto \
+            "${FAST_OPTS[@]}" -cp "$(classpath server)" "$(main_class server)"
+        ;;
+    *)
+        sed -n '3,9p' "$0"
+        exit 1
+        ;;
+esac